@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.entity.ExtractData;
+import org.codelibs.fess.crawler.extractor.Extractor;
+import org.codelibs.fess.crawler.extractor.ExtractorFactory;
+import org.codelibs.fess.crawler.extractor.impl.PdfExtractor;
+import org.codelibs.fess.crawler.extractor.impl.TikaExtractor;
+import org.codelibs.fess.crawler.helper.impl.MimeTypeHelperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the text extraction of {@link TikaExtractor} and {@link PdfExtractor}
+ * on the fixture documents.
+ *
+ * <pre>
+ * mvn -pl fess-crawler-benchmark -am package exec:exec -Djmh.args="ExtractorBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractorBenchmark {
+
+    /** The extractor component and the fixture, separated by a slash. */
+    @Param({ "tikaExtractor/test.pdf", "tikaExtractor/test.docx", "tikaExtractor/test_utf8.html", "pdfExtractor/test.pdf" })
+    public String target;
+
+    private StandardCrawlerContainer container;
+
+    private Extractor extractor;
+
+    private byte[] content;
+
+    private Map<String, String> params;
+
+    @Setup
+    public void setUp() throws IOException {
+        container = new StandardCrawlerContainer();
+        container.singleton("mimeTypeHelper", MimeTypeHelperImpl.class)//
+                .singleton("tikaExtractor", TikaExtractor.class)//
+                .singleton("pdfExtractor", PdfExtractor.class)//
+                .<ExtractorFactory> singleton("extractorFactory", ExtractorFactory.class, factory -> {
+                    final TikaExtractor tikaExtractor = container.getComponent("tikaExtractor");
+                    final PdfExtractor pdfExtractor = container.getComponent("pdfExtractor");
+                    factory.addExtractor("text/plain", tikaExtractor);
+                    factory.addExtractor("text/html", tikaExtractor);
+                    factory.addExtractor("application/pdf", pdfExtractor);
+                });
+        final String[] values = target.split("/", 2);
+        extractor = container.getComponent(values[0]);
+        final String fixture = values[1];
+        content = Fixtures.load(fixture);
+        params = new HashMap<>();
+        params.put(ExtractData.RESOURCE_NAME_KEY, fixture);
+    }
+
+    @Benchmark
+    public ExtractData getText() {
+        return extractor.getText(new ByteArrayInputStream(content), params);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the fixture documents bundled under {@code fixtures/} in the benchmark resources.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+        // NOP
+    }
+
+    /**
+     * Reads the fixture document into memory.
+     *
+     * @param name the file name of the fixture
+     * @return the content of the fixture
+     * @throws IOException if the fixture cannot be read
+     */
+    static byte[] load(final String name) throws IOException {
+        try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream("fixtures/" + name)) {
+            if (in == null) {
+                throw new FileNotFoundException("fixtures/" + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+}
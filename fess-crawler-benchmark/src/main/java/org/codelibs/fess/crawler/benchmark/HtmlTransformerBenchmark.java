@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.entity.ResultData;
+import org.codelibs.fess.crawler.helper.EncodingHelper;
+import org.codelibs.fess.crawler.helper.UrlConvertHelper;
+import org.codelibs.fess.crawler.transformer.impl.HtmlTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link HtmlTransformer#transform(ResponseData)} on generated pages that look like
+ * typical sites: a head with styles and scripts, navigation menus, article paragraphs
+ * and a footer. The number of links on the page is given by {@code numOfLinks}, and {@code streaming}
+ * switches between the DOM mode and the single-pass mode.
+ *
+ * <pre>
+ * mvn -pl fess-crawler-benchmark -am package exec:exec -Djmh.args="HtmlTransformerBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlTransformerBenchmark {
+
+    private static final String URL = "https://www.example.com/docs/guide/index.html";
+
+    @Param({ "20", "200" })
+    public int numOfLinks;
+
+    @Param({ "false", "true" })
+    public boolean streaming;
+
+    private HtmlTransformer htmlTransformer;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        final StandardCrawlerContainer container = new StandardCrawlerContainer()//
+                .singleton("urlConvertHelper", UrlConvertHelper.class)//
+                .singleton("encodingHelper", EncodingHelper.class)//
+                .<HtmlTransformer> singleton("htmlTransformer", HtmlTransformer.class, transformer -> {
+                    transformer.setName("htmlTransformer");
+                    final Map<String, String> featureMap = new HashMap<>();
+                    featureMap.put("http://xml.org/sax/features/namespaces", "false");
+                    transformer.setFeatureMap(featureMap);
+                    transformer.setPropertyMap(new HashMap<>());
+                    final Map<String, String> childUrlRuleMap = new HashMap<>();
+                    childUrlRuleMap.put("//A", "href");
+                    childUrlRuleMap.put("//AREA", "href");
+                    childUrlRuleMap.put("//FRAME", "src");
+                    childUrlRuleMap.put("//IFRAME", "src");
+                    childUrlRuleMap.put("//IMG", "src");
+                    childUrlRuleMap.put("//LINK", "href");
+                    childUrlRuleMap.put("//SCRIPT", "src");
+                    transformer.setChildUrlRuleMap(childUrlRuleMap);
+                    transformer.setStreaming(streaming);
+                });
+        htmlTransformer = container.getComponent("htmlTransformer");
+        body = createPage(numOfLinks).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ResultData transform() {
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl(URL);
+        responseData.setMethod("GET");
+        responseData.setResponseBody(body);
+        responseData.setCharSet("UTF-8");
+        responseData.setMimeType("text/html");
+        return htmlTransformer.transform(responseData);
+    }
+
+    private static String createPage(final int numOfLinks) {
+        final StringBuilder buf = new StringBuilder(numOfLinks * 300);
+        buf.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"UTF-8\">\n");
+        buf.append("<title>User Guide - Example</title>\n");
+        buf.append("<link rel=\"stylesheet\" href=\"/assets/css/main.css\">\n");
+        buf.append("<link rel=\"icon\" href=\"/favicon.ico\">\n");
+        buf.append("<script src=\"/assets/js/vendor.js\"></script>\n");
+        buf.append("<script>window.dataLayer = window.dataLayer || []; function gtag(){dataLayer.push(arguments);}</script>\n");
+        buf.append("<style>body { font-family: sans-serif; } .nav li { display: inline; }</style>\n");
+        buf.append("</head>\n<body>\n<header><img src=\"/assets/img/logo.png\" alt=\"logo\">\n<ul class=\"nav\">\n");
+        final int numOfNavLinks = Math.max(1, numOfLinks / 4);
+        for (int i = 0; i < numOfNavLinks; i++) {
+            buf.append("<li><a href=\"/docs/section").append(i).append("/\">Section ").append(i).append("</a></li>\n");
+        }
+        buf.append("</ul>\n</header>\n<main>\n<article>\n<h1>User Guide</h1>\n");
+        for (int i = numOfNavLinks; i < numOfLinks; i++) {
+            buf.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore ")
+                    .append("et dolore magna aliqua. See <a href=\"../topic/page")
+                    .append(i)
+                    .append(".html?lang=en#overview\">page ")
+                    .append(i)
+                    .append("</a> for details.</p>\n");
+            if (i % 10 == 0) {
+                buf.append("<table><tr><th>Name</th><th>Value</th></tr><tr><td>key").append(i).append("</td><td>value</td></tr></table>\n");
+                buf.append("<img src=\"images/figure").append(i).append(".png\" alt=\"figure\">\n");
+            }
+        }
+        buf.append("</article>\n</main>\n<footer>\n<a href=\"mailto:info@example.com\">Contact</a>\n");
+        buf.append("<a href=\"javascript:void(0)\">Top</a>\n<a href=\"https://www.example.org/\">Partner</a>\n");
+        buf.append("<p>&copy; 2025 Example</p>\n</footer>\n</body>\n</html>\n");
+        return buf.toString();
+    }
+}
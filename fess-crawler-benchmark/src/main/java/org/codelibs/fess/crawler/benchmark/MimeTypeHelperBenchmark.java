@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.helper.MimeTypeHelper;
+import org.codelibs.fess.crawler.helper.impl.MimeTypeHelperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MimeTypeHelperImpl#getContentType(InputStream, String)} for the fixture documents.
+ * The {@code filename} parameter is passed as the resource name, so that both the detection by
+ * name and the detection by content (for a name without an extension) are covered.
+ *
+ * <pre>
+ * mvn -pl fess-crawler-benchmark -am package exec:exec -Djmh.args="MimeTypeHelperBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MimeTypeHelperBenchmark {
+
+    @Param({ "test.pdf", "test.docx", "test_utf8.html" })
+    public String fixture;
+
+    @Param({ "true", "false" })
+    public boolean withExtension;
+
+    private MimeTypeHelper mimeTypeHelper;
+
+    private byte[] content;
+
+    private String filename;
+
+    @Setup
+    public void setUp() throws IOException {
+        final StandardCrawlerContainer container = new StandardCrawlerContainer().singleton("mimeTypeHelper", MimeTypeHelperImpl.class);
+        mimeTypeHelper = container.getComponent("mimeTypeHelper");
+        content = Fixtures.load(fixture);
+        filename = withExtension ? fixture : "document";
+    }
+
+    @Benchmark
+    public String getContentType() {
+        return mimeTypeHelper.getContentType(new ByteArrayInputStream(content), filename);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.util.TextUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TextUtil#normalizeText(java.io.Reader)} on extracted-looking text:
+ * words separated by runs of white spaces and line breaks, long alphanumeric tokens
+ * (hashes, base64) and symbol runs.
+ *
+ * <pre>
+ * mvn -pl fess-crawler-benchmark -am package exec:exec -Djmh.args="TextUtilBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextUtilBenchmark {
+
+    private static final String[] WORDS = { "crawler", "document", "extract", "the", "of", "search", "index", "クローラー", "検索", "文書",
+            "2025-01-01", "https://www.example.com/path", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", "====",
+            "-----------------", "　", "\t", "\n\n\n" };
+
+    @Param({ "1024", "65536", "1048576" })
+    public int length;
+
+    @Param({ "false", "true" })
+    public boolean duplicateTermRemoved;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(1L);
+        final StringBuilder buf = new StringBuilder(length + 100);
+        while (buf.length() < length) {
+            buf.append(WORDS[random.nextInt(WORDS.length)]);
+            buf.append(random.nextInt(4) == 0 ? "   " : " ");
+        }
+        buf.setLength(length);
+        text = buf.toString();
+    }
+
+    @Benchmark
+    public String normalizeText() {
+        return TextUtil.normalizeText(new StringReader(text))
+                .initialCapacity(text.length())
+                .maxAlphanumTermSize(20)
+                .maxSymbolTermSize(10)
+                .duplicateTermRemoved(duplicateTermRemoved)
+                .execute();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.filter.impl.UrlFilterImpl;
+import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.service.impl.UrlFilterServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link UrlFilterImpl#match(String)} with a growing number of include/exclude
+ * patterns. The patterns resemble the ones generated from robots.txt and from the
+ * crawl configuration: one include pattern per site and several excluded paths per site.
+ *
+ * <pre>
+ * mvn -pl fess-crawler-benchmark -am package exec:exec -Djmh.args="UrlFilterBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlFilterBenchmark {
+
+    private static final String SESSION_ID = "benchmark";
+
+    private static final String[] EXCLUDED_PATHS = { "/cgi-bin/.*", "/private/.*", "/search\\?.*", "/.*\\.zip", "/login.*" };
+
+    @Param({ "10", "1000", "10000" })
+    public int numOfPatterns;
+
+    private UrlFilterImpl urlFilter;
+
+    private String[] urls;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final StandardCrawlerContainer container = new StandardCrawlerContainer().singleton("dataHelper", MemoryDataHelper.class)//
+                .singleton("urlFilterService", UrlFilterServiceImpl.class)//
+                .singleton("urlFilter", UrlFilterImpl.class);
+        urlFilter = container.getComponent("urlFilter");
+
+        final int numOfSites = Math.max(1, numOfPatterns / (EXCLUDED_PATHS.length + 1));
+        int count = 0;
+        for (int i = 0; i < numOfSites && count < numOfPatterns; i++) {
+            urlFilter.addInclude("https?://site" + i + "\\.example\\.com/.*");
+            count++;
+            for (int j = 0; j < EXCLUDED_PATHS.length && count < numOfPatterns; j++) {
+                urlFilter.addExclude("https?://site" + i + "\\.example\\.com" + EXCLUDED_PATHS[j]);
+                count++;
+            }
+        }
+        urlFilter.init(SESSION_ID);
+
+        // a mix of included, excluded and unknown URLs
+        urls = new String[1024];
+        for (int i = 0; i < urls.length; i++) {
+            final int site = i * 31 % (numOfSites + numOfSites / 10 + 1);
+            urls[i] = switch (i % 4) {
+            case 0 -> "https://site" + site + ".example.com/docs/page" + i + ".html";
+            case 1 -> "http://site" + site + ".example.com/private/data" + i;
+            case 2 -> "https://site" + site + ".example.com/search?q=" + i;
+            default -> "https://other" + site + ".example.org/index.html";
+            };
+        }
+    }
+
+    @Benchmark
+    public boolean match() {
+        index = (index + 1) & (urls.length - 1);
+        return urlFilter.match(urls[index]);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.service.impl.HostPartitionedUrlQueueServiceImpl;
+import org.codelibs.fess.crawler.service.impl.UrlQueueServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the offer/poll throughput of the in-memory {@link UrlQueueService} implementations
+ * under contention. Each operation emulates one crawled page: it polls a URL, offers the
+ * child links found on it and records the result of the page. Only one of the links is new and
+ * the others point to pages which are already queued, being crawled or crawled, so about as
+ * many URLs are offered as are polled and the queue keeps its size.
+ *
+ * <pre>
+ * mvn -pl fess-crawler-benchmark -am package exec:exec -Djmh.args="UrlQueueServiceBenchmark -t 50"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class UrlQueueServiceBenchmark {
+
+    private static final String SESSION_ID = "benchmark";
+
+    @Param({ "UrlQueueServiceImpl", "HostPartitionedUrlQueueServiceImpl" })
+    public String implementation;
+
+    @Param({ "100" })
+    public int numOfHosts;
+
+    @Param({ "20" })
+    public int linksPerPage;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private StandardCrawlerContainer container;
+
+    private UrlQueueService<UrlQueueImpl<Long>> urlQueueService;
+
+    private MemoryDataHelper dataHelper;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        final Class<?> serviceClass = switch (implementation) {
+        case "UrlQueueServiceImpl" -> UrlQueueServiceImpl.class;
+        case "HostPartitionedUrlQueueServiceImpl" -> HostPartitionedUrlQueueServiceImpl.class;
+        default -> throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        };
+        container = new StandardCrawlerContainer().singleton("dataHelper", MemoryDataHelper.class)
+                .singleton("urlQueueService", serviceClass);
+        urlQueueService = container.getComponent("urlQueueService");
+        dataHelper = container.getComponent("dataHelper");
+        // the links to seen pages are picked from the URLs of this iteration
+        sequence.set(0L);
+        // seed the queue so that poll() rarely returns null
+        for (int i = 0; i < 10000; i++) {
+            urlQueueService.add(SESSION_ID, nextUrl());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        container.destroy();
+    }
+
+    @Benchmark
+    public void pollAndOffer(final Blackhole blackhole) {
+        final UrlQueueImpl<Long> polled = urlQueueService.poll(SESSION_ID);
+        blackhole.consume(polled);
+        final long lastId = sequence.get();
+        final List<UrlQueueImpl<Long>> childList = new ArrayList<>(linksPerPage);
+        for (int i = 0; i < linksPerPage; i++) {
+            final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+            urlQueue.setSessionId(SESSION_ID);
+            urlQueue.setMethod(Constants.GET_METHOD);
+            if (i == 0) {
+                urlQueue.setUrl(nextUrl());
+            } else if (i % 4 == 0) {
+                // navigation pages shared by every page
+                urlQueue.setUrl("http://host" + i % numOfHosts + ".example.com/");
+            } else {
+                urlQueue.setUrl(toUrl(1 + ThreadLocalRandom.current().nextLong(lastId)));
+            }
+            urlQueue.setDepth(1);
+            childList.add(urlQueue);
+        }
+        urlQueueService.offerAll(SESSION_ID, childList);
+        if (polled != null) {
+            final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+            accessResult.setSessionId(SESSION_ID);
+            accessResult.setUrl(polled.getUrl());
+            dataHelper.getAccessResultMap(SESSION_ID).put(polled.getUrl(), accessResult);
+            urlQueueService.finish(polled);
+        }
+    }
+
+    private String nextUrl() {
+        return toUrl(sequence.incrementAndGet());
+    }
+
+    private String toUrl(final long id) {
+        return "http://host" + id % numOfHosts + ".example.com/page/" + id + ".html";
+    }
+}
@@ -16,7 +16,10 @@
 package org.codelibs.fess.crawler.container;
 
 import org.codelibs.fess.crawler.Crawler;
+import org.codelibs.fess.crawler.client.http.Hc5AsyncHttpClient;
+import org.codelibs.fess.crawler.client.http.Hc5HttpClient;
 import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.helper.RobotsTxtCache;
 import org.codelibs.fess.crawler.service.DataService;
 import org.codelibs.fess.crawler.service.UrlQueueService;
 import org.dbflute.utflute.lastadi.LastaDiTestCase;
@@ -67,6 +70,17 @@ public class LastaCrawlerContainerTest extends LastaDiTestCase {
         assertNotNull(dataHelper);
     }
 
+    @Test
+    public void test_getComponent_robotsTxtCache() {
+        // The HTTP clients share the robots.txt cache
+        final RobotsTxtCache robotsTxtCache = crawlerContainer.getComponent("robotsTxtCache");
+        assertNotNull(robotsTxtCache);
+        final Hc5HttpClient httpClient = crawlerContainer.getComponent("internalHttpClient");
+        assertTrue(robotsTxtCache == httpClient.getRobotsTxtCache());
+        final Hc5AsyncHttpClient asyncHttpClient = crawlerContainer.getComponent("internalHc5AsyncHttpClient");
+        assertTrue(robotsTxtCache == asyncHttpClient.getRobotsTxtCache());
+    }
+
     @Test
     public void test_getComponent_multiple() {
         // Verify that multiple components can be retrieved
@@ -103,6 +103,11 @@ public class OpenSearchAccessResult extends AccessResultImpl<String> implements
      */
     public static final String LAST_MODIFIED = "lastModified";
 
+    /**
+     * Field name for entity tag.
+     */
+    public static final String ETAG = "etag";
+
     /**
      * Field name for access result data.
      */
@@ -211,6 +216,9 @@ public class OpenSearchAccessResult extends AccessResultImpl<String> implements
         if (lastModified != null) {
             builder.field(LAST_MODIFIED, lastModified);
         }
+        if (etag != null) {
+            builder.field(ETAG, etag);
+        }
         if (accessResultData instanceof ToXContent) {
             builder.field(ACCESS_RESULT_DATA);
             ((ToXContent) accessResultData).toXContent(builder, params);
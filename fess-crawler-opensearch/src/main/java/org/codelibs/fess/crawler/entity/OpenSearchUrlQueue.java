@@ -67,6 +67,11 @@ public class OpenSearchUrlQueue extends UrlQueueImpl<String> implements ToXConte
      */
     public static final String LAST_MODIFIED = "lastModified";
 
+    /**
+     * Field name for entity tag.
+     */
+    public static final String ETAG = "etag";
+
     /**
      * Field name for creation time.
      */
@@ -106,6 +111,9 @@ public class OpenSearchUrlQueue extends UrlQueueImpl<String> implements ToXConte
         if (lastModified != null) {
             builder.field(LAST_MODIFIED, lastModified);
         }
+        if (etag != null) {
+            builder.field(ETAG, etag);
+        }
         if (createTime != null) {
             builder.field(CREATE_TIME, createTime);
         }
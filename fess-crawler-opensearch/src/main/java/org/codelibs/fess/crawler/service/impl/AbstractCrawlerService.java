@@ -701,7 +701,7 @@ public abstract class AbstractCrawlerService {
      * @param url The URL.
      * @return The generated unique ID.
      */
-    private String getId(final String sessionId, final String url) {
+    protected String getId(final String sessionId, final String url) {
         final String id = sessionId + ID_SEPARATOR + new String(Base64.getUrlEncoder().withoutPadding().encode(url.getBytes(UTF_8)), UTF_8);
         if (id.length() <= idPrefixLength) {
             return id;
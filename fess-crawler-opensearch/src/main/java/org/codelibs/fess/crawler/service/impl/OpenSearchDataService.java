@@ -15,10 +15,20 @@
  */
 package org.codelibs.fess.crawler.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.lucene.search.TotalHits;
 import org.codelibs.core.beans.util.BeanUtil;
 import org.codelibs.fess.crawler.entity.OpenSearchAccessResult;
@@ -28,26 +38,128 @@ import org.codelibs.fess.crawler.service.DataService;
 import org.codelibs.fess.crawler.util.AccessResultCallback;
 import org.codelibs.fess.crawler.util.OpenSearchCrawlerConfig;
 import org.codelibs.fess.crawler.util.OpenSearchResultList;
+import org.opensearch.action.DocWriteRequest;
 import org.opensearch.action.DocWriteRequest.OpType;
+import org.opensearch.action.bulk.BulkItemResponse;
+import org.opensearch.action.bulk.BulkProcessor;
+import org.opensearch.action.bulk.BulkRequest;
+import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.action.index.IndexRequest;
 import org.opensearch.action.search.SearchRequestBuilder;
 import org.opensearch.action.search.SearchResponse;
 import org.opensearch.common.unit.TimeValue;
+import org.opensearch.core.common.unit.ByteSizeValue;
+import org.opensearch.core.xcontent.XContentBuilder;
 import org.opensearch.index.query.QueryBuilders;
 import org.opensearch.search.SearchHit;
 import org.opensearch.search.SearchHits;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 /**
  * OpenSearchDataService is an implementation of {@link DataService} for OpenSearch.
+ *
+ * <p>When the write-behind mode is enabled, {@link #store(OpenSearchAccessResult)} does not
+ * index the access result immediately. The access results are buffered and sent as bulk requests
+ * when the number of actions, the byte size or the flush interval is reached, and the index is
+ * refreshed only on {@link #flush()}, which does nothing if no access result has been stored since
+ * the previous refresh. Buffered access results are visible to {@link #getAccessResult(String, String)},
+ * {@link #exists(String, String)} and {@link #getAccessResultList(String, boolean)}, which are called
+ * per URL, and the other read operations flush the buffer first. Failures of background writes are
+ * logged and passed to the write failure callback instead of being thrown to crawler threads.</p>
  */
 public class OpenSearchDataService extends AbstractCrawlerService implements DataService<OpenSearchAccessResult> {
 
+    /**
+     * Logger instance.
+     */
+    private static final Logger logger = LogManager.getLogger(OpenSearchDataService.class);
+
     /**
      * Fields to fetch for access result list without data.
      */
     private static final String[] ACCESS_RESULT_FIELDS = { "parentUrl", "method", "mimeType", "sessionId", "url", "executionTime",
-            "createTime", "contentLength", "lastModified", "ruleId", "httpStatusCode", "status" };
+            "createTime", "contentLength", "lastModified", "etag", "ruleId", "httpStatusCode", "status" };
+
+    /**
+     * Whether access results are stored by asynchronous bulk requests.
+     */
+    protected boolean writeBehindEnabled = false;
+
+    /**
+     * The number of buffered access results which triggers a bulk request.
+     */
+    protected int writeBehindBulkActions = 1000;
+
+    /**
+     * The size in bytes of buffered access results which triggers a bulk request.
+     */
+    protected long writeBehindBulkSize = 5L * 1024L * 1024L;
+
+    /**
+     * The interval in milliseconds to send buffered access results.
+     */
+    protected long writeBehindFlushInterval = 1000L;
+
+    /**
+     * The number of bulk requests executed concurrently. When all of them are in flight,
+     * {@link #store(OpenSearchAccessResult)} waits for one of them to complete.
+     */
+    protected int writeBehindConcurrentRequests = 1;
+
+    /**
+     * The maximum time in milliseconds to wait for in-flight bulk requests on flush.
+     */
+    protected long writeBehindFlushTimeout = 60000L;
+
+    /**
+     * The callback invoked with an access result which could not be stored in the background.
+     */
+    protected BiConsumer<OpenSearchAccessResult, Throwable> writeFailureCallback;
+
+    /**
+     * The number of access results which could not be stored in the background.
+     */
+    protected final AtomicLong writeFailureCount = new AtomicLong();
+
+    /**
+     * Access results which are buffered or in flight, keyed by the document ID.
+     */
+    protected final Map<String, OpenSearchAccessResult> pendingAccessResultMap = new ConcurrentHashMap<>();
+
+    /**
+     * Access results which are buffered or in flight, keyed by their index request.
+     * A later access result of the same document replaces the pending one, so a finished request
+     * removes its pending access result only if it has not been replaced.
+     */
+    protected final Map<DocWriteRequest<?>, OpenSearchAccessResult> bulkAccessResultMap =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * The bulk processor for the write-behind mode.
+     */
+    protected volatile BulkProcessor bulkProcessor;
+
+    /**
+     * The lock to wait for in-flight bulk requests.
+     */
+    private final Object bulkLock = new Object();
+
+    /**
+     * The number of in-flight bulk requests.
+     */
+    private int inFlightBulkCount;
+
+    /**
+     * The number of access results added to the bulk buffer.
+     */
+    protected final AtomicLong storeSequence = new AtomicLong();
+
+    /**
+     * The value of {@link #storeSequence} at the last refresh by {@link #flush()}, guarded by the bulk lock.
+     */
+    protected long refreshedSequence;
 
     /**
      * Creates a new instance of OpenSearchDataService.
@@ -76,14 +188,162 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
         fesenClient.addOnConnectListener(() -> createMapping("data"));
     }
 
+    /**
+     * Flushes buffered access results and closes the bulk processor.
+     */
+    @PreDestroy
+    public void destroy() {
+        final BulkProcessor processor = bulkProcessor;
+        if (processor != null) {
+            bulkProcessor = null;
+            try {
+                if (!processor.awaitClose(writeBehindFlushTimeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Timed out while closing the bulk processor: index={}, pending={}", index, pendingAccessResultMap.size());
+                }
+            } catch (final InterruptedException e) {
+                logger.warn("Interrupted while closing the bulk processor: index={}", index, e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Stores an access result in the OpenSearch index.
+     * In the write-behind mode, the access result is added to the bulk buffer.
      *
      * @param accessResult The access result to store.
      */
     @Override
     public void store(final OpenSearchAccessResult accessResult) {
-        super.insert(accessResult, accessResult.getId() == null ? OpType.CREATE : OpType.INDEX);
+        final OpType opType = accessResult.getId() == null ? OpType.CREATE : OpType.INDEX;
+        if (writeBehindEnabled) {
+            addToBulk(accessResult, opType);
+        } else {
+            super.insert(accessResult, opType);
+        }
+    }
+
+    /**
+     * Adds an access result to the bulk buffer.
+     *
+     * @param accessResult The access result to store.
+     * @param opType The operation type.
+     */
+    protected void addToBulk(final OpenSearchAccessResult accessResult, final OpType opType) {
+        if (accessResult.getUrl() == null) {
+            throw new OpenSearchAccessException("url is null.");
+        }
+        final String id = getId(accessResult.getSessionId(), accessResult.getUrl());
+        final IndexRequest request;
+        try (final XContentBuilder source = getXContentBuilder(accessResult)) {
+            request = new IndexRequest(index).id(id).source(source).opType(opType);
+        }
+        setId(accessResult, id);
+        pendingAccessResultMap.put(id, accessResult);
+        bulkAccessResultMap.put(request, accessResult);
+        storeSequence.incrementAndGet();
+        try {
+            getBulkProcessor().add(request);
+        } catch (final Exception e) {
+            bulkAccessResultMap.remove(request);
+            pendingAccessResultMap.remove(id, accessResult);
+            throw new OpenSearchAccessException("Failed to add " + id + " to the bulk request.", e);
+        }
+    }
+
+    /**
+     * Returns the bulk processor, creating it on first use.
+     *
+     * @return The bulk processor.
+     */
+    protected BulkProcessor getBulkProcessor() {
+        BulkProcessor processor = bulkProcessor;
+        if (processor == null) {
+            synchronized (bulkLock) {
+                processor = bulkProcessor;
+                if (processor == null) {
+                    processor = BulkProcessor.builder((request, listener) -> getClient().bulk(request, listener), new WriteBehindListener())
+                            .setBulkActions(writeBehindBulkActions)
+                            .setBulkSize(new ByteSizeValue(writeBehindBulkSize))
+                            .setFlushInterval(TimeValue.timeValueMillis(writeBehindFlushInterval))
+                            .setConcurrentRequests(writeBehindConcurrentRequests)
+                            .build();
+                    bulkProcessor = processor;
+                }
+            }
+        }
+        return processor;
+    }
+
+    /**
+     * Sends buffered access results, waits for in-flight bulk requests and refreshes the index.
+     * This method does nothing unless access results have been stored in the write-behind mode
+     * since the previous refresh.
+     */
+    public void flush() {
+        final BulkProcessor processor = bulkProcessor;
+        if (processor == null) {
+            return;
+        }
+        // the access results added up to now are sent and refreshed by this flush
+        final long sequence = storeSequence.get();
+        synchronized (bulkLock) {
+            if (sequence == refreshedSequence) {
+                return;
+            }
+        }
+        processor.flush();
+        final long deadline = System.currentTimeMillis() + writeBehindFlushTimeout;
+        synchronized (bulkLock) {
+            while (inFlightBulkCount > 0) {
+                final long waitTime = deadline - System.currentTimeMillis();
+                if (waitTime <= 0) {
+                    throw new OpenSearchAccessException("Timed out while waiting for " + inFlightBulkCount + " bulk requests.");
+                }
+                try {
+                    bulkLock.wait(waitTime);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new OpenSearchAccessException("Interrupted while waiting for bulk requests.", e);
+                }
+            }
+        }
+        refresh();
+        synchronized (bulkLock) {
+            if (sequence > refreshedSequence) {
+                refreshedSequence = sequence;
+            }
+        }
+    }
+
+    /**
+     * Removes the pending access result of an index request which has been sent.
+     *
+     * @param request The index request.
+     * @return The access result of the request, or null if it is unknown.
+     */
+    protected OpenSearchAccessResult finishPendingAccessResult(final DocWriteRequest<?> request) {
+        final OpenSearchAccessResult accessResult = bulkAccessResultMap.remove(request);
+        if (accessResult != null) {
+            pendingAccessResultMap.remove(request.id(), accessResult);
+        }
+        return accessResult;
+    }
+
+    /**
+     * Handles an access result which could not be stored in the background.
+     *
+     * @param request The index request.
+     * @param cause The cause of the failure.
+     */
+    protected void handleWriteFailure(final DocWriteRequest<?> request, final Throwable cause) {
+        final String id = request.id();
+        final OpenSearchAccessResult accessResult = finishPendingAccessResult(request);
+        writeFailureCount.incrementAndGet();
+        logger.warn("Failed to store an access result in the background: index={}, id={}", index, id, cause);
+        if (writeFailureCallback != null && accessResult != null) {
+            writeFailureCallback.accept(accessResult, cause);
+        }
     }
 
     /**
@@ -93,6 +353,7 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public void update(final OpenSearchAccessResult accessResult) {
+        flush();
         super.insert(accessResult, OpType.INDEX);
     }
 
@@ -103,6 +364,7 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public void update(final List<OpenSearchAccessResult> accessResultList) {
+        flush();
         insertAll(accessResultList, OpType.INDEX);
     }
 
@@ -114,6 +376,7 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public int getCount(final String sessionId) {
+        flush();
         return getCount(builder -> builder.setQuery(QueryBuilders.termQuery(SESSION_ID, sessionId)));
     }
 
@@ -124,11 +387,22 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public void delete(final String sessionId) {
+        flush();
         deleteBySessionId(sessionId);
     }
 
+    /**
+     * Deletes all access results.
+     */
+    @Override
+    public void deleteAll() {
+        flush();
+        super.deleteAll();
+    }
+
     /**
      * Gets an access result by session ID and URL.
+     * An access result waiting in the bulk buffer is returned as is.
      *
      * @param sessionId The session ID.
      * @param url The URL.
@@ -136,11 +410,45 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public OpenSearchAccessResult getAccessResult(final String sessionId, final String url) {
+        if (!pendingAccessResultMap.isEmpty()) {
+            final OpenSearchAccessResult accessResult = pendingAccessResultMap.get(getId(sessionId, url));
+            if (accessResult != null) {
+                return accessResult;
+            }
+        }
         return get(OpenSearchAccessResult.class, sessionId, url);
     }
 
+    /**
+     * Checks if an access result exists, including one waiting in the bulk buffer.
+     *
+     * @param sessionId The session ID.
+     * @param url The URL.
+     * @return true if the access result exists, false otherwise.
+     */
+    @Override
+    protected boolean exists(final String sessionId, final String url) {
+        if (!pendingAccessResultMap.isEmpty() && isPending(getId(sessionId, url))) {
+            return true;
+        }
+        return super.exists(sessionId, url);
+    }
+
+    /**
+     * Checks if an access result is waiting in the bulk buffer and has not been indexed yet.
+     *
+     * @param id The document ID of the access result.
+     * @return true if the access result is pending, false otherwise.
+     */
+    public boolean isPending(final String id) {
+        return pendingAccessResultMap.containsKey(id);
+    }
+
     /**
      * Gets a list of access results for a specific URL.
+     * The buffer is not flushed, because this method is called per URL; the access results waiting in it
+     * are merged into the indexed ones instead. An access result sent but not refreshed yet becomes visible
+     * with the next refresh of the index.
      *
      * @param url The URL to search for.
      * @param hasData Whether to include data (currently not used in this implementation).
@@ -148,7 +456,21 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public List<OpenSearchAccessResult> getAccessResultList(final String url, final boolean hasData) {
-        return getList(OpenSearchAccessResult.class, builder -> builder.setQuery(QueryBuilders.termQuery(URL, url)));
+        final List<OpenSearchAccessResult> accessResultList =
+                getList(OpenSearchAccessResult.class, builder -> builder.setQuery(QueryBuilders.termQuery(URL, url)));
+        if (pendingAccessResultMap.isEmpty()) {
+            return accessResultList;
+        }
+        final Map<String, OpenSearchAccessResult> accessResultMap = new LinkedHashMap<>();
+        for (final OpenSearchAccessResult accessResult : accessResultList) {
+            accessResultMap.put(accessResult.getId(), accessResult);
+        }
+        for (final OpenSearchAccessResult accessResult : pendingAccessResultMap.values()) {
+            if (url.equals(accessResult.getUrl())) {
+                accessResultMap.put(accessResult.getId(), accessResult);
+            }
+        }
+        return new ArrayList<>(accessResultMap.values());
     }
 
     /**
@@ -157,6 +479,7 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      * @return A list of OpenSearchAccessResult objects.
      */
     public List<OpenSearchAccessResult> getAccessResultList(final Consumer<SearchRequestBuilder> callback) {
+        flush();
         final SearchResponse response = getClient().get(c -> {
             final SearchRequestBuilder builder = c.prepareSearch(index);
             callback.accept(builder);
@@ -186,6 +509,7 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
                     target.setStatus(getFieldValue(fields.get("status"), Integer.class));
                     target.setCreateTime(getFieldValue(fields.get("createTime"), Long.class));
                     target.setLastModified(getFieldValue(fields.get("lastModified"), Long.class));
+                    target.setEtag(getFieldValue(fields.get("etag"), String.class));
 
                     setId(target, searchHit.getId());
                     targetList.add(target);
@@ -231,6 +555,7 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
      */
     @Override
     public void iterate(final String sessionId, final AccessResultCallback<OpenSearchAccessResult> callback) {
+        flush();
         SearchResponse response = getClient().get(c -> c.prepareSearch(index)
                 .setScroll(new TimeValue(scrollTimeout))
                 .setQuery(QueryBuilders.boolQuery().filter(QueryBuilders.termQuery(SESSION_ID, sessionId)))
@@ -269,4 +594,135 @@ public class OpenSearchDataService extends AbstractCrawlerService implements Dat
             getClient().clearScroll(scrollId);
         }
     }
+
+    /**
+     * Returns the number of access results which could not be stored in the background.
+     *
+     * @return The number of write failures.
+     */
+    public long getWriteFailureCount() {
+        return writeFailureCount.get();
+    }
+
+    /**
+     * Sets whether access results are stored by asynchronous bulk requests.
+     *
+     * @param writeBehindEnabled true to enable the write-behind mode
+     */
+    public void setWriteBehindEnabled(final boolean writeBehindEnabled) {
+        this.writeBehindEnabled = writeBehindEnabled;
+    }
+
+    /**
+     * Sets the number of buffered access results which triggers a bulk request.
+     *
+     * @param writeBehindBulkActions The number of actions.
+     */
+    public void setWriteBehindBulkActions(final int writeBehindBulkActions) {
+        this.writeBehindBulkActions = writeBehindBulkActions;
+    }
+
+    /**
+     * Sets the size in bytes of buffered access results which triggers a bulk request.
+     *
+     * @param writeBehindBulkSize The size in bytes.
+     */
+    public void setWriteBehindBulkSize(final long writeBehindBulkSize) {
+        this.writeBehindBulkSize = writeBehindBulkSize;
+    }
+
+    /**
+     * Sets the interval in milliseconds to send buffered access results.
+     *
+     * @param writeBehindFlushInterval The interval in milliseconds.
+     */
+    public void setWriteBehindFlushInterval(final long writeBehindFlushInterval) {
+        this.writeBehindFlushInterval = writeBehindFlushInterval;
+    }
+
+    /**
+     * Sets the number of bulk requests executed concurrently.
+     *
+     * @param writeBehindConcurrentRequests The number of concurrent requests.
+     */
+    public void setWriteBehindConcurrentRequests(final int writeBehindConcurrentRequests) {
+        this.writeBehindConcurrentRequests = writeBehindConcurrentRequests;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds to wait for in-flight bulk requests on flush.
+     *
+     * @param writeBehindFlushTimeout The timeout in milliseconds.
+     */
+    public void setWriteBehindFlushTimeout(final long writeBehindFlushTimeout) {
+        this.writeBehindFlushTimeout = writeBehindFlushTimeout;
+    }
+
+    /**
+     * Sets the callback invoked with an access result which could not be stored in the background.
+     *
+     * @param writeFailureCallback The callback.
+     */
+    public void setWriteFailureCallback(final BiConsumer<OpenSearchAccessResult, Throwable> writeFailureCallback) {
+        this.writeFailureCallback = writeFailureCallback;
+    }
+
+    /**
+     * Tracks in-flight bulk requests and reports failed items.
+     */
+    protected class WriteBehindListener implements BulkProcessor.Listener {
+
+        /**
+         * Creates a new listener.
+         */
+        protected WriteBehindListener() {
+            // NOP
+        }
+
+        @Override
+        public void beforeBulk(final long executionId, final BulkRequest request) {
+            synchronized (bulkLock) {
+                inFlightBulkCount++;
+            }
+        }
+
+        @Override
+        public void afterBulk(final long executionId, final BulkRequest request, final BulkResponse response) {
+            try {
+                final List<DocWriteRequest<?>> requests = request.requests();
+                for (final BulkItemResponse item : response.getItems()) {
+                    final DocWriteRequest<?> docRequest = requests.get(item.getItemId());
+                    if (item.isFailed()) {
+                        handleWriteFailure(docRequest, item.getFailure().getCause());
+                    } else {
+                        finishPendingAccessResult(docRequest);
+                    }
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Stored {} access results in {}ms: index={}", response.getItems().length, response.getTook().millis(),
+                            index);
+                }
+            } finally {
+                finishBulk();
+            }
+        }
+
+        @Override
+        public void afterBulk(final long executionId, final BulkRequest request, final Throwable failure) {
+            try {
+                for (final DocWriteRequest<?> docRequest : request.requests()) {
+                    handleWriteFailure(docRequest, failure);
+                }
+            } finally {
+                finishBulk();
+            }
+        }
+
+        private void finishBulk() {
+            synchronized (bulkLock) {
+                inFlightBulkCount--;
+                bulkLock.notifyAll();
+            }
+        }
+    }
 }
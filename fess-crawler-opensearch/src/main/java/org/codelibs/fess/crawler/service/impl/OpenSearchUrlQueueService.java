@@ -15,13 +15,22 @@
  */
 package org.codelibs.fess.crawler.service.impl;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -34,8 +43,14 @@ import org.codelibs.fess.crawler.exception.OpenSearchAccessException;
 import org.codelibs.fess.crawler.service.UrlQueueService;
 import org.codelibs.fess.crawler.util.OpenSearchCrawlerConfig;
 import org.opensearch.action.DocWriteRequest.OpType;
+import org.opensearch.action.DocWriteResponse.Result;
+import org.opensearch.action.bulk.BulkItemResponse;
 import org.opensearch.action.bulk.BulkRequestBuilder;
 import org.opensearch.action.bulk.BulkResponse;
+import org.opensearch.action.get.MultiGetItemResponse;
+import org.opensearch.action.get.MultiGetRequest;
+import org.opensearch.action.get.MultiGetRequestBuilder;
+import org.opensearch.action.get.MultiGetResponse;
 import org.opensearch.action.search.SearchResponse;
 import org.opensearch.action.support.WriteRequest.RefreshPolicy;
 import org.opensearch.action.update.UpdateRequestBuilder;
@@ -43,9 +58,13 @@ import org.opensearch.common.unit.TimeValue;
 import org.opensearch.index.query.QueryBuilders;
 import org.opensearch.search.SearchHit;
 import org.opensearch.search.SearchHits;
+import org.opensearch.search.fetch.subphase.FetchSourceContext;
 import org.opensearch.search.sort.SortBuilders;
 import org.opensearch.search.sort.SortOrder;
 
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
@@ -83,6 +102,35 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
      */
     protected int maxCrawlingQueueSize = 100;
 
+    /**
+     * The expected number of URLs per Bloom filter of seen URLs in a session.
+     * When a filter is full, another one is added. A value of 0 or less disables the filter, which is the default
+     * because a false positive drops a URL which has not been seen.
+     */
+    protected int seenUrlFilterExpectedInsertions = 0;
+
+    /**
+     * The false positive probability of the Bloom filter of seen URLs.
+     * A false positive makes offerAll skip a URL which has not been seen.
+     */
+    protected double seenUrlFilterFpp = 0.000001;
+
+    /**
+     * Whether the waiting queue is refilled in the background before it runs out.
+     * In this mode, URLs are claimed by deletes without a forced refresh.
+     */
+    protected boolean prefetchEnabled = false;
+
+    /**
+     * The number of waiting URLs below which the next batch is prefetched.
+     */
+    protected int prefetchLowWaterMark = 100;
+
+    /**
+     * The executor to prefetch URL queues.
+     */
+    protected volatile ExecutorService prefetchExecutor;
+
     /**
      * Creates a new instance of OpenSearchUrlQueueService.
      * @param crawlerConfig The crawler configuration.
@@ -115,6 +163,18 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
      */
     @PreDestroy
     public void destroy() {
+        final ExecutorService executor = prefetchExecutor;
+        if (executor != null) {
+            prefetchExecutor = null;
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(scrollTimeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Prefetching URL queues did not finish.");
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         sessionCache.entrySet().stream().map(e -> e.getValue().waitingQueue).forEach(q -> q.forEach(urlQueue -> {
             try {
                 insert(urlQueue);
@@ -228,11 +288,17 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
     @Override
     public void delete(final String sessionId) {
         deleteBySessionId(sessionId);
+        final QueueHolder queueHolder = sessionCache.get(sessionId);
+        if (queueHolder != null) {
+            queueHolder.seenUrlFilterList.clear();
+        }
     }
 
     /**
      * Offers multiple URL queue entries for the specified session.
      * Only URLs that don't already exist will be added.
+     * If the Bloom filter of seen URLs is enabled, URLs already seen in this session are skipped by it,
+     * and the rest are checked against the queue and data indices with one multi-get request.
      *
      * @param sessionId The session ID.
      * @param urlQueueList The list of URL queue entries to offer.
@@ -242,28 +308,156 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
         if (logger.isDebugEnabled()) {
             logger.debug("Offering URL: Session ID: {}, UrlQueue: {}", sessionId, urlQueueList);
         }
-        final List<UrlQueue<String>> targetList = new ArrayList<>(urlQueueList.size());
-        for (final UrlQueue<String> urlQueue : urlQueueList) {
-            if (!exists(sessionId, urlQueue.getUrl()) && !dataService.exists(sessionId, urlQueue.getUrl())) {
+        final QueueHolder queueHolder = getQueueHolder(sessionId);
+        final Map<String, OpenSearchUrlQueue> candidateMap = new LinkedHashMap<>();
+        for (final OpenSearchUrlQueue urlQueue : urlQueueList) {
+            if (StringUtil.isBlank(urlQueue.getUrl())) {
+                continue;
+            }
+            final String id = getId(sessionId, urlQueue.getUrl());
+            if (candidateMap.containsKey(id) || isSeen(queueHolder, id)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Existed URL: Session ID: {}, UrlQueue: {}", sessionId, urlQueue);
+                }
+                continue;
+            }
+            candidateMap.put(id, urlQueue);
+        }
+        if (candidateMap.isEmpty()) {
+            return;
+        }
+
+        final Set<String> existedIdSet = getExistedIdSet(sessionId, queueHolder, candidateMap.keySet());
+        final List<UrlQueue<String>> targetList = new ArrayList<>(candidateMap.size());
+        for (final Map.Entry<String, OpenSearchUrlQueue> entry : candidateMap.entrySet()) {
+            final OpenSearchUrlQueue urlQueue = entry.getValue();
+            markSeen(queueHolder, entry.getKey());
+            if (existedIdSet.contains(entry.getKey())) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Existed URL: Session ID: {}, UrlQueue: {}", sessionId, urlQueue);
+                }
+            } else {
                 urlQueue.setSessionId(sessionId);
                 targetList.add(urlQueue);
-            } else if (logger.isDebugEnabled()) {
-                logger.debug("Existed URL: Session ID: {}, UrlQueue: {}", sessionId, urlQueue);
             }
         }
         if (!targetList.isEmpty()) {
-            insertAll(targetList.stream()
-                    .filter(urlQueue -> StringUtil.isNotBlank(urlQueue.getSessionId()) && StringUtil.isNotBlank(urlQueue.getUrl()))
-                    .collect(Collectors.toList()), OpType.CREATE, true);
+            insertAll(targetList, OpType.CREATE, true);
             if (logger.isDebugEnabled()) {
                 logger.debug("Offered URL: Session ID: {}, UrlQueue: {}", sessionId, targetList);
             }
         }
     }
 
+    /**
+     * Returns the IDs which already exist in the local queues, the queue index or the data index.
+     * The indices are checked with one multi-get request.
+     *
+     * @param sessionId The session ID.
+     * @param queueHolder The queue holder of the session.
+     * @param idSet The IDs to check.
+     * @return The existing IDs.
+     */
+    protected Set<String> getExistedIdSet(final String sessionId, final QueueHolder queueHolder, final Set<String> idSet) {
+        final Set<String> existedIdSet = new HashSet<>();
+        for (final Queue<OpenSearchUrlQueue> queue : List.of(queueHolder.crawlingQueue, queueHolder.waitingQueue)) {
+            for (final UrlQueue<String> urlQueue : queue) {
+                if (sessionId.equals(urlQueue.getSessionId()) && StringUtil.isNotBlank(urlQueue.getUrl())) {
+                    final String id = getId(sessionId, urlQueue.getUrl());
+                    if (idSet.contains(id)) {
+                        existedIdSet.add(id);
+                    }
+                }
+            }
+        }
+
+        final String dataIndex = dataService.getIndex();
+        final List<String> targetIdList = new ArrayList<>(idSet.size());
+        for (final String id : idSet) {
+            if (existedIdSet.contains(id)) {
+                continue;
+            }
+            if (dataService.isPending(id)) {
+                existedIdSet.add(id);
+            } else {
+                targetIdList.add(id);
+            }
+        }
+        if (targetIdList.isEmpty()) {
+            return existedIdSet;
+        }
+
+        final MultiGetResponse response;
+        try {
+            response = getClient().get(c -> {
+                final MultiGetRequestBuilder builder = c.prepareMultiGet();
+                for (final String id : targetIdList) {
+                    builder.add(new MultiGetRequest.Item(index, id).fetchSourceContext(FetchSourceContext.DO_NOT_FETCH_SOURCE));
+                    builder.add(new MultiGetRequest.Item(dataIndex, id).fetchSourceContext(FetchSourceContext.DO_NOT_FETCH_SOURCE));
+                }
+                return builder.execute();
+            });
+        } catch (final Exception e) {
+            throw new OpenSearchAccessException("Failed to check if " + targetIdList.size() + " URLs exist in " + sessionId, e);
+        }
+        for (final MultiGetItemResponse item : response.getResponses()) {
+            if (item.isFailed()) {
+                throw new OpenSearchAccessException("Failed to check if " + item.getId() + " exists in " + item.getIndex() + ": "
+                        + item.getFailure().getMessage(), item.getFailure().getFailure());
+            }
+            if (item.getResponse().isExists()) {
+                existedIdSet.add(item.getId());
+            }
+        }
+        return existedIdSet;
+    }
+
+    /**
+     * Checks if the ID might have been seen in the session.
+     *
+     * @param queueHolder The queue holder of the session.
+     * @param id The document ID.
+     * @return true if the ID might have been seen, false if it has definitely not been seen.
+     */
+    protected boolean isSeen(final QueueHolder queueHolder, final String id) {
+        for (final BloomFilter<CharSequence> filter : queueHolder.seenUrlFilterList) {
+            if (filter.mightContain(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the ID as seen in the session.
+     *
+     * @param queueHolder The queue holder of the session.
+     * @param id The document ID.
+     */
+    protected void markSeen(final QueueHolder queueHolder, final String id) {
+        if (seenUrlFilterExpectedInsertions <= 0) {
+            return;
+        }
+        final List<BloomFilter<CharSequence>> filterList = queueHolder.seenUrlFilterList;
+        BloomFilter<CharSequence> filter = filterList.isEmpty() ? null : filterList.get(filterList.size() - 1);
+        if (filter == null || filter.approximateElementCount() >= seenUrlFilterExpectedInsertions) {
+            synchronized (filterList) {
+                filter = filterList.isEmpty() ? null : filterList.get(filterList.size() - 1);
+                if (filter == null || filter.approximateElementCount() >= seenUrlFilterExpectedInsertions) {
+                    filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), seenUrlFilterExpectedInsertions,
+                            seenUrlFilterFpp);
+                    filterList.add(filter);
+                }
+            }
+        }
+        filter.put(id);
+    }
+
     /**
      * Polls the next URL queue entry for the specified session.
      * This method manages local caches and fetches from OpenSearch when needed.
+     * In the prefetch mode, the next batch is claimed in the background when
+     * the waiting queue falls below the low-water mark.
      *
      * @param sessionId The session ID.
      * @return The next URL queue entry, or null if none available.
@@ -279,31 +473,9 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
             synchronized (queueHolder) {
                 urlQueue = waitingQueue.poll();
                 if (urlQueue == null) {
-                    final List<OpenSearchUrlQueue> urlQueueList = fetchUrlQueueList(sessionId);
-                    if (urlQueueList.isEmpty()) {
+                    if (!fillWaitingQueue(sessionId, queueHolder)) {
                         return null;
                     }
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("Queued URL: {}", urlQueueList);
-                    }
-
-                    try {
-                        // delete from es
-                        final BulkResponse response = getClient().get(c -> {
-                            final BulkRequestBuilder bulkBuilder = c.prepareBulk();
-                            for (final OpenSearchUrlQueue uq : urlQueueList) {
-                                bulkBuilder.add(c.prepareDelete().setIndex(index).setId(uq.getId()));
-                            }
-                            return bulkBuilder.setRefreshPolicy(RefreshPolicy.IMMEDIATE).execute();
-                        });
-                        if (response.hasFailures()) {
-                            logger.warn(response.buildFailureMessage());
-                        }
-                    } catch (final Exception e) {
-                        throw new OpenSearchAccessException("Failed to delete " + urlQueueList, e);
-                    }
-
-                    waitingQueue.addAll(urlQueueList);
                     urlQueue = waitingQueue.poll();
                     if (urlQueue == null) {
                         return null;
@@ -312,6 +484,10 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
             }
         }
 
+        if (prefetchEnabled) {
+            prefetch(sessionId, queueHolder);
+        }
+
         // Add to crawling queue
         if (crawlingQueue.size() > maxCrawlingQueueSize) {
             crawlingQueue.poll();
@@ -320,6 +496,172 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
         return urlQueue;
     }
 
+    /**
+     * Moves the next batch of URL queues from OpenSearch to the waiting queue.
+     * The caller must hold the monitor of the queue holder.
+     *
+     * @param sessionId The session ID.
+     * @param queueHolder The queue holder of the session.
+     * @return true if URL queues were added, false if no URL queue is available.
+     */
+    protected boolean fillWaitingQueue(final String sessionId, final QueueHolder queueHolder) {
+        final List<OpenSearchUrlQueue> urlQueueList;
+        if (prefetchEnabled) {
+            urlQueueList = claimUrlQueueList(sessionId, queueHolder);
+        } else {
+            urlQueueList = fetchUrlQueueList(sessionId);
+            if (!urlQueueList.isEmpty()) {
+                try {
+                    // delete from es
+                    final BulkResponse response = getClient().get(c -> {
+                        final BulkRequestBuilder bulkBuilder = c.prepareBulk();
+                        for (final OpenSearchUrlQueue uq : urlQueueList) {
+                            bulkBuilder.add(c.prepareDelete().setIndex(index).setId(uq.getId()));
+                        }
+                        return bulkBuilder.setRefreshPolicy(RefreshPolicy.IMMEDIATE).execute();
+                    });
+                    if (response.hasFailures()) {
+                        logger.warn(response.buildFailureMessage());
+                    }
+                } catch (final Exception e) {
+                    throw new OpenSearchAccessException("Failed to delete " + urlQueueList, e);
+                }
+            }
+        }
+        if (urlQueueList.isEmpty()) {
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Queued URL: {}", urlQueueList);
+        }
+
+        queueHolder.waitingQueue.addAll(urlQueueList);
+        for (final OpenSearchUrlQueue uq : urlQueueList) {
+            markSeen(queueHolder, uq.getId());
+        }
+        return true;
+    }
+
+    /**
+     * Claims the next batch of URL queues. A URL queue is claimed when this service deletes it:
+     * a search hit which has already been deleted by another poller, but is still visible because
+     * the index has not been refreshed, is skipped. The index is refreshed only when no hit could be claimed.
+     *
+     * @param sessionId The session ID.
+     * @param queueHolder The queue holder of the session.
+     * @return The claimed URL queues.
+     */
+    protected List<OpenSearchUrlQueue> claimUrlQueueList(final String sessionId, final QueueHolder queueHolder) {
+        List<OpenSearchUrlQueue> urlQueueList = fetchUrlQueueList(sessionId, queueHolder.lastClaimedIdSet);
+        if (urlQueueList.isEmpty()) {
+            return urlQueueList;
+        }
+        List<OpenSearchUrlQueue> claimedList = deleteForClaim(urlQueueList);
+        if (claimedList.isEmpty()) {
+            refresh();
+            urlQueueList = fetchUrlQueueList(sessionId);
+            if (urlQueueList.isEmpty()) {
+                return urlQueueList;
+            }
+            claimedList = deleteForClaim(urlQueueList);
+        }
+        final Set<String> claimedIdSet = new HashSet<>();
+        for (final OpenSearchUrlQueue uq : claimedList) {
+            claimedIdSet.add(uq.getId());
+        }
+        queueHolder.lastClaimedIdSet = claimedIdSet;
+        return claimedList;
+    }
+
+    /**
+     * Deletes URL queues without a refresh and returns the ones deleted by this request.
+     *
+     * @param urlQueueList The URL queues to delete.
+     * @return The URL queues deleted by this request.
+     */
+    protected List<OpenSearchUrlQueue> deleteForClaim(final List<OpenSearchUrlQueue> urlQueueList) {
+        final BulkResponse response;
+        try {
+            response = getClient().get(c -> {
+                final BulkRequestBuilder bulkBuilder = c.prepareBulk();
+                for (final OpenSearchUrlQueue uq : urlQueueList) {
+                    bulkBuilder.add(c.prepareDelete().setIndex(index).setId(uq.getId()));
+                }
+                return bulkBuilder.execute();
+            });
+        } catch (final Exception e) {
+            throw new OpenSearchAccessException("Failed to delete " + urlQueueList, e);
+        }
+        final BulkItemResponse[] items = response.getItems();
+        final List<OpenSearchUrlQueue> claimedList = new ArrayList<>(items.length);
+        for (int i = 0; i < items.length; i++) {
+            final BulkItemResponse item = items[i];
+            if (item.isFailed()) {
+                logger.warn("Failed to claim {}: {}", item.getId(), item.getFailureMessage());
+            } else if (item.getResponse().getResult() == Result.DELETED) {
+                claimedList.add(urlQueueList.get(i));
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("{} has been claimed by another poller.", item.getId());
+            }
+        }
+        return claimedList;
+    }
+
+    /**
+     * Claims the next batch in the background if the waiting queue is below the low-water mark.
+     *
+     * @param sessionId The session ID.
+     * @param queueHolder The queue holder of the session.
+     */
+    protected void prefetch(final String sessionId, final QueueHolder queueHolder) {
+        if (queueHolder.waitingQueue.size() >= prefetchLowWaterMark || !queueHolder.prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getPrefetchExecutor().execute(() -> {
+                try {
+                    synchronized (queueHolder) {
+                        if (queueHolder.waitingQueue.size() < prefetchLowWaterMark) {
+                            fillWaitingQueue(sessionId, queueHolder);
+                        }
+                    }
+                } catch (final Exception e) {
+                    logger.warn("Failed to prefetch URL queues: sessionId={}", sessionId, e);
+                } finally {
+                    queueHolder.prefetching.set(false);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            queueHolder.prefetching.set(false);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Prefetching URL queues is rejected: sessionId={}", sessionId, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the executor to prefetch URL queues, creating it on first use.
+     *
+     * @return The executor.
+     */
+    protected ExecutorService getPrefetchExecutor() {
+        ExecutorService executor = prefetchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = prefetchExecutor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(r -> {
+                        final Thread thread = new Thread(r, "UrlQueuePrefetcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    prefetchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * Fetches a list of URL queues for a given session ID.
      * @param sessionId The session ID.
@@ -332,13 +674,30 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
     }
 
     /**
-     * Saves the session state (currently not implemented).
+     * Fetches a list of URL queues for a given session ID, excluding the given IDs.
+     * @param sessionId The session ID.
+     * @param excludedIdSet The IDs to exclude, such as ones claimed by the previous batch.
+     * @return A list of OpenSearchUrlQueue objects.
+     */
+    protected List<OpenSearchUrlQueue> fetchUrlQueueList(final String sessionId, final Set<String> excludedIdSet) {
+        if (excludedIdSet.isEmpty()) {
+            return fetchUrlQueueList(sessionId);
+        }
+        return getList(OpenSearchUrlQueue.class, sessionId,
+                QueryBuilders.boolQuery().mustNot(QueryBuilders.idsQuery().addIds(excludedIdSet.toArray(new String[excludedIdSet.size()]))),
+                0, pollingFetchSize, SortBuilders.fieldSort(OpenSearchUrlQueue.WEIGHT).order(SortOrder.DESC),
+                SortBuilders.fieldSort(CREATE_TIME).order(SortOrder.ASC));
+    }
+
+    /**
+     * Saves the session state. Access results buffered by the data service are written and made searchable.
      *
      * @param sessionId The session ID.
      */
     @Override
     public void saveSession(final String sessionId) {
         // TODO use cache
+        dataService.flush();
     }
 
     /**
@@ -411,6 +770,7 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
             urlQueue.setParentUrl(accessResult.getParentUrl());
             urlQueue.setDepth(0);
             urlQueue.setLastModified(accessResult.getLastModified());
+            urlQueue.setEtag(accessResult.getEtag());
             urlQueue.setCreateTime(System.currentTimeMillis());
             insert(urlQueue);
         });
@@ -451,6 +811,22 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
          * The queue for URLs currently being crawled.
          */
         protected Queue<OpenSearchUrlQueue> crawlingQueue = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Bloom filters of the IDs of URLs seen in the session.
+         */
+        protected List<BloomFilter<CharSequence>> seenUrlFilterList = new CopyOnWriteArrayList<>();
+
+        /**
+         * Whether a prefetch task is running for the session.
+         */
+        protected AtomicBoolean prefetching = new AtomicBoolean();
+
+        /**
+         * The IDs claimed by the previous batch, excluded from the next search because
+         * the deletes are not visible until the index is refreshed.
+         */
+        protected volatile Set<String> lastClaimedIdSet = Set.of();
     }
 
     /**
@@ -468,4 +844,37 @@ public class OpenSearchUrlQueueService extends AbstractCrawlerService implements
     public void setMaxCrawlingQueueSize(final int maxCrawlingQueueSize) {
         this.maxCrawlingQueueSize = maxCrawlingQueueSize;
     }
+
+    /**
+     * Sets the expected number of URLs per Bloom filter of seen URLs, which enables the filter.
+     * A false positive of the filter drops a URL which has not been seen, with the probability of {@link #seenUrlFilterFpp}.
+     * @param seenUrlFilterExpectedInsertions The expected number of URLs, or 0 to disable the filter.
+     */
+    public void setSeenUrlFilterExpectedInsertions(final int seenUrlFilterExpectedInsertions) {
+        this.seenUrlFilterExpectedInsertions = seenUrlFilterExpectedInsertions;
+    }
+
+    /**
+     * Sets the false positive probability of the Bloom filter of seen URLs.
+     * @param seenUrlFilterFpp The false positive probability.
+     */
+    public void setSeenUrlFilterFpp(final double seenUrlFilterFpp) {
+        this.seenUrlFilterFpp = seenUrlFilterFpp;
+    }
+
+    /**
+     * Sets whether the waiting queue is refilled in the background.
+     * @param prefetchEnabled true to enable the prefetch mode
+     */
+    public void setPrefetchEnabled(final boolean prefetchEnabled) {
+        this.prefetchEnabled = prefetchEnabled;
+    }
+
+    /**
+     * Sets the number of waiting URLs below which the next batch is prefetched.
+     * @param prefetchLowWaterMark The low-water mark.
+     */
+    public void setPrefetchLowWaterMark(final int prefetchLowWaterMark) {
+        this.prefetchLowWaterMark = prefetchLowWaterMark;
+    }
 }
@@ -416,4 +416,82 @@ public class OpenSearchDataServiceTest extends LastaDiTestCase {
         assertEquals(0, dataService.getCount(sessionId));
     }
 
+    @Test
+    public void test_store_writeBehindTx() {
+        final String sessionId = "write_behind_session1";
+        final List<OpenSearchAccessResult> failureList = new ArrayList<>();
+        dataService.setWriteBehindEnabled(true);
+        dataService.setWriteBehindBulkActions(3);
+        dataService.setWriteBehindFlushInterval(60000L);
+        dataService.setWriteFailureCallback((accessResult, cause) -> {
+            synchronized (failureList) {
+                failureList.add(accessResult);
+            }
+        });
+
+        for (int i = 1; i <= 5; i++) {
+            final OpenSearchAccessResult accessResult = new OpenSearchAccessResult();
+            accessResult.setContentLength(Long.valueOf(100));
+            accessResult.setCreateTime(System.currentTimeMillis());
+            accessResult.setExecutionTime(10);
+            accessResult.setHttpStatusCode(200);
+            accessResult.setLastModified(System.currentTimeMillis());
+            accessResult.setMethod("GET");
+            accessResult.setMimeType("text/html");
+            accessResult.setParentUrl("http://www.parent.com/");
+            accessResult.setRuleId("htmlRule");
+            accessResult.setSessionId(sessionId);
+            accessResult.setStatus(200);
+            accessResult.setUrl("http://www.example.com/page" + i);
+
+            dataService.store(accessResult);
+            assertNotNull(accessResult.getId());
+        }
+
+        // buffered results are visible before flush
+        final OpenSearchAccessResult accessResult5 = dataService.getAccessResult(sessionId, "http://www.example.com/page5");
+        assertNotNull(accessResult5);
+        assertEquals("http://www.example.com/page5", accessResult5.getUrl());
+        assertTrue(dataService.exists(sessionId, "http://www.example.com/page5"));
+        assertFalse(dataService.exists(sessionId, "http://www.example.com/page6"));
+        assertTrue(dataService.isPending(dataService.getId(sessionId, "http://www.example.com/page5")));
+
+        // per-URL lists merge the buffered results without flushing the buffer
+        final List<OpenSearchAccessResult> page5List = dataService.getAccessResultList("http://www.example.com/page5", false);
+        assertEquals(1, page5List.size());
+        assertTrue(accessResult5 == page5List.get(0));
+        assertTrue(dataService.isPending(dataService.getId(sessionId, "http://www.example.com/page5")));
+
+        // getCount flushes the buffer
+        assertEquals(5, dataService.getCount(sessionId));
+        assertTrue(dataService.pendingAccessResultMap.isEmpty());
+        assertTrue(dataService.bulkAccessResultMap.isEmpty());
+        assertFalse(dataService.isPending(dataService.getId(sessionId, "http://www.example.com/page5")));
+        final long sequence = dataService.storeSequence.get();
+        assertEquals(sequence, dataService.refreshedSequence);
+        assertEquals(1, dataService.getAccessResultList("http://www.example.com/page5", false).size());
+
+        // nothing is stored since the last refresh, so the next flush does not refresh again
+        dataService.flush();
+        assertEquals(sequence, dataService.refreshedSequence);
+
+        // a duplicated result fails in the background and is passed to the callback
+        final OpenSearchAccessResult duplicated = new OpenSearchAccessResult();
+        duplicated.setCreateTime(System.currentTimeMillis());
+        duplicated.setMethod("GET");
+        duplicated.setSessionId(sessionId);
+        duplicated.setUrl("http://www.example.com/page1");
+        dataService.store(duplicated);
+        dataService.flush();
+        assertEquals(1, failureList.size());
+        assertTrue(duplicated == failureList.get(0));
+        assertEquals(1L, dataService.getWriteFailureCount());
+        assertTrue(dataService.pendingAccessResultMap.isEmpty());
+        assertTrue(dataService.bulkAccessResultMap.isEmpty());
+        assertEquals(5, dataService.getCount(sessionId));
+
+        dataService.delete(sessionId);
+        assertEquals(0, dataService.getCount(sessionId));
+        dataService.destroy();
+    }
 }
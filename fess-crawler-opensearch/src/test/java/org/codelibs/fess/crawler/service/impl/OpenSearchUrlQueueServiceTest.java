@@ -20,11 +20,14 @@ import static org.codelibs.opensearch.runner.OpenSearchRunner.newConfigs;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codelibs.fess.crawler.client.FesenClient;
+import org.codelibs.fess.crawler.entity.OpenSearchAccessResult;
 import org.codelibs.fess.crawler.entity.OpenSearchUrlQueue;
 import org.codelibs.opensearch.runner.OpenSearchRunner;
 import org.dbflute.utflute.lastadi.LastaDiTestCase;
@@ -42,6 +45,9 @@ public class OpenSearchUrlQueueServiceTest extends LastaDiTestCase {
     @Resource
     private OpenSearchUrlQueueService urlQueueService;
 
+    @Resource
+    private OpenSearchDataService dataService;
+
     @Resource
     private FesenClient fesenClient;
 
@@ -424,4 +430,116 @@ public class OpenSearchUrlQueueServiceTest extends LastaDiTestCase {
         assertTrue(count <= 2); // At most 2 items (may be deduplicated)
         urlQueueService.delete(sessionId);
     }
+
+    @Test
+    public void test_offerAll_existingUrlsTx() {
+        final String sessionId = "offer_session3";
+        urlQueueService.setSeenUrlFilterExpectedInsertions(1000000);
+
+        final OpenSearchAccessResult accessResult = new OpenSearchAccessResult();
+        accessResult.setCreateTime(System.currentTimeMillis());
+        accessResult.setMethod("GET");
+        accessResult.setSessionId(sessionId);
+        accessResult.setUrl("http://www.example.com/crawled");
+        dataService.store(accessResult);
+
+        final List<OpenSearchUrlQueue> urlQueueList = new ArrayList<>();
+        urlQueueList.add(createUrlQueue(sessionId, "http://www.example.com/crawled"));
+        urlQueueList.add(createUrlQueue(sessionId, "http://www.example.com/page1"));
+        urlQueueList.add(createUrlQueue(sessionId, "http://www.example.com/page2"));
+        urlQueueList.add(createUrlQueue(sessionId, "http://www.example.com/page1"));
+        urlQueueService.offerAll(sessionId, urlQueueList);
+        assertEquals(2, urlQueueService.getCount(builder -> builder.setQuery(QueryBuilders.termQuery("sessionId", sessionId))));
+
+        // offered URLs are skipped even after they are polled
+        final OpenSearchUrlQueue polled = urlQueueService.poll(sessionId);
+        assertNotNull(polled);
+        urlQueueService.offerAll(sessionId, List.of(createUrlQueue(sessionId, polled.getUrl()),
+                createUrlQueue(sessionId, "http://www.example.com/crawled"), createUrlQueue(sessionId, "http://www.example.com/page3")));
+        int count = 0;
+        while (urlQueueService.poll(sessionId) != null) {
+            count++;
+        }
+        assertEquals(2, count);
+
+        urlQueueService.delete(sessionId);
+        dataService.delete(sessionId);
+    }
+
+    @Test
+    public void test_offerAll_withoutSeenUrlFilterTx() {
+        final String sessionId = "offer_session4";
+        urlQueueService.setSeenUrlFilterExpectedInsertions(0);
+
+        urlQueueService.offerAll(sessionId, List.of(createUrlQueue(sessionId, "http://www.example.com/page1")));
+        urlQueueService.offerAll(sessionId,
+                List.of(createUrlQueue(sessionId, "http://www.example.com/page1"), createUrlQueue(sessionId, "http://www.example.com/page2")));
+        assertEquals(2, urlQueueService.getCount(builder -> builder.setQuery(QueryBuilders.termQuery("sessionId", sessionId))));
+
+        // polled URLs are moved to the local queues and found there
+        final OpenSearchUrlQueue polled = urlQueueService.poll(sessionId);
+        assertEquals(0, urlQueueService.getCount(builder -> builder.setQuery(QueryBuilders.termQuery("sessionId", sessionId))));
+        urlQueueService.offerAll(sessionId, List.of(createUrlQueue(sessionId, polled.getUrl())));
+        assertEquals(0, urlQueueService.getCount(builder -> builder.setQuery(QueryBuilders.termQuery("sessionId", sessionId))));
+
+        urlQueueService.delete(sessionId);
+    }
+
+    @Test
+    public void test_poll_prefetchTx() throws Exception {
+        final String sessionId = "prefetch_session1";
+        urlQueueService.setPrefetchEnabled(true);
+        urlQueueService.setPollingFetchSize(10);
+        urlQueueService.setPrefetchLowWaterMark(5);
+
+        final List<OpenSearchUrlQueue> urlQueueList = new ArrayList<>();
+        for (int i = 1; i <= 45; i++) {
+            urlQueueList.add(createUrlQueue(sessionId, "http://www.example.com/page" + i));
+        }
+        urlQueueService.offerAll(sessionId, urlQueueList);
+
+        final int numThreads = 3;
+        final CountDownLatch doneLatch = new CountDownLatch(numThreads);
+        final Set<String> urlSet = ConcurrentHashMap.newKeySet();
+        final AtomicInteger totalPolled = new AtomicInteger(0);
+        for (int i = 0; i < numThreads; i++) {
+            new Thread(() -> {
+                try {
+                    int emptyCount = 0;
+                    while (emptyCount < 20) {
+                        final OpenSearchUrlQueue polled = urlQueueService.poll(sessionId);
+                        if (polled == null) {
+                            emptyCount++;
+                            Thread.sleep(50L);
+                        } else {
+                            totalPolled.incrementAndGet();
+                            urlSet.add(polled.getUrl());
+                        }
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    doneLatch.countDown();
+                }
+            }).start();
+        }
+        doneLatch.await();
+
+        assertEquals(45, totalPolled.get());
+        assertEquals(45, urlSet.size());
+        assertEquals(0, urlQueueService.getCount(builder -> builder.setQuery(QueryBuilders.termQuery("sessionId", sessionId))));
+
+        urlQueueService.delete(sessionId);
+        urlQueueService.destroy();
+    }
+
+    private OpenSearchUrlQueue createUrlQueue(final String sessionId, final String url) {
+        final OpenSearchUrlQueue urlQueue = new OpenSearchUrlQueue();
+        urlQueue.setCreateTime(System.currentTimeMillis());
+        urlQueue.setDepth(1);
+        urlQueue.setMethod("GET");
+        urlQueue.setSessionId(sessionId);
+        urlQueue.setUrl(url);
+        return urlQueue;
+    }
 }
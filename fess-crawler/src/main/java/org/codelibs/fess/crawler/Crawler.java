@@ -18,6 +18,8 @@ package org.codelibs.fess.crawler;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -141,6 +143,21 @@ public class Crawler implements Runnable, AutoCloseable {
      */
     protected ThreadGroup crawlerThreadGroup;
 
+    /**
+     * The executor running one virtual thread per URL in virtual-thread mode.
+     */
+    protected ExecutorService taskExecutor;
+
+    /**
+     * Pipeline which processes and stores the fetched responses in staged mode.
+     */
+    protected CrawlerPipeline pipeline;
+
+    /**
+     * Interval in milliseconds between the checkpoints of the session while crawling, or 0 to save it only at the end.
+     */
+    protected long checkpointInterval = 0L;
+
     /**
      * Constructs a new Crawler instance.
      * Initializes the crawler context with a new session ID based on the current timestamp.
@@ -191,6 +208,27 @@ public class Crawler implements Runnable, AutoCloseable {
         }
     }
 
+    /**
+     * Resumes the session saved by a previous run, for example after the JVM crashed.
+     * The session ID is switched to the given one, and the URL queue and the access results
+     * of its last checkpoint are restored, so that the accessed URLs are not crawled again.
+     * Call this method before {@link #execute()}.
+     * @param sessionId The session ID to resume.
+     * @return true if the session was restored, false if there was nothing to restore.
+     */
+    public boolean resume(final String sessionId) {
+        setSessionId(sessionId);
+        final boolean restored = urlQueueService.restoreSession(sessionId);
+        if (restored) {
+            crawlerContext.accessCount.set(dataService.getCount(sessionId));
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Resumed crawler session: sessionId={}, restored={}, accessCount={}", sessionId, restored,
+                    crawlerContext.getAccessCount());
+        }
+        return restored;
+    }
+
     /**
      * Executes the crawling process.
      * Starts a new thread for the crawler and optionally waits for its termination.
@@ -298,6 +336,10 @@ public class Crawler implements Runnable, AutoCloseable {
         }
         crawlerContext.setStatus(CrawlerStatus.DONE);
         try {
+            if (taskExecutor != null) {
+                // virtual threads do not belong to the thread group
+                taskExecutor.shutdownNow();
+            }
             if (crawlerThreadGroup != null) {
                 crawlerThreadGroup.interrupt();
                 if (logger.isDebugEnabled()) {
@@ -418,12 +460,34 @@ public class Crawler implements Runnable, AutoCloseable {
 
         urlFilter.init(crawlerContext.sessionId);
 
+        if (crawlerContext.eventDrivenWaiting && !urlQueueService.supportsOfferSignal()) {
+            // an offer which is not signaled would end the crawl too early
+            logger.warn("The URL queue service does not signal offered URLs, so event-driven waiting is disabled: urlQueueService={}",
+                    urlQueueService.getClass().getName());
+            crawlerContext.eventDrivenWaiting = false;
+        }
+
         crawlerThreadGroup = new ThreadGroup("Crawler-" + crawlerContext.sessionId);
-        final Thread[] threads = new Thread[crawlerContext.getNumOfThread()];
-        for (int i = 0; i < crawlerContext.getNumOfThread(); i++) {
+        final int numOfPlatformThread;
+        if (crawlerContext.isVirtualThread()) {
+            // one dispatcher thread starts a virtual thread for each URL
+            taskExecutor =
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Crawler-" + crawlerContext.sessionId + "-task-", 1).factory());
+            numOfPlatformThread = 1;
+        } else {
+            numOfPlatformThread = crawlerContext.getNumOfThread();
+        }
+        if (crawlerContext.isStagedPipeline()) {
+            pipeline = new CrawlerPipeline(crawlerContext, dataService);
+            pipeline.start(crawlerThreadGroup);
+        }
+        final Thread[] threads = new Thread[numOfPlatformThread];
+        for (int i = 0; i < numOfPlatformThread; i++) {
             final CrawlerThread crawlerThread = crawlerContainer.getComponent("crawlerThread");
             crawlerThread.setCrawlerContext(crawlerContext);
             crawlerThread.setClientFactory(clientFactory);
+            crawlerThread.setTaskExecutor(taskExecutor);
+            crawlerThread.setPipeline(pipeline);
             threads[i] =
                     new Thread(crawlerThreadGroup, crawlerThread, "Crawler-" + crawlerContext.sessionId + "-" + Integer.toString(i + 1));
             threads[i].setDaemon(daemon);
@@ -433,14 +497,16 @@ public class Crawler implements Runnable, AutoCloseable {
         // run
         crawlerContext.setStatus(CrawlerStatus.RUNNING);
         if (logger.isInfoEnabled()) {
-            logger.info("Starting crawler threads: sessionId={}, numOfThread={}", crawlerContext.sessionId, crawlerContext.numOfThread);
+            logger.info("Starting crawler threads: sessionId={}, numOfThread={}, virtualThread={}", crawlerContext.sessionId,
+                    crawlerContext.numOfThread, crawlerContext.virtualThread);
         }
-        for (int i = 0; i < crawlerContext.numOfThread; i++) {
-            threads[i].start();
+        for (final Thread thread : threads) {
+            thread.start();
         }
+        final Thread checkpointThread = startCheckpointThread();
 
         // join
-        for (int i = 0; i < crawlerContext.numOfThread; i++) {
+        for (int i = 0; i < threads.length; i++) {
             try {
                 threads[i].join();
             } catch (final InterruptedException e) {
@@ -449,6 +515,21 @@ public class Crawler implements Runnable, AutoCloseable {
                 Thread.currentThread().interrupt();
             }
         }
+        if (checkpointThread != null) {
+            checkpointThread.interrupt();
+            try {
+                checkpointThread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (taskExecutor != null) {
+            taskExecutor.shutdown();
+        }
+        if (pipeline != null) {
+            // process and store the handed-off responses
+            pipeline.close();
+        }
         crawlerContext.setStatus(CrawlerStatus.DONE);
         if (logger.isInfoEnabled()) {
             logger.info("Crawler execution completed: sessionId={}, status={}", crawlerContext.sessionId, CrawlerStatus.DONE);
@@ -464,6 +545,37 @@ public class Crawler implements Runnable, AutoCloseable {
         }
     }
 
+    /**
+     * Starts a daemon thread which saves the session every {@link #checkpointInterval} milliseconds.
+     * @return The started thread, or null if periodic checkpoints are disabled.
+     */
+    protected Thread startCheckpointThread() {
+        if (checkpointInterval <= 0) {
+            return null;
+        }
+        final String sessionId = crawlerContext.sessionId;
+        final Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(checkpointInterval);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                try {
+                    urlQueueService.saveSession(sessionId);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Saved a checkpoint of crawler session: sessionId={}", sessionId);
+                    }
+                } catch (final Exception e) {
+                    logger.warn("Failed to save a checkpoint of crawler session: sessionId={}", sessionId, e);
+                }
+            }
+        }, "Crawler-" + sessionId + "-checkpoint");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
     /**
      * Returns the crawler context.
      * @return The CrawlerContext instance.
@@ -480,6 +592,52 @@ public class Crawler implements Runnable, AutoCloseable {
         crawlerContext.numOfThread = numOfThread;
     }
 
+    /**
+     * Sets the interval between the checkpoints of the session while crawling.
+     * Each checkpoint calls {@link UrlQueueService#saveSession(String)}.
+     * @param checkpointInterval The interval in milliseconds, or 0 to save the session only at the end.
+     */
+    public void setCheckpointInterval(final long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Sets whether each URL is processed on its own virtual thread.
+     * In this mode, the number of threads is the maximum number of URLs processed concurrently.
+     * @param virtualThread true to enable virtual-thread mode.
+     */
+    public void setVirtualThread(final boolean virtualThread) {
+        crawlerContext.virtualThread = virtualThread;
+    }
+
+    /**
+     * Sets whether the crawler threads only fetch and hand the responses to a {@link CrawlerPipeline},
+     * whose processing and store stages are configured in {@link CrawlerContext}.
+     * @param stagedPipeline true to enable staged mode.
+     */
+    public void setStagedPipeline(final boolean stagedPipeline) {
+        crawlerContext.stagedPipeline = stagedPipeline;
+    }
+
+    /**
+     * Sets whether idle crawler threads wait for URLs to be offered to the queue instead of sleeping,
+     * and the crawl ends as soon as the queue is empty and no thread is active.
+     * The thread check count and the NO_URL_IN_QUEUE and WAIT_NEW_URL delays of the interval controller
+     * are not used in this mode. It is ignored unless {@link UrlQueueService#supportsOfferSignal()} returns true.
+     * @param eventDrivenWaiting true to enable event-driven waiting.
+     */
+    public void setEventDrivenWaiting(final boolean eventDrivenWaiting) {
+        crawlerContext.eventDrivenWaiting = eventDrivenWaiting;
+    }
+
+    /**
+     * Sets the maximum time an idle thread waits for URLs before it polls the queue again in event-driven mode.
+     * @param idleWaitMillis The time in milliseconds.
+     */
+    public void setIdleWaitMillis(final long idleWaitMillis) {
+        crawlerContext.idleWaitMillis = idleWaitMillis;
+    }
+
     /**
      * Sets the maximum thread check count.
      * @param maxThreadCheckCount The maximum thread check count.
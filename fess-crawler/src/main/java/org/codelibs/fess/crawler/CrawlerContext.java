@@ -16,14 +16,23 @@
 package org.codelibs.fess.crawler;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.codelibs.core.collection.LruHashMap;
 import org.codelibs.core.collection.LruHashSet;
+import org.codelibs.core.lang.SystemUtil;
+import org.codelibs.fess.crawler.entity.RobotsTxt;
+import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.filter.UrlFilter;
 import org.codelibs.fess.crawler.interval.IntervalController;
 import org.codelibs.fess.crawler.rule.RuleManager;
+import org.codelibs.fess.crawler.util.UrlUtil;
 
 /**
  * The {@link CrawlerContext} class holds the context information for a crawler execution.
@@ -97,14 +106,30 @@ public class CrawlerContext {
      */
     protected Set<String> robotsTxtUrlSet = Collections.synchronizedSet(new LruHashSet<>(10000));
 
+    /**
+     * Crawl delays in milliseconds taken from robots.txt, keyed by host URL (scheme://host[:port]).
+     * Bounded and synchronized like {@link #robotsTxtUrlSet}.
+     */
+    protected Map<String, Long> crawlDelayMap = Collections.synchronizedMap(new LruHashMap<>(10000));
+
+    /**
+     * robots.txt directives matched for the crawler's user agent, keyed by host URL (scheme://host[:port]).
+     * URLs are checked against them before they are fetched. Bounded and synchronized like {@link #robotsTxtUrlSet}.
+     */
+    protected Map<String, RobotsTxt.Directive> robotsTxtDirectiveMap = Collections.synchronizedMap(new LruHashMap<>(10000));
+
     /**
      * Thread-local storage for sitemaps.
+     * In virtual-thread mode, each task runs on its own thread and removes its sitemaps when it finishes.
      */
     protected ThreadLocal<String[]> sitemapsLocal = new ThreadLocal<>();
 
-    /** The number of threads used by the crawler */
+    /** The number of threads used by the crawler, or the maximum number of concurrent tasks in virtual-thread mode */
     protected int numOfThread = 10;
 
+    /** Whether each URL is processed on its own virtual thread instead of a fixed set of platform threads. */
+    protected boolean virtualThread = false;
+
     /** The maximum number of times to check for active threads. */
     protected int maxThreadCheckCount = 20;
 
@@ -114,6 +139,44 @@ public class CrawlerContext {
     /** The maximum number of URLs to access. A value of 0 indicates no limit. */
     protected long maxAccessCount = 0;
 
+    /**
+     * Whether the crawler threads only fetch and hand the responses to the processing and store stages of a {@link CrawlerPipeline}.
+     */
+    protected boolean stagedPipeline = false;
+
+    /** The number of threads processing the responses in staged mode. */
+    protected int numOfProcessingThread = Runtime.getRuntime().availableProcessors();
+
+    /** The capacity of the hand-off queue from the crawler threads to the processing threads. */
+    protected int processingQueueSize = 100;
+
+    /** The number of threads storing the access results in staged mode, or 0 to store them on the processing threads. */
+    protected int numOfStoreThread = 1;
+
+    /** The capacity of the hand-off queue from the processing threads to the store threads. */
+    protected int storeQueueSize = 1000;
+
+    /** The maximum number of access results passed to {@link org.codelibs.fess.crawler.service.DataService} at once. */
+    protected int storeBatchSize = 100;
+
+    /**
+     * Whether idle crawler threads wait for URLs to be offered instead of sleeping with the interval controller,
+     * and the crawl ends as soon as the queue is empty and no thread is active.
+     */
+    protected boolean eventDrivenWaiting = false;
+
+    /** The maximum time in milliseconds an idle thread waits for URLs before it polls the queue again. */
+    protected long idleWaitMillis = 1000L;
+
+    /** The lock on which idle threads wait for URLs. */
+    protected final Object urlOfferLock = new Object();
+
+    /** The number of times URLs have been offered to the queue, guarded by {@link #urlOfferLock}. */
+    protected volatile long urlOfferCount = 0;
+
+    /** The URLs whose access failed and which are crawled again when their retry time has come. */
+    protected final DelayQueue<RetryUrlQueue> retryUrlQueues = new DelayQueue<>();
+
     /**
      * Returns the session ID.
      * @return The session ID.
@@ -151,7 +214,12 @@ public class CrawlerContext {
      * @return The decremented active thread count.
      */
     public int decrementAndGetActiveThreadCount() {
-        return activeThreadCount.decrementAndGet();
+        final int count = activeThreadCount.decrementAndGet();
+        if (count == 0 && eventDrivenWaiting) {
+            // idle threads check whether the crawl has finished
+            notifyWaitingThreads();
+        }
+        return count;
     }
 
     /**
@@ -192,6 +260,9 @@ public class CrawlerContext {
      */
     public void setStatus(final CrawlerStatus status) {
         this.status = status;
+        if (status == CrawlerStatus.DONE && eventDrivenWaiting) {
+            notifyWaitingThreads();
+        }
     }
 
     /**
@@ -258,6 +329,67 @@ public class CrawlerContext {
         this.robotsTxtUrlSet = robotsTxtUrlSet;
     }
 
+    /**
+     * Returns the crawl delay of the host given by robots.txt.
+     * @param hostUrl The host URL (scheme://host[:port]).
+     * @return The crawl delay in milliseconds, or -1 if robots.txt does not specify it.
+     */
+    public long getCrawlDelay(final String hostUrl) {
+        final Long crawlDelay = crawlDelayMap.get(hostUrl);
+        return crawlDelay != null ? crawlDelay : -1L;
+    }
+
+    /**
+     * Sets the crawl delay of the host given by robots.txt.
+     * @param hostUrl The host URL (scheme://host[:port]).
+     * @param crawlDelay The crawl delay in milliseconds.
+     */
+    public void setCrawlDelay(final String hostUrl, final long crawlDelay) {
+        crawlDelayMap.put(hostUrl, crawlDelay);
+    }
+
+    /**
+     * Returns the robots.txt directive of the host.
+     * @param hostUrl The host URL (scheme://host[:port]).
+     * @return The directive, or null if robots.txt of the host has no rules for the crawler.
+     */
+    public RobotsTxt.Directive getRobotsTxtDirective(final String hostUrl) {
+        return robotsTxtDirectiveMap.get(hostUrl);
+    }
+
+    /**
+     * Sets the robots.txt directive of the host. All the Allow and Disallow rules of the directive are applied
+     * by {@link #isAllowedByRobotsTxt(String)}, so a client which does not use the Allow rules sets
+     * {@link RobotsTxt.Directive#copyWithoutAllows()}.
+     * @param hostUrl The host URL (scheme://host[:port]).
+     * @param directive The directive matched for the crawler's user agent.
+     */
+    public void setRobotsTxtDirective(final String hostUrl, final RobotsTxt.Directive directive) {
+        robotsTxtDirectiveMap.put(hostUrl, directive);
+    }
+
+    /**
+     * Checks the URL against the robots.txt directive of its host.
+     * @param url The URL.
+     * @return false if robots.txt disallows the URL, true otherwise.
+     */
+    public boolean isAllowedByRobotsTxt(final String url) {
+        if (robotsTxtDirectiveMap.isEmpty() || url == null) {
+            return true;
+        }
+        final String hostUrl = UrlUtil.getHost(url);
+        final RobotsTxt.Directive directive = robotsTxtDirectiveMap.get(hostUrl);
+        if (directive == null) {
+            return true;
+        }
+        final String path = url.substring(hostUrl.length());
+        if (path.startsWith("/")) {
+            return directive.allows(path);
+        }
+        // the path of a URL like http://host?q=1 is empty
+        return directive.allows(path.startsWith("?") ? "/" + path : "/");
+    }
+
     /**
      * Returns the number of threads.
      * @return The number of threads.
@@ -274,6 +406,22 @@ public class CrawlerContext {
         this.numOfThread = numOfThread;
     }
 
+    /**
+     * Returns whether virtual-thread mode is enabled.
+     * @return true if each URL is processed on its own virtual thread.
+     */
+    public boolean isVirtualThread() {
+        return virtualThread;
+    }
+
+    /**
+     * Sets whether virtual-thread mode is enabled.
+     * @param virtualThread true to process each URL on its own virtual thread.
+     */
+    public void setVirtualThread(final boolean virtualThread) {
+        this.virtualThread = virtualThread;
+    }
+
     /**
      * Returns the maximum thread check count.
      * @return The maximum thread check count.
@@ -322,6 +470,245 @@ public class CrawlerContext {
         this.maxAccessCount = maxAccessCount;
     }
 
+    /**
+     * Returns whether event-driven waiting is enabled.
+     * @return true if idle threads wait for URLs to be offered.
+     */
+    public boolean isEventDrivenWaiting() {
+        return eventDrivenWaiting;
+    }
+
+    /**
+     * Sets whether idle threads wait for URLs to be offered instead of sleeping with the interval controller.
+     * The queue service must call {@link #notifyUrlsOffered()} when URLs are offered, and its poll must see
+     * them immediately, as the in-memory services do
+     * (see {@link org.codelibs.fess.crawler.service.UrlQueueService#supportsOfferSignal()}).
+     * @param eventDrivenWaiting true to enable event-driven waiting.
+     */
+    public void setEventDrivenWaiting(final boolean eventDrivenWaiting) {
+        this.eventDrivenWaiting = eventDrivenWaiting;
+    }
+
+    /**
+     * Returns the maximum time an idle thread waits for URLs before it polls the queue again.
+     * @return The time in milliseconds.
+     */
+    public long getIdleWaitMillis() {
+        return idleWaitMillis;
+    }
+
+    /**
+     * Sets the maximum time an idle thread waits for URLs before it polls the queue again.
+     * @param idleWaitMillis The time in milliseconds.
+     */
+    public void setIdleWaitMillis(final long idleWaitMillis) {
+        this.idleWaitMillis = idleWaitMillis;
+    }
+
+    /**
+     * Returns the number of times URLs have been offered to the queue.
+     * A thread reads it before polling and passes it to {@link #awaitUrlsOffered(long, long)} and {@link #isQuiescent(long)}.
+     * @return The offer count.
+     */
+    public long getUrlOfferCount() {
+        return urlOfferCount;
+    }
+
+    /**
+     * Wakes the idle threads because URLs have been offered to the queue.
+     */
+    public void notifyUrlsOffered() {
+        synchronized (urlOfferLock) {
+            urlOfferCount++;
+            urlOfferLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wakes the idle threads without offering URLs, so that they check whether the crawl has finished.
+     */
+    public void notifyWaitingThreads() {
+        synchronized (urlOfferLock) {
+            urlOfferLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until URLs are offered after the given offer count, no thread is active, the crawler is done,
+     * or the timeout elapses.
+     * @param urlOfferCount The offer count read before the last poll.
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return true if URLs have been offered, otherwise false.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean awaitUrlsOffered(final long urlOfferCount, final long timeoutMillis) throws InterruptedException {
+        return awaitUrlsOffered(urlOfferCount, timeoutMillis, false);
+    }
+
+    /**
+     * Waits until URLs are offered after the given offer count, the crawler is done, or the timeout elapses.
+     * If no URLs are pending in the queue, the wait also ends when no thread is active.
+     * @param urlOfferCount The offer count read before the last poll.
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @param urlsPending true if the queue holds URLs which are not ready yet, such as hosts in their crawl interval.
+     * @return true if URLs have been offered, otherwise false.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean awaitUrlsOffered(final long urlOfferCount, final long timeoutMillis, final boolean urlsPending)
+            throws InterruptedException {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        final RetryUrlQueue retryUrlQueue = retryUrlQueues.peek();
+        if (retryUrlQueue != null) {
+            // wake up when the next retry is due
+            timeoutNanos = Math.min(timeoutNanos, retryUrlQueue.getDelay(TimeUnit.NANOSECONDS));
+        }
+        final long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (urlOfferLock) {
+            while (this.urlOfferCount == urlOfferCount && (urlsPending || activeThreadCount.get() > 0 || !retryUrlQueues.isEmpty())
+                    && status != CrawlerStatus.DONE) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(urlOfferLock, remaining);
+            }
+            return this.urlOfferCount != urlOfferCount;
+        }
+    }
+
+    /**
+     * Returns whether no URLs have been offered since the given offer count, no thread is active, and no retry is pending.
+     * Threads count themselves as active while they hold a polled URL, so when a poll after reading the
+     * offer count found the queue empty, nothing can be added to it anymore and the crawl has finished.
+     * @param urlOfferCount The offer count read before the last poll.
+     * @return true if the crawl has finished, otherwise false.
+     */
+    public boolean isQuiescent(final long urlOfferCount) {
+        return activeThreadCount.get() == 0 && this.urlOfferCount == urlOfferCount && retryUrlQueues.isEmpty();
+    }
+
+    /**
+     * Schedules a URL whose access failed to be crawled again.
+     * @param urlQueue The URL queue entry.
+     * @param retryTime The time in milliseconds since the epoch before which the URL is not crawled again.
+     */
+    public void scheduleRetry(final UrlQueue<?> urlQueue, final long retryTime) {
+        retryUrlQueues.offer(new RetryUrlQueue(urlQueue, retryTime));
+    }
+
+    /**
+     * Removes and returns a URL whose retry time has come.
+     * @return The URL queue entry, or null if no retry is due.
+     */
+    public UrlQueue<?> pollRetryUrlQueue() {
+        final RetryUrlQueue retryUrlQueue = retryUrlQueues.poll();
+        return retryUrlQueue == null ? null : retryUrlQueue.urlQueue;
+    }
+
+    /**
+     * Returns the number of URLs waiting to be crawled again.
+     * @return The number of URLs.
+     */
+    public int getRetryUrlQueueCount() {
+        return retryUrlQueues.size();
+    }
+
+    /**
+     * Returns whether staged mode is enabled.
+     * @return true if the responses are processed and stored by the stages of a {@link CrawlerPipeline}.
+     */
+    public boolean isStagedPipeline() {
+        return stagedPipeline;
+    }
+
+    /**
+     * Sets whether the crawler threads only fetch and hand the responses to the processing and store stages.
+     * @param stagedPipeline true to enable staged mode.
+     */
+    public void setStagedPipeline(final boolean stagedPipeline) {
+        this.stagedPipeline = stagedPipeline;
+    }
+
+    /**
+     * Returns the number of processing threads in staged mode.
+     * @return The number of threads.
+     */
+    public int getNumOfProcessingThread() {
+        return numOfProcessingThread;
+    }
+
+    /**
+     * Sets the number of processing threads in staged mode.
+     * @param numOfProcessingThread The number of threads.
+     */
+    public void setNumOfProcessingThread(final int numOfProcessingThread) {
+        this.numOfProcessingThread = numOfProcessingThread;
+    }
+
+    /**
+     * Returns the capacity of the hand-off queue to the processing threads.
+     * @return The capacity.
+     */
+    public int getProcessingQueueSize() {
+        return processingQueueSize;
+    }
+
+    /**
+     * Sets the capacity of the hand-off queue to the processing threads.
+     * @param processingQueueSize The capacity.
+     */
+    public void setProcessingQueueSize(final int processingQueueSize) {
+        this.processingQueueSize = processingQueueSize;
+    }
+
+    /**
+     * Returns the number of store threads in staged mode.
+     * @return The number of threads, or 0 if the processing threads store the access results.
+     */
+    public int getNumOfStoreThread() {
+        return numOfStoreThread;
+    }
+
+    /**
+     * Sets the number of store threads in staged mode.
+     * @param numOfStoreThread The number of threads, or 0 to store the access results on the processing threads.
+     */
+    public void setNumOfStoreThread(final int numOfStoreThread) {
+        this.numOfStoreThread = numOfStoreThread;
+    }
+
+    /**
+     * Returns the capacity of the hand-off queue to the store threads.
+     * @return The capacity.
+     */
+    public int getStoreQueueSize() {
+        return storeQueueSize;
+    }
+
+    /**
+     * Sets the capacity of the hand-off queue to the store threads.
+     * @param storeQueueSize The capacity.
+     */
+    public void setStoreQueueSize(final int storeQueueSize) {
+        this.storeQueueSize = storeQueueSize;
+    }
+
+    /**
+     * Returns the maximum number of access results stored at once by a store thread.
+     * @return The batch size.
+     */
+    public int getStoreBatchSize() {
+        return storeBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of access results stored at once by a store thread.
+     * @param storeBatchSize The batch size.
+     */
+    public void setStoreBatchSize(final int storeBatchSize) {
+        this.storeBatchSize = storeBatchSize;
+    }
+
     /**
      * Adds sitemaps to the thread-local storage.
      * @param sitemaps An array of sitemap URLs.
@@ -341,4 +728,36 @@ public class CrawlerContext {
         }
         return sitemaps;
     }
+
+    /**
+     * A URL queue entry waiting for its retry time.
+     */
+    protected static class RetryUrlQueue implements Delayed {
+
+        /** The URL queue entry. */
+        protected final UrlQueue<?> urlQueue;
+
+        /** The time in milliseconds since the epoch before which the URL is not crawled again. */
+        protected final long retryTime;
+
+        /**
+         * Creates a new RetryUrlQueue.
+         * @param urlQueue The URL queue entry.
+         * @param retryTime The retry time in milliseconds since the epoch.
+         */
+        protected RetryUrlQueue(final UrlQueue<?> urlQueue, final long retryTime) {
+            this.urlQueue = urlQueue;
+            this.retryTime = retryTime;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(retryTime - SystemUtil.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed o) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
 }
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.crawler.entity.AccessResult;
+import org.codelibs.fess.crawler.entity.UrlQueue;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.service.DataService;
+import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.util.AccessResultCallback;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+
+/**
+ * The processing and store stages of a staged crawl.
+ *
+ * <p>
+ * In staged mode, the crawler threads only fetch: each {@link org.codelibs.fess.crawler.entity.ResponseData}
+ * is handed to a processing thread, which runs the rule's response processor (transformation and extraction),
+ * and the access results created there are handed to a store thread, which passes them to
+ * {@link DataService#storeAll(List)} in batches. Each hand-off is a bounded queue, so a stage blocks the previous
+ * one when it falls behind. The number of threads and the queue size of each stage are taken from
+ * {@link CrawlerContext}.
+ * </p>
+ *
+ * <p>
+ * The processing threads see {@link #getDataService()} as the data service, which enqueues stored access
+ * results to the store stage and delegates everything else. The URL queue of an access result stays pending
+ * until the store stage has stored it, and only then is its crawling finished with
+ * {@link UrlQueueService#finish(UrlQueue)}, so the queue service keeps treating the URL as being crawled and
+ * does not queue it again for a link found before the result is stored.
+ * </p>
+ */
+public class CrawlerPipeline {
+
+    private static final Logger logger = LogManager.getLogger(CrawlerPipeline.class);
+
+    /** The time in milliseconds a stage thread waits for work before it checks whether the pipeline is closing. */
+    protected static final long POLL_MILLIS = 100L;
+
+    /** The crawler context. */
+    protected final CrawlerContext crawlerContext;
+
+    /** The data service which stores the access results. */
+    protected final DataService<AccessResult<?>> dataService;
+
+    /** The hand-off queue from the fetch stage to the processing stage. */
+    protected final BlockingQueue<Runnable> processingQueue;
+
+    /** The hand-off queue from the processing stage to the store stage, or null if the processing threads store the results. */
+    protected final BlockingQueue<StoreTask> storeQueue;
+
+    /** The URL queues whose access results are waiting in the store stage, compared by identity. */
+    protected final Set<UrlQueue<?>> pendingUrlQueueSet = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    /** The data service seen by the processing threads. */
+    protected final DataService<AccessResult<?>> stageDataService;
+
+    /** The threads of the processing stage. */
+    protected final List<Thread> processingThreadList = new ArrayList<>();
+
+    /** The threads of the store stage. */
+    protected final List<Thread> storeThreadList = new ArrayList<>();
+
+    /** Whether no more responses are handed to the processing stage. */
+    protected volatile boolean processingClosed = false;
+
+    /** Whether no more access results are handed to the store stage. */
+    protected volatile boolean storeClosed = false;
+
+    /**
+     * Creates a new CrawlerPipeline. Call {@link #start(ThreadGroup)} to start the stage threads.
+     *
+     * @param crawlerContext the crawler context with the stage settings
+     * @param dataService the data service which stores the access results
+     */
+    public CrawlerPipeline(final CrawlerContext crawlerContext, final DataService<AccessResult<?>> dataService) {
+        this.crawlerContext = crawlerContext;
+        this.dataService = dataService;
+        processingQueue = new ArrayBlockingQueue<>(Math.max(1, crawlerContext.getProcessingQueueSize()));
+        if (crawlerContext.getNumOfStoreThread() > 0) {
+            storeQueue = new ArrayBlockingQueue<>(Math.max(1, crawlerContext.getStoreQueueSize()));
+            stageDataService = new StoreStageDataService();
+        } else {
+            storeQueue = null;
+            stageDataService = dataService;
+        }
+    }
+
+    /**
+     * Starts the threads of the processing and store stages.
+     *
+     * @param threadGroup the thread group of the stage threads
+     */
+    public void start(final ThreadGroup threadGroup) {
+        final String prefix = "Crawler-" + crawlerContext.getSessionId();
+        final int numOfProcessingThread = Math.max(1, crawlerContext.getNumOfProcessingThread());
+        for (int i = 0; i < numOfProcessingThread; i++) {
+            processingThreadList.add(new Thread(threadGroup, this::runProcessing, prefix + "-processing-" + (i + 1)));
+        }
+        if (storeQueue != null) {
+            for (int i = 0; i < crawlerContext.getNumOfStoreThread(); i++) {
+                storeThreadList.add(new Thread(threadGroup, this::runStore, prefix + "-store-" + (i + 1)));
+            }
+        }
+        for (final Thread thread : processingThreadList) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        for (final Thread thread : storeThreadList) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Started crawler pipeline: sessionId={}, processingThreads={}, storeThreads={}", crawlerContext.getSessionId(),
+                    processingThreadList.size(), storeThreadList.size());
+        }
+    }
+
+    /**
+     * Hands a processing task to the processing stage, waiting while the hand-off queue is full.
+     *
+     * @param task the task which processes a fetched response
+     */
+    public void process(final Runnable task) {
+        if (processingClosed) {
+            throw new CrawlerSystemException("The crawler pipeline is closed.");
+        }
+        try {
+            processingQueue.put(task);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CrawlerSystemException("Interrupted while handing a response to the processing stage.", e);
+        }
+    }
+
+    /**
+     * Returns the data service for the processing threads.
+     *
+     * @return the data service which hands the stored access results to the store stage,
+     *         or the data service itself if there is no store stage
+     */
+    public DataService<AccessResult<?>> getDataService() {
+        return stageDataService;
+    }
+
+    /**
+     * Checks if an access result of the URL queue has been handed to the store stage and is not stored yet.
+     * The crawling of such a URL queue is finished by the store stage.
+     *
+     * @param urlQueue the URL queue
+     * @return true if the URL queue is pending in the store stage
+     */
+    public boolean isPending(final UrlQueue<?> urlQueue) {
+        return pendingUrlQueueSet.contains(urlQueue);
+    }
+
+    /**
+     * Returns the number of responses waiting in the hand-off queue of the processing stage.
+     *
+     * @return the number of responses
+     */
+    public int getProcessingQueueSize() {
+        return processingQueue.size();
+    }
+
+    /**
+     * Returns the number of access results waiting in the hand-off queue of the store stage.
+     *
+     * @return the number of access results
+     */
+    public int getStoreQueueSize() {
+        return storeQueue == null ? 0 : storeQueue.size();
+    }
+
+    /**
+     * Processes the handed-off responses until the pipeline is closed and the hand-off queue is empty.
+     */
+    protected void runProcessing() {
+        try {
+            while (true) {
+                final Runnable task = processingQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (final Throwable t) {
+                        logger.warn("Failed to process a response.", t);
+                    }
+                } else if (processingClosed) {
+                    break;
+                }
+            }
+        } catch (final InterruptedException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Interrupted the processing stage: sessionId={}", crawlerContext.getSessionId());
+            }
+        }
+    }
+
+    /**
+     * Stores the handed-off access results in batches until the pipeline is closed and the hand-off queue is empty.
+     */
+    protected void runStore() {
+        final int batchSize = Math.max(1, crawlerContext.getStoreBatchSize());
+        final List<StoreTask> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                final StoreTask task = storeQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    batch.add(task);
+                    storeQueue.drainTo(batch, batchSize - 1);
+                    store(batch);
+                    batch.clear();
+                } else if (storeClosed) {
+                    break;
+                }
+            }
+        } catch (final InterruptedException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Interrupted the store stage: sessionId={}", crawlerContext.getSessionId());
+            }
+        }
+    }
+
+    /**
+     * Stores a batch of access results. If the batch fails, the access results are stored one by one,
+     * so that a failing access result does not drop the others. The crawling of their URL queues is
+     * finished afterwards, whether they were stored or not.
+     *
+     * @param batch the access results with their URL queues
+     */
+    protected void store(final List<StoreTask> batch) {
+        try {
+            final List<AccessResult<?>> accessResultList = new ArrayList<>(batch.size());
+            for (final StoreTask task : batch) {
+                accessResultList.add(task.accessResult);
+            }
+            dataService.storeAll(accessResultList);
+        } catch (final Exception e) {
+            if (batch.size() == 1) {
+                logger.warn("Failed to store an access result: {}", batch.get(0).accessResult.getUrl(), e);
+            } else {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to store {} access results. Storing them one by one.", batch.size(), e);
+                }
+                for (final StoreTask task : batch) {
+                    try {
+                        dataService.store(task.accessResult);
+                    } catch (final Exception e1) {
+                        logger.warn("Failed to store an access result: {}", task.accessResult.getUrl(), e1);
+                    }
+                }
+            }
+        } finally {
+            for (final StoreTask task : batch) {
+                task.finish();
+            }
+        }
+    }
+
+    /**
+     * Processes and stores the handed-off work and stops the stage threads.
+     * Call this after the crawler threads have finished.
+     */
+    public void close() {
+        processingClosed = true;
+        join(processingThreadList);
+        // the stage threads may have been interrupted by Crawler#stop()
+        Runnable task;
+        while ((task = processingQueue.poll()) != null) {
+            try {
+                task.run();
+            } catch (final Throwable t) {
+                logger.warn("Failed to process a response.", t);
+            }
+        }
+        storeClosed = true;
+        join(storeThreadList);
+        if (storeQueue != null) {
+            final List<StoreTask> batch = new ArrayList<>();
+            storeQueue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                store(batch);
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Closed crawler pipeline: sessionId={}", crawlerContext.getSessionId());
+        }
+    }
+
+    /**
+     * Waits for the threads to finish.
+     *
+     * @param threadList the threads
+     */
+    protected void join(final List<Thread> threadList) {
+        for (final Thread thread : threadList) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                logger.warn("Interrupted while waiting for {}.", thread.getName(), e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * An access result handed to the store stage, with the URL queue it was created for.
+     */
+    protected class StoreTask {
+
+        /** The access result to store. */
+        protected final AccessResult<?> accessResult;
+
+        /** The URL queue of the access result, or null if it is unknown. */
+        protected final UrlQueue<?> urlQueue;
+
+        /** The URL queue service which the URL queue was polled from, or null if it is unknown. */
+        protected final UrlQueueService<UrlQueue<?>> urlQueueService;
+
+        /**
+         * Creates a new StoreTask and marks its URL queue as pending.
+         *
+         * @param accessResult the access result to store
+         * @param urlQueue the URL queue of the access result, or null
+         * @param urlQueueService the URL queue service, or null
+         */
+        protected StoreTask(final AccessResult<?> accessResult, final UrlQueue<?> urlQueue,
+                final UrlQueueService<UrlQueue<?>> urlQueueService) {
+            this.accessResult = accessResult;
+            this.urlQueue = urlQueue;
+            this.urlQueueService = urlQueueService;
+            if (urlQueue != null) {
+                pendingUrlQueueSet.add(urlQueue);
+            }
+        }
+
+        /**
+         * Clears the pending mark of the URL queue and finishes its crawling.
+         */
+        protected void finish() {
+            if (urlQueue == null) {
+                return;
+            }
+            pendingUrlQueueSet.remove(urlQueue);
+            if (urlQueueService != null) {
+                try {
+                    urlQueueService.finish(urlQueue);
+                } catch (final Exception e) {
+                    logger.warn("Failed to finish crawling {}.", urlQueue.getUrl(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The data service seen by the processing threads. Access results passed to {@link #store(AccessResult)}
+     * are handed to the store stage, and the other methods delegate to the data service.
+     */
+    protected class StoreStageDataService implements DataService<AccessResult<?>> {
+
+        /**
+         * Creates a new StoreStageDataService.
+         */
+        protected StoreStageDataService() {
+            // nothing
+        }
+
+        @Override
+        public void store(final AccessResult<?> accessResult) {
+            // mark the URL queue pending before the hand-off, so that it is not finished by the processing thread
+            final StoreTask task =
+                    new StoreTask(accessResult, CrawlingParameterUtil.getUrlQueue(), CrawlingParameterUtil.getUrlQueueService());
+            try {
+                storeQueue.put(task);
+            } catch (final InterruptedException e) {
+                task.finish();
+                Thread.currentThread().interrupt();
+                throw new CrawlerSystemException("Interrupted while handing an access result to the store stage.", e);
+            }
+        }
+
+        @Override
+        public void update(final AccessResult<?> accessResult) {
+            dataService.update(accessResult);
+        }
+
+        @Override
+        public void update(final List<AccessResult<?>> accessResultList) {
+            dataService.update(accessResultList);
+        }
+
+        @Override
+        public int getCount(final String sessionId) {
+            return dataService.getCount(sessionId);
+        }
+
+        @Override
+        public void delete(final String sessionId) {
+            dataService.delete(sessionId);
+        }
+
+        @Override
+        public void deleteAll() {
+            dataService.deleteAll();
+        }
+
+        @Override
+        public AccessResult<?> getAccessResult(final String sessionId, final String url) {
+            return dataService.getAccessResult(sessionId, url);
+        }
+
+        @Override
+        public List<AccessResult<?>> getAccessResultList(final String url, final boolean hasData) {
+            return dataService.getAccessResultList(url, hasData);
+        }
+
+        @Override
+        public void iterate(final String sessionId, final AccessResultCallback<AccessResult<?>> accessResultCallback) {
+            dataService.iterate(sessionId, accessResultCallback);
+        }
+    }
+}
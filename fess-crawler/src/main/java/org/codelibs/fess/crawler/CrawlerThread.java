@@ -19,6 +19,8 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 import org.codelibs.core.io.CloseableUtil;
 import org.codelibs.core.lang.StringUtil;
@@ -33,6 +35,7 @@ import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.exception.ChildUrlsException;
 import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
 import org.codelibs.fess.crawler.helper.LogHelper;
 import org.codelibs.fess.crawler.interval.IntervalController;
 import org.codelibs.fess.crawler.log.LogType;
@@ -127,6 +130,16 @@ public class CrawlerThread implements Runnable {
      */
     protected boolean noWaitOnFolder = false;
 
+    /**
+     * Executor for processing each URL as a separate task, or null to process URLs on this thread.
+     */
+    protected ExecutorService taskExecutor;
+
+    /**
+     * Pipeline which processes and stores the fetched responses, or null to process them on this thread.
+     */
+    protected CrawlerPipeline pipeline;
+
     /**
      * Increments the active thread count using atomic operation.
      */
@@ -161,7 +174,7 @@ public class CrawlerThread implements Runnable {
             isContinue = true;
         }
 
-        if (!isContinue && crawlerContext.getActiveThreadCount() > 0) {
+        if (!isContinue && (crawlerContext.getActiveThreadCount() > 0 || crawlerContext.getRetryUrlQueueCount() > 0)) {
             // still running..
             return true;
         }
@@ -169,6 +182,49 @@ public class CrawlerThread implements Runnable {
         return isContinue;
     }
 
+    /**
+     * Polls the next URL to crawl: a URL whose retry time has come, or else the next URL in the queue.
+     * @return The URL queue entry, or null if there is no URL to crawl now.
+     */
+    protected UrlQueue<?> pollUrlQueue() {
+        final UrlQueue<?> urlQueue = crawlerContext.pollRetryUrlQueue();
+        if (urlQueue != null) {
+            return urlQueue;
+        }
+        return urlQueueService.poll(crawlerContext.sessionId);
+    }
+
+    /**
+     * Waits until the URLs pending in the queue become ready, after a poll returned no URL.
+     * The queue service does not wait in the poll, for example while every pending host is in its crawl interval,
+     * so the thread waits here for the ready time, bounded by {@link CrawlerContext#getIdleWaitMillis()},
+     * or until URLs are offered.
+     * @param urlOfferCount The offer count read before the last poll.
+     * @return true if URLs are pending in the queue, so the empty poll does not count toward the end of the crawl.
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    protected boolean awaitPendingUrls(final long urlOfferCount) throws InterruptedException {
+        final long waitMillis = urlQueueService.getWaitMillis(crawlerContext.sessionId);
+        if (waitMillis < 0) {
+            return false;
+        }
+        if (waitMillis > 0) {
+            crawlerContext.awaitUrlsOffered(urlOfferCount, Math.min(waitMillis, crawlerContext.getIdleWaitMillis()), true);
+        }
+        return true;
+    }
+
+    /**
+     * Notifies the URL queue service that the crawling of a polled URL has finished.
+     * A URL scheduled for a retry is not finished until it has been crawled again.
+     * @param urlQueue The URL queue entry, or null.
+     */
+    protected void finishUrlQueue(final UrlQueue<?> urlQueue) {
+        if (urlQueue != null) {
+            urlQueueService.finish(urlQueue);
+        }
+    }
+
     /**
      * Logs a message using the provided LogHelper.
      * @param logHelper The LogHelper instance.
@@ -185,122 +241,401 @@ public class CrawlerThread implements Runnable {
      * Runs the crawling process in a separate thread.
      * This method fetches URLs from the queue, accesses content, processes responses,
      * and extracts child URLs until the crawling process is done or no more URLs are available.
+     * If a task executor is set, each URL is processed as a separate task instead (see {@link #dispatchTasks()}).
+     * If event-driven waiting is enabled, idle threads wait for new URLs instead of sleeping (see {@link #crawlOnSignal()}).
      */
     @Override
     public void run() {
         log(logHelper, LogType.START_THREAD, crawlerContext);
-        int threadCheckCount = 0;
         // set urlQueue to thread
-        CrawlingParameterUtil.setCrawlerContext(crawlerContext);
-        CrawlingParameterUtil.setUrlQueueService(urlQueueService);
-        CrawlingParameterUtil.setDataService(dataService);
+        setUpThreadLocals();
         try {
-            while (crawlerContext.getStatus() != CrawlerStatus.DONE && isContinue(threadCheckCount)) {
-                final UrlQueue<?> urlQueue = urlQueueService.poll(crawlerContext.sessionId);
-                if (isValid(urlQueue)) {
-                    ResponseData responseData = null;
-                    log(logHelper, LogType.START_CRAWLING, crawlerContext, urlQueue);
-                    try {
-                        final CrawlerClient client = getClient(urlQueue.getUrl());
-                        if (client == null) {
-                            log(logHelper, LogType.UNSUPPORTED_URL_AT_CRAWLING_STARTED, crawlerContext, urlQueue);
+            if (taskExecutor != null) {
+                dispatchTasks();
+            } else if (crawlerContext.isEventDrivenWaiting()) {
+                crawlOnSignal();
+            } else {
+                int threadCheckCount = 0;
+                while (crawlerContext.getStatus() != CrawlerStatus.DONE && isContinue(threadCheckCount)) {
+                    final long urlOfferCount = crawlerContext.getUrlOfferCount();
+                    final UrlQueue<?> urlQueue = pollUrlQueue();
+                    if (urlQueue == null && awaitPendingUrls(urlOfferCount)) {
+                        continue;
+                    }
+                    if (isValid(urlQueue)) {
+                        final boolean waitNewUrl = crawl(urlQueue);
+                        threadCheckCount = 0; // clear
+                        if (!waitNewUrl) {
                             continue;
                         }
-
-                        startCrawling();
-
-                        // set urlQueue to thread
-                        CrawlingParameterUtil.setUrlQueue(urlQueue);
+                    } else {
+                        finishUrlQueue(urlQueue);
+                        log(logHelper, LogType.NO_URL_IN_QUEUE, crawlerContext, urlQueue, Integer.valueOf(threadCheckCount));
 
                         if (crawlerContext.intervalController != null) {
-                            crawlerContext.intervalController.delay(IntervalController.PRE_PROCESSING);
+                            crawlerContext.intervalController.delay(IntervalController.NO_URL_IN_QUEUE);
                         }
 
-                        final boolean contentUpdated = isContentUpdated(client, urlQueue);
-
-                        if (contentUpdated) {
-                            log(logHelper, LogType.GET_CONTENT, crawlerContext, urlQueue);
-                            // access an url
-                            final long startTime = SystemUtil.currentTimeMillis();
-                            responseData = client.execute(RequestDataBuilder.newRequestData()
-                                    .method(urlQueue.getMethod())
-                                    .url(urlQueue.getUrl())
-                                    .weight(urlQueue.getWeight())
-                                    .build());
-                            responseData.setExecutionTime(SystemUtil.currentTimeMillis() - startTime);
-                            responseData.setParentUrl(urlQueue.getParentUrl());
-                            responseData.setSessionId(crawlerContext.sessionId);
-
-                            if (responseData.getRedirectLocation() == null) {
-                                log(logHelper, LogType.PROCESS_RESPONSE, crawlerContext, urlQueue, responseData);
-                                processResponse(urlQueue, responseData);
-                            } else {
-                                log(logHelper, LogType.REDIRECT_LOCATION, crawlerContext, urlQueue, responseData);
-                                // redirect
-                                storeChildUrl(responseData.getRedirectLocation(), urlQueue.getUrl(), urlQueue.getWeight(),
-                                        urlQueue.getDepth() == null ? 1 : urlQueue.getDepth() + 1);
-                            }
-                        }
+                        threadCheckCount++;
+                    }
 
-                        log(logHelper, LogType.FINISHED_CRAWLING, crawlerContext, urlQueue);
-                    } catch (final ChildUrlsException e) {
-                        try {
-                            final Set<RequestData> childUrlSet = e.getChildUrlList();
-                            log(logHelper, LogType.PROCESS_CHILD_URLS_BY_EXCEPTION, crawlerContext, urlQueue, childUrlSet);
-                            // add an url
-                            storeChildUrls(childUrlSet, urlQueue.getUrl(), urlQueue.getDepth() == null ? 1 : urlQueue.getDepth() + 1);
-                        } catch (final Exception e1) {
-                            log(logHelper, LogType.CRAWLING_EXCEPTION, crawlerContext, urlQueue, e1);
-                        }
-                        if (noWaitOnFolder) {
-                            continue;
-                        }
-                    } catch (final CrawlingAccessException e) {
-                        log(logHelper, LogType.CRAWLING_ACCESS_EXCEPTION, crawlerContext, urlQueue, e);
-                    } catch (final Throwable e) {
-                        log(logHelper, LogType.CRAWLING_EXCEPTION, crawlerContext, urlQueue, e);
-                    } finally {
-                        try {
-                            addSitemapsFromRobotsTxt(urlQueue);
-
-                            if (responseData != null) {
-                                CloseableUtil.closeQuietly(responseData);
-                            }
-                            if (crawlerContext.intervalController != null) {
-                                crawlerContext.intervalController.delay(IntervalController.POST_PROCESSING);
+                    // interval
+                    if (crawlerContext.intervalController != null) {
+                        crawlerContext.intervalController.delay(IntervalController.WAIT_NEW_URL);
+                    }
+                }
+            }
+        } catch (final Throwable t) {
+            log(logHelper, LogType.SYSTEM_ERROR, t);
+        } finally {
+            // remove crawlerContext from thread
+            clearThreadLocals();
+        }
+        log(logHelper, LogType.FINISHED_THREAD, crawlerContext);
+    }
+
+    /**
+     * Polls and crawls URLs until the crawl has finished, waiting for URLs to be offered while the queue is empty.
+     * The thread counts itself as active from before the poll until the polled URL has been crawled, so the crawl
+     * has finished as soon as a poll finds the queue empty, no thread is active, and no URLs have been offered since.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for URLs
+     */
+    protected void crawlOnSignal() throws InterruptedException {
+        while (crawlerContext.getStatus() != CrawlerStatus.DONE && isContinueOnSignal()) {
+            final long urlOfferCount = crawlerContext.getUrlOfferCount();
+            final UrlQueue<?> urlQueue;
+            startCrawling();
+            try {
+                urlQueue = pollUrlQueue();
+                if (isValid(urlQueue)) {
+                    crawl(urlQueue);
+                } else {
+                    finishUrlQueue(urlQueue);
+                }
+            } finally {
+                finishCrawling();
+            }
+            if (urlQueue == null && !awaitPendingUrls(urlOfferCount)) {
+                log(logHelper, LogType.NO_URL_IN_QUEUE, crawlerContext, urlQueue, Integer.valueOf(0));
+                if (crawlerContext.isQuiescent(urlOfferCount)) {
+                    break;
+                }
+                crawlerContext.awaitUrlsOffered(urlOfferCount, crawlerContext.getIdleWaitMillis());
+            }
+        }
+    }
+
+    /**
+     * Checks if the crawling process should continue in event-driven mode, where the end of the crawl is
+     * detected by {@link CrawlerContext#isQuiescent(long)} instead of the thread check count.
+     * @return true if the crawling should continue, false otherwise.
+     */
+    protected boolean isContinueOnSignal() {
+        if (!crawlerContainer.available()) {
+            // system shutdown
+            return false;
+        }
+        final long maxAccessCount = crawlerContext.getMaxAccessCount();
+        return maxAccessCount <= 0 || crawlerContext.getAccessCount() < maxAccessCount;
+    }
+
+    /**
+     * Polls URLs from the queue and processes each of them as a separate task on {@link #taskExecutor}.
+     * The number of concurrent tasks is bounded by {@link CrawlerContext#getNumOfThread()}.
+     * This method returns after the crawling is finished and all dispatched tasks have completed.
+     * If event-driven waiting is enabled, the dispatcher waits for new URLs and detects the end of the crawl
+     * like {@link #crawlOnSignal()}.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting for a free task slot
+     */
+    protected void dispatchTasks() throws InterruptedException {
+        final int maxTasks = Math.max(1, crawlerContext.getNumOfThread());
+        final Semaphore taskSemaphore = new Semaphore(maxTasks);
+        final boolean eventDriven = crawlerContext.isEventDrivenWaiting();
+        int threadCheckCount = 0;
+        try {
+            // running tasks keep isContinue() true through the active thread count
+            while (crawlerContext.getStatus() != CrawlerStatus.DONE
+                    && (eventDriven ? isContinueOnSignal() : isContinue(threadCheckCount))) {
+                taskSemaphore.acquire();
+                final long urlOfferCount = crawlerContext.getUrlOfferCount();
+                if (eventDriven) {
+                    // the polled URL is counted as active until its task finishes
+                    startCrawling();
+                }
+                UrlQueue<?> urlQueue = null;
+                boolean dispatched = false;
+                try {
+                    urlQueue = pollUrlQueue();
+                    if (isValid(urlQueue)) {
+                        final UrlQueue<?> task = urlQueue;
+                        taskExecutor.execute(() -> {
+                            try {
+                                runTask(task);
+                            } finally {
+                                if (eventDriven) {
+                                    finishCrawling();
+                                }
+                                taskSemaphore.release();
                             }
-                            threadCheckCount = 0; // clear
-                            // remove urlQueue from thread
-                            CrawlingParameterUtil.setUrlQueue(null);
+                        });
+                        dispatched = true;
+                        threadCheckCount = 0; // clear
+                    } else {
+                        finishUrlQueue(urlQueue);
+                        log(logHelper, LogType.NO_URL_IN_QUEUE, crawlerContext, urlQueue, Integer.valueOf(threadCheckCount));
+                    }
+                } finally {
+                    if (!dispatched) {
+                        if (eventDriven) {
                             finishCrawling();
-                        } finally {
-                            log(logHelper, LogType.CLEANUP_CRAWLING, crawlerContext, urlQueue);
                         }
+                        taskSemaphore.release();
                     }
-                } else {
-                    log(logHelper, LogType.NO_URL_IN_QUEUE, crawlerContext, urlQueue, Integer.valueOf(threadCheckCount));
+                }
 
+                if (urlQueue == null && awaitPendingUrls(urlOfferCount)) {
+                    continue;
+                }
+                if (eventDriven) {
+                    if (urlQueue == null) {
+                        if (crawlerContext.isQuiescent(urlOfferCount)) {
+                            break;
+                        }
+                        crawlerContext.awaitUrlsOffered(urlOfferCount, crawlerContext.getIdleWaitMillis());
+                    }
+                } else if (!dispatched) {
                     if (crawlerContext.intervalController != null) {
                         crawlerContext.intervalController.delay(IntervalController.NO_URL_IN_QUEUE);
+                        crawlerContext.intervalController.delay(IntervalController.WAIT_NEW_URL);
                     }
-
                     threadCheckCount++;
                 }
+            }
+        } finally {
+            // wait for the running tasks
+            taskSemaphore.acquireUninterruptibly(maxTasks);
+        }
+    }
+
+    /**
+     * Processes a single URL as a short-lived task.
+     * The thread-local crawling parameters are set up for the task's thread and removed when the task finishes,
+     * so that nothing leaks into the next task run by the same carrier.
+     *
+     * @param urlQueue The URL queue entry to process.
+     */
+    protected void runTask(final UrlQueue<?> urlQueue) {
+        setUpThreadLocals();
+        try {
+            crawl(urlQueue);
+        } catch (final Throwable t) {
+            log(logHelper, LogType.SYSTEM_ERROR, t);
+        } finally {
+            crawlerContext.removeSitemaps();
+            clearThreadLocals();
+        }
+    }
+
+    /**
+     * Sets the crawler context and services to the thread-local storage of the current thread.
+     */
+    protected void setUpThreadLocals() {
+        CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+        CrawlingParameterUtil.setUrlQueueService(urlQueueService);
+        CrawlingParameterUtil.setDataService(dataService);
+    }
+
+    /**
+     * Removes the crawler context and services from the thread-local storage of the current thread.
+     */
+    protected void clearThreadLocals() {
+        CrawlingParameterUtil.setUrlQueue(null);
+        CrawlingParameterUtil.setCrawlerContext(null);
+        CrawlingParameterUtil.setUrlQueueService(null);
+        CrawlingParameterUtil.setDataService(null);
+    }
+
+    /**
+     * Crawls a single URL: accesses the content, processes the response and stores child URLs.
+     *
+     * @param urlQueue The URL queue entry to crawl.
+     * @return false if the caller should not wait for new URLs before the next poll, otherwise true.
+     */
+    protected boolean crawl(final UrlQueue<?> urlQueue) {
+        ResponseData responseData = null;
+        boolean handedOff = false;
+        boolean retrying = false;
+        log(logHelper, LogType.START_CRAWLING, crawlerContext, urlQueue);
+        try {
+            final CrawlerClient client = getClient(urlQueue.getUrl());
+            if (client == null) {
+                log(logHelper, LogType.UNSUPPORTED_URL_AT_CRAWLING_STARTED, crawlerContext, urlQueue);
+                return false;
+            }
+
+            startCrawling();
+
+            // set urlQueue to thread
+            CrawlingParameterUtil.setUrlQueue(urlQueue);
+
+            if (crawlerContext.intervalController != null) {
+                crawlerContext.intervalController.delay(IntervalController.PRE_PROCESSING);
+            }
+
+            final boolean contentUpdated = isContentUpdated(client, urlQueue);
+
+            if (contentUpdated) {
+                log(logHelper, LogType.GET_CONTENT, crawlerContext, urlQueue);
+                // access an url
+                final long startTime = SystemUtil.currentTimeMillis();
+                final RequestDataBuilder.RequestDataContext requestDataContext = RequestDataBuilder.newRequestData()
+                        .method(urlQueue.getMethod())
+                        .url(urlQueue.getUrl())
+                        .weight(urlQueue.getWeight());
+                if (client.isConditionalRequestEnabled()) {
+                    requestDataContext.ifModifiedSince(urlQueue.getLastModified()).ifNoneMatch(urlQueue.getEtag());
+                }
+                try {
+                    responseData = client.execute(requestDataContext.build());
+                } catch (final CrawlingAccessException e) {
+                    if (crawlerContext.intervalController != null) {
+                        crawlerContext.intervalController.recordAccess(urlQueue.getUrl(), null, e);
+                    }
+                    throw e;
+                }
+                responseData.setExecutionTime(SystemUtil.currentTimeMillis() - startTime);
+                if (crawlerContext.intervalController != null) {
+                    crawlerContext.intervalController.recordAccess(urlQueue.getUrl(), responseData, null);
+                }
+                responseData.setParentUrl(urlQueue.getParentUrl());
+                responseData.setSessionId(crawlerContext.sessionId);
+
+                if (responseData.getHttpStatusCode() == Constants.NOT_MODIFIED_STATUS_CODE) {
+                    log(logHelper, LogType.NOT_MODIFIED, crawlerContext, urlQueue);
+                    responseData.setStatus(Constants.NOT_MODIFIED_STATUS);
+                    if (responseData.getMimeType() == null) {
+                        responseData.setMimeType(getPreviousMimeType(urlQueue));
+                    }
+                    handedOff = processOrHandOff(urlQueue, responseData);
+                } else if (responseData.getRedirectLocation() == null) {
+                    log(logHelper, LogType.PROCESS_RESPONSE, crawlerContext, urlQueue, responseData);
+                    handedOff = processOrHandOff(urlQueue, responseData);
+                } else {
+                    log(logHelper, LogType.REDIRECT_LOCATION, crawlerContext, urlQueue, responseData);
+                    // redirect
+                    storeChildUrl(responseData.getRedirectLocation(), urlQueue.getUrl(), urlQueue.getWeight(),
+                            urlQueue.getDepth() == null ? 1 : urlQueue.getDepth() + 1);
+                }
+            }
+
+            log(logHelper, LogType.FINISHED_CRAWLING, crawlerContext, urlQueue);
+        } catch (final ChildUrlsException e) {
+            try {
+                final Set<RequestData> childUrlSet = e.getChildUrlList();
+                log(logHelper, LogType.PROCESS_CHILD_URLS_BY_EXCEPTION, crawlerContext, urlQueue, childUrlSet);
+                // add an url
+                storeChildUrls(childUrlSet, urlQueue.getUrl(), urlQueue.getDepth() == null ? 1 : urlQueue.getDepth() + 1);
+            } catch (final Exception e1) {
+                log(logHelper, LogType.CRAWLING_EXCEPTION, crawlerContext, urlQueue, e1);
+            }
+            if (noWaitOnFolder) {
+                return false;
+            }
+        } catch (final RetryLaterException e) {
+            // crawled again by a thread which polls after the retry time
+            crawlerContext.scheduleRetry(urlQueue, e.getRetryTime());
+            retrying = true;
+            log(logHelper, LogType.RETRY_LATER, crawlerContext, urlQueue, e);
+        } catch (final CrawlingAccessException e) {
+            log(logHelper, LogType.CRAWLING_ACCESS_EXCEPTION, crawlerContext, urlQueue, e);
+        } catch (final Throwable e) {
+            log(logHelper, LogType.CRAWLING_EXCEPTION, crawlerContext, urlQueue, e);
+        } finally {
+            try {
+                addSitemapsFromRobotsTxt(urlQueue);
 
-                // interval
+                if (responseData != null && !handedOff) {
+                    CloseableUtil.closeQuietly(responseData);
+                }
                 if (crawlerContext.intervalController != null) {
-                    crawlerContext.intervalController.delay(IntervalController.WAIT_NEW_URL);
+                    crawlerContext.intervalController.delay(IntervalController.POST_PROCESSING);
+                }
+                // remove urlQueue from thread
+                CrawlingParameterUtil.setUrlQueue(null);
+                if (!handedOff) {
+                    // the processing stage finishes a handed-off URL
+                    if (!retrying) {
+                        finishUrlQueue(urlQueue);
+                    }
+                    finishCrawling();
                 }
+            } finally {
+                log(logHelper, LogType.CLEANUP_CRAWLING, crawlerContext, urlQueue);
             }
-        } catch (final Throwable t) {
-            log(logHelper, LogType.SYSTEM_ERROR, t);
+        }
+        return true;
+    }
+
+    /**
+     * Processes the response on this thread, or hands it to the processing stage of the pipeline.
+     * A handed-off response is closed, and its URL is counted as active, until the processing stage has processed it.
+     * @param urlQueue The URL queue entry.
+     * @param responseData The response data to process.
+     * @return true if the response has been handed off, otherwise false.
+     */
+    protected boolean processOrHandOff(final UrlQueue<?> urlQueue, final ResponseData responseData) {
+        if (pipeline == null) {
+            processResponse(urlQueue, responseData);
+            return false;
+        }
+        pipeline.process(() -> processHandedOff(urlQueue, responseData));
+        return true;
+    }
+
+    /**
+     * Processes a response handed off by {@link #processOrHandOff(UrlQueue, ResponseData)} on a processing thread of the pipeline.
+     * The response is not processed if the crawler has been stopped.
+     * @param urlQueue The URL queue entry.
+     * @param responseData The response data to process.
+     */
+    protected void processHandedOff(final UrlQueue<?> urlQueue, final ResponseData responseData) {
+        setUpThreadLocals();
+        CrawlingParameterUtil.setDataService(pipeline.getDataService());
+        CrawlingParameterUtil.setUrlQueue(urlQueue);
+        boolean retrying = false;
+        try {
+            if (crawlerContext.getStatus() != CrawlerStatus.DONE) {
+                processResponse(urlQueue, responseData);
+            }
+        } catch (final ChildUrlsException e) {
+            try {
+                final Set<RequestData> childUrlSet = e.getChildUrlList();
+                log(logHelper, LogType.PROCESS_CHILD_URLS_BY_EXCEPTION, crawlerContext, urlQueue, childUrlSet);
+                // add an url
+                storeChildUrls(childUrlSet, urlQueue.getUrl(), urlQueue.getDepth() == null ? 1 : urlQueue.getDepth() + 1);
+            } catch (final Exception e1) {
+                log(logHelper, LogType.CRAWLING_EXCEPTION, crawlerContext, urlQueue, e1);
+            }
+        } catch (final RetryLaterException e) {
+            // crawled again by a thread which polls after the retry time
+            crawlerContext.scheduleRetry(urlQueue, e.getRetryTime());
+            retrying = true;
+            log(logHelper, LogType.RETRY_LATER, crawlerContext, urlQueue, e);
+        } catch (final CrawlingAccessException e) {
+            log(logHelper, LogType.CRAWLING_ACCESS_EXCEPTION, crawlerContext, urlQueue, e);
+        } catch (final Throwable e) {
+            log(logHelper, LogType.CRAWLING_EXCEPTION, crawlerContext, urlQueue, e);
         } finally {
-            // remove crawlerContext from thread
-            CrawlingParameterUtil.setCrawlerContext(null);
-            CrawlingParameterUtil.setUrlQueueService(null);
-            CrawlingParameterUtil.setDataService(null);
+            CloseableUtil.closeQuietly(responseData);
+            clearThreadLocals();
+            // the store stage finishes a URL queue whose access result it is storing
+            if (!retrying && !pipeline.isPending(urlQueue)) {
+                finishUrlQueue(urlQueue);
+            }
+            finishCrawling();
         }
-        log(logHelper, LogType.FINISHED_THREAD, crawlerContext);
     }
 
     /**
@@ -332,12 +667,14 @@ public class CrawlerThread implements Runnable {
 
     /**
      * Checks if the content has been updated since the last crawl.
+     * A client sending conditional requests checks it in the GET request itself,
+     * so no HEAD request is sent for such a client.
      * @param client The crawler client.
      * @param urlQueue The URL queue entry.
      * @return true if content is updated, false otherwise.
      */
     protected boolean isContentUpdated(final CrawlerClient client, final UrlQueue<?> urlQueue) {
-        if (urlQueue.getLastModified() != null) {
+        if (urlQueue.getLastModified() != null && !client.isConditionalRequestEnabled()) {
             log(logHelper, LogType.CHECK_LAST_MODIFIED, crawlerContext, urlQueue);
             final long startTime = SystemUtil.currentTimeMillis();
             ResponseData responseData = null;
@@ -368,6 +705,27 @@ public class CrawlerThread implements Runnable {
         return true;
     }
 
+    /**
+     * Returns the MIME type of the latest previous access result of the URL, for a 304 response without a Content-Type
+     * header, so that the rules which match on the MIME type still match the unchanged page.
+     * @param urlQueue The URL queue entry.
+     * @return The MIME type, or null if no previous access result has one.
+     */
+    protected String getPreviousMimeType(final UrlQueue<?> urlQueue) {
+        final List<AccessResult<?>> accessResultList = dataService.getAccessResultList(urlQueue.getUrl(), false);
+        if (accessResultList == null) {
+            return null;
+        }
+        AccessResult<?> previous = null;
+        for (final AccessResult<?> accessResult : accessResultList) {
+            if (accessResult.getMimeType() != null && (previous == null || previous.getCreateTime() == null
+                    || accessResult.getCreateTime() != null && accessResult.getCreateTime() > previous.getCreateTime())) {
+                previous = accessResult;
+            }
+        }
+        return previous == null ? null : previous.getMimeType();
+    }
+
     /**
      * Processes the response data using the appropriate rule processor.
      * @param urlQueue The URL queue entry.
@@ -463,7 +821,8 @@ public class CrawlerThread implements Runnable {
 
         // url filter
         if (crawlerContext.urlFilter.match(urlQueue.getUrl())) {
-            return true;
+            // robots.txt rules of the host
+            return crawlerContext.isAllowedByRobotsTxt(urlQueue.getUrl());
         }
 
         return false;
@@ -493,6 +852,24 @@ public class CrawlerThread implements Runnable {
         this.clientFactory = clientFactory;
     }
 
+    /**
+     * Sets the executor for processing each URL as a separate task.
+     * If null, URLs are processed sequentially on this thread.
+     * @param taskExecutor The executor, such as a virtual-thread-per-task executor.
+     */
+    public void setTaskExecutor(final ExecutorService taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Sets the pipeline which processes and stores the fetched responses.
+     * If null, responses are processed on the thread which fetched them.
+     * @param pipeline The pipeline.
+     */
+    public void setPipeline(final CrawlerPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
     /**
      * Sets the crawler context.
      * @param crawlerContext The CrawlerContext instance.
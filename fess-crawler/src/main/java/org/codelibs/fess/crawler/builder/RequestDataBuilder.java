@@ -134,6 +134,28 @@ public final class RequestDataBuilder {
             return this;
         }
 
+        /**
+         * Sets the last modified time of the previous access for a conditional request.
+         *
+         * @param ifModifiedSince the last modified time in milliseconds, or null
+         * @return the current RequestDataContext instance
+         */
+        public RequestDataContext ifModifiedSince(final Long ifModifiedSince) {
+            data.setIfModifiedSince(ifModifiedSince);
+            return this;
+        }
+
+        /**
+         * Sets the entity tag of the previous access for a conditional request.
+         *
+         * @param ifNoneMatch the entity tag, or null
+         * @return the current RequestDataContext instance
+         */
+        public RequestDataContext ifNoneMatch(final String ifNoneMatch) {
+            data.setIfNoneMatch(ifNoneMatch);
+            return this;
+        }
+
         /**
          * Builds and returns the constructed RequestData object.
          *
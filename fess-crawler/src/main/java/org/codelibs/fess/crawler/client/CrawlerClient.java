@@ -42,6 +42,19 @@ public interface CrawlerClient extends AutoCloseable {
      */
     ResponseData execute(RequestData data);
 
+    /**
+     * Returns true if this client sends conditional requests (If-None-Match/If-Modified-Since)
+     * built from {@link RequestData#getIfNoneMatch()} and {@link RequestData#getIfModifiedSince()}.
+     * In that case, an unchanged resource is reported as a response with the status code 304
+     * and the crawler does not need to check it with a HEAD request beforehand.
+     * This default implementation returns false.
+     *
+     * @return true if conditional requests are supported and enabled
+     */
+    default boolean isConditionalRequestEnabled() {
+        return false;
+    }
+
     /**
      * Closes the crawler client and releases any resources associated with it.
      * This default implementation does nothing.
@@ -18,15 +18,25 @@ package org.codelibs.fess.crawler.client;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.core.lang.SystemUtil;
 import org.codelibs.core.lang.ThreadUtil;
 import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.exception.CircuitBreakerOpenException;
 import org.codelibs.fess.crawler.exception.MaxLengthExceededException;
 import org.codelibs.fess.crawler.exception.MultipleCrawlingAccessException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
+import org.codelibs.fess.crawler.util.UrlUtil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * A fault-tolerant wrapper for CrawlerClient that implements retry logic for failed requests.
@@ -39,7 +49,11 @@ import org.codelibs.fess.crawler.exception.MultipleCrawlingAccessException;
  * <p>Key features:</p>
  * <ul>
  *   <li>Configurable maximum retry attempts</li>
- *   <li>Adjustable interval between retries</li>
+ *   <li>Adjustable interval between retries, optionally growing exponentially with random jitter</li>
+ *   <li>Non-blocking retries: a failed attempt can be thrown as {@link RetryLaterException} with the time of
+ *   the next attempt, so that the caller re-enqueues the URL instead of sleeping</li>
+ *   <li>Per-host circuit breakers: after consecutive failures, requests to the host fail immediately until
+ *   a trial request succeeds</li>
  *   <li>Exception tracking and aggregation</li>
  *   <li>Request lifecycle monitoring through listener</li>
  * </ul>
@@ -48,6 +62,7 @@ import org.codelibs.fess.crawler.exception.MultipleCrawlingAccessException;
  * <ul>
  *   <li>Retry up to 5 times</li>
  *   <li>Wait 500ms between retries</li>
+ *   <li>Retry in place and keep no circuit breakers</li>
  * </ul>
  *
  */
@@ -65,9 +80,34 @@ public class FaultTolerantClient implements CrawlerClient {
     /** Interval between retry attempts in milliseconds */
     protected long retryInterval = 500;
 
+    /** Factor by which the interval grows after each failed attempt; 1 keeps it fixed */
+    protected double backoffMultiplier = 1.0;
+
+    /** Upper limit of the interval between retry attempts in milliseconds; 0 or less for no limit */
+    protected long maxRetryInterval = 60000L;
+
+    /** Fraction of the interval, between 0 and 1, by which each wait is randomly shortened */
+    protected double retryJitter = 0.0;
+
+    /** Whether a failed attempt is thrown as {@link RetryLaterException} instead of being retried in place */
+    protected boolean nonBlockingRetry = false;
+
+    /** Number of consecutive failed attempts which opens the circuit breaker of a host; 0 or less to disable */
+    protected int circuitBreakerFailureThreshold = 0;
+
+    /** Time in milliseconds an open circuit breaker rejects requests before it lets a trial request through */
+    protected long circuitBreakerOpenMillis = 30000L;
+
     /** Request listener for monitoring request lifecycle */
     protected RequestListener listener;
 
+    /** Circuit breakers keyed by scheme://host[:port] */
+    protected final Cache<String, CircuitBreaker> circuitBreakers =
+            CacheBuilder.newBuilder().expireAfterAccess(1L, TimeUnit.HOURS).build();
+
+    /** Failed attempts of the URLs being retried in non-blocking retry mode */
+    protected final Cache<String, Integer> attemptCounts = CacheBuilder.newBuilder().expireAfterAccess(1L, TimeUnit.HOURS).build();
+
     /**
      * Constructs a new FaultTolerantClient.
      */
@@ -87,6 +127,9 @@ public class FaultTolerantClient implements CrawlerClient {
 
     /**
      * Executes the request with retry logic.
+     * If the circuit breaker of the request's host is open, the request is not sent and fails immediately.
+     * In non-blocking retry mode, a failed attempt throws {@link RetryLaterException} instead of waiting
+     * for the next attempt, and the attempts of a URL are counted across calls.
      * @param request The request data.
      * @return The response data.
      */
@@ -98,21 +141,47 @@ public class FaultTolerantClient implements CrawlerClient {
 
         List<Exception> exceptionList = null;
         try {
-            int count = 0;
+            final String url = request.getUrl();
+            final CircuitBreaker circuitBreaker = getCircuitBreaker(url);
+            int count = nonBlockingRetry ? getAttemptCount(url) : 0;
             while (count < maxRetryCount) {
+                if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+                    final CircuitBreakerOpenException e =
+                            new CircuitBreakerOpenException("Circuit breaker is open for " + circuitBreaker.host + ": " + url);
+                    if (exceptionList == null) {
+                        exceptionList = new ArrayList<>();
+                    }
+                    exceptionList.add(e);
+                    count++;
+                    if (nonBlockingRetry && count < maxRetryCount) {
+                        // while half-open, the trial request may take a while
+                        final long retryTime =
+                                Math.max(circuitBreaker.getOpenUntil(), SystemUtil.currentTimeMillis() + getBackoffInterval(count));
+                        throw retryLater(url, e, retryTime, count);
+                    }
+                    break;
+                }
+
                 if (listener != null) {
                     listener.onRequest(this, request, count);
                 }
 
                 try {
-                    return client.execute(request);
+                    final ResponseData responseData = client.execute(request);
+                    onSuccess(url, circuitBreaker);
+                    return responseData;
                 } catch (final MaxLengthExceededException e) {
+                    onSuccess(url, circuitBreaker);
                     throw e;
                 } catch (final Exception e) {
                     if (logger.isDebugEnabled()) {
                         logger.debug("Failed to access to {}", request.getUrl(), e);
                     }
 
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onFailure();
+                    }
+
                     if (listener != null) {
                         listener.onException(this, request, count, e);
                     }
@@ -121,10 +190,30 @@ public class FaultTolerantClient implements CrawlerClient {
                         exceptionList = new ArrayList<>();
                     }
                     exceptionList.add(e);
+                } catch (final Error e) {
+                    // the attempt did not complete, so a half-open breaker must not keep waiting for its trial request
+                    if (circuitBreaker != null) {
+                        circuitBreaker.onFailure();
+                    }
+                    throw e;
                 }
 
-                ThreadUtil.sleep(retryInterval);
                 count++;
+                if (count < maxRetryCount) {
+                    final long interval = getBackoffInterval(count);
+                    if (nonBlockingRetry) {
+                        throw retryLater(url, exceptionList.get(exceptionList.size() - 1), SystemUtil.currentTimeMillis() + interval,
+                                count);
+                    }
+                    ThreadUtil.sleep(interval);
+                }
+            }
+            if (nonBlockingRetry) {
+                attemptCounts.invalidate(url);
+            }
+            if (exceptionList == null) {
+                // maxRetryCount <= 0
+                exceptionList = new ArrayList<>();
             }
             final String message = "Failed to access to " + request.getUrl()
                     + exceptionList.stream().map(e -> "; " + e.getMessage()).collect(Collectors.joining());
@@ -136,6 +225,109 @@ public class FaultTolerantClient implements CrawlerClient {
         }
     }
 
+    /**
+     * Records a successful attempt.
+     *
+     * @param url the requested URL
+     * @param circuitBreaker the circuit breaker of the host, or null if disabled
+     */
+    protected void onSuccess(final String url, final CircuitBreaker circuitBreaker) {
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess();
+        }
+        if (nonBlockingRetry) {
+            attemptCounts.invalidate(url);
+        }
+    }
+
+    /**
+     * Records a failed attempt of a URL and creates the exception which asks the caller to retry it later.
+     *
+     * @param url the requested URL
+     * @param cause the exception of the failed attempt
+     * @param retryTime the time in milliseconds since the epoch before which the URL should not be retried
+     * @param count the number of failed attempts so far
+     * @return the exception to throw
+     */
+    protected RetryLaterException retryLater(final String url, final Exception cause, final long retryTime, final int count) {
+        attemptCounts.put(url, count);
+        return new RetryLaterException("Failed to access to " + url + " (attempt " + count + "/" + maxRetryCount + "), retry after "
+                + Math.max(0L, retryTime - SystemUtil.currentTimeMillis()) + "ms; " + cause.getMessage(), cause, retryTime, count);
+    }
+
+    /**
+     * Returns the number of failed attempts of a URL recorded in non-blocking retry mode.
+     *
+     * @param url the URL
+     * @return the number of attempts
+     */
+    protected int getAttemptCount(final String url) {
+        final Integer count = attemptCounts.getIfPresent(url);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the wait before the next attempt: {@link #retryInterval} multiplied by {@link #backoffMultiplier}
+     * for each failed attempt after the first, limited by {@link #maxRetryInterval}, and shortened by a random
+     * fraction of up to {@link #retryJitter} so that retries against the same host spread out.
+     *
+     * @param count the number of failed attempts so far (1 or more)
+     * @return the wait in milliseconds
+     */
+    protected long getBackoffInterval(final int count) {
+        double interval = retryInterval * Math.pow(Math.max(1.0, backoffMultiplier), Math.max(0, count - 1));
+        if (maxRetryInterval > 0) {
+            interval = Math.min(interval, maxRetryInterval);
+        }
+        if (retryJitter > 0) {
+            interval *= 1.0 - Math.min(1.0, retryJitter) * ThreadLocalRandom.current().nextDouble();
+        }
+        return (long) interval;
+    }
+
+    /**
+     * Returns the circuit breaker of the host of a URL.
+     *
+     * @param url the URL
+     * @return the circuit breaker, or null if circuit breakers are disabled or the URL has no host
+     */
+    protected CircuitBreaker getCircuitBreaker(final String url) {
+        if (circuitBreakerFailureThreshold <= 0 || StringUtil.isBlank(url)) {
+            return null;
+        }
+        final String host = UrlUtil.getHost(url);
+        try {
+            return circuitBreakers.get(host, () -> new CircuitBreaker(host));
+        } catch (final Exception e) {
+            logger.warn("Could not get the circuit breaker of {}", host, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the state of the circuit breaker of the host of a URL.
+     *
+     * @param url the URL, or its scheme://host[:port] part
+     * @return the state, or {@link CircuitState#CLOSED} if the host has no circuit breaker
+     */
+    public CircuitState getCircuitState(final String url) {
+        if (StringUtil.isBlank(url)) {
+            return CircuitState.CLOSED;
+        }
+        final CircuitBreaker circuitBreaker = circuitBreakers.getIfPresent(UrlUtil.getHost(url));
+        return circuitBreaker == null ? CircuitState.CLOSED : circuitBreaker.getState();
+    }
+
+    /**
+     * Returns whether the underlying CrawlerClient sends conditional requests.
+     *
+     * @return true if conditional requests are enabled in the underlying client
+     */
+    @Override
+    public boolean isConditionalRequestEnabled() {
+        return client.isConditionalRequestEnabled();
+    }
+
     /**
      * Closes the underlying CrawlerClient and releases any resources associated with it.
      *
@@ -194,6 +386,102 @@ public class FaultTolerantClient implements CrawlerClient {
         this.retryInterval = retryInterval;
     }
 
+    /**
+     * Returns the factor by which the retry interval grows after each failed attempt.
+     * @return The factor; 1 keeps the interval fixed.
+     */
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * Sets the factor by which the retry interval grows after each failed attempt.
+     * @param backoffMultiplier The factor; 1 keeps the interval fixed.
+     */
+    public void setBackoffMultiplier(final double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    /**
+     * Returns the upper limit of the retry interval.
+     * @return The upper limit in milliseconds; 0 or less for no limit.
+     */
+    public long getMaxRetryInterval() {
+        return maxRetryInterval;
+    }
+
+    /**
+     * Sets the upper limit of the retry interval.
+     * @param maxRetryInterval The upper limit in milliseconds; 0 or less for no limit.
+     */
+    public void setMaxRetryInterval(final long maxRetryInterval) {
+        this.maxRetryInterval = maxRetryInterval;
+    }
+
+    /**
+     * Returns the fraction of the retry interval by which each wait is randomly shortened.
+     * @return The fraction between 0 and 1.
+     */
+    public double getRetryJitter() {
+        return retryJitter;
+    }
+
+    /**
+     * Sets the fraction of the retry interval by which each wait is randomly shortened.
+     * @param retryJitter The fraction between 0 and 1.
+     */
+    public void setRetryJitter(final double retryJitter) {
+        this.retryJitter = retryJitter;
+    }
+
+    /**
+     * Returns whether a failed attempt is thrown as RetryLaterException instead of being retried in place.
+     * @return True for non-blocking retries.
+     */
+    public boolean isNonBlockingRetry() {
+        return nonBlockingRetry;
+    }
+
+    /**
+     * Sets whether a failed attempt is thrown as RetryLaterException instead of being retried in place.
+     * @param nonBlockingRetry True for non-blocking retries.
+     */
+    public void setNonBlockingRetry(final boolean nonBlockingRetry) {
+        this.nonBlockingRetry = nonBlockingRetry;
+    }
+
+    /**
+     * Returns the number of consecutive failed attempts which opens the circuit breaker of a host.
+     * @return The number of attempts; 0 or less disables circuit breakers.
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed attempts which opens the circuit breaker of a host.
+     * @param circuitBreakerFailureThreshold The number of attempts; 0 or less disables circuit breakers.
+     */
+    public void setCircuitBreakerFailureThreshold(final int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Returns the time an open circuit breaker rejects requests before a trial request.
+     * @return The time in milliseconds.
+     */
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+
+    /**
+     * Sets the time an open circuit breaker rejects requests before a trial request.
+     * @param circuitBreakerOpenMillis The time in milliseconds.
+     */
+    public void setCircuitBreakerOpenMillis(final long circuitBreakerOpenMillis) {
+        this.circuitBreakerOpenMillis = circuitBreakerOpenMillis;
+    }
+
     /**
      * Returns the request listener.
      * @return The RequestListener instance.
@@ -210,6 +498,123 @@ public class FaultTolerantClient implements CrawlerClient {
         this.listener = listener;
     }
 
+    /**
+     * The state of a circuit breaker.
+     */
+    public enum CircuitState {
+        /** Requests are sent. */
+        CLOSED,
+        /** Requests are rejected. */
+        OPEN,
+        /** A trial request is sent to find out whether the host has recovered. */
+        HALF_OPEN
+    }
+
+    /**
+     * The circuit breaker of a host. It opens after {@link #circuitBreakerFailureThreshold} consecutive failed
+     * attempts and rejects requests for {@link #circuitBreakerOpenMillis}. Then it lets one trial request through:
+     * if it succeeds, the breaker closes, and otherwise it opens again.
+     */
+    protected class CircuitBreaker {
+
+        /** The host (scheme://host[:port]). */
+        protected final String host;
+
+        /** The current state. */
+        protected CircuitState state = CircuitState.CLOSED;
+
+        /** The number of consecutive failed attempts while closed. */
+        protected int failureCount;
+
+        /** The time until which requests are rejected while open. */
+        protected long openUntil;
+
+        /** Whether the trial request is in flight while half-open. */
+        protected boolean trialInFlight;
+
+        /**
+         * Creates the circuit breaker of a host.
+         *
+         * @param host the host
+         */
+        protected CircuitBreaker(final String host) {
+            this.host = host;
+        }
+
+        /**
+         * Checks whether a request may be sent, moving from open to half-open when the open time is over.
+         *
+         * @return true if the request may be sent
+         */
+        protected synchronized boolean tryAcquire() {
+            switch (state) {
+            case OPEN:
+                if (SystemUtil.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+                trialInFlight = true;
+                if (logger.isInfoEnabled()) {
+                    logger.info("Circuit breaker of {} is half-open.", host);
+                }
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+            }
+        }
+
+        /**
+         * Records a successful attempt and closes the breaker.
+         */
+        protected synchronized void onSuccess() {
+            if (state != CircuitState.CLOSED && logger.isInfoEnabled()) {
+                logger.info("Circuit breaker of {} is closed.", host);
+            }
+            state = CircuitState.CLOSED;
+            failureCount = 0;
+            trialInFlight = false;
+        }
+
+        /**
+         * Records a failed attempt, opening the breaker if the trial request failed or too many attempts failed.
+         */
+        protected synchronized void onFailure() {
+            if (state == CircuitState.HALF_OPEN || ++failureCount >= circuitBreakerFailureThreshold) {
+                state = CircuitState.OPEN;
+                openUntil = SystemUtil.currentTimeMillis() + circuitBreakerOpenMillis;
+                failureCount = 0;
+                trialInFlight = false;
+                if (logger.isInfoEnabled()) {
+                    logger.info("Circuit breaker of {} is open for {}ms.", host, circuitBreakerOpenMillis);
+                }
+            }
+        }
+
+        /**
+         * Returns the current state.
+         *
+         * @return the state
+         */
+        protected synchronized CircuitState getState() {
+            return state;
+        }
+
+        /**
+         * Returns the time until which requests are rejected.
+         *
+         * @return the time in milliseconds since the epoch
+         */
+        protected synchronized long getOpenUntil() {
+            return openUntil;
+        }
+    }
+
     /**
      * Interface for listening to request lifecycle events.
      */
@@ -0,0 +1,483 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.http;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.compress.compressors.brotli.BrotliCompressorInputStream;
+import org.apache.commons.compress.compressors.brotli.BrotliUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+
+/**
+ * Decodes compressed HTTP response bodies for {@link Hc5HttpClient}.
+ *
+ * <p>The decoder provides the Accept-Encoding value of the requests and
+ * decompresses gzip, deflate, br and zstd bodies as a stream, so that the
+ * length limit and the spill to a temporary file apply to the decompressed
+ * content. br and zstd are available only when their decoders are on the
+ * class path. A body whose decompressed size grows beyond
+ * {@code maxCompressionRatio} times the received size is rejected once it
+ * exceeds {@code ratioCheckThreshold} bytes.</p>
+ *
+ * <p>The received and decompressed bytes are counted per Content-Encoding.</p>
+ */
+public class ContentDecoder {
+
+    /** The gzip content coding. */
+    public static final String GZIP = "gzip";
+
+    /** The legacy alias of the gzip content coding. */
+    public static final String X_GZIP = "x-gzip";
+
+    /** The deflate content coding. */
+    public static final String DEFLATE = "deflate";
+
+    /** The Brotli content coding. */
+    public static final String BR = "br";
+
+    /** The Zstandard content coding. */
+    public static final String ZSTD = "zstd";
+
+    /** The identity content coding. */
+    public static final String IDENTITY = "identity";
+
+    /** The Accept-Encoding header value. */
+    protected String acceptEncoding;
+
+    /** The maximum ratio of decompressed bytes to received bytes. */
+    protected double maxCompressionRatio = 100.0;
+
+    /** The decompressed size from which the compression ratio is checked. */
+    protected long ratioCheckThreshold = 1024L * 1024L;
+
+    /** The statistics by content encoding. */
+    protected final Map<String, EncodingStats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new ContentDecoder accepting all supported encodings.
+     */
+    public ContentDecoder() {
+        final List<String> list = new ArrayList<>();
+        list.add(GZIP);
+        list.add(DEFLATE);
+        if (BrotliUtils.isBrotliCompressionAvailable()) {
+            list.add(BR);
+        }
+        if (ZstdUtils.isZstdCompressionAvailable()) {
+            list.add(ZSTD);
+        }
+        acceptEncoding = String.join(", ", list);
+    }
+
+    /**
+     * Returns the Accept-Encoding header value.
+     *
+     * @return the Accept-Encoding value
+     */
+    public String getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    /**
+     * Returns true if the Content-Encoding value has a content coding other than identity.
+     *
+     * @param contentEncoding the Content-Encoding header value
+     * @return true if the body is encoded
+     */
+    public boolean isEncoded(final String contentEncoding) {
+        return !parseCodings(contentEncoding).isEmpty();
+    }
+
+    /**
+     * Returns true if every coding of the Content-Encoding value can be decoded.
+     *
+     * @param contentEncoding the Content-Encoding header value
+     * @return true if the body can be decoded
+     */
+    public boolean isSupported(final String contentEncoding) {
+        final List<String> codings = parseCodings(contentEncoding);
+        if (codings.isEmpty()) {
+            return false;
+        }
+        for (final String coding : codings) {
+            switch (coding) {
+            case GZIP, X_GZIP, DEFLATE:
+                break;
+            case BR:
+                if (!BrotliUtils.isBrotliCompressionAvailable()) {
+                    return false;
+                }
+                break;
+            case ZSTD:
+                if (!ZstdUtils.isZstdCompressionAvailable()) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps the response body with the decoders of the Content-Encoding value.
+     * The codings are removed in the reverse order of their application.
+     *
+     * @param contentEncoding the Content-Encoding header value
+     * @param in the received response body
+     * @param url the URL of the response
+     * @return the decompressed response body
+     * @throws IOException if the decoder cannot read the stream header
+     */
+    public InputStream decode(final String contentEncoding, final InputStream in, final String url) throws IOException {
+        final List<String> codings = parseCodings(contentEncoding);
+        final CountingInputStream encodedStream = new CountingInputStream(in);
+        InputStream decodedStream = encodedStream;
+        for (int i = codings.size() - 1; i >= 0; i--) {
+            decodedStream = createDecoder(codings.get(i), decodedStream);
+        }
+        return new DecodedInputStream(decodedStream, encodedStream, String.join(",", codings), url);
+    }
+
+    /**
+     * Creates the decoder of a content coding.
+     *
+     * @param coding the content coding in lower case
+     * @param in the encoded stream
+     * @return the decoded stream
+     * @throws IOException if the decoder cannot read the stream header
+     */
+    protected InputStream createDecoder(final String coding, final InputStream in) throws IOException {
+        return switch (coding) {
+        case GZIP, X_GZIP -> new GZIPInputStream(in, 8192);
+        case DEFLATE -> createInflaterInputStream(in);
+        case BR -> new BrotliCompressorInputStream(in);
+        case ZSTD -> new ZstdCompressorInputStream(in);
+        default -> throw new CrawlingAccessException("Unsupported content encoding: " + coding);
+        };
+    }
+
+    /**
+     * Creates the decoder of the deflate coding. Some servers send raw deflate data
+     * instead of the zlib format, so the zlib header is checked first.
+     *
+     * @param in the encoded stream
+     * @return the decoded stream
+     * @throws IOException if the stream cannot be read
+     */
+    protected InputStream createInflaterInputStream(final InputStream in) throws IOException {
+        final BufferedInputStream bis = new BufferedInputStream(in, 8192);
+        bis.mark(2);
+        final int b0 = bis.read();
+        final int b1 = bis.read();
+        bis.reset();
+        final boolean zlib = b0 >= 0 && b1 >= 0 && (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+        final Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(bis, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Splits the Content-Encoding value into content codings.
+     *
+     * @param contentEncoding the Content-Encoding header value
+     * @return the codings in lower case, without identity
+     */
+    protected List<String> parseCodings(final String contentEncoding) {
+        if (StringUtil.isBlank(contentEncoding)) {
+            return Collections.emptyList();
+        }
+        final List<String> codings = new ArrayList<>();
+        for (final String value : contentEncoding.split(",")) {
+            final String coding = value.trim().toLowerCase(Locale.ROOT);
+            if (!coding.isEmpty() && !IDENTITY.equals(coding)) {
+                codings.add(coding);
+            }
+        }
+        return codings;
+    }
+
+    /**
+     * Checks the decompressed size against the received size.
+     *
+     * @param encodedBytes the number of received bytes
+     * @param decodedBytes the number of decompressed bytes
+     * @param url the URL of the response
+     */
+    protected void checkCompressionRatio(final long encodedBytes, final long decodedBytes, final String url) {
+        if (decodedBytes > ratioCheckThreshold && decodedBytes > encodedBytes * maxCompressionRatio) {
+            throw new CrawlingAccessException("The decompressed content (" + decodedBytes + " byte from " + encodedBytes
+                    + " byte) is over the compression ratio " + maxCompressionRatio + ". The url is " + url);
+        }
+    }
+
+    /**
+     * Returns the number of responses decoded with the content encoding.
+     *
+     * @param contentEncoding the content encoding, such as gzip
+     * @return the number of responses
+     */
+    public long getResponseCount(final String contentEncoding) {
+        final EncodingStats stats = statsMap.get(contentEncoding);
+        return stats == null ? 0 : stats.responseCount.sum();
+    }
+
+    /**
+     * Returns the number of bytes received with the content encoding.
+     *
+     * @param contentEncoding the content encoding, such as gzip
+     * @return the number of received bytes
+     */
+    public long getEncodedBytes(final String contentEncoding) {
+        final EncodingStats stats = statsMap.get(contentEncoding);
+        return stats == null ? 0 : stats.encodedBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes decompressed from the content encoding.
+     *
+     * @param contentEncoding the content encoding, such as gzip
+     * @return the number of decompressed bytes
+     */
+    public long getDecodedBytes(final String contentEncoding) {
+        final EncodingStats stats = statsMap.get(contentEncoding);
+        return stats == null ? 0 : stats.decodedBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes not transferred thanks to the content encoding.
+     *
+     * @param contentEncoding the content encoding, such as gzip
+     * @return the saved bytes
+     */
+    public long getSavedBytes(final String contentEncoding) {
+        return getDecodedBytes(contentEncoding) - getEncodedBytes(contentEncoding);
+    }
+
+    /**
+     * Returns the content encodings which have statistics.
+     *
+     * @return the content encodings
+     */
+    public List<String> getContentEncodings() {
+        return new ArrayList<>(statsMap.keySet());
+    }
+
+    /**
+     * Sets the Accept-Encoding header value.
+     *
+     * @param acceptEncoding the Accept-Encoding value
+     */
+    public void setAcceptEncoding(final String acceptEncoding) {
+        this.acceptEncoding = acceptEncoding;
+    }
+
+    /**
+     * Sets the maximum ratio of decompressed bytes to received bytes.
+     *
+     * @param maxCompressionRatio the maximum ratio
+     */
+    public void setMaxCompressionRatio(final double maxCompressionRatio) {
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    /**
+     * Sets the decompressed size from which the compression ratio is checked.
+     *
+     * @param ratioCheckThreshold the size in bytes
+     */
+    public void setRatioCheckThreshold(final long ratioCheckThreshold) {
+        this.ratioCheckThreshold = ratioCheckThreshold;
+    }
+
+    /**
+     * The byte counts of a content encoding.
+     */
+    protected static class EncodingStats {
+
+        /** The number of responses. */
+        protected final LongAdder responseCount = new LongAdder();
+
+        /** The number of received bytes. */
+        protected final LongAdder encodedBytes = new LongAdder();
+
+        /** The number of decompressed bytes. */
+        protected final LongAdder decodedBytes = new LongAdder();
+
+        /**
+         * Creates a new statistics holder.
+         */
+        protected EncodingStats() {
+            // NOP
+        }
+    }
+
+    /**
+     * Counts the bytes read from the wrapped stream.
+     */
+    protected static class CountingInputStream extends FilterInputStream {
+
+        /** The number of read bytes. */
+        protected long count;
+
+        /**
+         * Creates a new counting stream.
+         *
+         * @param in the stream to count
+         */
+        protected CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * The decompressed stream, which checks the compression ratio while reading
+     * and records the statistics when it is closed.
+     */
+    protected class DecodedInputStream extends FilterInputStream {
+
+        /** The received stream. */
+        protected final CountingInputStream encodedStream;
+
+        /** The content encoding for the statistics. */
+        protected final String contentEncoding;
+
+        /** The URL of the response. */
+        protected final String url;
+
+        /** The number of decompressed bytes. */
+        protected long decodedBytes;
+
+        /** Whether the stream has been closed. */
+        protected boolean closed;
+
+        /**
+         * Creates a new decompressed stream.
+         *
+         * @param in the decompressing stream
+         * @param encodedStream the received stream
+         * @param contentEncoding the content encoding for the statistics
+         * @param url the URL of the response
+         */
+        protected DecodedInputStream(final InputStream in, final CountingInputStream encodedStream, final String contentEncoding,
+                final String url) {
+            super(in);
+            this.encodedStream = encodedStream;
+            this.contentEncoding = contentEncoding;
+            this.url = url;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                decodedBytes++;
+                checkCompressionRatio(encodedStream.count, decodedBytes, url);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                decodedBytes += n;
+                checkCompressionRatio(encodedStream.count, decodedBytes, url);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            decodedBytes += skipped;
+            checkCompressionRatio(encodedStream.count, decodedBytes, url);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                final EncodingStats stats = statsMap.computeIfAbsent(contentEncoding, k -> new EncodingStats());
+                stats.responseCount.increment();
+                stats.encodedBytes.add(encodedStream.count);
+                stats.decodedBytes.add(decodedBytes);
+            }
+            super.close();
+        }
+    }
+}
@@ -113,6 +113,7 @@ import org.apache.http.auth.NTCredentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.codelibs.fess.crawler.client.http.config.CredentialsConfig;
 import org.codelibs.fess.crawler.client.http.config.WebAuthenticationConfig;
+import org.codelibs.fess.crawler.client.http.conn.DnsCache;
 import org.codelibs.fess.crawler.client.http.conn.IdnDnsResolver;
 import org.codelibs.fess.crawler.client.http.form.Hc4FormScheme;
 import org.codelibs.fess.crawler.entity.ResponseData;
@@ -124,6 +125,7 @@ import org.codelibs.fess.crawler.helper.ContentLengthHelper;
 import org.codelibs.fess.crawler.helper.MimeTypeHelper;
 import org.codelibs.fess.crawler.helper.RobotsTxtHelper;
 import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.codelibs.fess.crawler.util.UrlUtil;
 
 import jakarta.annotation.Resource;
 
@@ -235,6 +237,9 @@ public class Hc4HttpClient extends HcHttpClient {
     /** Whether to use robots.txt allow rules */
     protected boolean useRobotsTxtAllows = true;
 
+    /** Whether robots.txt rules are also added to the URL filter as regular expressions */
+    protected boolean robotsTxtUrlFilterEnabled = true;
+
     /** Credentials provider for authentication */
     protected CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
 
@@ -284,6 +289,13 @@ public class Hc4HttpClient extends HcHttpClient {
         if (robotsTxtHelper != null) {
             robotsTxtHelper.setEnabled(robotsTxtEnabled);
         }
+        robotsTxtUrlFilterEnabled = getInitParameter(ROBOTS_TXT_URL_FILTER_ENABLED_PROPERTY, robotsTxtUrlFilterEnabled, Boolean.class);
+
+        // dns cache
+        final DnsCache dnsCache = getInitParameter(DNS_CACHE_PROPERTY, null, DnsCache.class);
+        if (dnsCache != null && dnsResolver instanceof final IdnDnsResolver idnDnsResolver) {
+            idnDnsResolver.setDnsCache(dnsCache);
+        }
 
         // httpclient
         final RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
@@ -574,13 +586,7 @@ public class Hc4HttpClient extends HcHttpClient {
             return;
         }
 
-        final int idx = url.indexOf('/', url.indexOf("://") + 3);
-        String hostUrl;
-        if (idx >= 0) {
-            hostUrl = url.substring(0, idx);
-        } else {
-            hostUrl = url;
-        }
+        final String hostUrl = UrlUtil.getHost(url);
         final String robotTxtUrl = hostUrl + "/robots.txt";
 
         // Atomically check-and-add: LruHashSet#add() (via the synchronized set wrapping it in
@@ -638,7 +644,17 @@ public class Hc4HttpClient extends HcHttpClient {
 
                         final RobotsTxt.Directive directive = robotsTxt.getMatchedDirective(userAgent);
                         if (directive != null) {
+                            final int crawlDelay = directive.getCrawlDelay();
+                            if (crawlDelay > 0) {
+                                crawlerContext.setCrawlDelay(hostUrl, crawlDelay * 1000L);
+                                if (logger.isInfoEnabled()) {
+                                    logger.info("Crawl-delay: {} sec for {}", crawlDelay, hostUrl);
+                                }
+                            }
                             if (useRobotsTxtDisallows) {
+                                crawlerContext.setRobotsTxtDirective(hostUrl, useRobotsTxtAllows ? directive : directive.copyWithoutAllows());
+                            }
+                            if (robotsTxtUrlFilterEnabled && useRobotsTxtDisallows) {
                                 for (String urlPattern : directive.getDisallows()) {
                                     if (StringUtil.isNotBlank(urlPattern)) {
                                         urlPattern = convertRobotsTxtPatternToRegex(urlPattern);
@@ -650,7 +666,7 @@ public class Hc4HttpClient extends HcHttpClient {
                                     }
                                 }
                             }
-                            if (useRobotsTxtAllows) {
+                            if (robotsTxtUrlFilterEnabled && useRobotsTxtAllows) {
                                 for (String urlPattern : directive.getAllows()) {
                                     if (StringUtil.isNotBlank(urlPattern)) {
                                         urlPattern = convertRobotsTxtPatternToRegex(urlPattern);
@@ -1286,6 +1302,16 @@ public class Hc4HttpClient extends HcHttpClient {
         this.useRobotsTxtAllows = useRobotsTxtAllows;
     }
 
+    /**
+     * Sets whether robots.txt rules are also added to the URL filter as regular expressions.
+     * The rules are always checked through the per-host directive kept in the crawler context.
+     *
+     * @param robotsTxtUrlFilterEnabled True to add the rules to the URL filter, false otherwise
+     */
+    public void setRobotsTxtUrlFilterEnabled(final boolean robotsTxtUrlFilterEnabled) {
+        this.robotsTxtUrlFilterEnabled = robotsTxtUrlFilterEnabled;
+    }
+
     /**
      * Sets the credentials provider for authentication.
      *
@@ -0,0 +1,957 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.HostnameVerificationPolicy;
+import org.apache.hc.client5.http.ssl.TrustAllStrategy;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.ssl.SSLContextBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.io.CloseableUtil;
+import org.codelibs.core.io.CopyUtil;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.entity.RequestData;
+import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.codelibs.fess.crawler.exception.MaxLengthExceededException;
+
+/**
+ * Hc5AsyncHttpClient is an HTTP client implementation using the asynchronous API of
+ * Apache HttpComponents 5.x. Requests are executed by {@link CloseableHttpAsyncClient}
+ * on a small number of I/O reactor threads, and HTTP/2 is negotiated by ALPN for
+ * HTTPS hosts which support it, so that requests to the same host are multiplexed
+ * on one connection.
+ *
+ * <p>{@link #executeAsync(RequestData)} returns without waiting for the response, and
+ * {@link #execute(RequestData)} waits for it, so this client can replace {@link Hc5HttpClient}.
+ * The response body is written to a {@link DeferredFileOutputStream} on the response executor,
+ * not on the I/O reactor threads, and the robots.txt, content length and redirect handling is the
+ * same as {@link Hc5HttpClient}. robots.txt and form-based authentication use the classic client of
+ * {@link Hc5HttpClient}, so it is initialized as well, and NTLM authentication is not supported by
+ * the asynchronous requests.</p>
+ *
+ * <p>The crawler threads call {@link #execute(RequestData)}, so each of them still waits for its
+ * response; {@link #executeAsync(RequestData)} is for callers which keep several requests in flight.</p>
+ *
+ * @see Hc5HttpClient
+ */
+public class Hc5AsyncHttpClient extends Hc5HttpClient {
+
+    /** Logger instance for this class */
+    private static final Logger logger = LogManager.getLogger(Hc5AsyncHttpClient.class);
+
+    /** Property name for the HTTP version policy (FORCE_HTTP_1, FORCE_HTTP_2 or NEGOTIATE) */
+    public static final String HTTP_VERSION_POLICY_PROPERTY = "httpVersionPolicy";
+
+    /** Property name for the number of I/O reactor threads */
+    public static final String IO_THREAD_COUNT_PROPERTY = "ioThreadCount";
+
+    /** Property name for the number of threads which write and inspect the response bodies */
+    public static final String RESPONSE_THREAD_COUNT_PROPERTY = "responseThreadCount";
+
+    /** Property name for the number of received bytes of a response waiting to be written before reading is suspended */
+    public static final String RESPONSE_BUFFER_SIZE_PROPERTY = "responseBufferSize";
+
+    /** The asynchronous HTTP client instance */
+    protected volatile CloseableHttpAsyncClient asyncHttpClient;
+
+    /** The connection manager of the asynchronous HTTP client */
+    protected PoolingAsyncClientConnectionManager asyncConnectionManager;
+
+    /** The HTTP version policy */
+    protected HttpVersionPolicy httpVersionPolicy = HttpVersionPolicy.NEGOTIATE;
+
+    /** The number of I/O reactor threads */
+    protected int ioThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /** The executor which writes, decompresses and inspects the response bodies off the I/O reactor threads */
+    protected volatile ExecutorService responseExecutor;
+
+    /** The number of threads of the response executor */
+    protected int responseThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /** The number of received bytes of a response waiting to be written before reading is suspended */
+    protected int responseBufferSize = 256 * 1024;
+
+    /**
+     * Constructs a new Hc5AsyncHttpClient.
+     */
+    public Hc5AsyncHttpClient() {
+        // Default constructor
+    }
+
+    @Override
+    public synchronized void init() {
+        if (asyncHttpClient != null) {
+            return;
+        }
+
+        super.init();
+
+        final Integer connectionTimeoutParam = getInitParameter(CONNECTION_TIMEOUT_PROPERTY, connectionTimeout, Integer.class);
+        final Integer soTimeoutParam = getInitParameter(SO_TIMEOUT_PROPERTY, soTimeout, Integer.class);
+        httpVersionPolicy =
+                HttpVersionPolicy.valueOf(getInitParameter(HTTP_VERSION_POLICY_PROPERTY, httpVersionPolicy.name(), String.class));
+        ioThreadCount = getInitParameter(IO_THREAD_COUNT_PROPERTY, ioThreadCount, Integer.class);
+        responseThreadCount = getInitParameter(RESPONSE_THREAD_COUNT_PROPERTY, responseThreadCount, Integer.class);
+        responseBufferSize = getInitParameter(RESPONSE_BUFFER_SIZE_PROPERTY, responseBufferSize, Integer.class);
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        responseExecutor = Executors.newFixedThreadPool(responseThreadCount, r -> {
+            final Thread thread = new Thread(r, "Hc5AsyncHttpClient-response-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        asyncConnectionManager = buildAsyncConnectionManager(connectionTimeoutParam, soTimeoutParam);
+
+        final IOReactorConfig.Builder ioReactorConfigBuilder = IOReactorConfig.custom().setIoThreadCount(ioThreadCount);
+        if (soTimeoutParam != null) {
+            ioReactorConfigBuilder.setSoTimeout(Timeout.ofMilliseconds(soTimeoutParam));
+        }
+
+        final HttpAsyncClientBuilder httpAsyncClientBuilder = HttpAsyncClientBuilder.create()
+                .setConnectionManager(asyncConnectionManager)
+                .setIOReactorConfig(ioReactorConfigBuilder.build())
+                .setDefaultRequestConfig(requestConfig)
+                .setDefaultAuthSchemeRegistry(authSchemeRegistry)
+                .setDefaultCookieSpecRegistry(buildCookieSpecRegistry())
+                .setDefaultCookieStore(cookieStore)
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleConnectionTimeout));
+        if (StringUtil.isNotBlank(userAgent)) {
+            httpAsyncClientBuilder.setUserAgent(userAgent);
+        }
+        final HttpRoutePlanner planner = buildRoutePlanner();
+        if (planner != null) {
+            httpAsyncClientBuilder.setRoutePlanner(planner);
+        }
+
+        final CloseableHttpAsyncClient closeableHttpAsyncClient = httpAsyncClientBuilder.build();
+        closeableHttpAsyncClient.start();
+        asyncHttpClient = closeableHttpAsyncClient;
+        if (logger.isInfoEnabled()) {
+            logger.info("Async HTTP client initialized successfully: httpVersionPolicy={}, ioThreadCount={}, responseThreadCount={}",
+                    httpVersionPolicy, ioThreadCount, responseThreadCount);
+        }
+    }
+
+    /**
+     * Builds the connection manager of the asynchronous HTTP client.
+     * HTTP/2 streams share a connection unless the version policy is FORCE_HTTP_1.
+     *
+     * @param connectionTimeoutParam The connection timeout in milliseconds
+     * @param soTimeoutParam The socket timeout in milliseconds
+     * @return The configured connection manager
+     */
+    protected PoolingAsyncClientConnectionManager buildAsyncConnectionManager(final Integer connectionTimeoutParam,
+            final Integer soTimeoutParam) {
+        final long timeToLive = getInitParameter(TIME_TO_LIVE_PROPERTY, 5L, Long.class);
+        final TimeUnit timeUnit = TimeUnit.valueOf(getInitParameter(TIME_TO_LIVE_TIME_UNIT_PROPERTY, "MINUTES", String.class));
+        final int maxTotal = getInitParameter(MAX_TOTAL_CONNECTION_PROPERTY, 200, Integer.class);
+        final int defaultMaxPerRoute = getInitParameter(DEFAULT_MAX_CONNECTION_PER_ROUTE_PROPERTY, 20, Integer.class);
+
+        final PoolingAsyncClientConnectionManagerBuilder builder = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(defaultMaxPerRoute)
+                .setDnsResolver(dnsResolver)
+                .setDefaultTlsConfig(TlsConfig.custom().setVersionPolicy(httpVersionPolicy).build())
+                .setMessageMultiplexing(httpVersionPolicy != HttpVersionPolicy.FORCE_HTTP_1);
+
+        // Connection config
+        final ConnectionConfig.Builder connectionConfigBuilder =
+                ConnectionConfig.custom().setTimeToLive(TimeValue.of(timeToLive, timeUnit));
+        if (connectionTimeoutParam != null) {
+            connectionConfigBuilder.setConnectTimeout(Timeout.ofMilliseconds(connectionTimeoutParam));
+        }
+        if (soTimeoutParam != null) {
+            connectionConfigBuilder.setSocketTimeout(Timeout.ofMilliseconds(soTimeoutParam));
+        }
+        builder.setDefaultConnectionConfig(connectionConfigBuilder.build());
+
+        // SSL
+        if (getInitParameter(IGNORE_SSL_CERTIFICATE_PROPERTY, ignoreSslCertificate, Boolean.class)) {
+            try {
+                final SSLContext sslContext = SSLContextBuilder.create().loadTrustMaterial(TrustAllStrategy.INSTANCE).build();
+                builder.setTlsStrategy(ClientTlsStrategyBuilder.create()
+                        .setSslContext(sslContext)
+                        .setHostVerificationPolicy(HostnameVerificationPolicy.CLIENT)
+                        .setHostnameVerifier((hostname, session) -> true)
+                        .buildAsync());
+                logger.warn(
+                        "SSL certificate validation is disabled. This configuration is insecure and should only be used in development/testing environments.");
+            } catch (final Exception e) {
+                logger.warn("Failed to create SSL context with trust-all strategy: property={}", IGNORE_SSL_CERTIFICATE_PROPERTY, e);
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public void close() {
+        final CloseableHttpAsyncClient closeableHttpAsyncClient = asyncHttpClient;
+        if (closeableHttpAsyncClient != null) {
+            asyncHttpClient = null;
+            closeableHttpAsyncClient.close(CloseMode.GRACEFUL);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Async HTTP client closed successfully");
+            }
+        }
+        final ExecutorService executor = responseExecutor;
+        if (executor != null) {
+            responseExecutor = null;
+            // the queued tasks complete the responses and delete their temporary files
+            executor.shutdown();
+        }
+        super.close();
+    }
+
+    /**
+     * Executes the request without waiting for the response.
+     * robots.txt of the host is processed on the calling thread before the request is sent,
+     * and the returned future fails with the same exceptions as {@link #execute(RequestData)}.
+     *
+     * @param request The request data
+     * @return The future of the response data
+     */
+    public CompletableFuture<ResponseData> executeAsync(final RequestData request) {
+        if (asyncHttpClient == null) {
+            init();
+        }
+
+        final String url = request.getUrl();
+        final ClassicHttpRequest httpRequest;
+        try {
+            httpRequest = switch (request.getMethod()) {
+            case GET -> new HttpGet(url);
+            case HEAD -> new HttpHead(url);
+            default -> throw new CrawlerSystemException(request.getMethod() + " method is not supported.");
+            };
+        } catch (final IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new CrawlingAccessException("The url may not be valid: " + url, e));
+        } catch (final CrawlerSystemException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final boolean conditional = isConditionalRequest(request);
+        if (conditional) {
+            addConditionalHeaders(request, httpRequest);
+        }
+
+        final CompletableFuture<ResponseData> future;
+        try {
+            future = processHttpMethodAsync(url, httpRequest);
+        } catch (final RuntimeException e) {
+            return CompletableFuture.failedFuture(convertException(url, e));
+        }
+        if (accessTimeout != null) {
+            future.orTimeout(accessTimeout, TimeUnit.SECONDS);
+        }
+        return future.handle((responseData, e) -> {
+            if (e != null) {
+                if (e instanceof final TimeoutException timeoutException) {
+                    throw new CrawlingAccessException("Access timeout(" + accessTimeout + " sec): " + url, timeoutException);
+                }
+                throw convertException(url, e);
+            }
+            if (conditional) {
+                restoreCacheValidators(request, responseData);
+            }
+            return responseData;
+        });
+    }
+
+    /**
+     * Executes the request on the asynchronous HTTP client and waits for the response.
+     *
+     * @param url The URL being accessed
+     * @param httpRequest The HTTP request to process
+     * @return The response data containing the retrieved information
+     */
+    @Override
+    protected ResponseData processHttpMethod(final String url, final ClassicHttpRequest httpRequest) {
+        final CompletableFuture<ResponseData> future = processHttpMethodAsync(url, httpRequest);
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            throw new CrawlingAccessException("Interrupted while accessing " + url, e);
+        } catch (final CancellationException e) {
+            throw new CrawlingAccessException("The request was cancelled: " + url, e);
+        } catch (final ExecutionException e) {
+            throw convertException(url, e.getCause());
+        }
+    }
+
+    /**
+     * Sends the HTTP request on the asynchronous HTTP client.
+     * When the returned future is completed or cancelled before the response,
+     * the request is cancelled.
+     *
+     * @param url The URL being accessed
+     * @param httpRequest The HTTP request to send
+     * @return The future of the response data
+     */
+    protected CompletableFuture<ResponseData> processHttpMethodAsync(final String url, final ClassicHttpRequest httpRequest) {
+        checkRobotsTxt(url);
+
+        // request header
+        for (final Header header : requestHeaderList) {
+            httpRequest.addHeader(header);
+        }
+        if (contentDecoder != null && StringUtil.isNotBlank(contentDecoder.getAcceptEncoding())
+                && !httpRequest.containsHeader("Accept-Encoding")) {
+            httpRequest.addHeader("Accept-Encoding", contentDecoder.getAcceptEncoding());
+        }
+
+        final CompletableFuture<ResponseData> future = new CompletableFuture<>();
+        final ResponseDataConsumer consumer = createResponseDataConsumer(url, httpRequest);
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAuthCache(authCache);
+        context.setCredentialsProvider(credentialsProvider);
+        final Future<ResponseData> httpFuture;
+        try {
+            httpFuture = asyncHttpClient.execute(new BasicRequestProducer(httpRequest, null), consumer, context,
+                    new FutureCallback<ResponseData>() {
+                        @Override
+                        public void completed(final ResponseData responseData) {
+                            if (!future.complete(responseData)) {
+                                CloseableUtil.closeQuietly(responseData);
+                            }
+                        }
+
+                        @Override
+                        public void failed(final Exception e) {
+                            future.completeExceptionally(consumer.failure != null ? consumer.failure : convertException(url, e));
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            future.completeExceptionally(new CrawlingAccessException("The request was cancelled: " + url));
+                        }
+                    });
+        } catch (final Exception e) {
+            future.completeExceptionally(convertException(url, e));
+            return future;
+        }
+        future.whenComplete((responseData, e) -> {
+            if (e != null) {
+                httpFuture.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Creates the consumer which builds the response data of the request.
+     *
+     * @param url The URL being accessed
+     * @param httpRequest The HTTP request
+     * @return The response consumer
+     */
+    protected ResponseDataConsumer createResponseDataConsumer(final String url, final ClassicHttpRequest httpRequest) {
+        return new ResponseDataConsumer(url, httpRequest instanceof HttpHead ? Constants.HEAD_METHOD : Constants.GET_METHOD);
+    }
+
+    /**
+     * Converts an exception of the request into the exception thrown by {@link Hc5HttpClient}.
+     *
+     * @param url The URL being accessed
+     * @param t The exception of the request
+     * @return The converted exception
+     */
+    protected RuntimeException convertException(final String url, final Throwable t) {
+        Throwable cause = t;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof final CrawlerSystemException e) {
+            return e;
+        }
+        if (cause instanceof UnknownHostException) {
+            return new CrawlingAccessException("Unknown host(" + cause.getMessage() + "): " + url, cause);
+        }
+        if (cause instanceof NoRouteToHostException) {
+            return new CrawlingAccessException("No route to host(" + cause.getMessage() + "): " + url, cause);
+        }
+        if (cause instanceof ConnectException) {
+            return new CrawlingAccessException("Connection time out(" + cause.getMessage() + "): " + url, cause);
+        }
+        if (cause instanceof SocketException) {
+            return new CrawlingAccessException("Socket exception(" + cause.getMessage() + "): " + url, cause);
+        }
+        if (cause instanceof IOException) {
+            return new CrawlingAccessException("I/O exception(" + cause.getMessage() + "): " + url, cause);
+        }
+        return new CrawlerSystemException("Failed to access " + url, cause);
+    }
+
+    /**
+     * Sets the HTTP version policy.
+     *
+     * @param httpVersionPolicy The HTTP version policy
+     */
+    public void setHttpVersionPolicy(final HttpVersionPolicy httpVersionPolicy) {
+        this.httpVersionPolicy = httpVersionPolicy;
+    }
+
+    /**
+     * Sets the number of I/O reactor threads.
+     *
+     * @param ioThreadCount The number of threads
+     */
+    public void setIoThreadCount(final int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    /**
+     * Sets the number of threads which write, decompress and inspect the response bodies.
+     *
+     * @param responseThreadCount The number of threads
+     */
+    public void setResponseThreadCount(final int responseThreadCount) {
+        this.responseThreadCount = responseThreadCount;
+    }
+
+    /**
+     * Sets the number of received bytes of a response which may wait to be written.
+     * When they are reached, the I/O reactor stops reading the response until some of them are written.
+     *
+     * @param responseBufferSize The size in bytes
+     */
+    public void setResponseBufferSize(final int responseBufferSize) {
+        this.responseBufferSize = responseBufferSize;
+    }
+
+    /**
+     * Builds {@link ResponseData} from an asynchronous response.
+     * The I/O reactor thread only copies the received bytes and checks the maximum length, so that
+     * the request is aborted as soon as the body exceeds it. The bytes are written to a
+     * {@link DeferredFileOutputStream} by tasks on the response executor, which run in order, and the
+     * response data is built by the last task: a compressed body is decompressed by the content decoder,
+     * the maximum length is applied to the decompressed content as well, and the MIME type is detected.
+     * The reactor grants the exchange only the capacity of {@link #responseBufferSize} minus the bytes
+     * waiting to be written, so a slow disk suspends reading instead of filling the heap.
+     */
+    protected class ResponseDataConsumer implements AsyncResponseConsumer<ResponseData> {
+
+        /** The URL being accessed */
+        protected final String url;
+
+        /** The request method */
+        protected final String method;
+
+        /** The response head */
+        protected HttpResponse response;
+
+        /** The callback which receives the response data */
+        protected FutureCallback<ResponseData> resultCallback;
+
+        /** The MIME type from the Content-Type header */
+        protected String contentType;
+
+        /** The content encoding of the entity */
+        protected String contentEncoding;
+
+        /** Whether the body is decompressed by the content decoder */
+        protected boolean decoded;
+
+        /** The maximum length of the body */
+        protected long maxLength = Long.MAX_VALUE;
+
+        /** The output stream of the body, or null if the body is not stored */
+        protected DeferredFileOutputStream dfos;
+
+        /** The number of received body bytes */
+        protected long count;
+
+        /** Whether the output stream has been handed over to the response data */
+        protected boolean handedOver;
+
+        /** The exception which aborted the request */
+        protected volatile RuntimeException failure;
+
+        /** The executor which runs the tasks of this response */
+        protected final Executor executor;
+
+        /** The last task of this response; the next task runs after it */
+        protected CompletableFuture<Void> lastTask = CompletableFuture.completedFuture(null);
+
+        /** The capacity channel of the exchange */
+        protected CapacityChannel capacityChannel;
+
+        /** The number of bytes granted to the exchange which have not been received yet */
+        protected long grantedBytes;
+
+        /** The number of received bytes which have not been written yet */
+        protected long bufferedBytes;
+
+        /**
+         * Creates a new consumer.
+         *
+         * @param url The URL being accessed
+         * @param method The request method
+         */
+        protected ResponseDataConsumer(final String url, final String method) {
+            this.url = url;
+            this.method = method;
+            executor = responseExecutor;
+        }
+
+        @Override
+        public void consumeResponse(final HttpResponse response, final EntityDetails entityDetails, final HttpContext context,
+                final FutureCallback<ResponseData> resultCallback) throws HttpException, IOException {
+            this.response = response;
+            this.resultCallback = resultCallback;
+
+            final int httpStatusCode = response.getCode();
+            if (entityDetails != null && httpStatusCode != Constants.NOT_MODIFIED_STATUS_CODE && !isRedirectHttpStatus(httpStatusCode)) {
+                contentType = getContentType(response);
+                contentEncoding = entityDetails.getContentEncoding();
+                try {
+                    decoded = isContentDecoded(contentEncoding, url);
+                } catch (final CrawlingAccessException e) {
+                    abort(e);
+                }
+                maxLength = getMaxBodyLength(contentType);
+                if (maxLength < Long.MAX_VALUE) {
+                    // Content-Length precheck, see Hc5HttpClient#processHttpMethod
+                    final Header contentLengthHeader = response.getFirstHeader("Content-Length");
+                    if (contentLengthHeader != null) {
+                        final long declaredContentLength = parseDeclaredContentLength(contentLengthHeader.getValue());
+                        if (declaredContentLength >= 0 && declaredContentLength > maxLength) {
+                            abort(new MaxLengthExceededException("The content length (" + declaredContentLength + " byte) is over "
+                                    + maxLength + " byte. The url is " + url));
+                        }
+                    }
+                }
+                dfos = createOutputStream();
+            }
+
+            if (entityDetails == null) {
+                submit(this::complete);
+            }
+        }
+
+        @Override
+        public void informationResponse(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
+            // NOP
+        }
+
+        @Override
+        public void updateCapacity(final CapacityChannel capacityChannel) throws IOException {
+            synchronized (this) {
+                this.capacityChannel = capacityChannel;
+            }
+            grantCapacity();
+        }
+
+        /**
+         * Grants the exchange the capacity of {@link #responseBufferSize} which is neither granted nor waiting to be written.
+         *
+         * @throws IOException if the capacity cannot be updated
+         */
+        protected void grantCapacity() throws IOException {
+            final CapacityChannel channel;
+            final int increment;
+            synchronized (this) {
+                channel = capacityChannel;
+                increment = (int) Math.min(Integer.MAX_VALUE, responseBufferSize - bufferedBytes - grantedBytes);
+                if (channel == null || increment <= 0) {
+                    return;
+                }
+                grantedBytes += increment;
+            }
+            channel.update(increment);
+        }
+
+        @Override
+        public void consume(final ByteBuffer src) throws IOException {
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            final int length = src.remaining();
+            if (dfos == null) {
+                // the body of a redirect or not-modified response is discarded
+                src.position(src.limit());
+                synchronized (this) {
+                    grantedBytes -= length;
+                }
+                grantCapacity();
+                return;
+            }
+            count += length;
+            if (count > maxLength) {
+                // reported like the bounded stream of Hc5HttpClient, which stops one byte over the limit
+                abort(new MaxLengthExceededException("The content length (" + incrementWithoutOverflow(maxLength) + " byte) is over "
+                        + maxLength + " byte. The url is " + url));
+            }
+            final byte[] buf = new byte[length];
+            src.get(buf);
+            synchronized (this) {
+                grantedBytes -= length;
+                bufferedBytes += length;
+            }
+            submit(() -> write(buf));
+        }
+
+        /**
+         * Writes received bytes to the output stream and grants the capacity they used again.
+         * This method is called on the response executor.
+         *
+         * @param buf The received bytes
+         */
+        protected void write(final byte[] buf) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                dfos.write(buf);
+                synchronized (this) {
+                    bufferedBytes -= buf.length;
+                }
+                grantCapacity();
+            } catch (final IOException e) {
+                fail(new CrawlingAccessException("I/O exception(" + e.getMessage() + "): " + url, e));
+            }
+        }
+
+        @Override
+        public void streamEnd(final List<? extends Header> trailers) throws HttpException, IOException {
+            submit(this::complete);
+        }
+
+        /**
+         * Runs the task on the response executor after the previous tasks of this response.
+         * A task which throws an exception fails the response, and the next tasks still run.
+         *
+         * @param task The task
+         */
+        protected synchronized void submit(final Runnable task) {
+            lastTask = lastTask.handleAsync((result, e) -> {
+                try {
+                    task.run();
+                } catch (final RuntimeException ex) {
+                    fail(ex);
+                }
+                return null;
+            }, executor);
+        }
+
+        /**
+         * Builds the response data and passes it to the callback.
+         * This method is called on the response executor.
+         */
+        protected void complete() {
+            if (failure != null) {
+                return;
+            }
+            final ResponseData responseData;
+            try {
+                responseData = createResponseData();
+            } catch (final RuntimeException e) {
+                fail(e);
+                return;
+            }
+            resultCallback.completed(responseData);
+        }
+
+        /**
+         * Fails the response with the given exception unless it has already failed.
+         *
+         * @param e The exception
+         */
+        protected void fail(final RuntimeException e) {
+            if (failure != null) {
+                return;
+            }
+            failure = e;
+            if (resultCallback != null) {
+                resultCallback.failed(e);
+            }
+        }
+
+        /**
+         * Fails the request with the given exception.
+         *
+         * @param e The exception
+         * @throws IOException always, to abort the exchange
+         */
+        protected void abort(final RuntimeException e) throws IOException {
+            failure = e;
+            throw new IOException(e.getMessage(), e);
+        }
+
+        /**
+         * Builds the response data from the received response.
+         *
+         * @return The response data
+         */
+        protected ResponseData createResponseData() {
+            final ResponseData responseData = new ResponseData();
+            final int httpStatusCode = response.getCode();
+            // not modified
+            if (httpStatusCode == Constants.NOT_MODIFIED_STATUS_CODE) {
+                responseData.setUrl(url);
+                responseData.setMethod(method);
+                responseData.setHttpStatusCode(httpStatusCode);
+                responseData.setStatus(Constants.NOT_MODIFIED_STATUS);
+                responseData.setResponseBody(new byte[0]);
+                responseData.setContentLength(0);
+                // the rules match on the MIME type, which the crawler thread takes from the previous access if it is not sent
+                responseData.setMimeType(getContentType(response));
+                for (final Header header : response.getHeaders()) {
+                    responseData.addMetaData(header.getName(), header.getValue());
+                }
+                setCacheValidators(response, responseData);
+                return responseData;
+            }
+
+            // redirect
+            if (isRedirectHttpStatus(httpStatusCode)) {
+                responseData.setRedirectLocation(getRedirectLocation(url, response));
+                return responseData;
+            }
+
+            try {
+                long contentLength = 0;
+                String charSet = Constants.UTF_8;
+                if (dfos == null) {
+                    responseData.setResponseBody(new byte[0]);
+                    contentType = getContentType(response);
+                    if (contentType == null) {
+                        contentType = defaultMimeType;
+                    }
+                } else {
+                    dfos.close();
+                    handedOver = true;
+                    if (decoded) {
+                        decodeBody();
+                    }
+                    if (dfos.isInMemory()) {
+                        final byte[] data = dfos.getData();
+                        responseData.setResponseBody(data);
+                        contentLength = data.length;
+                        if (contentType == null) {
+                            try (InputStream is = new ByteArrayInputStream(data)) {
+                                contentType = mimeTypeHelper.getContentType(is, url);
+                            } catch (final Exception e) {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("Failed to detect MIME type, using default: url={}, defaultMimeType={}", url,
+                                            defaultMimeType, e);
+                                }
+                                contentType = defaultMimeType;
+                            }
+                        }
+                    } else {
+                        final File outputFile = dfos.getFile();
+                        responseData.setResponseBody(outputFile, true);
+                        contentLength = outputFile.length();
+                        if (contentType == null) {
+                            try (InputStream is = new FileInputStream(outputFile)) {
+                                contentType = mimeTypeHelper.getContentType(is, url);
+                            } catch (final Exception e) {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("Failed to detect MIME type from file, using default: url={}, file={}, defaultMimeType={}",
+                                            url, outputFile.getAbsolutePath(), defaultMimeType, e);
+                                }
+                                contentType = defaultMimeType;
+                            }
+                        }
+                    }
+                    if (contentEncoding != null && !decoded) {
+                        charSet = contentEncoding;
+                    }
+                }
+
+                // check file size
+                if (contentLengthHelper != null) {
+                    final long maxContentLength = contentLengthHelper.getMaxLength(contentType);
+                    if (contentLength > maxContentLength) {
+                        throw new MaxLengthExceededException(
+                                "The content length (" + contentLength + " byte) is over " + maxContentLength + " byte. The url is " + url);
+                    }
+                }
+
+                responseData.setUrl(url);
+                responseData.setCharSet(charSet);
+                responseData.setMethod(method);
+                responseData.setHttpStatusCode(httpStatusCode);
+                for (final Header header : response.getHeaders()) {
+                    responseData.addMetaData(header.getName(), header.getValue());
+                }
+                responseData.setMimeType(contentType);
+                final Header contentLengthHeader = response.getFirstHeader("Content-Length");
+                if (contentLengthHeader == null || decoded) {
+                    responseData.setContentLength(contentLength);
+                } else {
+                    try {
+                        responseData.setContentLength(Long.parseLong(contentLengthHeader.getValue()));
+                    } catch (final Exception e) {
+                        responseData.setContentLength(contentLength);
+                    }
+                }
+                checkMaxContentLength(responseData);
+                setCacheValidators(response, responseData);
+                return responseData;
+            } catch (final IOException e) {
+                CloseableUtil.closeQuietly(responseData);
+                throw new CrawlingAccessException("I/O exception(" + e.getMessage() + "): " + url, e);
+            } catch (final RuntimeException e) {
+                CloseableUtil.closeQuietly(responseData);
+                throw e;
+            }
+        }
+
+        /**
+         * Creates the output stream of the body, which is kept in memory up to the maximum cached content size.
+         *
+         * @return The output stream
+         * @throws IOException if the output stream cannot be created
+         */
+        protected DeferredFileOutputStream createOutputStream() throws IOException {
+            return DeferredFileOutputStream.builder()
+                    .setThreshold((int) maxCachedContentSize)
+                    .setPrefix("crawler-Hc5AsyncHttpClient-")
+                    .setSuffix(".out")
+                    .setDirectory(SystemUtils.getJavaIoTmpDir())
+                    .get();
+        }
+
+        /**
+         * Replaces the received compressed body with the decompressed body.
+         * The decompressed content is bounded like the stream of {@link Hc5HttpClient}, and the received body is deleted.
+         *
+         * @throws IOException if the body cannot be decompressed
+         */
+        protected void decodeBody() throws IOException {
+            final DeferredFileOutputStream encodedBody = dfos;
+            final DeferredFileOutputStream decodedBody = createOutputStream();
+            boolean completed = false;
+            try (InputStream encodedStream = encodedBody.isInMemory() ? new ByteArrayInputStream(encodedBody.getData())
+                    : new FileInputStream(encodedBody.getFile());
+                    InputStream decodedStream = contentDecoder.decode(contentEncoding, encodedStream, url);
+                    InputStream bodyStream = maxLength < Long.MAX_VALUE
+                            ? BoundedInputStream.builder().setInputStream(decodedStream).setMaxCount(incrementWithoutOverflow(maxLength)).get()
+                            : decodedStream) {
+                CopyUtil.copy(bodyStream, decodedBody);
+                decodedBody.close();
+                if (decodedBody.getByteCount() > maxLength) {
+                    throw new MaxLengthExceededException("The content length (" + decodedBody.getByteCount() + " byte) is over "
+                            + maxLength + " byte. The url is " + url);
+                }
+                completed = true;
+            } finally {
+                deleteFile(encodedBody);
+                if (!completed) {
+                    CloseableUtil.closeQuietly(decodedBody);
+                    deleteFile(decodedBody);
+                }
+            }
+            dfos = decodedBody;
+        }
+
+        /**
+         * Deletes the temporary file of a body written to a file.
+         *
+         * @param body The output stream of the body
+         */
+        protected void deleteFile(final DeferredFileOutputStream body) {
+            if (!body.isInMemory()) {
+                final File file = body.getFile();
+                if (file != null && file.exists() && !file.delete()) {
+                    logger.warn("Failed to delete {}", file.getAbsolutePath());
+                }
+            }
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to receive a response: url={}", url, cause);
+            }
+        }
+
+        @Override
+        public void releaseResources() {
+            // the body is released after the queued writes and the completion
+            submit(() -> {
+                if (dfos != null && !handedOver) {
+                    handedOver = true;
+                    CloseableUtil.closeQuietly(dfos);
+                    deleteFile(dfos);
+                }
+            });
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.net.SocketException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -96,6 +97,7 @@ import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.config.Lookup;
 import org.apache.hc.core5.http.config.RegistryBuilder;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
@@ -118,10 +120,12 @@ import org.codelibs.fess.crawler.CrawlerContext;
 import org.codelibs.fess.crawler.client.AccessTimeoutTarget;
 import org.codelibs.fess.crawler.client.http.config.CredentialsConfig;
 import org.codelibs.fess.crawler.client.http.config.WebAuthenticationConfig;
+import org.codelibs.fess.crawler.client.http.conn.DnsCache;
 import org.codelibs.fess.crawler.client.http.conn.Hc5IdnDnsResolver;
 import org.codelibs.fess.crawler.client.http.Hc4Authentication;
 import org.codelibs.fess.crawler.client.http.form.Hc4FormScheme;
 import org.codelibs.fess.crawler.client.http.form.Hc5FormScheme;
+import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.entity.RobotsTxt;
 import org.codelibs.fess.crawler.exception.CrawlerSystemException;
@@ -129,8 +133,10 @@ import org.codelibs.fess.crawler.exception.CrawlingAccessException;
 import org.codelibs.fess.crawler.exception.MaxLengthExceededException;
 import org.codelibs.fess.crawler.helper.ContentLengthHelper;
 import org.codelibs.fess.crawler.helper.MimeTypeHelper;
+import org.codelibs.fess.crawler.helper.RobotsTxtCache;
 import org.codelibs.fess.crawler.helper.RobotsTxtHelper;
 import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.codelibs.fess.crawler.util.UrlUtil;
 
 import jakarta.annotation.Resource;
 
@@ -171,7 +177,7 @@ public class Hc5HttpClient extends HcHttpClient {
     protected volatile CloseableHttpClient httpClient;
 
     /** List of request headers to be sent with each request */
-    private final List<Header> requestHeaderList = new ArrayList<>();
+    protected final List<Header> requestHeaderList = new ArrayList<>();
 
     /** Map of HTTP client properties */
     private final Map<String, Object> httpClientPropertyMap = new HashMap<>();
@@ -239,6 +245,9 @@ public class Hc5HttpClient extends HcHttpClient {
     /** Whether to use robots.txt allow rules */
     protected boolean useRobotsTxtAllows = true;
 
+    /** Whether robots.txt rules are also added to the URL filter as regular expressions */
+    protected boolean robotsTxtUrlFilterEnabled = true;
+
     /** Credentials provider for authentication */
     protected CredentialsStore credentialsProvider = new BasicCredentialsProvider();
 
@@ -251,6 +260,9 @@ public class Hc5HttpClient extends HcHttpClient {
     /** Whether HTTP redirects are enabled */
     protected boolean redirectsEnabled = false;
 
+    /** Whether GET requests with a previous ETag or last modified time are sent as conditional requests */
+    protected boolean conditionalRequestEnabled = false;
+
     /** Whether to ignore SSL certificate validation */
     protected boolean ignoreSslCertificate = false;
 
@@ -263,6 +275,18 @@ public class Hc5HttpClient extends HcHttpClient {
     /** Cookie date patterns for parsing */
     protected String[] cookieDatePatterns;
 
+    /** Default request configuration built in {@link #init()} */
+    protected RequestConfig requestConfig;
+
+    /** Authentication scheme registry built in {@link #init()} */
+    protected Lookup<AuthSchemeFactory> authSchemeRegistry;
+
+    /** Decoder of compressed response bodies, or null to let HttpClient decompress them */
+    protected ContentDecoder contentDecoder;
+
+    /** Cache of robots.txt files shared across crawling sessions, or null to fetch them once per session */
+    protected RobotsTxtCache robotsTxtCache;
+
     /**
      * Collects NTLM parameters from all NTLM authentication configurations.
      *
@@ -327,6 +351,16 @@ public class Hc5HttpClient extends HcHttpClient {
         if (robotsTxtHelper != null) {
             robotsTxtHelper.setEnabled(robotsTxtEnabled);
         }
+        robotsTxtUrlFilterEnabled = getInitParameter(ROBOTS_TXT_URL_FILTER_ENABLED_PROPERTY, robotsTxtUrlFilterEnabled, Boolean.class);
+
+        // dns cache
+        final DnsCache dnsCache = getInitParameter(DNS_CACHE_PROPERTY, null, DnsCache.class);
+        if (dnsCache != null && dnsResolver instanceof final Hc5IdnDnsResolver idnDnsResolver) {
+            idnDnsResolver.setDnsCache(dnsCache);
+        }
+
+        // robots.txt cache
+        robotsTxtCache = getInitParameter(ROBOTS_TXT_CACHE_PROPERTY, robotsTxtCache, RobotsTxtCache.class);
 
         // httpclient
         final RequestConfig.Builder requestConfigBuilder = RequestConfig.custom();
@@ -340,6 +374,20 @@ public class Hc5HttpClient extends HcHttpClient {
             requestConfigBuilder.setResponseTimeout(Timeout.ofMilliseconds(soTimeoutParam));
         }
 
+        conditionalRequestEnabled = getInitParameter(CONDITIONAL_REQUEST_ENABLED_PROPERTY, conditionalRequestEnabled, Boolean.class);
+
+        // content decoding
+        final String acceptEncoding = getInitParameter(ACCEPT_ENCODING_PROPERTY, null, String.class);
+        if (acceptEncoding != null) {
+            if (contentDecoder == null) {
+                contentDecoder = new ContentDecoder();
+            }
+            contentDecoder.setAcceptEncoding(acceptEncoding);
+        }
+        if (contentDecoder != null) {
+            httpClientBuilder.disableContentCompression();
+        }
+
         // user agent
         userAgent = getInitParameter(USER_AGENT_PROPERTY, userAgent, String.class);
         if (StringUtil.isNotBlank(userAgent)) {
@@ -393,7 +441,8 @@ public class Hc5HttpClient extends HcHttpClient {
             }
         }
 
-        httpClientBuilder.setDefaultAuthSchemeRegistry(authSchemeRegistryBuilder.build());
+        authSchemeRegistry = authSchemeRegistryBuilder.build();
+        httpClientBuilder.setDefaultAuthSchemeRegistry(authSchemeRegistry);
 
         // Authentication
         final Hc5Authentication[] siteCredentialList = getAuthenticationArray();
@@ -452,8 +501,9 @@ public class Hc5HttpClient extends HcHttpClient {
                 .addTimeoutTarget(new Hc5ConnectionMonitorTarget(clientConnectionManager, idleConnectionTimeout), connectionCheckInterval,
                         true);
 
+        requestConfig = requestConfigBuilder.build();
         final CloseableHttpClient closeableHttpClient = httpClientBuilder.setConnectionManager(clientConnectionManager)
-                .setDefaultRequestConfig(requestConfigBuilder.build())
+                .setDefaultRequestConfig(requestConfig)
                 .build();
         if (!httpClientPropertyMap.isEmpty()) {
             final BeanDesc beanDesc = BeanDescFactory.getBeanDesc(closeableHttpClient.getClass());
@@ -837,13 +887,7 @@ public class Hc5HttpClient extends HcHttpClient {
             return;
         }
 
-        final int idx = url.indexOf('/', url.indexOf("://") + 3);
-        String hostUrl;
-        if (idx >= 0) {
-            hostUrl = url.substring(0, idx);
-        } else {
-            hostUrl = url;
-        }
+        final String hostUrl = UrlUtil.getHost(url);
         final String robotTxtUrl = hostUrl + "/robots.txt";
 
         // Atomically check-and-add: LruHashSet#add() (via the synchronized set wrapping it in
@@ -861,6 +905,14 @@ public class Hc5HttpClient extends HcHttpClient {
             logger.info("Checking URL: {}", robotTxtUrl);
         }
 
+        if (robotsTxtCache != null) {
+            final RobotsTxt robotsTxt = robotsTxtCache.get(robotTxtUrl, this::fetchRobotsTxt);
+            if (robotsTxt != null) {
+                applyRobotsTxt(crawlerContext, hostUrl, robotsTxt);
+            }
+            return;
+        }
+
         final HttpGet httpGet = new HttpGet(robotTxtUrl);
 
         // request header
@@ -894,41 +946,81 @@ public class Hc5HttpClient extends HcHttpClient {
                 if (httpEntity != null) {
                     final RobotsTxt robotsTxt = robotsTxtHelper.parse(httpEntity.getContent());
                     if (robotsTxt != null) {
-                        final String[] sitemaps = robotsTxt.getSitemaps();
-                        if (sitemaps.length > 0) {
-                            crawlerContext.addSitemaps(sitemaps);
-                        }
+                        applyRobotsTxt(crawlerContext, hostUrl, robotsTxt);
+                    }
+                }
+            }
+        } catch (final CrawlerSystemException e) {
+            httpGet.cancel();
+            throw e;
+        } catch (final Exception e) {
+            httpGet.cancel();
+            throw new CrawlingAccessException("Could not process " + robotTxtUrl + ". ", e);
+        } finally {
+            try {
+                EntityUtils.consume(httpEntity);
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
 
-                        final RobotsTxt.Directive directive = robotsTxt.getMatchedDirective(userAgent);
-                        if (directive != null) {
-                            if (useRobotsTxtDisallows) {
-                                for (String urlPattern : directive.getDisallows()) {
-                                    if (StringUtil.isNotBlank(urlPattern)) {
-                                        urlPattern = convertRobotsTxtPatternToRegex(urlPattern);
-                                        final String urlValue = hostUrl + urlPattern;
-                                        crawlerContext.getUrlFilter().addExclude(urlValue);
-                                        if (logger.isInfoEnabled()) {
-                                            logger.info("Excluded URL: {}", urlValue);
-                                        }
-                                    }
-                                }
-                            }
-                            if (useRobotsTxtAllows) {
-                                for (String urlPattern : directive.getAllows()) {
-                                    if (StringUtil.isNotBlank(urlPattern)) {
-                                        urlPattern = convertRobotsTxtPatternToRegex(urlPattern);
-                                        final String urlValue = hostUrl + urlPattern;
-                                        crawlerContext.getUrlFilter().addInclude(urlValue);
-                                        if (logger.isInfoEnabled()) {
-                                            logger.info("Included URL: {}", urlValue);
-                                        }
-                                    }
-                                }
-                            }
-                        }
+    /**
+     * Fetches a robots.txt file for {@link RobotsTxtCache}. A missing robots.txt (4xx)
+     * is cached as an entry without content; other failures are not cached.
+     *
+     * @param robotTxtUrl The robots.txt URL
+     * @return The entry to cache, or null if the response must not be cached
+     */
+    protected RobotsTxtCache.Entry fetchRobotsTxt(final String robotTxtUrl) {
+        final HttpGet httpGet = new HttpGet(robotTxtUrl);
+
+        // request header
+        for (final Header header : requestHeaderList) {
+            httpGet.addHeader(header);
+        }
+
+        HttpEntity httpEntity = null;
+        try {
+            // get a content
+            final ClassicHttpResponse response = executeHttpClient(httpGet);
+            httpEntity = response.getEntity();
+
+            final int httpStatusCode = response.getCode();
+            final Header cacheControlHeader = response.getFirstHeader("Cache-Control");
+            final Header expiresHeader = response.getFirstHeader("Expires");
+            final String cacheControl = cacheControlHeader != null ? cacheControlHeader.getValue() : null;
+            final String expires = expiresHeader != null ? expiresHeader.getValue() : null;
+            if (httpStatusCode == 200) {
+                final long maxLength = contentLengthHelper != null ? contentLengthHelper.getMaxLength("text/plain") : Long.MAX_VALUE;
+                final Header contentLengthHeader = response.getFirstHeader("Content-Length");
+                if (contentLengthHeader != null) {
+                    final long contentLength = Long.parseLong(contentLengthHeader.getValue());
+                    if (contentLength > maxLength) {
+                        throw new MaxLengthExceededException(
+                                "The content length (" + contentLength + " byte) is over " + maxLength + " byte. The url is " + robotTxtUrl);
                     }
                 }
+
+                if (httpEntity == null) {
+                    return robotsTxtCache.createEntry(null, cacheControl, expires);
+                }
+                try (InputStream in = BoundedInputStream.builder()
+                        .setInputStream(httpEntity.getContent())
+                        .setMaxCount(incrementWithoutOverflow(maxLength))
+                        .get()) {
+                    final byte[] bytes = in.readAllBytes();
+                    if (bytes.length > maxLength) {
+                        throw new MaxLengthExceededException(
+                                "The content length (" + bytes.length + " byte) is over " + maxLength + " byte. The url is " + robotTxtUrl);
+                    }
+                    return robotsTxtCache.createEntry(new String(bytes, StandardCharsets.UTF_8), cacheControl, expires);
+                }
+            }
+            if (httpStatusCode >= 400 && httpStatusCode < 500) {
+                return robotsTxtCache.createEntry(null, cacheControl, expires);
             }
+            return null;
         } catch (final CrawlerSystemException e) {
             httpGet.cancel();
             throw e;
@@ -944,6 +1036,59 @@ public class Hc5HttpClient extends HcHttpClient {
         }
     }
 
+    /**
+     * Applies the rules of a robots.txt file to the crawler context: the sitemaps,
+     * the crawl delay and the allowed and disallowed URL patterns of the matched directive.
+     *
+     * @param crawlerContext The crawler context
+     * @param hostUrl The URL of the host, without a path
+     * @param robotsTxt The parsed robots.txt
+     */
+    protected void applyRobotsTxt(final CrawlerContext crawlerContext, final String hostUrl, final RobotsTxt robotsTxt) {
+        final String[] sitemaps = robotsTxt.getSitemaps();
+        if (sitemaps.length > 0) {
+            crawlerContext.addSitemaps(sitemaps);
+        }
+
+        final RobotsTxt.Directive directive = robotsTxt.getMatchedDirective(userAgent);
+        if (directive != null) {
+            final int crawlDelay = directive.getCrawlDelay();
+            if (crawlDelay > 0) {
+                crawlerContext.setCrawlDelay(hostUrl, crawlDelay * 1000L);
+                if (logger.isInfoEnabled()) {
+                    logger.info("Crawl-delay: {} sec for {}", crawlDelay, hostUrl);
+                }
+            }
+            if (useRobotsTxtDisallows) {
+                crawlerContext.setRobotsTxtDirective(hostUrl, useRobotsTxtAllows ? directive : directive.copyWithoutAllows());
+            }
+            if (robotsTxtUrlFilterEnabled && useRobotsTxtDisallows) {
+                for (String urlPattern : directive.getDisallows()) {
+                    if (StringUtil.isNotBlank(urlPattern)) {
+                        urlPattern = convertRobotsTxtPatternToRegex(urlPattern);
+                        final String urlValue = hostUrl + urlPattern;
+                        crawlerContext.getUrlFilter().addExclude(urlValue);
+                        if (logger.isInfoEnabled()) {
+                            logger.info("Excluded URL: {}", urlValue);
+                        }
+                    }
+                }
+            }
+            if (robotsTxtUrlFilterEnabled && useRobotsTxtAllows) {
+                for (String urlPattern : directive.getAllows()) {
+                    if (StringUtil.isNotBlank(urlPattern)) {
+                        urlPattern = convertRobotsTxtPatternToRegex(urlPattern);
+                        final String urlValue = hostUrl + urlPattern;
+                        crawlerContext.getUrlFilter().addInclude(urlValue);
+                        if (logger.isInfoEnabled()) {
+                            logger.info("Included URL: {}", urlValue);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Converts a robots.txt pattern to a regular expression.
      *
@@ -961,6 +1106,88 @@ public class Hc5HttpClient extends HcHttpClient {
         return newPath.replace(".*.*", ".*");
     }
 
+    /**
+     * Executes the request. When conditional requests are enabled, a GET request carrying
+     * {@link RequestData#getIfNoneMatch()} or {@link RequestData#getIfModifiedSince()} is sent
+     * with If-None-Match/If-Modified-Since headers, and an unchanged resource is returned as
+     * a response with the status code 304 and an empty body.
+     *
+     * @param request The request data
+     * @return The response data
+     */
+    @Override
+    public ResponseData execute(final RequestData request) {
+        if (!isConditionalRequest(request)) {
+            return super.execute(request);
+        }
+
+        final String url = request.getUrl();
+        ClassicHttpRequest httpGet;
+        try {
+            httpGet = new HttpGet(url);
+        } catch (final IllegalArgumentException e) {
+            throw new CrawlingAccessException("The url may not be valid: " + url, e);
+        }
+        addConditionalHeaders(request, httpGet);
+        final ResponseData responseData = doHttpMethod(url, httpGet);
+        restoreCacheValidators(request, responseData);
+        return responseData;
+    }
+
+    /**
+     * Returns true if the request is sent as a conditional GET request.
+     *
+     * @param request The request data
+     * @return true if conditional headers are added to the request
+     */
+    protected boolean isConditionalRequest(final RequestData request) {
+        return conditionalRequestEnabled && request.getMethod() == RequestData.Method.GET
+                && (StringUtil.isNotBlank(request.getIfNoneMatch()) || request.getIfModifiedSince() != null);
+    }
+
+    /**
+     * Adds If-None-Match/If-Modified-Since headers from the request data.
+     *
+     * @param request The request data
+     * @param httpRequest The HTTP request
+     */
+    protected void addConditionalHeaders(final RequestData request, final ClassicHttpRequest httpRequest) {
+        if (StringUtil.isNotBlank(request.getIfNoneMatch())) {
+            httpRequest.addHeader("If-None-Match", request.getIfNoneMatch());
+        }
+        if (request.getIfModifiedSince() != null) {
+            httpRequest.addHeader("If-Modified-Since", RFC_1123_FORMATTER.format(Instant.ofEpochMilli(request.getIfModifiedSince())));
+        }
+    }
+
+    /**
+     * Keeps the validators of the request on a 304 response which omits them.
+     *
+     * @param request The request data
+     * @param responseData The response data
+     */
+    protected void restoreCacheValidators(final RequestData request, final ResponseData responseData) {
+        if (responseData.getHttpStatusCode() == Constants.NOT_MODIFIED_STATUS_CODE) {
+            // a 304 response may omit the validators, so the previous ones are kept
+            if (responseData.getEtag() == null) {
+                responseData.setEtag(request.getIfNoneMatch());
+            }
+            if (responseData.getLastModified() == null && request.getIfModifiedSince() != null) {
+                responseData.setLastModified(new Date(request.getIfModifiedSince()));
+            }
+        }
+    }
+
+    /**
+     * Returns true if GET requests are sent as conditional requests.
+     *
+     * @return true if conditional requests are enabled
+     */
+    @Override
+    public boolean isConditionalRequestEnabled() {
+        return conditionalRequestEnabled;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -1030,15 +1257,12 @@ public class Hc5HttpClient extends HcHttpClient {
     }
 
     /**
-     * Processes an HTTP method request and returns the response data.
-     * This method handles the complete HTTP request lifecycle including content processing,
-     * redirect handling, and error management.
+     * Processes robots.txt for the given URL, logging a failure to fetch it
+     * instead of failing the request.
      *
      * @param url The URL being accessed
-     * @param httpRequest The HTTP request to process
-     * @return The response data containing the retrieved information
      */
-    protected ResponseData processHttpMethod(final String url, final ClassicHttpRequest httpRequest) {
+    protected void checkRobotsTxt(final String url) {
         try {
             processRobotsTxt(url);
         } catch (final CrawlingAccessException e) {
@@ -1053,11 +1277,28 @@ public class Hc5HttpClient extends HcHttpClient {
                 logger.debug("Crawling Access Exception at {}", url, e);
             }
         }
+    }
+
+    /**
+     * Processes an HTTP method request and returns the response data.
+     * This method handles the complete HTTP request lifecycle including content processing,
+     * redirect handling, and error management.
+     *
+     * @param url The URL being accessed
+     * @param httpRequest The HTTP request to process
+     * @return The response data containing the retrieved information
+     */
+    protected ResponseData processHttpMethod(final String url, final ClassicHttpRequest httpRequest) {
+        checkRobotsTxt(url);
 
         // request header
         for (final Header header : requestHeaderList) {
             httpRequest.addHeader(header);
         }
+        if (contentDecoder != null && StringUtil.isNotBlank(contentDecoder.getAcceptEncoding())
+                && !httpRequest.containsHeader("Accept-Encoding")) {
+            httpRequest.addHeader("Accept-Encoding", contentDecoder.getAcceptEncoding());
+        }
 
         ResponseData responseData = new ResponseData();
         HttpEntity httpEntity = null;
@@ -1067,69 +1308,41 @@ public class Hc5HttpClient extends HcHttpClient {
             httpEntity = response.getEntity();
 
             final int httpStatusCode = response.getCode();
-            // redirect
-            if (isRedirectHttpStatus(httpStatusCode)) {
-                final Header locationHeader = response.getFirstHeader("location");
-                if (locationHeader != null) {
-                    final String redirectLocation;
-                    if (locationHeader.getValue().startsWith("/")) {
-                        redirectLocation = constructRedirectLocation(url, locationHeader.getValue());
-                    } else {
-                        redirectLocation = locationHeader.getValue();
-                    }
-                    responseData.setRedirectLocation(redirectLocation);
-                    return responseData;
+            // not modified
+            if (httpStatusCode == Constants.NOT_MODIFIED_STATUS_CODE) {
+                responseData.setUrl(url);
+                responseData.setMethod(httpRequest.getMethod());
+                responseData.setHttpStatusCode(httpStatusCode);
+                responseData.setStatus(Constants.NOT_MODIFIED_STATUS);
+                responseData.setResponseBody(new byte[0]);
+                responseData.setContentLength(0);
+                // the rules match on the MIME type, which the crawler thread takes from the previous access if it is not sent
+                responseData.setMimeType(getContentType(response));
+                for (final Header header : response.getHeaders()) {
+                    responseData.addMetaData(header.getName(), header.getValue());
                 }
-                throw new CrawlingAccessException("Invalid redirect location at " + url);
+                setCacheValidators(response, responseData);
+                return responseData;
             }
 
-            String contentType = null;
-            final Header contentTypeHeader = response.getFirstHeader("Content-Type");
-            if (contentTypeHeader != null) {
-                contentType = contentTypeHeader.getValue();
-                final int idx = contentType.indexOf(';');
-                if (idx > 0) {
-                    contentType = contentType.substring(0, idx);
-                    if (APPLICATION_OCTET_STREAM.equals(contentType)) {
-                        contentType = null;
-                    }
-                }
+            // redirect
+            if (isRedirectHttpStatus(httpStatusCode)) {
+                responseData.setRedirectLocation(getRedirectLocation(url, response));
+                return responseData;
             }
 
+            String contentType = getContentType(response);
+
             long contentLength = 0;
             String contentEncoding = Constants.UTF_8;
+            boolean decoded = false;
             if (httpEntity == null) {
                 responseData.setResponseBody(new byte[0]);
                 if (contentType == null) {
                     contentType = defaultMimeType;
                 }
             } else {
-                // Determine the effective max content length before downloading the body so an
-                // oversized response can be rejected without fully buffering it in memory or on
-                // disk. ContentLengthHelper#getMaxLength() never signals "no limit" via <= 0 --
-                // addMaxLength()/setDefaultMaxLength() both reject negative values -- so, by the
-                // convention used elsewhere in this codebase (see AbstractXmlExtractor#maxTextLength,
-                // ApiExtractor#maxResponseSize), Long.MAX_VALUE is the "effectively unlimited" value.
-                // contentLengthHelper itself may also be null (not injected, e.g. in some unit
-                // tests), which likewise means no length bound applies here. When contentType is
-                // still unknown at this point (no Content-Type header), the actual MIME type can
-                // only be determined by sniffing the body after it has been downloaded, so the
-                // per-type limit that will ultimately apply is not knowable yet either. Using just
-                // the default max here would risk bounding -- and thus truncating -- the stream
-                // below a larger per-type limit before the post-copy check ever runs; that check
-                // only compares the length already read against the limit, it cannot recover bytes
-                // the bound has already discarded. To stay safe, the overall upper bound across the
-                // default and all per-type limits (ContentLengthHelper#getMaxLength()) is used
-                // instead in that case. The post-copy check below still re-evaluates against the
-                // (possibly sniffed) final contentType for the authoritative, exact comparison.
-                final long maxLength;
-                if (contentLengthHelper == null) {
-                    maxLength = Long.MAX_VALUE;
-                } else if (contentType == null) {
-                    maxLength = contentLengthHelper.getMaxLength();
-                } else {
-                    maxLength = contentLengthHelper.getMaxLength(contentType);
-                }
+                final long maxLength = getMaxBodyLength(contentType);
                 final boolean lengthLimited = maxLength < Long.MAX_VALUE;
 
                 // Content-Length precheck: reject an oversized response before downloading
@@ -1148,7 +1361,12 @@ public class Hc5HttpClient extends HcHttpClient {
                     }
                 }
 
-                final InputStream entityStream = httpEntity.getContent();
+                // Decompress before the cap below so the length limit and the spill to a
+                // temporary file apply to the decompressed content.
+                final String contentEncodingValue = httpEntity.getContentEncoding();
+                decoded = isContentDecoded(contentEncodingValue, url);
+                final InputStream entityStream =
+                        decoded ? contentDecoder.decode(contentEncodingValue, httpEntity.getContent(), url) : httpEntity.getContent();
                 // Bound the stream so a chunked/unknown-length body that turns out to be oversized
                 // is capped mid-copy instead of being fully buffered before the size check below
                 // runs. The +1 (via incrementWithoutOverflow) lets one extra byte through so the
@@ -1198,8 +1416,7 @@ public class Hc5HttpClient extends HcHttpClient {
                     }
                 }
 
-                final String contentEncodingValue = httpEntity.getContentEncoding();
-                if (contentEncodingValue != null) {
+                if (contentEncodingValue != null && !decoded) {
                     contentEncoding = contentEncodingValue;
                 }
             }
@@ -1226,7 +1443,7 @@ public class Hc5HttpClient extends HcHttpClient {
             }
             responseData.setMimeType(contentType);
             final Header contentLengthHeader = response.getFirstHeader("Content-Length");
-            if (contentLengthHeader == null) {
+            if (contentLengthHeader == null || decoded) {
                 responseData.setContentLength(contentLength);
             } else {
                 final String value = contentLengthHeader.getValue();
@@ -1237,16 +1454,7 @@ public class Hc5HttpClient extends HcHttpClient {
                 }
             }
             checkMaxContentLength(responseData);
-            final Header lastModifiedHeader = response.getFirstHeader("Last-Modified");
-            if (lastModifiedHeader != null) {
-                final String value = lastModifiedHeader.getValue();
-                if (StringUtil.isNotBlank(value)) {
-                    final Date d = parseLastModifiedDate(value);
-                    if (d != null) {
-                        responseData.setLastModified(d);
-                    }
-                }
-            }
+            setCacheValidators(response, responseData);
 
             return responseData;
         } catch (final UnknownHostException e) {
@@ -1279,6 +1487,106 @@ public class Hc5HttpClient extends HcHttpClient {
         }
     }
 
+    /**
+     * Returns whether the response body is decompressed by {@link #contentDecoder}.
+     * A body encoded with a content coding which the decoder cannot decode is rejected
+     * instead of being stored compressed.
+     *
+     * @param contentEncoding The Content-Encoding header value, or null
+     * @param url The requested URL
+     * @return true if the body is decompressed, false if there is no decoder or the body is not encoded
+     * @throws CrawlingAccessException if the body is encoded with an unsupported content coding
+     */
+    protected boolean isContentDecoded(final String contentEncoding, final String url) {
+        if (contentDecoder == null || !contentDecoder.isEncoded(contentEncoding)) {
+            return false;
+        }
+        if (!contentDecoder.isSupported(contentEncoding)) {
+            throw new CrawlingAccessException("Unsupported content encoding(" + contentEncoding + "): " + url);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the redirect location of a redirect response.
+     *
+     * @param url The requested URL
+     * @param response The HTTP response
+     * @return The redirect location
+     */
+    protected String getRedirectLocation(final String url, final HttpResponse response) {
+        final Header locationHeader = response.getFirstHeader("location");
+        if (locationHeader != null) {
+            if (locationHeader.getValue().startsWith("/")) {
+                return constructRedirectLocation(url, locationHeader.getValue());
+            }
+            return locationHeader.getValue();
+        }
+        throw new CrawlingAccessException("Invalid redirect location at " + url);
+    }
+
+    /**
+     * Returns the MIME type of the Content-Type header without parameters.
+     *
+     * @param response The HTTP response
+     * @return The MIME type, or null if it is unknown
+     */
+    protected String getContentType(final HttpResponse response) {
+        String contentType = null;
+        final Header contentTypeHeader = response.getFirstHeader("Content-Type");
+        if (contentTypeHeader != null) {
+            contentType = contentTypeHeader.getValue();
+            final int idx = contentType.indexOf(';');
+            if (idx > 0) {
+                contentType = contentType.substring(0, idx);
+                if (APPLICATION_OCTET_STREAM.equals(contentType)) {
+                    contentType = null;
+                }
+            }
+        }
+        return contentType;
+    }
+
+    /**
+     * Returns the upper bound of the response body length for the given MIME type.
+     *
+     * @param contentType The MIME type from the Content-Type header, or null if it is unknown
+     * @return The maximum length, or {@link Long#MAX_VALUE} if it is not limited
+     */
+    protected long getMaxBodyLength(final String contentType) {
+        if (contentLengthHelper == null) {
+            return Long.MAX_VALUE;
+        }
+        if (contentType == null) {
+            // the type is sniffed after the download, so bound by the largest limit of all types
+            return contentLengthHelper.getMaxLength();
+        }
+        return contentLengthHelper.getMaxLength(contentType);
+    }
+
+    /**
+     * Copies the Last-Modified and ETag headers of the response into the response data.
+     *
+     * @param response The HTTP response
+     * @param responseData The response data to update
+     */
+    protected void setCacheValidators(final HttpResponse response, final ResponseData responseData) {
+        final Header lastModifiedHeader = response.getFirstHeader("Last-Modified");
+        if (lastModifiedHeader != null) {
+            final String value = lastModifiedHeader.getValue();
+            if (StringUtil.isNotBlank(value)) {
+                final Date d = parseLastModifiedDate(value);
+                if (d != null) {
+                    responseData.setLastModified(d);
+                }
+            }
+        }
+        final Header etagHeader = response.getFirstHeader("ETag");
+        if (etagHeader != null && StringUtil.isNotBlank(etagHeader.getValue())) {
+            responseData.setEtag(etagHeader.getValue());
+        }
+    }
+
     /**
      * Closes resources associated with the HTTP request.
      *
@@ -1583,6 +1891,16 @@ public class Hc5HttpClient extends HcHttpClient {
         this.useRobotsTxtAllows = useRobotsTxtAllows;
     }
 
+    /**
+     * Sets whether robots.txt rules are also added to the URL filter as regular expressions.
+     * The rules are always checked through the per-host directive kept in the crawler context.
+     *
+     * @param robotsTxtUrlFilterEnabled True to add the rules to the URL filter, false otherwise
+     */
+    public void setRobotsTxtUrlFilterEnabled(final boolean robotsTxtUrlFilterEnabled) {
+        this.robotsTxtUrlFilterEnabled = robotsTxtUrlFilterEnabled;
+    }
+
     /**
      * Sets the credentials provider for authentication.
      *
@@ -1619,6 +1937,53 @@ public class Hc5HttpClient extends HcHttpClient {
         this.redirectsEnabled = redirectsEnabled;
     }
 
+    /**
+     * Sets whether GET requests with a previous ETag or last modified time are sent as conditional requests.
+     *
+     * @param conditionalRequestEnabled True to send If-None-Match/If-Modified-Since headers, false otherwise
+     */
+    public void setConditionalRequestEnabled(final boolean conditionalRequestEnabled) {
+        this.conditionalRequestEnabled = conditionalRequestEnabled;
+    }
+
+    /**
+     * Sets the decoder of compressed response bodies. When it is set, the client
+     * sends its Accept-Encoding value and decompresses the responses itself
+     * instead of HttpClient.
+     *
+     * @param contentDecoder The content decoder
+     */
+    public void setContentDecoder(final ContentDecoder contentDecoder) {
+        this.contentDecoder = contentDecoder;
+    }
+
+    /**
+     * Sets the cache of robots.txt files.
+     *
+     * @param robotsTxtCache The robots.txt cache
+     */
+    public void setRobotsTxtCache(final RobotsTxtCache robotsTxtCache) {
+        this.robotsTxtCache = robotsTxtCache;
+    }
+
+    /**
+     * Returns the cache of robots.txt files.
+     *
+     * @return The robots.txt cache, or null if robots.txt files are fetched for each session
+     */
+    public RobotsTxtCache getRobotsTxtCache() {
+        return robotsTxtCache;
+    }
+
+    /**
+     * Returns the decoder of compressed response bodies.
+     *
+     * @return The content decoder, or null if HttpClient decompresses the responses
+     */
+    public ContentDecoder getContentDecoder() {
+        return contentDecoder;
+    }
+
     /**
      * Sets the DNS resolver for hostname resolution.
      *
@@ -42,6 +42,11 @@ import org.codelibs.fess.crawler.client.AbstractCrawlerClient;
  *   <li>MAX_TOTAL_CONNECTION_PROPERTY: Maximum total connections.</li>
  *   <li>TIME_TO_LIVE_TIME_UNIT_PROPERTY: Time to live unit for connections.</li>
  *   <li>TIME_TO_LIVE_PROPERTY: Time to live for connections.</li>
+ *   <li>CONDITIONAL_REQUEST_ENABLED_PROPERTY: Send If-None-Match/If-Modified-Since on recrawls.</li>
+ *   <li>DNS_CACHE_PROPERTY: DNS cache used by the IDN DNS resolver.</li>
+ *   <li>ACCEPT_ENCODING_PROPERTY: Accept-Encoding value for decompressed responses.</li>
+ *   <li>ROBOTS_TXT_CACHE_PROPERTY: robots.txt cache shared across crawling sessions.</li>
+ *   <li>ROBOTS_TXT_URL_FILTER_ENABLED_PROPERTY: Add robots.txt rules to the URL filter as regular expressions.</li>
  * </ul>
  *
  * @author shinsuke
@@ -106,6 +111,21 @@ public abstract class HcHttpClient extends AbstractCrawlerClient {
     /** Property name for time to live setting */
     public static final String TIME_TO_LIVE_PROPERTY = "timeToLive";
 
+    /** Property name for conditional request (If-None-Match/If-Modified-Since) setting */
+    public static final String CONDITIONAL_REQUEST_ENABLED_PROPERTY = "conditionalRequestEnabled";
+
+    /** Property name for DNS cache, as a DnsCache */
+    public static final String DNS_CACHE_PROPERTY = "dnsCache";
+
+    /** Property name for Accept-Encoding setting, which enables the decompression of response bodies */
+    public static final String ACCEPT_ENCODING_PROPERTY = "acceptEncoding";
+
+    /** Property name for robots.txt cache, as a RobotsTxtCache */
+    public static final String ROBOTS_TXT_CACHE_PROPERTY = "robotsTxtCache";
+
+    /** Property name for adding robots.txt rules to the URL filter in addition to the per-host directives */
+    public static final String ROBOTS_TXT_URL_FILTER_ENABLED_PROPERTY = "robotsTxtUrlFilterEnabled";
+
     /**
      * Constructs a new HcHttpClient.
      */
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.http.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.SystemUtil;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * A DNS cache shared by {@link Hc5IdnDnsResolver} and {@link IdnDnsResolver}.
+ *
+ * <p>Resolved addresses are kept for {@code ttl} milliseconds and failed lookups
+ * for {@code negativeTtl} milliseconds. When an entry is used after
+ * {@code refreshRatio} of its lifetime has passed, it is looked up again in the
+ * background while the cached addresses are still returned, so that hosts which
+ * are crawled continuously do not wait for DNS. Concurrent lookups for the same
+ * host share one query.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * {@code
+ * DnsCache dnsCache = new DnsCache();
+ * dnsCache.setTtl(300000L);
+ * Hc5IdnDnsResolver resolver = new Hc5IdnDnsResolver();
+ * resolver.setDnsCache(dnsCache);
+ * hc5HttpClient.setDnsResolver(resolver);
+ * }
+ * </pre>
+ */
+public class DnsCache {
+
+    private static final Logger logger = LogManager.getLogger(DnsCache.class);
+
+    /**
+     * Looks up the addresses of a host.
+     */
+    @FunctionalInterface
+    public interface Lookup {
+        /**
+         * Resolves the given host.
+         *
+         * @param host the host name in ASCII
+         * @return the addresses of the host
+         * @throws UnknownHostException if the host cannot be resolved
+         */
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    /** The time to live of resolved addresses in milliseconds. */
+    protected long ttl = 60000L;
+
+    /** The time to live of failed lookups in milliseconds. */
+    protected long negativeTtl = 10000L;
+
+    /** The ratio of the lifetime after which a used entry is refreshed in the background. */
+    protected float refreshRatio = 0.8f;
+
+    /** The maximum number of cached hosts. */
+    protected int maxSize = 100000;
+
+    /** The number of threads for background refresh. */
+    protected int refreshThreads = 2;
+
+    /** The cached entries by host. */
+    protected final Map<String, Entry> entryMap = new ConcurrentHashMap<>();
+
+    /** The lookups in progress by host. */
+    protected final Map<String, CompletableFuture<Entry>> inflightMap = new ConcurrentHashMap<>();
+
+    /** The executor for background refresh. */
+    protected volatile ExecutorService refreshExecutor;
+
+    /** The number of lookups answered from the cache. */
+    protected final LongAdder hitCount = new LongAdder();
+
+    /** The number of cache hits which returned a failed lookup. */
+    protected final LongAdder negativeHitCount = new LongAdder();
+
+    /** The number of lookups which were not in the cache. */
+    protected final LongAdder missCount = new LongAdder();
+
+    /** The number of background refreshes. */
+    protected final LongAdder refreshCount = new LongAdder();
+
+    /** The number of removed entries. */
+    protected final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Creates a new DnsCache instance with default settings.
+     */
+    public DnsCache() {
+        super();
+    }
+
+    /**
+     * Returns the addresses of the host from the cache, or looks them up.
+     *
+     * @param host the host name in ASCII
+     * @param lookup the lookup used on a miss or a refresh
+     * @return the addresses of the host
+     * @throws UnknownHostException if the host cannot be resolved
+     */
+    public InetAddress[] resolve(final String host, final Lookup lookup) throws UnknownHostException {
+        final long now = currentTimeMillis();
+        final Entry entry = entryMap.get(host);
+        if (entry != null && entry.expiresAt > now) {
+            hitCount.increment();
+            if (entry.exception != null) {
+                negativeHitCount.increment();
+            } else if (entry.refreshAt <= now && entry.refreshing.compareAndSet(false, true)) {
+                refresh(host, lookup);
+            }
+            return entry.getAddresses();
+        }
+
+        missCount.increment();
+        final CompletableFuture<Entry> future = new CompletableFuture<>();
+        final CompletableFuture<Entry> inflight = inflightMap.putIfAbsent(host, future);
+        if (inflight != null) {
+            try {
+                return inflight.join().getAddresses();
+            } catch (final CompletionException e) {
+                throw new UnknownHostException(host + ": " + e.getCause().getMessage());
+            }
+        }
+        try {
+            // another thread may have stored the entry after the first check
+            final Entry current = entryMap.get(host);
+            final Entry newEntry = current != null && current.expiresAt > currentTimeMillis() ? current : load(host, lookup);
+            future.complete(newEntry);
+            return newEntry.getAddresses();
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightMap.remove(host, future);
+        }
+    }
+
+    /**
+     * Looks up the host and stores the result.
+     *
+     * @param host the host name
+     * @param lookup the lookup
+     * @return the new entry
+     */
+    protected Entry load(final String host, final Lookup lookup) {
+        Entry entry;
+        final long now = currentTimeMillis();
+        try {
+            final InetAddress[] addresses = lookup.lookup(host);
+            entry = new Entry(addresses, null, now + ttl, now + (long) (ttl * refreshRatio));
+        } catch (final UnknownHostException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to resolve {}: {}", host, e.getMessage());
+            }
+            entry = new Entry(null, e, now + negativeTtl, Long.MAX_VALUE);
+        }
+        if ((entry.exception == null && ttl > 0) || (entry.exception != null && negativeTtl > 0)) {
+            entryMap.put(host, entry);
+            if (entryMap.size() > maxSize) {
+                evict(now);
+            }
+        } else {
+            entryMap.remove(host);
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up the host again in the background.
+     * The cached entry is replaced when the lookup succeeds and is kept
+     * until it expires when the lookup fails.
+     *
+     * @param host the host name
+     * @param lookup the lookup
+     */
+    protected void refresh(final String host, final Lookup lookup) {
+        getRefreshExecutor().execute(() -> {
+            try {
+                final InetAddress[] addresses = lookup.lookup(host);
+                final long now = currentTimeMillis();
+                entryMap.put(host, new Entry(addresses, null, now + ttl, now + (long) (ttl * refreshRatio)));
+                refreshCount.increment();
+            } catch (final UnknownHostException e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to refresh {}: {}", host, e.getMessage());
+                }
+            } catch (final Exception e) {
+                logger.warn("Failed to refresh {}", host, e);
+            }
+        });
+    }
+
+    /**
+     * Removes expired entries and, if the cache is still full, the entries
+     * which expire first until it is shrunk by a tenth.
+     *
+     * @param now the current time
+     */
+    protected void evict(final long now) {
+        for (final Iterator<Entry> it = entryMap.values().iterator(); it.hasNext();) {
+            if (it.next().expiresAt <= now) {
+                it.remove();
+                evictionCount.increment();
+            }
+        }
+        final int target = maxSize - maxSize / 10;
+        if (entryMap.size() <= target) {
+            return;
+        }
+        entryMap.entrySet()
+                .stream()
+                .sorted((e1, e2) -> Long.compare(e1.getValue().expiresAt, e2.getValue().expiresAt))
+                .limit(entryMap.size() - target)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(key -> {
+                    if (entryMap.remove(key) != null) {
+                        evictionCount.increment();
+                    }
+                });
+    }
+
+    /**
+     * Returns the executor for background refresh, creating it on first use.
+     *
+     * @return the executor
+     */
+    protected ExecutorService getRefreshExecutor() {
+        ExecutorService executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = refreshExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(refreshThreads, r -> {
+                        final Thread thread = new Thread(r, "DnsCacheRefresher");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    refreshExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the current time in milliseconds.
+     *
+     * @return the current time
+     */
+    protected long currentTimeMillis() {
+        return SystemUtil.currentTimeMillis();
+    }
+
+    /**
+     * Removes the cached entry for the host.
+     *
+     * @param host the host name in ASCII
+     */
+    public void invalidate(final String host) {
+        entryMap.remove(host);
+    }
+
+    /**
+     * Removes all cached entries.
+     */
+    public void clear() {
+        entryMap.clear();
+    }
+
+    /**
+     * Stops the background refresh.
+     */
+    @PreDestroy
+    public void destroy() {
+        final ExecutorService executor = refreshExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the number of cached hosts.
+     *
+     * @return the number of cached hosts
+     */
+    public int getSize() {
+        return entryMap.size();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache, including failed ones.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of cache hits which returned a failed lookup.
+     *
+     * @return the negative hit count
+     */
+    public long getNegativeHitCount() {
+        return negativeHitCount.sum();
+    }
+
+    /**
+     * Returns the number of lookups which were not in the cache.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of background refreshes.
+     *
+     * @return the refresh count
+     */
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    /**
+     * Returns the number of removed entries.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to all lookups.
+     *
+     * @return the hit rate, or 0 if there are no lookups
+     */
+    public double getHitRate() {
+        final long hits = hitCount.sum();
+        final long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Sets the time to live of resolved addresses.
+     *
+     * @param ttl the time to live in milliseconds
+     */
+    public void setTtl(final long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Sets the time to live of failed lookups.
+     *
+     * @param negativeTtl the time to live in milliseconds, or 0 not to cache failures
+     */
+    public void setNegativeTtl(final long negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * Sets the ratio of the lifetime after which a used entry is refreshed in the background.
+     *
+     * @param refreshRatio the ratio, or 1 or more to disable background refresh
+     */
+    public void setRefreshRatio(final float refreshRatio) {
+        this.refreshRatio = refreshRatio;
+    }
+
+    /**
+     * Sets the maximum number of cached hosts.
+     *
+     * @param maxSize the maximum size
+     */
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Sets the number of threads for background refresh.
+     *
+     * @param refreshThreads the number of threads
+     */
+    public void setRefreshThreads(final int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    /**
+     * A cached lookup result.
+     */
+    protected static class Entry {
+
+        /** The resolved addresses, or null if the lookup failed. */
+        protected final InetAddress[] addresses;
+
+        /** The exception of the failed lookup. */
+        protected final UnknownHostException exception;
+
+        /** The time when this entry expires. */
+        protected final long expiresAt;
+
+        /** The time after which this entry is refreshed on use. */
+        protected final long refreshAt;
+
+        /** Whether a background refresh has been started. */
+        protected final AtomicBoolean refreshing = new AtomicBoolean();
+
+        /**
+         * Creates a new entry.
+         *
+         * @param addresses the resolved addresses
+         * @param exception the exception of the failed lookup
+         * @param expiresAt the time when this entry expires
+         * @param refreshAt the time after which this entry is refreshed on use
+         */
+        protected Entry(final InetAddress[] addresses, final UnknownHostException exception, final long expiresAt, final long refreshAt) {
+            this.addresses = addresses;
+            this.exception = exception;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        /**
+         * Returns a copy of the addresses, or throws the failure.
+         *
+         * @return the addresses
+         * @throws UnknownHostException if the lookup failed
+         */
+        protected InetAddress[] getAddresses() throws UnknownHostException {
+            if (exception != null) {
+                throw new UnknownHostException(exception.getMessage());
+            }
+            return addresses.clone();
+        }
+    }
+}
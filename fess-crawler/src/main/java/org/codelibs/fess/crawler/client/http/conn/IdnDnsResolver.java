@@ -51,6 +51,9 @@ public class IdnDnsResolver implements DnsResolver {
     /** Encoding for URL decoding. */
     protected String encoding = "UTF-8";
 
+    /** The cache of lookup results, or null to resolve on every call. */
+    protected DnsCache dnsCache;
+
     /**
      * Creates a new IdnDnsResolver instance with default settings.
      */
@@ -63,6 +66,7 @@ public class IdnDnsResolver implements DnsResolver {
      * The host name is first converted to ASCII using IDN before resolution.
      * IPv6 addresses in bracket notation (e.g., [::1] or [2001:db8::1]) are
      * handled specially by removing the brackets before resolution.
+     * If a {@link DnsCache} is set, other host names are resolved through it.
      *
      * @param host the host name to resolve
      * @return an array of IP addresses for the host
@@ -76,7 +80,22 @@ public class IdnDnsResolver implements DnsResolver {
             final String ipv6Address = host.substring(1, host.length() - 1);
             return InetAddress.getAllByName(ipv6Address);
         }
-        return InetAddress.getAllByName(toAscii(host));
+        final String asciiHost = toAscii(host);
+        if (dnsCache != null) {
+            return dnsCache.resolve(asciiHost, this::lookup);
+        }
+        return lookup(asciiHost);
+    }
+
+    /**
+     * Looks up the addresses of the host name converted to ASCII.
+     *
+     * @param host the host name in ASCII
+     * @return an array of IP addresses for the host
+     * @throws UnknownHostException if the host name cannot be resolved
+     */
+    protected InetAddress[] lookup(final String host) throws UnknownHostException {
+        return InetAddress.getAllByName(host);
     }
 
     /**
@@ -123,4 +142,13 @@ public class IdnDnsResolver implements DnsResolver {
     public void setEncoding(final String encoding) {
         this.encoding = encoding;
     }
+
+    /**
+     * Sets the cache of lookup results.
+     *
+     * @param dnsCache the DNS cache, or null to resolve on every call
+     */
+    public void setDnsCache(final DnsCache dnsCache) {
+        this.dnsCache = dnsCache;
+    }
 }
@@ -15,7 +15,14 @@
  */
 package org.codelibs.fess.crawler.container;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
@@ -26,6 +33,7 @@ import org.codelibs.core.beans.BeanDesc;
 import org.codelibs.core.beans.FieldDesc;
 import org.codelibs.core.beans.MethodDesc;
 import org.codelibs.core.beans.factory.BeanDescFactory;
+import org.codelibs.core.exception.InvocationTargetRuntimeException;
 import org.codelibs.core.lang.ClassUtil;
 import org.codelibs.core.lang.FieldUtil;
 import org.codelibs.core.lang.MethodUtil;
@@ -305,6 +313,11 @@ public class StandardCrawlerContainer implements CrawlerContainer {
          */
         private T instance;
 
+        /**
+         * The injection plan of the component class, built on the first {@link #get()}.
+         */
+        private volatile InjectionPlan plan;
+
         /**
          * Creates a new ComponentDef for a class-based component.
          * @param cls the class of the component
@@ -331,35 +344,176 @@ public class StandardCrawlerContainer implements CrawlerContainer {
 
         /**
          * Creates and returns a component instance with dependency injection and initialization.
+         * The reflective lookups are done once per definition, so creating a prototype costs
+         * a constructor call, one container lookup per {@code @Resource} field, and the
+         * {@code @PostConstruct} calls.
          * @return the fully initialized component instance
          */
         protected T get() {
-            final T component = instance == null ? ClassUtil.newInstance(cls) : instance;
-            final BeanDesc beanDesc = BeanDescFactory.getBeanDesc(component.getClass());
+            InjectionPlan p = plan;
+            if (p == null) {
+                p = new InjectionPlan(instance == null ? cls : instance.getClass());
+                plan = p;
+            }
+            final T component = instance == null ? cls.cast(p.newInstance()) : instance;
+            p.inject(component, container);
+            if (initializer != null) {
+                initializer.accept(component);
+            }
+            return component;
+        }
+    }
+
+    /**
+     * The precomputed way to create and inject a component class: a constructor handle,
+     * setter handles of the {@code @Resource} fields, and handles of the
+     * {@code @PostConstruct} methods. The members are found with {@link BeanDesc},
+     * and a member which cannot be unreflected falls back to the reflective utilities.
+     */
+    protected static class InjectionPlan {
+
+        /** The component class. */
+        protected final Class<?> cls;
+
+        /** The constructor handle of type {@code ()Object}, or null to use {@link ClassUtil#newInstance(Class)}. */
+        protected final MethodHandle constructor;
+
+        /** The names of the {@code @Resource} fields, which are also the component names to inject. */
+        protected final String[] fieldNames;
+
+        /** The {@code @Resource} fields. */
+        protected final Field[] fields;
+
+        /** The setter handles of type {@code (Object,Object)void}, or null elements to use {@link FieldUtil}. */
+        protected final MethodHandle[] fieldSetters;
+
+        /** The {@code @PostConstruct} methods. */
+        protected final Method[] postConstructMethods;
+
+        /** The method handles of type {@code (Object)void}, or null elements to use {@link MethodUtil}. */
+        protected final MethodHandle[] postConstructHandles;
+
+        /**
+         * Builds the injection plan of the class.
+         * @param cls the component class
+         */
+        protected InjectionPlan(final Class<?> cls) {
+            this.cls = cls;
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            constructor = findConstructor(lookup, cls);
+
+            final BeanDesc beanDesc = BeanDescFactory.getBeanDesc(cls);
+            final List<Field> fieldList = new ArrayList<>();
             for (final FieldDesc fieldDesc : beanDesc.getFieldDescs()) {
-                final Resource annotation = fieldDesc.getField().getAnnotation(Resource.class);
-                if (annotation != null) {
-                    final Object injected = container.getComponent(fieldDesc.getFieldName());
-                    if (injected != null) {
-                        FieldUtil.set(fieldDesc.getField(), component, injected);
-                    }
+                if (fieldDesc.getField().getAnnotation(Resource.class) != null) {
+                    fieldList.add(fieldDesc.getField());
                 }
             }
+            fields = fieldList.toArray(new Field[fieldList.size()]);
+            fieldNames = new String[fields.length];
+            fieldSetters = new MethodHandle[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fieldNames[i] = fields[i].getName();
+                fieldSetters[i] = findSetter(lookup, fields[i]);
+            }
 
+            final List<Method> methodList = new ArrayList<>();
             for (final String methodName : beanDesc.getMethodNames()) {
                 final MethodDesc methodDesc = beanDesc.getMethodDescNoException(methodName);
-                if (methodDesc != null) {
-                    final Method method = methodDesc.getMethod();
-                    final PostConstruct postConstruct = method.getAnnotation(PostConstruct.class);
-                    if (postConstruct != null) {
-                        MethodUtil.invoke(method, component);
+                if (methodDesc != null && methodDesc.getMethod().getAnnotation(PostConstruct.class) != null) {
+                    methodList.add(methodDesc.getMethod());
+                }
+            }
+            postConstructMethods = methodList.toArray(new Method[methodList.size()]);
+            postConstructHandles = new MethodHandle[postConstructMethods.length];
+            for (int i = 0; i < postConstructMethods.length; i++) {
+                postConstructHandles[i] = findMethod(lookup, postConstructMethods[i]);
+            }
+        }
+
+        /**
+         * Creates a new instance of the class.
+         * @return the new instance
+         */
+        protected Object newInstance() {
+            if (constructor == null) {
+                return ClassUtil.newInstance(cls);
+            }
+            try {
+                return constructor.invokeExact();
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new InvocationTargetRuntimeException(cls, new InvocationTargetException(t));
+            }
+        }
+
+        /**
+         * Injects the components into the {@code @Resource} fields and calls the {@code @PostConstruct} methods.
+         * @param component the component
+         * @param container the container providing the components to inject
+         */
+        protected void inject(final Object component, final StandardCrawlerContainer container) {
+            for (int i = 0; i < fields.length; i++) {
+                final Object injected = container.getComponent(fieldNames[i]);
+                if (injected != null) {
+                    final MethodHandle setter = fieldSetters[i];
+                    if (setter == null) {
+                        FieldUtil.set(fields[i], component, injected);
+                    } else {
+                        try {
+                            setter.invokeExact(component, injected);
+                        } catch (final RuntimeException | Error e) {
+                            throw e;
+                        } catch (final Throwable t) {
+                            throw new InvocationTargetRuntimeException(cls, new InvocationTargetException(t));
+                        }
                     }
                 }
             }
-            if (initializer != null) {
-                initializer.accept(component);
+            for (int i = 0; i < postConstructMethods.length; i++) {
+                final MethodHandle handle = postConstructHandles[i];
+                if (handle == null) {
+                    MethodUtil.invoke(postConstructMethods[i], component);
+                } else {
+                    try {
+                        handle.invokeExact(component);
+                    } catch (final RuntimeException | Error e) {
+                        throw e;
+                    } catch (final Throwable t) {
+                        throw new InvocationTargetRuntimeException(cls, new InvocationTargetException(t));
+                    }
+                }
+            }
+        }
+
+        private static MethodHandle findConstructor(final MethodHandles.Lookup lookup, final Class<?> cls) {
+            try {
+                return lookup.unreflectConstructor(cls.getConstructor()).asType(MethodType.methodType(Object.class));
+            } catch (final NoSuchMethodException | IllegalAccessException | SecurityException e) {
+                return null;
+            }
+        }
+
+        private static MethodHandle findSetter(final MethodHandles.Lookup lookup, final Field field) {
+            try {
+                field.trySetAccessible();
+                return lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (final IllegalAccessException | SecurityException e) {
+                return null;
+            }
+        }
+
+        private static MethodHandle findMethod(final MethodHandles.Lookup lookup, final Method method) {
+            if (method.getParameterCount() != 0) {
+                return null;
+            }
+            try {
+                method.trySetAccessible();
+                return lookup.unreflect(method).asType(MethodType.methodType(void.class, Object.class));
+            } catch (final IllegalAccessException | SecurityException e) {
+                return null;
             }
-            return component;
         }
     }
 }
@@ -230,4 +230,24 @@ public interface AccessResult<IDTYPE> {
      * @param lastModified the last modified time
      */
     void setLastModified(Long lastModified);
+
+    /**
+     * Returns the entity tag of the accessed resource.
+     * Implementations which do not keep the entity tag return null.
+     *
+     * @return the entity tag, or null
+     */
+    default String getEtag() {
+        return null;
+    }
+
+    /**
+     * Sets the entity tag of the accessed resource.
+     * Implementations which do not keep the entity tag ignore it.
+     *
+     * @param etag the entity tag
+     */
+    default void setEtag(final String etag) {
+        // NOP
+    }
 }
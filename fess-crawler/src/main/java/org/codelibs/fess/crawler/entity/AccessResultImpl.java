@@ -71,6 +71,9 @@ public class AccessResultImpl<IDTYPE> implements AccessResult<IDTYPE> {
     /** The last modified time of the accessed resource. */
     protected Long lastModified;
 
+    /** The entity tag of the accessed resource. */
+    protected String etag;
+
     /** The access result data. */
     protected AccessResultData<IDTYPE> accessResultData;
 
@@ -353,6 +356,16 @@ public class AccessResultImpl<IDTYPE> implements AccessResult<IDTYPE> {
         this.lastModified = lastModified;
     }
 
+    @Override
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public void setEtag(final String etag) {
+        this.etag = etag;
+    }
+
     /**
      * Returns a string representation of this object.
      * @return A string representation.
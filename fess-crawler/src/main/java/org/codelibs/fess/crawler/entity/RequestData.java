@@ -45,6 +45,12 @@ public class RequestData {
     /** The weight/priority of this request (default: 1.0). */
     private float weight = 1.0f;
 
+    /** The last modified time in milliseconds for a conditional request, or null. */
+    private Long ifModifiedSince;
+
+    /** The entity tag for a conditional request, or null. */
+    private String ifNoneMatch;
+
     /**
      * Creates a new RequestData instance.
      */
@@ -117,6 +123,38 @@ public class RequestData {
         this.weight = weight;
     }
 
+    /**
+     * Gets the last modified time sent as {@code If-Modified-Since} by a client supporting conditional requests.
+     * @return the last modified time in milliseconds, or null
+     */
+    public Long getIfModifiedSince() {
+        return ifModifiedSince;
+    }
+
+    /**
+     * Sets the last modified time sent as {@code If-Modified-Since} by a client supporting conditional requests.
+     * @param ifModifiedSince the last modified time in milliseconds, or null
+     */
+    public void setIfModifiedSince(final Long ifModifiedSince) {
+        this.ifModifiedSince = ifModifiedSince;
+    }
+
+    /**
+     * Gets the entity tag sent as {@code If-None-Match} by a client supporting conditional requests.
+     * @return the entity tag, or null
+     */
+    public String getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    /**
+     * Sets the entity tag sent as {@code If-None-Match} by a client supporting conditional requests.
+     * @param ifNoneMatch the entity tag, or null
+     */
+    public void setIfNoneMatch(final String ifNoneMatch) {
+        this.ifNoneMatch = ifNoneMatch;
+    }
+
     /**
      * Returns the hash code for this RequestData.
      * @return the hash code
@@ -62,6 +62,8 @@ public class ResponseData implements Closeable {
 
     private Date lastModified;
 
+    private String etag;
+
     private String redirectLocation;
 
     private int status = Constants.OK_STATUS;
@@ -352,6 +354,24 @@ public class ResponseData implements Closeable {
         this.lastModified = lastModified;
     }
 
+    /**
+     * Gets the entity tag of the resource.
+     *
+     * @return the entity tag, or null if not available
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Sets the entity tag of the resource.
+     *
+     * @param etag the entity tag to set
+     */
+    public void setEtag(final String etag) {
+        this.etag = etag;
+    }
+
     /**
      * Gets the processing status of this response.
      *
@@ -16,6 +16,7 @@
 package org.codelibs.fess.crawler.entity;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -436,6 +437,105 @@ public class RobotsTxt {
         }
     }
 
+    /**
+     * Indexes path patterns by their literal prefix, the characters before the first
+     * '*', '$' or '%'. A pattern can only match a path which starts with its literal
+     * prefix, so walking the path through the trie yields every pattern that may match
+     * it and skips the others. The prefix stops at '%' because percent-encoded
+     * characters are normalized before matching.
+     */
+    static class PathTrie {
+        /** The root node, holding the patterns with an empty literal prefix. */
+        private final Node root = new Node();
+
+        /**
+         * Adds a path pattern.
+         * @param pattern the path pattern
+         * @param allow true for an Allow pattern, false for a Disallow pattern
+         */
+        void add(final PathPattern pattern, final boolean allow) {
+            final String value = pattern.getPattern();
+            Node node = root;
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '*' || c == '$' || c == '%') {
+                    break;
+                }
+                node = node.children.computeIfAbsent(c, k -> new Node());
+            }
+            if (allow) {
+                node.allows.add(pattern);
+            } else {
+                node.disallows.add(pattern);
+            }
+        }
+
+        /**
+         * Collects the patterns whose literal prefix starts the path, or the path with its
+         * unreserved percent-encoded characters decoded.
+         * @param path the path
+         * @param allows the list to add the Allow patterns to
+         * @param disallows the list to add the Disallow patterns to
+         */
+        void collect(final String path, final List<PathPattern> allows, final List<PathPattern> disallows) {
+            if (path == null) {
+                allows.addAll(root.allows);
+                disallows.addAll(root.disallows);
+                return;
+            }
+            final String normalizedPath = PathPattern.normalizePercentEncoding(path);
+            collect(normalizedPath, 0, allows, disallows);
+            final String decodedPath = PathPattern.decodeUnreservedPercent(normalizedPath);
+            if (!decodedPath.equals(normalizedPath)) {
+                // the nodes of the common prefix are already collected
+                int common = 0;
+                final int max = Math.min(normalizedPath.length(), decodedPath.length());
+                while (common < max && normalizedPath.charAt(common) == decodedPath.charAt(common)) {
+                    common++;
+                }
+                collect(decodedPath, common + 1, allows, disallows);
+            }
+        }
+
+        /**
+         * Collects the patterns of the nodes on the path from the given depth.
+         * @param path the path
+         * @param fromDepth the minimum depth of the collected nodes
+         * @param allows the list to add the Allow patterns to
+         * @param disallows the list to add the Disallow patterns to
+         */
+        private void collect(final String path, final int fromDepth, final List<PathPattern> allows, final List<PathPattern> disallows) {
+            Node node = root;
+            for (int depth = 0;; depth++) {
+                if (depth >= fromDepth) {
+                    allows.addAll(node.allows);
+                    disallows.addAll(node.disallows);
+                }
+                if (depth >= path.length()) {
+                    return;
+                }
+                node = node.children.get(path.charAt(depth));
+                if (node == null) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * A node of the trie.
+         */
+        private static class Node {
+            /** The child nodes by character. */
+            private final Map<Character, Node> children = new HashMap<>();
+
+            /** The Allow patterns whose literal prefix ends at this node. */
+            private final List<PathPattern> allows = new ArrayList<>(1);
+
+            /** The Disallow patterns whose literal prefix ends at this node. */
+            private final List<PathPattern> disallows = new ArrayList<>(1);
+        }
+    }
+
     /**
      * Represents a directive in a robots.txt file.
      * A directive consists of a user agent, crawl delay, allowed paths, and disallowed paths.
@@ -453,6 +553,9 @@ public class RobotsTxt {
         /** The list of disallowed path patterns for this directive. */
         private final List<PathPattern> disallowedPaths = new ArrayList<>();
 
+        /** The index of the path patterns by their literal prefix, built on first use. */
+        private volatile PathTrie pathTrie;
+
         /**
          * Constructs a new Directive with the specified user agent.
          * @param userAgent the user agent string this directive applies to
@@ -499,8 +602,13 @@ public class RobotsTxt {
             PathPattern longestAllowMatch = null;
             PathPattern longestDisallowMatch = null;
 
+            // Only the patterns whose literal prefix starts the path can match it
+            final List<PathPattern> allowCandidates = new ArrayList<>();
+            final List<PathPattern> disallowCandidates = new ArrayList<>();
+            getPathTrie().collect(path, allowCandidates, disallowCandidates);
+
             // Find the longest matching Allow pattern
-            for (final PathPattern allowPattern : allowedPaths) {
+            for (final PathPattern allowPattern : allowCandidates) {
                 if (allowPattern.matches(path)) {
                     if (longestAllowMatch == null || allowPattern.getPriorityLength() > longestAllowMatch.getPriorityLength()) {
                         longestAllowMatch = allowPattern;
@@ -509,7 +617,7 @@ public class RobotsTxt {
             }
 
             // Find the longest matching Disallow pattern
-            for (final PathPattern disallowPattern : disallowedPaths) {
+            for (final PathPattern disallowPattern : disallowCandidates) {
                 if (disallowPattern.matches(path)) {
                     if (longestDisallowMatch == null || disallowPattern.getPriorityLength() > longestDisallowMatch.getPriorityLength()) {
                         longestDisallowMatch = disallowPattern;
@@ -545,6 +653,25 @@ public class RobotsTxt {
             }
         }
 
+        /**
+         * Returns the index of the path patterns, building it if the patterns have changed.
+         * @return the path trie
+         */
+        private PathTrie getPathTrie() {
+            PathTrie trie = pathTrie;
+            if (trie == null) {
+                trie = new PathTrie();
+                for (final PathPattern pattern : allowedPaths) {
+                    trie.add(pattern, true);
+                }
+                for (final PathPattern pattern : disallowedPaths) {
+                    trie.add(pattern, false);
+                }
+                pathTrie = trie;
+            }
+            return trie;
+        }
+
         /**
          * Adds an allowed path pattern to this directive.
          * Supports wildcards (*) and end-of-path ($) according to RFC 9309.
@@ -562,6 +689,7 @@ public class RobotsTxt {
             }
             if (!exists) {
                 allowedPaths.add(pattern);
+                pathTrie = null;
             }
         }
 
@@ -582,6 +710,7 @@ public class RobotsTxt {
             }
             if (!exists) {
                 disallowedPaths.add(pattern);
+                pathTrie = null;
             }
         }
 
@@ -597,6 +726,18 @@ public class RobotsTxt {
             return result;
         }
 
+        /**
+         * Returns a copy of this directive without its Allow rules, so that every path matched by
+         * a Disallow rule is disallowed.
+         * @return the copy, which has the user agent, the crawl delay and the Disallow rules of this directive
+         */
+        public Directive copyWithoutAllows() {
+            final Directive directive = new Directive(userAgent);
+            directive.crawlDelay = crawlDelay;
+            directive.disallowedPaths.addAll(disallowedPaths);
+            return directive;
+        }
+
         /**
          * Gets all disallowed path patterns for this directive.
          * @return an array of disallowed path pattern strings
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.entity;
+
+import java.io.UnsupportedEncodingException;
+
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.util.ContentSegmentStore;
+
+/**
+ * An {@link AccessResultData} whose data is kept in a {@link ContentSegmentStore}
+ * instead of the Java heap. Only the address and the length of the data are held
+ * on heap, and {@link #getData()} reads the data from the store on each call.
+ */
+public class StoredAccessResultData extends AccessResultDataImpl<Long> {
+
+    /** The store of the data. */
+    protected final ContentSegmentStore contentStore;
+
+    /** The address of the data in the store, or -1 if the data is null. */
+    protected long address = -1L;
+
+    /** The length of the data. */
+    protected int length;
+
+    /**
+     * Creates a new StoredAccessResultData.
+     *
+     * @param contentStore the store of the data
+     */
+    public StoredAccessResultData(final ContentSegmentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * Creates a StoredAccessResultData with the values of the given data, and writes its data to the store.
+     *
+     * @param accessResultData the data to copy
+     * @param contentStore the store of the data
+     * @return the stored data
+     */
+    public static StoredAccessResultData copyOf(final AccessResultData<Long> accessResultData, final ContentSegmentStore contentStore) {
+        final StoredAccessResultData storedData = new StoredAccessResultData(contentStore);
+        storedData.setId(accessResultData.getId());
+        storedData.setTransformerName(accessResultData.getTransformerName());
+        storedData.setEncoding(accessResultData.getEncoding());
+        storedData.setData(accessResultData.getData());
+        return storedData;
+    }
+
+    @Override
+    public byte[] getData() {
+        if (address < 0) {
+            return null;
+        }
+        return contentStore.read(address, length);
+    }
+
+    @Override
+    public void setData(final byte[] data) {
+        if (data == null) {
+            address = -1L;
+            length = 0;
+        } else {
+            address = contentStore.write(data);
+            length = data.length;
+        }
+    }
+
+    @Override
+    public String getDataAsString() {
+        final byte[] bytes = getData();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return new String(bytes, StringUtil.isNotBlank(encoding) ? encoding : Constants.UTF_8);
+        } catch (final UnsupportedEncodingException e) {
+            return new String(bytes, Constants.UTF_8_CHARSET);
+        }
+    }
+
+    /**
+     * Refers to data which is already in the store, without writing it again.
+     *
+     * @param address the address of the data in the store
+     * @param length the length of the data
+     */
+    public void setLocation(final long address, final int length) {
+        this.address = address;
+        this.length = length;
+    }
+
+    /**
+     * Returns the address of the data in the store.
+     *
+     * @return the address, or -1 if the data is null
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    /**
+     * Returns the store of the data.
+     *
+     * @return the content store
+     */
+    public ContentSegmentStore getContentStore() {
+        return contentStore;
+    }
+
+    /**
+     * Returns the length of the data without reading it.
+     *
+     * @return the length of the data, or 0 if the data is null
+     */
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredAccessResultData [id=" + id + ", transformerName=" + transformerName + ", encoding=" + encoding + ", address="
+                + address + ", length=" + length + "]";
+    }
+}
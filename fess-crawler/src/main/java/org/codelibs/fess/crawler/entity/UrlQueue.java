@@ -149,6 +149,26 @@ public interface UrlQueue<IDTYPE> {
      */
     void setLastModified(Long lastModified);
 
+    /**
+     * Returns the entity tag of the previous access to the URL, which is used for a conditional request.
+     * Implementations which do not keep the entity tag return null.
+     *
+     * @return the entity tag, or null.
+     */
+    default String getEtag() {
+        return null;
+    }
+
+    /**
+     * Sets the entity tag of the previous access to the URL.
+     * Implementations which do not keep the entity tag ignore it.
+     *
+     * @param etag the entity tag.
+     */
+    default void setEtag(final String etag) {
+        // NOP
+    }
+
     /**
      * Returns the creation time of the URL queue entry.
      *
@@ -51,6 +51,9 @@ public class UrlQueueImpl<IDTYPE> implements UrlQueue<IDTYPE> {
     /** The last modified timestamp of the URL in the queue. */
     protected Long lastModified;
 
+    /** The entity tag of the previous access to the URL. */
+    protected String etag;
+
     /** The creation time of the URL queue entry. */
     protected Long createTime;
 
@@ -239,6 +242,16 @@ public class UrlQueueImpl<IDTYPE> implements UrlQueue<IDTYPE> {
         this.lastModified = lastModified;
     }
 
+    @Override
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public void setEtag(final String etag) {
+        this.etag = etag;
+    }
+
     @Override
     public float getWeight() {
         return weight;
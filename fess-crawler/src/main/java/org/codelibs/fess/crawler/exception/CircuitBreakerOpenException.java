@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.exception;
+
+/**
+ * CircuitBreakerOpenException is thrown when a request is not sent because the circuit breaker of its host is open,
+ * that is, recent requests to the host have failed and the host is not tried again until the breaker half-opens.
+ *
+ */
+public class CircuitBreakerOpenException extends CrawlingAccessException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new CircuitBreakerOpenException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public CircuitBreakerOpenException(final String message) {
+        super(message);
+    }
+
+}
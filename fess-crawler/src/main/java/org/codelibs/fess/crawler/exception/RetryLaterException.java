@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.exception;
+
+/**
+ * RetryLaterException is thrown when an access failed and should be retried later instead of in place.
+ * The caller is expected to put the URL back to be crawled again at or after {@link #getRetryTime()}.
+ *
+ */
+public class RetryLaterException extends CrawlingAccessException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The time in milliseconds since the epoch before which the access should not be retried. */
+    private final long retryTime;
+
+    /** The number of failed attempts so far. */
+    private final int retryCount;
+
+    /**
+     * Creates a new RetryLaterException.
+     *
+     * @param message the detail message
+     * @param cause the exception of the failed attempt
+     * @param retryTime the time in milliseconds since the epoch before which the access should not be retried
+     * @param retryCount the number of failed attempts so far
+     */
+    public RetryLaterException(final String message, final Throwable cause, final long retryTime, final int retryCount) {
+        super(message, cause);
+        this.retryTime = retryTime;
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * Returns the time before which the access should not be retried.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getRetryTime() {
+        return retryTime;
+    }
+
+    /**
+     * Returns the number of failed attempts so far.
+     *
+     * @return the number of attempts
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+}
@@ -19,7 +19,6 @@ import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
@@ -28,6 +27,7 @@ import org.codelibs.fess.crawler.container.CrawlerContainer;
 import org.codelibs.fess.crawler.exception.CrawlerSystemException;
 import org.codelibs.fess.crawler.filter.UrlFilter;
 import org.codelibs.fess.crawler.service.UrlFilterService;
+import org.codelibs.fess.crawler.util.UrlPatternMatcher;
 
 import jakarta.annotation.Resource;
 
@@ -38,6 +38,8 @@ import jakarta.annotation.Resource;
  * The class supports caching of include and exclude patterns for scenarios where a session ID is not available.
  * It also provides methods to initialize the filter with a session ID, clear the filter,
  * match a URL against the defined patterns, and process a URL to add include or exclude patterns based on predefined filtering patterns.
+ * The pattern lists are compiled into {@link UrlPatternMatcher}s, which are extended incrementally when
+ * patterns are appended, so that matching does not evaluate every pattern for each URL.
  *
  */
 /**
@@ -95,6 +97,16 @@ public class UrlFilterImpl implements UrlFilter {
      */
     protected UrlFilterService urlFilterService;
 
+    /**
+     * The compiled include patterns.
+     */
+    protected final CompiledPatternList includeMatcher = new CompiledPatternList();
+
+    /**
+     * The compiled exclude patterns.
+     */
+    protected final CompiledPatternList excludeMatcher = new CompiledPatternList();
+
     /*
      * (non-Javadoc)
      *
@@ -148,6 +160,8 @@ public class UrlFilterImpl implements UrlFilter {
     public void clear() {
         cachedIncludeSet.clear();
         cachedExcludeSet.clear();
+        includeMatcher.reset();
+        excludeMatcher.reset();
         if (sessionId != null) {
             getUrlFilterService().delete(sessionId);
         }
@@ -186,35 +200,15 @@ public class UrlFilterImpl implements UrlFilter {
      */
     @Override
     public boolean match(final String url) {
-        final List<Pattern> includeList = getUrlFilterService().getIncludeUrlPatternList(sessionId);
-        final List<Pattern> excludeList = getUrlFilterService().getExcludeUrlPatternList(sessionId);
-
-        if (!includeList.isEmpty()) {
-            boolean match = false;
-            for (final Pattern pattern : includeList) {
-                final Matcher matcher = pattern.matcher(url);
-                if (matcher.matches()) {
-                    match = true;
-                    break;
-                }
-            }
-            if (!match) {
-                return false;
-            }
+        final UrlPatternMatcher includes = includeMatcher.get(getUrlFilterService().getIncludeUrlPatternList(sessionId));
+        final UrlPatternMatcher excludes = excludeMatcher.get(getUrlFilterService().getExcludeUrlPatternList(sessionId));
+
+        if (!includes.isEmpty() && !includes.matches(url)) {
+            return false;
         }
 
-        if (!excludeList.isEmpty()) {
-            boolean match = false;
-            for (final Pattern pattern : excludeList) {
-                final Matcher matcher = pattern.matcher(url);
-                if (matcher.matches()) {
-                    match = true;
-                    break;
-                }
-            }
-            if (match) {
-                return false;
-            }
+        if (!excludes.isEmpty() && excludes.matches(url)) {
+            return false;
         }
 
         return true;
@@ -308,4 +302,88 @@ public class UrlFilterImpl implements UrlFilter {
                 + cachedExcludeSet + ", sessionId=" + sessionId + ", urlFilterService=" + urlFilterService + "]";
     }
 
+    /**
+     * A {@link UrlPatternMatcher} compiled from a pattern list of {@link UrlFilterService}.
+     * When the same list has grown, only the appended patterns are added to the matcher.
+     * When another list is given, the matcher is rebuilt.
+     */
+    protected static class CompiledPatternList {
+
+        /** The current state, replaced as a whole on update. */
+        protected volatile State state = new State(null, 0, new UrlPatternMatcher());
+
+        /**
+         * Creates a new CompiledPatternList instance.
+         */
+        protected CompiledPatternList() {
+            // NOP
+        }
+
+        /**
+         * Returns the matcher for the given pattern list, compiling it if needed.
+         * @param patternList The pattern list.
+         * @return The matcher.
+         */
+        protected UrlPatternMatcher get(final List<Pattern> patternList) {
+            final State current = state;
+            if (current.source == patternList && current.count == patternList.size()) {
+                return current.matcher;
+            }
+            synchronized (this) {
+                final State latest = state;
+                final List<Pattern> patterns;
+                synchronized (patternList) {
+                    patterns = new ArrayList<>(patternList);
+                }
+                if (latest.source == patternList && latest.count == patterns.size()) {
+                    return latest.matcher;
+                }
+                final UrlPatternMatcher matcher;
+                if (latest.source == patternList && latest.count < patterns.size()) {
+                    matcher = latest.matcher;
+                    matcher.addAll(patterns.subList(latest.count, patterns.size()));
+                } else {
+                    matcher = new UrlPatternMatcher();
+                    matcher.addAll(patterns);
+                }
+                state = new State(patternList, patterns.size(), matcher);
+                return matcher;
+            }
+        }
+
+        /**
+         * Discards the compiled matcher.
+         */
+        protected void reset() {
+            state = new State(null, 0, new UrlPatternMatcher());
+        }
+
+        /**
+         * An immutable pair of a pattern list and its compiled matcher.
+         */
+        protected static class State {
+
+            /** The compiled pattern list. */
+            protected final List<Pattern> source;
+
+            /** The number of the compiled patterns. */
+            protected final int count;
+
+            /** The matcher. */
+            protected final UrlPatternMatcher matcher;
+
+            /**
+             * Creates a new State instance.
+             * @param source The compiled pattern list.
+             * @param count The number of the compiled patterns.
+             * @param matcher The matcher.
+             */
+            protected State(final List<Pattern> source, final int count, final UrlPatternMatcher matcher) {
+                this.source = source;
+                this.count = count;
+                this.matcher = matcher;
+            }
+        }
+    }
+
 }
@@ -15,30 +15,42 @@
  */
 package org.codelibs.fess.crawler.helper;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Pattern;
 
+import org.codelibs.fess.crawler.entity.AccessResultData;
 import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.StoredAccessResultData;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.util.CheckpointLog;
+import org.codelibs.fess.crawler.util.ContentSegmentStore;
+import org.codelibs.fess.crawler.util.HostPartitionedQueue;
+import org.codelibs.fess.crawler.util.PriorityUrlQueue;
+import org.codelibs.fess.crawler.util.SpillingUrlQueue;
+import org.codelibs.fess.crawler.util.VisitedUrlSet;
 
 /**
  * The {@code MemoryDataHelper} class provides a helper for managing crawler data in memory.
- * It stores URL queues, access results, and URL patterns for inclusion and exclusion.
- * This class is designed to be used in a single-threaded environment or with external synchronization.
+ * It stores URL queues, access results, and URL patterns for inclusion and exclusion,
+ * and optionally checkpoints the sessions to logs on disk.
  *
  * <p>It uses {@code Map} and {@code Queue} data structures to hold the data. The class provides
  * methods to add, remove, clear, and retrieve data from these structures.
  *
- * <p>The class is thread-safe due to the use of {@code synchronized} keyword on methods that
- * modify the internal data structures. The internal maps are also declared as {@code volatile}
- * to ensure visibility of changes across threads.
+ * <p>The per-session maps are {@code ConcurrentHashMap}s, so the helper can be shared by the crawler
+ * threads. A URL queue itself is not thread-safe; the queue services synchronize on it while
+ * reading or modifying it. Checkpoints of a session are serialized on its checkpoint log.
  *
  * <p>The class also provides methods to manage URL patterns for inclusion and exclusion, which
  * are stored as {@code Pattern} objects.
@@ -50,6 +62,12 @@ public class MemoryDataHelper {
     /** Map of session IDs to sets of URLs currently in queue for O(1) duplicate detection. */
     protected final Map<String, Set<String>> urlInQueueSetMap = new ConcurrentHashMap<>();
 
+    /** Map of session IDs to the URL queues which have been polled and whose crawling has not finished, keyed by URL. */
+    protected final Map<String, Map<String, UrlQueueImpl<Long>>> inFlightUrlQueueMap = new ConcurrentHashMap<>();
+
+    /** Map of session IDs to host-partitioned URL queues used by lock-free queue services. */
+    protected final Map<String, HostPartitionedQueue<UrlQueueImpl<Long>>> hostPartitionedQueueMap = new ConcurrentHashMap<>();
+
     /** Map of session IDs to access result maps for storing crawling results. Uses ConcurrentHashMap for reduced lock contention. */
     protected final Map<String, Map<String, AccessResultImpl<Long>>> sessionMap = new ConcurrentHashMap<>();
 
@@ -59,6 +77,69 @@ public class MemoryDataHelper {
     /** Map of session IDs to exclude URL patterns for filtering URLs. */
     protected final Map<String, List<Pattern>> excludeUrlPatternMap = new ConcurrentHashMap<>();
 
+    /**
+     * Map of session IDs to compact sets of queued and accessed URLs, used instead of the queued URL sets
+     * when {@link #visitedUrlSetEnabled} or {@link #urlQueueSpillEnabled} is true.
+     */
+    protected final Map<String, VisitedUrlSet> visitedUrlSetMap = new ConcurrentHashMap<>();
+
+    /** Whether duplicate URLs are detected with a {@link VisitedUrlSet} instead of the queued URL set and the access results. */
+    protected boolean visitedUrlSetEnabled = false;
+
+    /** The expected insertions of the first Bloom filter of a visited URL set. */
+    protected long visitedUrlExpectedInsertions = 1_000_000L;
+
+    /** The false positive probability of the first Bloom filter of a visited URL set. */
+    protected double visitedUrlFpp = 0.0001;
+
+    /** Whether a visited URL set keeps the URL fingerprints in an exact store behind its Bloom filters. */
+    protected boolean visitedUrlExactStoreEnabled = true;
+
+    /** Whether URL queues poll the entries with the highest weight first instead of in FIFO order. */
+    protected boolean urlQueuePriorityEnabled = false;
+
+    /** The number of priority buckets per unit of weight when {@link #urlQueuePriorityEnabled} is true. */
+    protected int urlQueuePriorityScale = 10;
+
+    /** Whether URL queues spill the entries beyond {@link #urlQueueHeadCapacity} to disk. */
+    protected boolean urlQueueSpillEnabled = false;
+
+    /** The maximum number of URL queue entries kept in memory per session when spilling is enabled. */
+    protected int urlQueueHeadCapacity = 100_000;
+
+    /** The number of URL queue entries in a spilled segment file. */
+    protected int urlQueueSegmentSize = 50_000;
+
+    /** The directory of spilled URL queue segments, or null for the system temporary directory. */
+    protected File urlQueueSpillDirectory;
+
+    /** The directory of the checkpoint logs of the sessions, or null if checkpoints are disabled. */
+    protected File checkpointDirectory;
+
+    /** The number of checkpoints appended to a log before it is compacted into one. */
+    protected int checkpointCompactionInterval = 10;
+
+    /** Map of session IDs to checkpoint logs. */
+    protected final Map<String, CheckpointLog> checkpointLogMap = new ConcurrentHashMap<>();
+
+    /** Map of session IDs to the access results stored or updated since the last checkpoint. */
+    protected final Map<String, Queue<AccessResultImpl<Long>>> checkpointResultMap = new ConcurrentHashMap<>();
+
+    /** Map of session IDs to the URL queues offered since the last checkpoint. */
+    protected final Map<String, Queue<UrlQueueImpl<Long>>> checkpointUrlQueueMap = new ConcurrentHashMap<>();
+
+    /** Whether the data of the access results is kept in segment files instead of the heap. */
+    protected boolean contentStoreEnabled = false;
+
+    /** The parent directory of the content segments, or null for the system temporary directory. */
+    protected File contentStoreDirectory;
+
+    /** The size at which a new content segment file is started. */
+    protected long contentStoreSegmentSize = 256L * 1024L * 1024L;
+
+    /** Map of session IDs to the stores of their access result data. */
+    protected final Map<String, ContentSegmentStore> contentStoreMap = new ConcurrentHashMap<>();
+
     /**
      * Creates a new MemoryDataHelper instance.
      */
@@ -67,12 +148,22 @@ public class MemoryDataHelper {
     }
 
     /**
-     * Clears all URL queues and session data.
+     * Clears all URL queues and session data, including the checkpoints recorded in memory.
+     * The checkpoint logs on disk are kept, so the sessions can still be restored from them.
      */
     public void clear() {
+        closeUrlQueues();
         urlQueueMap.clear();
         urlInQueueSetMap.clear();
+        inFlightUrlQueueMap.clear();
+        hostPartitionedQueueMap.clear();
         sessionMap.clear();
+        visitedUrlSetMap.clear();
+        checkpointResultMap.clear();
+        checkpointUrlQueueMap.clear();
+        checkpointLogMap.clear();
+        // the checkpoint logs of the sessions refer to their content segments
+        closeContentStores(isCheckpointEnabled());
     }
 
     /**
@@ -83,7 +174,32 @@ public class MemoryDataHelper {
      * @return the URL queue for the session
      */
     public Queue<UrlQueueImpl<Long>> getUrlQueueList(final String sessionId) {
-        return urlQueueMap.computeIfAbsent(sessionId, k -> new LinkedList<>());
+        return urlQueueMap.computeIfAbsent(sessionId, k -> {
+            if (urlQueuePriorityEnabled) {
+                return new PriorityUrlQueue(urlQueuePriorityScale);
+            }
+            if (urlQueueSpillEnabled) {
+                return new SpillingUrlQueue(urlQueueHeadCapacity, urlQueueSegmentSize, urlQueueSpillDirectory);
+            }
+            return new LinkedList<>();
+        });
+    }
+
+    /**
+     * Deletes the spilled segment files of the URL queue, if any.
+     * @param urlQueueList the URL queue being discarded
+     */
+    protected void closeUrlQueue(final Queue<UrlQueueImpl<Long>> urlQueueList) {
+        if (urlQueueList instanceof final SpillingUrlQueue spillingUrlQueue) {
+            spillingUrlQueue.close();
+        }
+    }
+
+    /**
+     * Deletes the spilled segment files of all URL queues.
+     */
+    protected void closeUrlQueues() {
+        urlQueueMap.values().forEach(this::closeUrlQueue);
     }
 
     /**
@@ -91,11 +207,76 @@ public class MemoryDataHelper {
      * This enables O(1) duplicate detection instead of O(n) queue iteration.
      * Creates a new set if one doesn't exist.
      * Uses ConcurrentHashMap.computeIfAbsent for thread-safe lazy initialization.
+     * The returned set is a concurrent set, so it can also be used without external synchronization.
      * @param sessionId the session ID
      * @return the set of URLs in queue for the session
      */
     public Set<String> getUrlInQueueSet(final String sessionId) {
-        return urlInQueueSetMap.computeIfAbsent(sessionId, k -> new HashSet<>());
+        return urlInQueueSetMap.computeIfAbsent(sessionId, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Returns the URL queues of the specified session which have been polled and whose crawling has not
+     * finished, keyed by URL. Creates a new map if one doesn't exist.
+     * The returned map is a concurrent map, so it can also be used without external synchronization.
+     * @param sessionId the session ID
+     * @return the map of URLs to the polled URL queues
+     */
+    public Map<String, UrlQueueImpl<Long>> getInFlightUrlQueueMap(final String sessionId) {
+        return inFlightUrlQueueMap.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Returns the compact set of queued and accessed URLs for the specified session ID.
+     * Creates a new set if one doesn't exist. A spilling URL queue also uses it, so that the
+     * URLs spilled to disk are not kept in the queued URL set on the heap.
+     * @param sessionId the session ID
+     * @return the visited URL set, or null if neither {@link #visitedUrlSetEnabled} nor {@link #urlQueueSpillEnabled} is true
+     */
+    public VisitedUrlSet getVisitedUrlSet(final String sessionId) {
+        if (!visitedUrlSetEnabled && !urlQueueSpillEnabled) {
+            return null;
+        }
+        return visitedUrlSetMap.computeIfAbsent(sessionId,
+                k -> new VisitedUrlSet(visitedUrlExpectedInsertions, visitedUrlFpp, visitedUrlExactStoreEnabled));
+    }
+
+    /**
+     * Adds the URL to the visited URL set of the specified session, if visited URL sets are enabled.
+     * @param sessionId the session ID
+     * @param url the queued or accessed URL
+     */
+    public void addVisitedUrl(final String sessionId, final String url) {
+        final VisitedUrlSet visitedUrlSet = getVisitedUrlSet(sessionId);
+        if (visitedUrlSet != null) {
+            visitedUrlSet.add(url);
+        }
+    }
+
+    /**
+     * Records a queued URL of the specified session in the visited URL set if there is one,
+     * or in the queued URL set otherwise.
+     * @param sessionId the session ID
+     * @param url the queued URL
+     * @return true if the URL was not recorded yet
+     */
+    public boolean addQueuedUrl(final String sessionId, final String url) {
+        final VisitedUrlSet visitedUrlSet = getVisitedUrlSet(sessionId);
+        if (visitedUrlSet != null) {
+            return visitedUrlSet.add(url);
+        }
+        return getUrlInQueueSet(sessionId).add(url);
+    }
+
+    /**
+     * Returns the host-partitioned URL queue for the specified session ID.
+     * Creates a new queue if one doesn't exist.
+     * Uses ConcurrentHashMap.computeIfAbsent for thread-safe lazy initialization.
+     * @param sessionId the session ID
+     * @return the host-partitioned URL queue for the session
+     */
+    public HostPartitionedQueue<UrlQueueImpl<Long>> getHostPartitionedQueue(final String sessionId) {
+        return hostPartitionedQueueMap.computeIfAbsent(sessionId, k -> new HostPartitionedQueue<>());
     }
 
     /**
@@ -105,11 +286,11 @@ public class MemoryDataHelper {
      */
     public void addUrlQueueList(final String sessionId, final Queue<UrlQueueImpl<Long>> urlQueueList) {
         final Queue<UrlQueueImpl<Long>> uqList = getUrlQueueList(sessionId);
-        final Set<String> urlSet = getUrlInQueueSet(sessionId);
         synchronized (uqList) {
             for (final UrlQueueImpl<Long> urlQueue : urlQueueList) {
                 uqList.add(urlQueue);
-                urlSet.add(urlQueue.getUrl());
+                addQueuedUrl(sessionId, urlQueue.getUrl());
+                addCheckpointUrlQueue(sessionId, urlQueue);
             }
         }
     }
@@ -119,16 +300,24 @@ public class MemoryDataHelper {
      * @param sessionId the session ID
      */
     public void removeUrlQueueList(final String sessionId) {
-        urlQueueMap.remove(sessionId);
+        final Queue<UrlQueueImpl<Long>> urlQueueList = urlQueueMap.remove(sessionId);
+        if (urlQueueList != null) {
+            closeUrlQueue(urlQueueList);
+        }
         urlInQueueSetMap.remove(sessionId);
+        inFlightUrlQueueMap.remove(sessionId);
+        hostPartitionedQueueMap.remove(sessionId);
     }
 
     /**
      * Clears all URL queues for all sessions.
      */
     public void clearUrlQueueList() {
+        closeUrlQueues();
         urlQueueMap.clear();
         urlInQueueSetMap.clear();
+        inFlightUrlQueueMap.clear();
+        hostPartitionedQueueMap.clear();
     }
 
     /**
@@ -148,13 +337,235 @@ public class MemoryDataHelper {
      */
     public void deleteAccessResultMap(final String sessionId) {
         sessionMap.remove(sessionId);
+        visitedUrlSetMap.remove(sessionId);
+        deleteCheckpoint(sessionId);
+        final ContentSegmentStore contentStore = contentStoreMap.remove(sessionId);
+        if (contentStore != null) {
+            contentStore.close();
+        }
     }
 
     /**
      * Deletes all access result maps for all sessions.
      */
     public void deleteAllAccessResultMap() {
+        sessionMap.keySet().forEach(this::deleteCheckpoint);
+        checkpointLogMap.keySet().forEach(this::deleteCheckpoint);
         sessionMap.clear();
+        visitedUrlSetMap.clear();
+        closeContentStores(false);
+    }
+
+    /**
+     * Returns the store of the access result data of the specified session.
+     * Creates a new store if one doesn't exist. If checkpoints are enabled, the store is
+     * kept in a directory named after the session, so that it is found again on a restart.
+     * @param sessionId the session ID
+     * @return the content store, or null if {@link #contentStoreEnabled} is false
+     */
+    public ContentSegmentStore getContentStore(final String sessionId) {
+        if (!contentStoreEnabled) {
+            return null;
+        }
+        return contentStoreMap.computeIfAbsent(sessionId, k -> {
+            try {
+                final File directory;
+                if (isCheckpointEnabled()) {
+                    directory = new File(contentStoreDirectory != null ? contentStoreDirectory : checkpointDirectory,
+                            getCheckpointName(k) + ".content");
+                } else if (contentStoreDirectory != null) {
+                    directory = Files.createTempDirectory(contentStoreDirectory.toPath(), "content").toFile();
+                } else {
+                    directory = Files.createTempDirectory("content").toFile();
+                }
+                return new ContentSegmentStore(directory, contentStoreSegmentSize);
+            } catch (final IOException e) {
+                throw new CrawlerSystemException("Failed to create a content store for " + k, e);
+            }
+        });
+    }
+
+    /**
+     * Moves the data of the access result into the content store of its session, if content stores are enabled.
+     * The content store is append-only, so the bytes of data which is replaced later are not reclaimed
+     * until the content store of the session is closed.
+     * @param accessResult the access result
+     */
+    public void storeContent(final AccessResultImpl<Long> accessResult) {
+        final AccessResultData<Long> accessResultData = accessResult.getAccessResultData();
+        if (accessResultData == null || accessResultData instanceof StoredAccessResultData) {
+            return;
+        }
+        final ContentSegmentStore contentStore = getContentStore(accessResult.getSessionId());
+        if (contentStore != null) {
+            accessResult.setAccessResultData(StoredAccessResultData.copyOf(accessResultData, contentStore));
+        }
+    }
+
+    /**
+     * Closes the content stores of all sessions.
+     * @param keep true to keep the segment files, false to delete them
+     */
+    protected void closeContentStores(final boolean keep) {
+        contentStoreMap.values().forEach(keep ? ContentSegmentStore::closeChannels : ContentSegmentStore::close);
+        contentStoreMap.clear();
+    }
+
+    /**
+     * Returns true if the sessions are checkpointed to {@link #checkpointDirectory}.
+     * @return true if checkpoints are enabled
+     */
+    public boolean isCheckpointEnabled() {
+        return checkpointDirectory != null;
+    }
+
+    /**
+     * Returns the name of the checkpoint files of the specified session.
+     * @param sessionId the session ID
+     * @return the file name without an extension
+     */
+    protected String getCheckpointName(final String sessionId) {
+        return sessionId.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    /**
+     * Returns the checkpoint log of the specified session.
+     * @param sessionId the session ID
+     * @return the checkpoint log
+     */
+    protected CheckpointLog getCheckpointLog(final String sessionId) {
+        return checkpointLogMap.computeIfAbsent(sessionId,
+                k -> new CheckpointLog(new File(checkpointDirectory, getCheckpointName(k) + ".log"), getContentStore(k)));
+    }
+
+    /**
+     * Records a stored or updated access result for the next checkpoint of its session.
+     * @param accessResult the access result
+     */
+    public void addCheckpointResult(final AccessResultImpl<Long> accessResult) {
+        if (isCheckpointEnabled()) {
+            checkpointResultMap.computeIfAbsent(accessResult.getSessionId(), k -> new ConcurrentLinkedQueue<>()).add(accessResult);
+        }
+    }
+
+    /**
+     * Records an offered URL queue for the next checkpoint of its session.
+     * @param sessionId the session ID
+     * @param urlQueue the offered URL queue
+     */
+    public void addCheckpointUrlQueue(final String sessionId, final UrlQueueImpl<Long> urlQueue) {
+        if (isCheckpointEnabled()) {
+            checkpointUrlQueueMap.computeIfAbsent(sessionId, k -> new ConcurrentLinkedQueue<>()).add(urlQueue);
+        }
+    }
+
+    /**
+     * Appends a checkpoint of the session to its log: the access results and the URL queues recorded
+     * since the previous checkpoint. The URL queue itself is not read, so a checkpoint neither blocks
+     * the crawler threads nor loads a spilled queue. Every {@link #checkpointCompactionInterval}
+     * checkpoints, the log is rewritten with all access results and the logged URL queues which have
+     * no access result instead. The data kept in the content store is logged by its address.
+     * @param sessionId the session ID
+     */
+    public void checkpoint(final String sessionId) {
+        if (!isCheckpointEnabled()) {
+            return;
+        }
+        final Map<String, AccessResultImpl<Long>> arMap = getAccessResultMap(sessionId);
+        final CheckpointLog checkpointLog = getCheckpointLog(sessionId);
+        synchronized (checkpointLog) {
+            final Queue<AccessResultImpl<Long>> resultQueue =
+                    checkpointResultMap.computeIfAbsent(sessionId, k -> new ConcurrentLinkedQueue<>());
+            final Queue<UrlQueueImpl<Long>> offeredQueue = checkpointUrlQueueMap.computeIfAbsent(sessionId, k -> new ConcurrentLinkedQueue<>());
+            final List<AccessResultImpl<Long>> resultList = drain(resultQueue);
+            final List<UrlQueueImpl<Long>> urlQueueList = drain(offeredQueue);
+            try {
+                final ContentSegmentStore contentStore = getContentStore(sessionId);
+                if (contentStore != null) {
+                    // the logged addresses must not point past the data on the disk
+                    contentStore.force();
+                }
+                if (checkpointLog.getCheckpointCount() >= checkpointCompactionInterval) {
+                    checkpointLog.rewrite(arMap.values(), urlQueue -> !arMap.containsKey(urlQueue.getUrl()), urlQueueList);
+                } else {
+                    checkpointLog.append(resultList, urlQueueList);
+                }
+            } catch (final IOException | CrawlerSystemException e) {
+                // keep them for the next checkpoint
+                resultQueue.addAll(resultList);
+                offeredQueue.addAll(urlQueueList);
+                throw new CrawlerSystemException("Failed to write a checkpoint to " + checkpointLog.getFile().getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes all elements of the queue.
+     * @param <T> the element type
+     * @param queue the queue
+     * @return the removed elements
+     */
+    private static <T> List<T> drain(final Queue<T> queue) {
+        final List<T> list = new ArrayList<>();
+        for (T element = queue.poll(); element != null; element = queue.poll()) {
+            list.add(element);
+        }
+        return list;
+    }
+
+    /**
+     * Restores the session from the complete checkpoints of its log. The logged access results
+     * are streamed into the session, and then the logged URL queues which are neither accessed
+     * nor queued are added to the URL queue, so neither is collected in memory first.
+     * @param sessionId the session ID
+     * @param urlQueueList the URL queue of the session
+     * @return true if a checkpoint was restored
+     */
+    public boolean restoreCheckpoint(final String sessionId, final Queue<UrlQueueImpl<Long>> urlQueueList) {
+        if (!isCheckpointEnabled()) {
+            return false;
+        }
+        final Map<String, AccessResultImpl<Long>> arMap = getAccessResultMap(sessionId);
+        final CheckpointLog checkpointLog = getCheckpointLog(sessionId);
+        synchronized (checkpointLog) {
+            try {
+                final int checkpointCount = checkpointLog.replay(accessResult -> {
+                    storeContent(accessResult);
+                    // a later checkpoint replaces the access result of an earlier one
+                    if (arMap.put(accessResult.getUrl(), accessResult) == null) {
+                        addVisitedUrl(sessionId, accessResult.getUrl());
+                    }
+                }, null);
+                if (checkpointCount == 0) {
+                    return false;
+                }
+                checkpointLog.replay(null, urlQueue -> {
+                    final String url = urlQueue.getUrl();
+                    if (!arMap.containsKey(url) && addQueuedUrl(sessionId, url)) {
+                        urlQueueList.add(urlQueue);
+                    }
+                });
+            } catch (final IOException e) {
+                throw new CrawlerSystemException("Failed to read " + checkpointLog.getFile().getAbsolutePath(), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the checkpoint log of the specified session.
+     * @param sessionId the session ID
+     */
+    public void deleteCheckpoint(final String sessionId) {
+        checkpointResultMap.remove(sessionId);
+        checkpointUrlQueueMap.remove(sessionId);
+        if (isCheckpointEnabled()) {
+            final CheckpointLog checkpointLog = getCheckpointLog(sessionId);
+            synchronized (checkpointLog) {
+                checkpointLog.delete();
+            }
+        }
+        checkpointLogMap.remove(sessionId);
     }
 
     /**
@@ -238,4 +649,133 @@ public class MemoryDataHelper {
         includeUrlPatternMap.clear();
         excludeUrlPatternMap.clear();
     }
+
+    /**
+     * Sets whether duplicate URLs are detected with a compact {@link VisitedUrlSet} of URL
+     * fingerprints instead of the queued URL set and the access results.
+     * @param visitedUrlSetEnabled true to use visited URL sets
+     */
+    public void setVisitedUrlSetEnabled(final boolean visitedUrlSetEnabled) {
+        this.visitedUrlSetEnabled = visitedUrlSetEnabled;
+    }
+
+    /**
+     * Sets the expected insertions of the first Bloom filter of a visited URL set.
+     * @param visitedUrlExpectedInsertions the expected insertions
+     */
+    public void setVisitedUrlExpectedInsertions(final long visitedUrlExpectedInsertions) {
+        this.visitedUrlExpectedInsertions = visitedUrlExpectedInsertions;
+    }
+
+    /**
+     * Sets the false positive probability of the first Bloom filter of a visited URL set.
+     * @param visitedUrlFpp the false positive probability
+     */
+    public void setVisitedUrlFpp(final double visitedUrlFpp) {
+        this.visitedUrlFpp = visitedUrlFpp;
+    }
+
+    /**
+     * Sets whether a visited URL set keeps the URL fingerprints in an exact store. Without it,
+     * a Bloom filter false positive makes an unvisited URL look visited.
+     * @param visitedUrlExactStoreEnabled true to keep the exact store
+     */
+    public void setVisitedUrlExactStoreEnabled(final boolean visitedUrlExactStoreEnabled) {
+        this.visitedUrlExactStoreEnabled = visitedUrlExactStoreEnabled;
+    }
+
+    /**
+     * Sets whether URL queues poll the entries with the highest weight first, and entries of the same
+     * weight in FIFO order. A priority queue is kept in memory, so it takes precedence over spilling.
+     * @param urlQueuePriorityEnabled true to poll URL queues by weight
+     */
+    public void setUrlQueuePriorityEnabled(final boolean urlQueuePriorityEnabled) {
+        this.urlQueuePriorityEnabled = urlQueuePriorityEnabled;
+    }
+
+    /**
+     * Sets the number of priority buckets per unit of weight. Weights closer than {@code 1 / scale}
+     * share a bucket and are polled in FIFO order.
+     * @param urlQueuePriorityScale the number of buckets per unit of weight
+     */
+    public void setUrlQueuePriorityScale(final int urlQueuePriorityScale) {
+        this.urlQueuePriorityScale = urlQueuePriorityScale;
+    }
+
+    /**
+     * Sets whether URL queues keep a bounded head in memory and spill the other entries to
+     * segment files, so that a large frontier does not exhaust the heap. Duplicate URLs are then
+     * detected with a {@link VisitedUrlSet} as if {@link #setVisitedUrlSetEnabled(boolean)} were enabled.
+     * @param urlQueueSpillEnabled true to spill URL queues to disk
+     */
+    public void setUrlQueueSpillEnabled(final boolean urlQueueSpillEnabled) {
+        this.urlQueueSpillEnabled = urlQueueSpillEnabled;
+    }
+
+    /**
+     * Sets the maximum number of URL queue entries kept in memory per session when spilling is enabled.
+     * @param urlQueueHeadCapacity the head capacity
+     */
+    public void setUrlQueueHeadCapacity(final int urlQueueHeadCapacity) {
+        this.urlQueueHeadCapacity = urlQueueHeadCapacity;
+    }
+
+    /**
+     * Sets the number of URL queue entries in a spilled segment file. It should not exceed
+     * half of the head capacity, because a segment is read back when the head is half empty.
+     * @param urlQueueSegmentSize the segment size
+     */
+    public void setUrlQueueSegmentSize(final int urlQueueSegmentSize) {
+        this.urlQueueSegmentSize = urlQueueSegmentSize;
+    }
+
+    /**
+     * Sets the directory of spilled URL queue segments.
+     * @param urlQueueSpillDirectory the directory, or null for the system temporary directory
+     */
+    public void setUrlQueueSpillDirectory(final File urlQueueSpillDirectory) {
+        this.urlQueueSpillDirectory = urlQueueSpillDirectory;
+    }
+
+    /**
+     * Sets the directory of the checkpoint logs. With a directory, the in-memory URL queue
+     * services checkpoint a session on saveSession and can restore it after a restart.
+     * @param checkpointDirectory the directory, or null to disable checkpoints
+     */
+    public void setCheckpointDirectory(final File checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    /**
+     * Sets the number of checkpoints appended to a log before it is compacted into one.
+     * @param checkpointCompactionInterval the number of checkpoints
+     */
+    public void setCheckpointCompactionInterval(final int checkpointCompactionInterval) {
+        this.checkpointCompactionInterval = checkpointCompactionInterval;
+    }
+
+    /**
+     * Sets whether the data of the access results is kept in segment files instead of the heap.
+     * Only small records stay on heap, and the data is read from the files when it is requested.
+     * @param contentStoreEnabled true to keep the data in segment files
+     */
+    public void setContentStoreEnabled(final boolean contentStoreEnabled) {
+        this.contentStoreEnabled = contentStoreEnabled;
+    }
+
+    /**
+     * Sets the parent directory of the content segments.
+     * @param contentStoreDirectory the directory, or null for the system temporary directory
+     */
+    public void setContentStoreDirectory(final File contentStoreDirectory) {
+        this.contentStoreDirectory = contentStoreDirectory;
+    }
+
+    /**
+     * Sets the size at which a new content segment file is started.
+     * @param contentStoreSegmentSize the segment size in bytes
+     */
+    public void setContentStoreSegmentSize(final long contentStoreSegmentSize) {
+        this.contentStoreSegmentSize = contentStoreSegmentSize;
+    }
 }
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.collection.LruHashMap;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.entity.RobotsTxt;
+
+import jakarta.annotation.Resource;
+
+/**
+ * Caches parsed robots.txt files by their URL.
+ *
+ * <p>An entry lives as long as the Cache-Control max-age or the Expires header of
+ * the robots.txt response allows, bounded by {@code minTtl} and {@code maxTtl}.
+ * When {@code cacheDirectory} is set, entries are also written to that directory
+ * and are reused by later crawling sessions. Concurrent requests for the same
+ * robots.txt URL wait for a single fetch.</p>
+ */
+public class RobotsTxtCache {
+
+    private static final Logger logger = LogManager.getLogger(RobotsTxtCache.class);
+
+    /** Property key of the robots.txt URL in a cache file. */
+    protected static final String URL_KEY = "url";
+
+    /** Property key of the expiration time in a cache file. */
+    protected static final String EXPIRATION_TIME_KEY = "expirationTime";
+
+    /** Property key of the robots.txt content in a cache file. */
+    protected static final String CONTENT_KEY = "content";
+
+    /** Pattern of the max-age directive. */
+    protected static final Pattern MAX_AGE_PATTERN =
+            Pattern.compile("(?:^|[,\\s])(?:s-maxage|max-age)\\s*=\\s*\"?(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    /** The robots.txt parser. */
+    @Resource
+    protected RobotsTxtHelper robotsTxtHelper;
+
+    /** The lifetime of an entry without cache headers, in milliseconds. */
+    protected long defaultTtl = 24L * 60L * 60L * 1000L;
+
+    /** The minimum lifetime of an entry, in milliseconds. */
+    protected long minTtl = 10L * 60L * 1000L;
+
+    /** The maximum lifetime of an entry, in milliseconds. */
+    protected long maxTtl = 24L * 60L * 60L * 1000L;
+
+    /** The maximum number of entries kept in memory. */
+    protected int maxSize = 10000;
+
+    /** The directory of the cache files, or null to keep entries only in memory. */
+    protected File cacheDirectory;
+
+    /** The entries in memory. */
+    protected Map<String, Entry> entryMap;
+
+    /** The fetches in progress. */
+    protected final Map<String, CompletableFuture<Entry>> inflightMap = new ConcurrentHashMap<>();
+
+    /** The number of cache hits. */
+    protected final LongAdder hitCount = new LongAdder();
+
+    /** The number of cache misses. */
+    protected final LongAdder missCount = new LongAdder();
+
+    /**
+     * Fetches a robots.txt file.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        /**
+         * Fetches the robots.txt file.
+         *
+         * @param robotsTxtUrl the robots.txt URL
+         * @return the entry to cache, or null if the result must not be cached
+         */
+        Entry fetch(String robotsTxtUrl);
+    }
+
+    /**
+     * Creates a new RobotsTxtCache.
+     */
+    public RobotsTxtCache() {
+        entryMap = Collections.synchronizedMap(new LruHashMap<>(maxSize));
+    }
+
+    /**
+     * Returns the parsed robots.txt of the URL, fetching it if it is not cached or expired.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     * @param fetcher the fetcher used on a cache miss
+     * @return the parsed robots.txt, or null if the site has no robots.txt
+     */
+    public RobotsTxt get(final String robotsTxtUrl, final Fetcher fetcher) {
+        final long now = currentTimeMillis();
+        Entry entry = getEntry(robotsTxtUrl, now);
+        if (entry != null) {
+            hitCount.increment();
+            return getRobotsTxt(entry);
+        }
+
+        final CompletableFuture<Entry> future = new CompletableFuture<>();
+        final CompletableFuture<Entry> inflight = inflightMap.putIfAbsent(robotsTxtUrl, future);
+        if (inflight != null) {
+            hitCount.increment();
+            try {
+                entry = inflight.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof final RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+            return entry == null ? null : getRobotsTxt(entry);
+        }
+
+        try {
+            // another thread may have stored the entry before this thread won the slot
+            entry = getEntry(robotsTxtUrl, now);
+            if (entry == null) {
+                missCount.increment();
+                entry = fetcher.fetch(robotsTxtUrl);
+                if (entry != null) {
+                    put(robotsTxtUrl, entry);
+                }
+            }
+            future.complete(entry);
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightMap.remove(robotsTxtUrl, future);
+        }
+        return entry == null ? null : getRobotsTxt(entry);
+    }
+
+    /**
+     * Creates an entry whose lifetime is taken from the cache headers of the response.
+     *
+     * @param content the robots.txt content, or null if the site has no robots.txt
+     * @param cacheControl the Cache-Control header value, or null
+     * @param expires the Expires header value, or null
+     * @return the entry
+     */
+    public Entry createEntry(final String content, final String cacheControl, final String expires) {
+        final long now = currentTimeMillis();
+        return new Entry(content, now + getTtl(cacheControl, expires, now));
+    }
+
+    /**
+     * Returns the lifetime of an entry from the cache headers.
+     *
+     * @param cacheControl the Cache-Control header value, or null
+     * @param expires the Expires header value, or null
+     * @param now the current time
+     * @return the lifetime in milliseconds
+     */
+    protected long getTtl(final String cacheControl, final String expires, final long now) {
+        long ttl = defaultTtl;
+        if (StringUtil.isNotBlank(cacheControl)) {
+            final String value = cacheControl.toLowerCase(Locale.ROOT);
+            final Matcher matcher = MAX_AGE_PATTERN.matcher(value);
+            if (value.contains("no-store") || value.contains("no-cache")) {
+                ttl = 0L;
+            } else if (matcher.find()) {
+                try {
+                    ttl = Long.parseLong(matcher.group(1)) * 1000L;
+                } catch (final NumberFormatException e) {
+                    ttl = maxTtl;
+                }
+            } else if (StringUtil.isNotBlank(expires)) {
+                ttl = parseExpires(expires, now);
+            }
+        } else if (StringUtil.isNotBlank(expires)) {
+            ttl = parseExpires(expires, now);
+        }
+        return Math.min(Math.max(ttl, minTtl), maxTtl);
+    }
+
+    /**
+     * Returns the lifetime given by the Expires header.
+     *
+     * @param expires the Expires header value
+     * @param now the current time
+     * @return the lifetime in milliseconds, or the default lifetime if the value is invalid
+     */
+    protected long parseExpires(final String expires, final long now) {
+        try {
+            return ZonedDateTime.parse(expires.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now;
+        } catch (final Exception e) {
+            // an invalid date means that the response is already expired
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns the entry of the URL if it is not expired, loading it from the cache directory if needed.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     * @param now the current time
+     * @return the entry, or null
+     */
+    protected Entry getEntry(final String robotsTxtUrl, final long now) {
+        Entry entry = entryMap.get(robotsTxtUrl);
+        if (entry == null && cacheDirectory != null) {
+            entry = load(robotsTxtUrl);
+            if (entry != null) {
+                entryMap.put(robotsTxtUrl, entry);
+            }
+        }
+        if (entry != null && entry.expirationTime <= now) {
+            entryMap.remove(robotsTxtUrl, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the entry in memory and in the cache directory.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     * @param entry the entry
+     */
+    protected void put(final String robotsTxtUrl, final Entry entry) {
+        entryMap.put(robotsTxtUrl, entry);
+        if (cacheDirectory != null) {
+            store(robotsTxtUrl, entry);
+        }
+    }
+
+    /**
+     * Returns the parsed robots.txt of the entry, parsing it on first use.
+     *
+     * @param entry the entry
+     * @return the parsed robots.txt, or null if the site has no robots.txt
+     */
+    protected RobotsTxt getRobotsTxt(final Entry entry) {
+        if (entry.content == null) {
+            return null;
+        }
+        RobotsTxt robotsTxt = entry.robotsTxt;
+        if (robotsTxt == null) {
+            robotsTxt = robotsTxtHelper.parse(new ByteArrayInputStream(entry.content.getBytes(StandardCharsets.UTF_8)), Constants.UTF_8);
+            entry.robotsTxt = robotsTxt;
+        }
+        return robotsTxt;
+    }
+
+    /**
+     * Returns the cache file of the URL.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     * @return the cache file
+     */
+    protected Path getCacheFile(final String robotsTxtUrl) {
+        final String hash = DigestUtils.sha256Hex(robotsTxtUrl);
+        return cacheDirectory.toPath().resolve(hash.substring(0, 2)).resolve(hash + ".properties");
+    }
+
+    /**
+     * Loads the entry of the URL from the cache directory.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     * @return the entry, or null if it is not stored
+     */
+    protected Entry load(final String robotsTxtUrl) {
+        final Path file = getCacheFile(robotsTxtUrl);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        final Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+            if (!robotsTxtUrl.equals(props.getProperty(URL_KEY))) {
+                return null;
+            }
+            return new Entry(props.getProperty(CONTENT_KEY), Long.parseLong(props.getProperty(EXPIRATION_TIME_KEY)));
+        } catch (final Exception e) {
+            logger.warn("Failed to load the robots.txt cache: url={}, file={}", robotsTxtUrl, file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry of the URL to the cache directory.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     * @param entry the entry
+     */
+    protected void store(final String robotsTxtUrl, final Entry entry) {
+        final Path file = getCacheFile(robotsTxtUrl);
+        final Properties props = new Properties();
+        props.setProperty(URL_KEY, robotsTxtUrl);
+        props.setProperty(EXPIRATION_TIME_KEY, Long.toString(entry.expirationTime));
+        if (entry.content != null) {
+            props.setProperty(CONTENT_KEY, entry.content);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            final Path tempFile = Files.createTempFile(file.getParent(), "robots", ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                    props.store(writer, null);
+                }
+                try {
+                    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to store the robots.txt cache: url={}, file={}", robotsTxtUrl, file, e);
+        }
+    }
+
+    /**
+     * Removes the entry of the URL.
+     *
+     * @param robotsTxtUrl the robots.txt URL
+     */
+    public void invalidate(final String robotsTxtUrl) {
+        entryMap.remove(robotsTxtUrl);
+        if (cacheDirectory != null) {
+            try {
+                Files.deleteIfExists(getCacheFile(robotsTxtUrl));
+            } catch (final IOException e) {
+                logger.warn("Failed to delete the robots.txt cache: url={}", robotsTxtUrl, e);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries in memory. The cache files are kept.
+     */
+    public void clear() {
+        entryMap.clear();
+    }
+
+    /**
+     * Returns the current time in milliseconds.
+     *
+     * @return the current time
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of entries in memory.
+     *
+     * @return the number of entries
+     */
+    public int getSize() {
+        return entryMap.size();
+    }
+
+    /**
+     * Returns the number of cache hits, including requests which waited for another fetch.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of fetched robots.txt files.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Sets the robots.txt parser.
+     *
+     * @param robotsTxtHelper the robots.txt parser
+     */
+    public void setRobotsTxtHelper(final RobotsTxtHelper robotsTxtHelper) {
+        this.robotsTxtHelper = robotsTxtHelper;
+    }
+
+    /**
+     * Sets the lifetime of an entry without cache headers.
+     *
+     * @param defaultTtl the lifetime in milliseconds
+     */
+    public void setDefaultTtl(final long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * Sets the minimum lifetime of an entry.
+     *
+     * @param minTtl the lifetime in milliseconds
+     */
+    public void setMinTtl(final long minTtl) {
+        this.minTtl = minTtl;
+    }
+
+    /**
+     * Sets the maximum lifetime of an entry.
+     *
+     * @param maxTtl the lifetime in milliseconds
+     */
+    public void setMaxTtl(final long maxTtl) {
+        this.maxTtl = maxTtl;
+    }
+
+    /**
+     * Sets the maximum number of entries kept in memory. The entries in memory are dropped.
+     *
+     * @param maxSize the maximum number of entries
+     */
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+        entryMap = Collections.synchronizedMap(new LruHashMap<>(maxSize));
+    }
+
+    /**
+     * Sets the directory of the cache files.
+     *
+     * @param cacheDirectory the directory, or null to keep entries only in memory
+     */
+    public void setCacheDirectory(final File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * A cached robots.txt.
+     */
+    public static class Entry {
+
+        /** The robots.txt content, or null if the site has no robots.txt. */
+        protected final String content;
+
+        /** The time when the entry expires. */
+        protected final long expirationTime;
+
+        /** The parsed robots.txt. */
+        protected volatile RobotsTxt robotsTxt;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param content the robots.txt content, or null if the site has no robots.txt
+         * @param expirationTime the time when the entry expires
+         */
+        public Entry(final String content, final long expirationTime) {
+            this.content = content;
+            this.expirationTime = expirationTime;
+        }
+
+        /**
+         * Returns the robots.txt content.
+         *
+         * @return the content, or null if the site has no robots.txt
+         */
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * Returns the time when the entry expires.
+         *
+         * @return the expiration time
+         */
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
 import org.codelibs.fess.crawler.helper.LogHelper;
 import org.codelibs.fess.crawler.log.LogType;
 
@@ -117,6 +118,9 @@ public class LogHelperImpl implements LogHelper {
         case CRAWLING_EXCEPTION:
             processCrawlingException(objs);
             break;
+        case RETRY_LATER:
+            processRetryLater(objs);
+            break;
         case NO_URL_IN_QUEUE:
             processNoUrlInQueue(objs);
             break;
@@ -247,6 +251,20 @@ public class LogHelperImpl implements LogHelper {
         }
     }
 
+    /**
+     * Processes retry scheduling log events.
+     *
+     * @param objs the log objects (should contain UrlQueue and RetryLaterException)
+     */
+    protected void processRetryLater(final Object... objs) {
+        // CrawlerContext crawlerContext = (CrawlerContext) objs[0];
+        final UrlQueue<?> urlQueue = (UrlQueue<?>) objs[1];
+        final RetryLaterException e = (RetryLaterException) objs[2];
+        if (logger.isInfoEnabled()) {
+            logger.info("Retry later: url={}, retryCount={}, message={}", urlQueue.getUrl(), e.getRetryCount(), e.getMessage());
+        }
+    }
+
     /**
      * Processes child URL processing exception log events.
      *
@@ -15,6 +15,8 @@
  */
 package org.codelibs.fess.crawler.interval;
 
+import org.codelibs.fess.crawler.entity.ResponseData;
+
 /**
  * The {@code IntervalController} interface defines methods for controlling
  * the delay intervals in a web crawler. It includes constants representing
@@ -49,4 +51,17 @@ public interface IntervalController {
      * @param type the type of delay to be introduced
      */
     void delay(int type);
+
+    /**
+     * Notifies the controller of the outcome of an access, so that it can adapt its delays.
+     * It is called on the crawler thread between {@code PRE_PROCESSING} and {@code POST_PROCESSING}.
+     * The default implementation does nothing.
+     *
+     * @param url the accessed URL
+     * @param responseData the response, or null if the access failed
+     * @param error the exception thrown by the access, or null if it returned a response
+     */
+    default void recordAccess(final String url, final ResponseData responseData, final Throwable error) {
+        // nothing
+    }
 }
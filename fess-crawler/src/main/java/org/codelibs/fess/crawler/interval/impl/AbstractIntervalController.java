@@ -18,6 +18,7 @@ package org.codelibs.fess.crawler.interval.impl;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
 import org.codelibs.fess.crawler.interval.IntervalController;
 
 /**
@@ -45,6 +46,7 @@ import org.codelibs.fess.crawler.interval.IntervalController;
  * The class also provides a mechanism to ignore exceptions that may occur during the delay process.
  * If {@link #ignoreException} is set to true, any exceptions thrown during the delay will be caught
  * and ignored. Otherwise, they will be re-thrown as {@link CrawlerSystemException}.
+ * A {@link RetryLaterException}, by which a subclass defers the current URL, is always re-thrown.
  * </p>
  *
  */
@@ -94,6 +96,8 @@ public abstract class AbstractIntervalController implements IntervalController {
                 }
                 break;
             }
+        } catch (final RetryLaterException e) {
+            throw e;
         } catch (final CrawlerSystemException e) {
             if (!ignoreException) {
                 throw e;
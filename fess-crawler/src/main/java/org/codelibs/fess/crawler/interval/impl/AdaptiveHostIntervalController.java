@@ -0,0 +1,863 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.interval.impl;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.exception.InterruptedRuntimeException;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.core.lang.SystemUtil;
+import org.codelibs.core.lang.ThreadUtil;
+import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.entity.UrlQueue;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.codelibs.fess.crawler.util.UrlUtil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * AdaptiveHostIntervalController is a {@link HostIntervalController} which adapts the number of concurrent
+ * requests and the interval between requests of each host to how the host responds.
+ *
+ * <p>
+ * For each host (scheme://host[:port]), it keeps the average response time and the error rate, and applies an
+ * AIMD (additive increase, multiplicative decrease) policy: a fast successful response raises the allowed
+ * concurrency by {@code 1 / concurrency} and shortens the interval by {@link #intervalDecreaseMillis}, and a
+ * 429 or 5xx response, a failed access, or a response slower than {@link #slowResponseMillis} halves the
+ * concurrency and doubles the interval, at most once per average response time. A {@code Retry-After} header
+ * of a 429 or 503 response blocks the host until the given time. The Crawl-delay of robots.txt stays the lower
+ * limit of the interval.
+ * </p>
+ *
+ * <p>
+ * A crawler thread takes a concurrency slot of the host in {@code PRE_PROCESSING} and returns it when the
+ * access is recorded by {@link #recordAccess(String, ResponseData, Throwable)}, or in {@code POST_PROCESSING}
+ * at the latest. The concurrency is also bounded by the connection pool of the HTTP client
+ * (maxConnectionsPerRoute). The current limits are returned by {@link #getHostLimits()}.
+ * A thread which cannot take a slot within {@link #maxSlotWaitMillis} does not exceed the concurrency:
+ * it throws a {@link RetryLaterException}, so the URL is deferred and crawled again later.
+ * </p>
+ *
+ * <p>
+ * If the URL queue service keeps the host interval by itself when polling
+ * (see {@link org.codelibs.fess.crawler.service.UrlQueueService#isHostIntervalKept()}), it polls a host
+ * by the adapted interval of {@link #getIntervalMillis(String)}, and only the concurrency slot and Retry-After
+ * are waited for here, so the interval does not stack with the wait of the queue.
+ * </p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class AdaptiveHostIntervalController extends HostIntervalController {
+
+    private static final Logger logger = LogManager.getLogger(AdaptiveHostIntervalController.class);
+
+    /** The weight of the latest sample in the average response time and the error rate. */
+    protected static final double EWMA_WEIGHT = 0.2;
+
+    /** The states of the hosts. */
+    protected final Cache<String, HostState> hostStates = CacheBuilder.newBuilder().expireAfterAccess(1L, TimeUnit.HOURS).build();
+
+    /** The state whose concurrency slot the current thread holds. */
+    protected final ThreadLocal<HostState> acquiredState = new ThreadLocal<>();
+
+    /** The concurrency of a host before any response is recorded. */
+    protected int initialConcurrency = 2;
+
+    /** The upper limit of the concurrency of a host. */
+    protected int maxConcurrency = 20;
+
+    /** The lower limit of the interval of a host in milliseconds. */
+    protected long minIntervalMillis = 0L;
+
+    /** The upper limit of the interval of a host in milliseconds. */
+    protected long maxIntervalMillis = 60000L;
+
+    /** The interval set on the first decrease from an interval of 0 in milliseconds. */
+    protected long backoffIntervalMillis = 1000L;
+
+    /** The amount by which the interval is shortened on a fast successful response in milliseconds. */
+    protected long intervalDecreaseMillis = 100L;
+
+    /** The response time above which a response counts as congestion in milliseconds. */
+    protected long slowResponseMillis = 10000L;
+
+    /** The upper limit of a Retry-After wait in milliseconds. */
+    protected long maxRetryAfterMillis = 600000L;
+
+    /** The maximum time a thread waits for a concurrency slot before its URL is deferred in milliseconds. */
+    protected long maxSlotWaitMillis = 60000L;
+
+    /**
+     * Constructs a new AdaptiveHostIntervalController with default parameters.
+     */
+    public AdaptiveHostIntervalController() {
+    }
+
+    /**
+     * Constructs a new AdaptiveHostIntervalController with the specified parameters.
+     * In addition to the parameters of {@link HostIntervalController}, initialConcurrency, maxConcurrency,
+     * minIntervalMillis, maxIntervalMillis, backoffIntervalMillis, intervalDecreaseMillis, slowResponseMillis,
+     * maxRetryAfterMillis and maxSlotWaitMillis are read.
+     *
+     * @param params the parameters to configure the interval controller
+     */
+    public AdaptiveHostIntervalController(final Map<String, Long> params) {
+        super(params);
+        initialConcurrency = params.getOrDefault("initialConcurrency", (long) initialConcurrency).intValue();
+        maxConcurrency = params.getOrDefault("maxConcurrency", (long) maxConcurrency).intValue();
+        minIntervalMillis = params.getOrDefault("minIntervalMillis", minIntervalMillis);
+        maxIntervalMillis = params.getOrDefault("maxIntervalMillis", maxIntervalMillis);
+        backoffIntervalMillis = params.getOrDefault("backoffIntervalMillis", backoffIntervalMillis);
+        intervalDecreaseMillis = params.getOrDefault("intervalDecreaseMillis", intervalDecreaseMillis);
+        slowResponseMillis = params.getOrDefault("slowResponseMillis", slowResponseMillis);
+        maxRetryAfterMillis = params.getOrDefault("maxRetryAfterMillis", maxRetryAfterMillis);
+        maxSlotWaitMillis = params.getOrDefault("maxSlotWaitMillis", maxSlotWaitMillis);
+    }
+
+    /**
+     * Takes a concurrency slot of the host of the current URL and waits for its next access time.
+     *
+     * @throws RetryLaterException if no slot has been returned within {@link #maxSlotWaitMillis}
+     */
+    @Override
+    protected void delayBeforeProcessing() {
+        releaseSlot();
+        final UrlQueue<?> urlQueue = CrawlingParameterUtil.getUrlQueue();
+        if (urlQueue == null) {
+            return;
+        }
+        final String url = urlQueue.getUrl();
+        final HostState state = getHostState(url);
+        if (state == null) {
+            // not target
+            return;
+        }
+        final long waitTime;
+        try {
+            waitTime = state.acquire(super.getIntervalMillis(url), isHostIntervalKeptByUrlQueueService());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedRuntimeException(e);
+        }
+        if (waitTime < 0) {
+            final long retryTime = SystemUtil.currentTimeMillis() + getIntervalMillis(url);
+            throw new RetryLaterException("Timed out waiting for a concurrency slot of " + state.host, null, retryTime, 0);
+        }
+        acquiredState.set(state);
+        if (waitTime > 0) {
+            ThreadUtil.sleep(waitTime);
+        }
+    }
+
+    /**
+     * Returns the concurrency slot of the current thread if the access has not been recorded.
+     */
+    @Override
+    protected void delayAfterProcessing() {
+        releaseSlot();
+        super.delayAfterProcessing();
+    }
+
+    @Override
+    public void recordAccess(final String url, final ResponseData responseData, final Throwable error) {
+        releaseSlot();
+        final HostState state = getHostState(url);
+        if (state == null) {
+            return;
+        }
+        if (responseData == null) {
+            state.recordFailure(error);
+            return;
+        }
+        final int httpStatusCode = responseData.getHttpStatusCode();
+        if (httpStatusCode == 429 || httpStatusCode == 503) {
+            state.recordRetryAfter(getRetryAfterMillis(responseData));
+        }
+        state.recordResponse(httpStatusCode, responseData.getExecutionTime());
+    }
+
+    /**
+     * Returns the minimum interval between two requests to the host of the given URL: the adapted interval of
+     * the host, but not shorter than the Crawl-delay of its robots.txt.
+     *
+     * @param url the URL, or its scheme://host[:port] part
+     * @return the interval in milliseconds
+     */
+    @Override
+    public long getIntervalMillis(final String url) {
+        final long intervalMillis = super.getIntervalMillis(url);
+        if (!isTarget(url)) {
+            return intervalMillis;
+        }
+        final HostState state = hostStates.getIfPresent(UrlUtil.getHost(url));
+        return state == null ? intervalMillis : state.getIntervalMillis(intervalMillis);
+    }
+
+    /**
+     * Returns the current limits of the hosts, keyed by scheme://host[:port].
+     *
+     * @return the limits sorted by host
+     */
+    public Map<String, HostLimit> getHostLimits() {
+        final Map<String, HostLimit> limitMap = new TreeMap<>();
+        hostStates.asMap().forEach((host, state) -> limitMap.put(host, state.toHostLimit()));
+        return Collections.unmodifiableMap(limitMap);
+    }
+
+    /**
+     * Returns the current limit of the host of the given URL.
+     *
+     * @param url the URL, or its scheme://host[:port] part
+     * @return the limit, or null if the host has not been accessed
+     */
+    public HostLimit getHostLimit(final String url) {
+        if (!isTarget(url)) {
+            return null;
+        }
+        final HostState state = hostStates.getIfPresent(UrlUtil.getHost(url));
+        return state == null ? null : state.toHostLimit();
+    }
+
+    /**
+     * Gets the concurrency of a host before any response is recorded.
+     * @return the concurrency
+     */
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    /**
+     * Sets the concurrency of a host before any response is recorded.
+     * @param initialConcurrency the concurrency
+     */
+    public void setInitialConcurrency(final int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+
+    /**
+     * Gets the upper limit of the concurrency of a host.
+     * @return the concurrency
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the upper limit of the concurrency of a host.
+     * @param maxConcurrency the concurrency
+     */
+    public void setMaxConcurrency(final int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Gets the lower limit of the interval of a host.
+     * @return the interval in milliseconds
+     */
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    /**
+     * Sets the lower limit of the interval of a host.
+     * @param minIntervalMillis the interval in milliseconds
+     */
+    public void setMinIntervalMillis(final long minIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Gets the upper limit of the interval of a host.
+     * @return the interval in milliseconds
+     */
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    /**
+     * Sets the upper limit of the interval of a host.
+     * @param maxIntervalMillis the interval in milliseconds
+     */
+    public void setMaxIntervalMillis(final long maxIntervalMillis) {
+        this.maxIntervalMillis = maxIntervalMillis;
+    }
+
+    /**
+     * Gets the interval set on the first decrease from an interval of 0.
+     * @return the interval in milliseconds
+     */
+    public long getBackoffIntervalMillis() {
+        return backoffIntervalMillis;
+    }
+
+    /**
+     * Sets the interval set on the first decrease from an interval of 0.
+     * @param backoffIntervalMillis the interval in milliseconds
+     */
+    public void setBackoffIntervalMillis(final long backoffIntervalMillis) {
+        this.backoffIntervalMillis = backoffIntervalMillis;
+    }
+
+    /**
+     * Gets the amount by which the interval is shortened on a fast successful response.
+     * @return the amount in milliseconds
+     */
+    public long getIntervalDecreaseMillis() {
+        return intervalDecreaseMillis;
+    }
+
+    /**
+     * Sets the amount by which the interval is shortened on a fast successful response.
+     * @param intervalDecreaseMillis the amount in milliseconds
+     */
+    public void setIntervalDecreaseMillis(final long intervalDecreaseMillis) {
+        this.intervalDecreaseMillis = intervalDecreaseMillis;
+    }
+
+    /**
+     * Gets the response time above which a response counts as congestion.
+     * @return the response time in milliseconds
+     */
+    public long getSlowResponseMillis() {
+        return slowResponseMillis;
+    }
+
+    /**
+     * Sets the response time above which a response counts as congestion.
+     * @param slowResponseMillis the response time in milliseconds
+     */
+    public void setSlowResponseMillis(final long slowResponseMillis) {
+        this.slowResponseMillis = slowResponseMillis;
+    }
+
+    /**
+     * Gets the upper limit of a Retry-After wait.
+     * @return the wait in milliseconds
+     */
+    public long getMaxRetryAfterMillis() {
+        return maxRetryAfterMillis;
+    }
+
+    /**
+     * Sets the upper limit of a Retry-After wait.
+     * @param maxRetryAfterMillis the wait in milliseconds
+     */
+    public void setMaxRetryAfterMillis(final long maxRetryAfterMillis) {
+        this.maxRetryAfterMillis = maxRetryAfterMillis;
+    }
+
+    /**
+     * Gets the maximum time a thread waits for a concurrency slot.
+     * @return the time in milliseconds
+     */
+    public long getMaxSlotWaitMillis() {
+        return maxSlotWaitMillis;
+    }
+
+    /**
+     * Sets the maximum time a thread waits for a concurrency slot.
+     * @param maxSlotWaitMillis the time in milliseconds
+     */
+    public void setMaxSlotWaitMillis(final long maxSlotWaitMillis) {
+        this.maxSlotWaitMillis = maxSlotWaitMillis;
+    }
+
+    /**
+     * Returns the state of the host of the given URL, creating it if needed.
+     *
+     * @param url the URL
+     * @return the state, or null if the URL is not a target of this controller
+     */
+    protected HostState getHostState(final String url) {
+        if (!isTarget(url)) {
+            return null;
+        }
+        final String host = UrlUtil.getHost(url);
+        try {
+            return hostStates.get(host, () -> new HostState(host));
+        } catch (final Exception e) {
+            logger.warn("Could not get the state of {}", host, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the host of the URL is controlled by this controller.
+     *
+     * @param url the URL
+     * @return true unless the URL is blank or a file URL
+     */
+    protected boolean isTarget(final String url) {
+        return StringUtil.isNotBlank(url) && !url.startsWith("file:");
+    }
+
+    /**
+     * Returns the concurrency slot held by the current thread, if any.
+     */
+    protected void releaseSlot() {
+        final HostState state = acquiredState.get();
+        if (state != null) {
+            acquiredState.remove();
+            state.release();
+        }
+    }
+
+    /**
+     * Returns the wait given by the Retry-After header of the response.
+     *
+     * @param responseData the response
+     * @return the wait in milliseconds, or 0 if the response has no valid Retry-After header
+     */
+    protected long getRetryAfterMillis(final ResponseData responseData) {
+        for (final Map.Entry<String, Object> entry : responseData.getMetaDataMap().entrySet()) {
+            if ("Retry-After".equalsIgnoreCase(entry.getKey()) && entry.getValue() != null) {
+                return Math.min(parseRetryAfter(entry.getValue().toString().trim()), maxRetryAfterMillis);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Parses the value of a Retry-After header, which is either a number of seconds or an HTTP date.
+     *
+     * @param value the header value
+     * @return the wait in milliseconds, or 0 if the value is invalid or in the past
+     */
+    protected long parseRetryAfter(final String value) {
+        if (StringUtil.isBlank(value)) {
+            return 0L;
+        }
+        try {
+            return Math.max(0L, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (final NumberFormatException e) {
+            // HTTP date
+        }
+        try {
+            final long time = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0L, time - SystemUtil.currentTimeMillis());
+        } catch (final Exception e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Invalid Retry-After: {}", value);
+            }
+            return 0L;
+        }
+    }
+
+    /**
+     * The adaptive state of a host. All the fields are guarded by {@link #lock}, which is not a monitor,
+     * so a virtual thread waiting for a slot does not pin its carrier thread.
+     */
+    protected class HostState {
+
+        /** The lock which guards the fields. */
+        protected final ReentrantLock lock = new ReentrantLock();
+
+        /** The condition signalled when a concurrency slot is returned. */
+        protected final Condition slotReleased = lock.newCondition();
+
+        /** The host (scheme://host[:port]). */
+        protected final String host;
+
+        /** The allowed number of concurrent requests, of which the integer part is used. */
+        protected double concurrency;
+
+        /** The adapted interval between requests in milliseconds, or -1 until the first response. */
+        protected long intervalMillis = -1L;
+
+        /** The number of requests in flight. */
+        protected int inFlight;
+
+        /** The reserved time of the latest access. */
+        protected long lastTime;
+
+        /** The time until which the host must not be accessed, given by Retry-After. */
+        protected long retryAfterTime;
+
+        /** The time of the latest multiplicative decrease. */
+        protected long lastDecreaseTime;
+
+        /** The average response time in milliseconds. */
+        protected double averageResponseTime = -1.0;
+
+        /** The average rate of failed, 429 and 5xx responses. */
+        protected double errorRate;
+
+        /** The number of recorded accesses. */
+        protected long accessCount;
+
+        /** The number of 429 responses. */
+        protected long tooManyRequestsCount;
+
+        /** The number of 503 responses. */
+        protected long serviceUnavailableCount;
+
+        /**
+         * Creates the state of a host.
+         *
+         * @param host the host
+         */
+        protected HostState(final String host) {
+            this.host = host;
+            concurrency = Math.max(1, Math.min(initialConcurrency, maxConcurrency));
+        }
+
+        /**
+         * Waits for a concurrency slot, takes it, and reserves the next access time.
+         *
+         * @param baseIntervalMillis the interval before the first response, which is also the lower limit
+         * @param intervalKept true if the URL queue service has already waited for the interval when polling
+         * @return the time to wait until the reserved access time in milliseconds, or -1 if no slot has been
+         *         returned within {@link #maxSlotWaitMillis} and none has been taken
+         * @throws InterruptedException if the thread is interrupted while waiting for a slot
+         */
+        protected long acquire(final long baseIntervalMillis, final boolean intervalKept) throws InterruptedException {
+            lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(maxSlotWaitMillis);
+                while (inFlight >= (int) concurrency) {
+                    if (remaining <= 0) {
+                        logger.warn("Timed out waiting for a concurrency slot of {}: concurrency={}, inFlight={}", host,
+                                (int) concurrency, inFlight);
+                        return -1L;
+                    }
+                    remaining = slotReleased.awaitNanos(remaining);
+                }
+                inFlight++;
+                final long now = SystemUtil.currentTimeMillis();
+                final long next;
+                if (intervalKept || lastTime == 0) {
+                    next = now;
+                } else {
+                    next = lastTime + getIntervalMillis(baseIntervalMillis);
+                }
+                lastTime = Math.max(now, Math.max(next, retryAfterTime));
+                return lastTime - now;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns a concurrency slot.
+         */
+        protected void release() {
+            lock.lock();
+            try {
+                if (inFlight > 0) {
+                    inFlight--;
+                }
+                slotReleased.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns the interval between requests.
+         *
+         * @param baseIntervalMillis the interval before the first response, which is also the lower limit
+         * @return the interval in milliseconds
+         */
+        protected long getIntervalMillis(final long baseIntervalMillis) {
+            lock.lock();
+            try {
+                if (intervalMillis < 0) {
+                    intervalMillis = Math.max(baseIntervalMillis, minIntervalMillis);
+                }
+                return Math.max(intervalMillis, baseIntervalMillis);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Records a response and adapts the limits.
+         *
+         * @param httpStatusCode the HTTP status code
+         * @param responseTime the response time in milliseconds
+         */
+        protected void recordResponse(final int httpStatusCode, final long responseTime) {
+            lock.lock();
+            try {
+                accessCount++;
+                if (httpStatusCode == 429) {
+                    tooManyRequestsCount++;
+                } else if (httpStatusCode == 503) {
+                    serviceUnavailableCount++;
+                }
+                averageResponseTime =
+                        averageResponseTime < 0 ? responseTime : averageResponseTime + EWMA_WEIGHT * (responseTime - averageResponseTime);
+                final boolean congested = httpStatusCode == 429 || httpStatusCode >= 500;
+                errorRate += EWMA_WEIGHT * ((congested ? 1.0 : 0.0) - errorRate);
+                if (congested || responseTime > slowResponseMillis) {
+                    decrease();
+                } else {
+                    increase();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Records a failed access and adapts the limits.
+         *
+         * @param error the exception thrown by the access
+         */
+        protected void recordFailure(final Throwable error) {
+            lock.lock();
+            try {
+                accessCount++;
+                errorRate += EWMA_WEIGHT * (1.0 - errorRate);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Failed to access {}", host, error);
+                }
+                decrease();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Blocks the host for the wait given by Retry-After.
+         *
+         * @param retryAfterMillis the wait in milliseconds
+         */
+        protected void recordRetryAfter(final long retryAfterMillis) {
+            lock.lock();
+            try {
+                if (retryAfterMillis > 0) {
+                    retryAfterTime = Math.max(retryAfterTime, SystemUtil.currentTimeMillis() + retryAfterMillis);
+                    if (logger.isInfoEnabled()) {
+                        logger.info("{} asked to retry after {}ms.", host, retryAfterMillis);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Raises the concurrency additively and shortens the interval.
+         */
+        protected void increase() {
+            final int previous = (int) concurrency;
+            concurrency = Math.min(maxConcurrency, concurrency + 1.0 / concurrency);
+            if (intervalMillis > minIntervalMillis) {
+                intervalMillis = Math.max(minIntervalMillis, intervalMillis - intervalDecreaseMillis);
+            }
+            if (logger.isDebugEnabled() && (int) concurrency != previous) {
+                logger.debug("Increased the concurrency of {}: concurrency={}, interval={}ms", host, (int) concurrency, intervalMillis);
+            }
+        }
+
+        /**
+         * Halves the concurrency and doubles the interval, at most once per average response time,
+         * so that the responses of one burst of concurrent requests count as one congestion signal.
+         */
+        protected void decrease() {
+            final long now = SystemUtil.currentTimeMillis();
+            if (now - lastDecreaseTime < Math.max(averageResponseTime, 100.0)) {
+                return;
+            }
+            lastDecreaseTime = now;
+            concurrency = Math.max(1.0, concurrency / 2.0);
+            intervalMillis = Math.min(maxIntervalMillis, Math.max(backoffIntervalMillis, Math.max(intervalMillis, 0L) * 2));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Decreased the concurrency of {}: concurrency={}, interval={}ms", host, (int) concurrency, intervalMillis);
+            }
+        }
+
+        /**
+         * Returns a snapshot of the limits.
+         *
+         * @return the limits
+         */
+        protected HostLimit toHostLimit() {
+            lock.lock();
+            try {
+                return new HostLimit(host, (int) concurrency, inFlight, Math.max(intervalMillis, 0L), retryAfterTime,
+                        Math.max(averageResponseTime, 0.0), errorRate, accessCount, tooManyRequestsCount, serviceUnavailableCount);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the limits and statistics of a host.
+     */
+    public static class HostLimit {
+
+        /** The host (scheme://host[:port]). */
+        protected final String host;
+
+        /** The allowed number of concurrent requests. */
+        protected final int concurrency;
+
+        /** The number of requests in flight. */
+        protected final int inFlight;
+
+        /** The interval between requests in milliseconds. */
+        protected final long intervalMillis;
+
+        /** The time until which the host must not be accessed, or 0. */
+        protected final long retryAfterTime;
+
+        /** The average response time in milliseconds. */
+        protected final double averageResponseTime;
+
+        /** The average rate of failed, 429 and 5xx responses. */
+        protected final double errorRate;
+
+        /** The number of recorded accesses. */
+        protected final long accessCount;
+
+        /** The number of 429 responses. */
+        protected final long tooManyRequestsCount;
+
+        /** The number of 503 responses. */
+        protected final long serviceUnavailableCount;
+
+        /**
+         * Creates a snapshot of the limits of a host.
+         *
+         * @param host the host
+         * @param concurrency the allowed number of concurrent requests
+         * @param inFlight the number of requests in flight
+         * @param intervalMillis the interval between requests in milliseconds
+         * @param retryAfterTime the time until which the host must not be accessed
+         * @param averageResponseTime the average response time in milliseconds
+         * @param errorRate the average error rate
+         * @param accessCount the number of recorded accesses
+         * @param tooManyRequestsCount the number of 429 responses
+         * @param serviceUnavailableCount the number of 503 responses
+         */
+        public HostLimit(final String host, final int concurrency, final int inFlight, final long intervalMillis, final long retryAfterTime,
+                final double averageResponseTime, final double errorRate, final long accessCount, final long tooManyRequestsCount,
+                final long serviceUnavailableCount) {
+            this.host = host;
+            this.concurrency = concurrency;
+            this.inFlight = inFlight;
+            this.intervalMillis = intervalMillis;
+            this.retryAfterTime = retryAfterTime;
+            this.averageResponseTime = averageResponseTime;
+            this.errorRate = errorRate;
+            this.accessCount = accessCount;
+            this.tooManyRequestsCount = tooManyRequestsCount;
+            this.serviceUnavailableCount = serviceUnavailableCount;
+        }
+
+        /**
+         * Returns the host.
+         * @return the host (scheme://host[:port])
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * Returns the allowed number of concurrent requests.
+         * @return the concurrency
+         */
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * Returns the number of requests in flight.
+         * @return the number of requests
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Returns the interval between requests.
+         * @return the interval in milliseconds
+         */
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        /**
+         * Returns the time until which the host must not be accessed, given by Retry-After.
+         * @return the time in milliseconds since the epoch, or 0
+         */
+        public long getRetryAfterTime() {
+            return retryAfterTime;
+        }
+
+        /**
+         * Returns the average response time.
+         * @return the time in milliseconds
+         */
+        public double getAverageResponseTime() {
+            return averageResponseTime;
+        }
+
+        /**
+         * Returns the average rate of failed, 429 and 5xx responses.
+         * @return the rate between 0 and 1
+         */
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        /**
+         * Returns the number of recorded accesses.
+         * @return the number of accesses
+         */
+        public long getAccessCount() {
+            return accessCount;
+        }
+
+        /**
+         * Returns the number of 429 responses.
+         * @return the number of responses
+         */
+        public long getTooManyRequestsCount() {
+            return tooManyRequestsCount;
+        }
+
+        /**
+         * Returns the number of 503 responses.
+         * @return the number of responses
+         */
+        public long getServiceUnavailableCount() {
+            return serviceUnavailableCount;
+        }
+
+        @Override
+        public String toString() {
+            return "HostLimit [host=" + host + ", concurrency=" + concurrency + ", inFlight=" + inFlight + ", intervalMillis="
+                    + intervalMillis + ", retryAfterTime=" + retryAfterTime + ", averageResponseTime=" + averageResponseTime
+                    + ", errorRate=" + errorRate + ", accessCount=" + accessCount + ", tooManyRequestsCount=" + tooManyRequestsCount
+                    + ", serviceUnavailableCount=" + serviceUnavailableCount + "]";
+        }
+    }
+}
@@ -23,9 +23,13 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.codelibs.core.exception.InterruptedRuntimeException;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.core.lang.SystemUtil;
+import org.codelibs.core.lang.ThreadUtil;
+import org.codelibs.fess.crawler.CrawlerContext;
 import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.service.UrlQueueService;
 import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.codelibs.fess.crawler.util.UrlUtil;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -36,9 +40,12 @@ import com.google.common.cache.CacheBuilder;
  * It uses a Guava Cache to store the last access time for each host.
  * The delayBeforeProcessing method is overridden to introduce a delay before processing a URL,
  * ensuring that requests to the same host are not made too frequently.
- * The delay is calculated based on the configured delayMillisBeforeProcessing parameter.
- * If the time since the last request to the host is less than the configured delay,
- * the thread waits until the delay has elapsed.
+ * The interval of a host is the Crawl-delay of its robots.txt if one was found
+ * (see {@link CrawlerContext#getCrawlDelay(String)}), and the configured delayMillisBeforeProcessing otherwise.
+ * Each caller atomically reserves the next access slot of the host and then sleeps until the slot
+ * without holding any lock, so callers for other hosts are never blocked.
+ * If the URL queue service of the crawler keeps the host interval by itself when polling
+ * (see {@link UrlQueueService#isHostIntervalKept()}), no delay is added here, so the interval is not waited for twice.
  * This class is thread-safe.
  * The cache automatically evicts entries after 1 hour of inactivity to prevent memory leaks.
  */
@@ -47,9 +54,12 @@ public class HostIntervalController extends DefaultIntervalController {
     /** Default cache expire duration in hours */
     private static final long DEFAULT_CACHE_EXPIRE_HOURS = 1L;
 
-    /** Cache storing the last access time for each host. */
+    /** Cache storing the last reserved access time for each host. */
     private final Cache<String, AtomicLong> lastTimes;
 
+    /** The upper limit of a Crawl-delay from robots.txt in milliseconds. */
+    protected long maxCrawlDelayMillis = 60000L;
+
     /**
      * Constructs a new HostIntervalController with default parameters.
      */
@@ -64,13 +74,17 @@ public class HostIntervalController extends DefaultIntervalController {
      */
     public HostIntervalController(final Map<String, Long> params) {
         super(params);
+        final Long value = params.get("maxCrawlDelayMillis");
+        if (value != null) {
+            maxCrawlDelayMillis = value;
+        }
         this.lastTimes = CacheBuilder.newBuilder().expireAfterAccess(DEFAULT_CACHE_EXPIRE_HOURS, TimeUnit.HOURS).build();
     }
 
     /**
      * Delays before processing a URL, ensuring that requests to the same host are not made too frequently.
-     * This method extracts the host from the URL and enforces a delay based on the configured
-     * delayMillisBeforeProcessing parameter.
+     * This method extracts the host from the URL and enforces the interval returned by
+     * {@link #getIntervalMillis(String)}, unless the URL queue service has already kept it when polling the URL.
      *
      * @throws InterruptedRuntimeException if the thread is interrupted during the delay
      * @throws CrawlerSystemException if an error occurs while processing the URL
@@ -83,11 +97,12 @@ public class HostIntervalController extends DefaultIntervalController {
         }
 
         final String url = urlQueue.getUrl();
-        if (StringUtil.isBlank(url) || url.startsWith("file:")) {
+        if (StringUtil.isBlank(url) || url.startsWith("file:") || isHostIntervalKeptByUrlQueueService()) {
             // not target
             return;
         }
 
+        final long waitTime;
         try {
             final URI uri = new URI(url);
             final String host = uri.getHost();
@@ -96,33 +111,70 @@ public class HostIntervalController extends DefaultIntervalController {
             }
 
             // Atomically get or create the AtomicLong for this host using Cache.get()
-            // This ensures thread-safe, atomic get-or-create behavior
             // Initialize with 0 to mark uninitialized state
             final AtomicLong lastTime = lastTimes.get(host, () -> new AtomicLong(0));
 
-            synchronized (lastTime) {
-                final long lastValue = lastTime.get();
-                if (lastValue == 0) {
-                    // First access to this host - no delay needed
-                    // Set current time to allow proper delay for next access
-                    lastTime.set(SystemUtil.currentTimeMillis());
-                    return;
-                }
-
-                long currentTime = SystemUtil.currentTimeMillis();
-                long delayTime = lastValue + delayMillisBeforeProcessing - currentTime;
-                while (delayTime > 0) {
-                    lastTime.wait(delayTime);
-                    currentTime = SystemUtil.currentTimeMillis();
-                    delayTime = lastTime.get() + delayMillisBeforeProcessing - currentTime;
-                }
-                lastTime.set(currentTime);
-            }
-        } catch (final InterruptedException e) {
-            throw new InterruptedRuntimeException(e);
+            final long intervalMillis = getIntervalMillis(url);
+            final long currentTime = SystemUtil.currentTimeMillis();
+            // reserve the next slot of this host; the first access is not delayed
+            final long reservedTime =
+                    lastTime.accumulateAndGet(currentTime, (last, now) -> last == 0 ? now : Math.max(now, last + intervalMillis));
+            waitTime = reservedTime - currentTime;
         } catch (final Exception e) {
             throw new CrawlerSystemException(e);
         }
+
+        if (waitTime > 0) {
+            ThreadUtil.sleep(waitTime);
+        }
+    }
+
+    /**
+     * Checks if the URL queue service of the current thread keeps the host interval by itself when polling.
+     *
+     * @return true if the URL queue service keeps the host interval, otherwise false
+     */
+    protected boolean isHostIntervalKeptByUrlQueueService() {
+        final UrlQueueService<UrlQueue<?>> urlQueueService = CrawlingParameterUtil.getUrlQueueService();
+        return urlQueueService != null && urlQueueService.isHostIntervalKept();
+    }
+
+    /**
+     * Returns the minimum interval between two requests to the host of the given URL.
+     * The Crawl-delay of the host's robots.txt is used if it is known, limited by {@link #maxCrawlDelayMillis},
+     * and delayMillisBeforeProcessing is used otherwise.
+     *
+     * @param url the URL, or its scheme://host[:port] part
+     * @return the interval in milliseconds
+     */
+    public long getIntervalMillis(final String url) {
+        if (StringUtil.isBlank(url) || url.startsWith("file:")) {
+            return 0L;
+        }
+        final CrawlerContext crawlerContext = CrawlingParameterUtil.getCrawlerContext();
+        if (crawlerContext != null) {
+            final long crawlDelay = crawlerContext.getCrawlDelay(UrlUtil.getHost(url));
+            if (crawlDelay >= 0) {
+                return Math.min(crawlDelay, maxCrawlDelayMillis);
+            }
+        }
+        return delayMillisBeforeProcessing;
+    }
+
+    /**
+     * Gets the upper limit of a Crawl-delay from robots.txt.
+     * @return the upper limit in milliseconds
+     */
+    public long getMaxCrawlDelayMillis() {
+        return maxCrawlDelayMillis;
+    }
+
+    /**
+     * Sets the upper limit of a Crawl-delay from robots.txt.
+     * @param maxCrawlDelayMillis the upper limit in milliseconds
+     */
+    public void setMaxCrawlDelayMillis(final long maxCrawlDelayMillis) {
+        this.maxCrawlDelayMillis = maxCrawlDelayMillis;
     }
 
 }
@@ -46,6 +46,8 @@ public enum LogType {
     CRAWLING_ACCESS_EXCEPTION,
     /** Indicates a general exception during crawling. */
     CRAWLING_EXCEPTION,
+    /** Indicates a failed access was scheduled to be retried later. */
+    RETRY_LATER,
     /** Indicates no URL is available in the queue. */
     NO_URL_IN_QUEUE,
     /** Indicates the start of a crawler thread. */
@@ -34,6 +34,18 @@ public interface DataService<RESULT extends AccessResult<?>> {
      */
     void store(RESULT accessResult);
 
+    /**
+     * Stores a batch of access results.
+     * The default implementation stores them one by one.
+     *
+     * @param accessResultList The list of access results.
+     */
+    default void storeAll(final List<RESULT> accessResultList) {
+        for (final RESULT accessResult : accessResultList) {
+            store(accessResult);
+        }
+    }
+
     /**
      * Updates the given access result.
      *
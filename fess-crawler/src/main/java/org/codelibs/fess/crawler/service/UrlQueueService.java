@@ -78,6 +78,53 @@ public interface UrlQueueService<QUEUE extends UrlQueue<?>> {
      */
     QUEUE poll(String sessionId);
 
+    /**
+     * Returns the time until {@link #poll(String)} can return one of the pending URL queues,
+     * for example when every pending host is still in its crawl interval.
+     * The poll does not wait for it; the crawler thread waits instead.
+     *
+     * @param sessionId The session ID.
+     * @return 0 if a URL queue can be polled now, a positive time in milliseconds if the pending URL queues
+     *         are not ready yet, or -1 if no URL queue is known to be pending.
+     */
+    default long getWaitMillis(final String sessionId) {
+        return -1L;
+    }
+
+    /**
+     * Returns whether {@link #poll(String)} keeps the per-host interval of a
+     * {@link org.codelibs.fess.crawler.interval.impl.HostIntervalController} by itself.
+     * The interval controller then does not wait for the interval again before a polled URL is processed.
+     *
+     * @return true if the service keeps the host interval when polling, otherwise false.
+     */
+    default boolean isHostIntervalKept() {
+        return false;
+    }
+
+    /**
+     * Returns whether the service signals every offer of URLs with
+     * {@link org.codelibs.fess.crawler.util.CrawlingParameterUtil#notifyUrlsOffered(String)}
+     * and {@link #poll(String)} sees the offered URLs immediately.
+     * Event-driven waiting ends the crawl when no offer has been signaled, so it is used only if this returns true.
+     *
+     * @return true if every offer is signaled, otherwise false.
+     */
+    default boolean supportsOfferSignal() {
+        return false;
+    }
+
+    /**
+     * Notifies that the crawling of a URL queue returned by {@link #poll(String)} has finished,
+     * whether or not an access result has been stored for it.
+     * Services which keep track of the polled URL queues stop tracking it.
+     *
+     * @param urlQueue The URL queue.
+     */
+    default void finish(final QUEUE urlQueue) {
+        // nothing
+    }
+
     /**
      * Saves the session.
      *
@@ -85,6 +132,17 @@ public interface UrlQueueService<QUEUE extends UrlQueue<?>> {
      */
     void saveSession(String sessionId);
 
+    /**
+     * Restores a session saved by {@link #saveSession(String)}, for example after the JVM was restarted.
+     * Services which keep the session in an external store do not need to restore it.
+     *
+     * @param sessionId The session ID.
+     * @return true if the session was restored, otherwise false.
+     */
+    default boolean restoreSession(final String sessionId) {
+        return false;
+    }
+
     /**
      * Checks if a URL has been visited.
      *
@@ -94,6 +94,10 @@ public class DataServiceImpl implements DataService<AccessResultImpl<Long>> {
             throw new CrawlerSystemException(
                     "AccessResult for URL '" + accessResult.getUrl() + "' already exists. Duplicate URLs are not allowed.");
         }
+        // after the duplicate check, so that the data of a rejected access result is not written to the content store
+        dataHelper.storeContent(accessResult);
+        dataHelper.addVisitedUrl(accessResult.getSessionId(), accessResult.getUrl());
+        dataHelper.addCheckpointResult(accessResult);
 
     }
 
@@ -166,6 +170,8 @@ public class DataServiceImpl implements DataService<AccessResultImpl<Long>> {
 
     /**
      * Updates an access result in the data store.
+     * If the content store is enabled and the access result has new data, the new data is appended to the
+     * content store, and the bytes of the replaced data stay in its segment files until the session is deleted.
      *
      * @param accessResult the access result to update
      * @throws CrawlerSystemException if the access result is not found
@@ -176,7 +182,9 @@ public class DataServiceImpl implements DataService<AccessResultImpl<Long>> {
         if (!arMap.containsKey(accessResult.getUrl())) {
             throw new CrawlerSystemException(accessResult.getUrl() + " is not found.");
         }
+        dataHelper.storeContent(accessResult);
         arMap.put(accessResult.getUrl(), accessResult);
+        dataHelper.addCheckpointResult(accessResult);
     }
 
     /**
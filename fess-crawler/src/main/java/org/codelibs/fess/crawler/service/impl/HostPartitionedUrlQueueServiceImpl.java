@@ -0,0 +1,307 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.core.lang.StringUtil;
+import org.codelibs.core.lang.SystemUtil;
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.CrawlerContext;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.interval.IntervalController;
+import org.codelibs.fess.crawler.interval.impl.HostIntervalController;
+import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.codelibs.fess.crawler.util.HostPartitionedQueue;
+import org.codelibs.fess.crawler.util.VisitedUrlSet;
+
+import jakarta.annotation.Resource;
+
+/**
+ * A lock-free, in-memory implementation of {@link UrlQueueService}.
+ *
+ * <p>
+ * Unlike {@link UrlQueueServiceImpl}, which serializes all operations on a single
+ * {@code LinkedList} monitor, this implementation keeps one {@link HostPartitionedQueue}
+ * per session and uses the concurrent in-queue set of {@link MemoryDataHelper} for
+ * duplicate detection. {@link #poll(String)}, {@link #offerAll(String, List)} and
+ * {@link #visited(UrlQueueImpl)} therefore do not take any lock and scale with the
+ * number of crawler threads.
+ * </p>
+ *
+ * <p>
+ * URLs are returned in round-robin order across hosts and in FIFO order within a host,
+ * which also spreads the load of consecutive requests over different hosts.
+ * </p>
+ *
+ * <p>
+ * If the interval controller of the crawler is a {@link HostIntervalController}, its per-host
+ * interval (the robots.txt Crawl-delay or the configured default) is applied when polling:
+ * a host is not returned again until its interval has elapsed, and the next ready URL of another
+ * host is returned instead. When every pending host is in its interval, {@link #poll(String)} returns
+ * null without waiting, and {@link #getWaitMillis(String)} tells the crawler thread how long to wait
+ * until the first host becomes ready.
+ * This service is then the only one which waits for the interval: {@link #isHostIntervalKept()}
+ * returns true, so the interval controller does not delay the polled URL again before processing it.
+ * </p>
+ */
+public class HostPartitionedUrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>> {
+
+    private static final Logger logger = LogManager.getLogger(HostPartitionedUrlQueueServiceImpl.class);
+
+    /**
+     * The memory data helper.
+     */
+    @Resource
+    protected MemoryDataHelper dataHelper;
+
+    /**
+     * Creates a new HostPartitionedUrlQueueServiceImpl instance.
+     */
+    public HostPartitionedUrlQueueServiceImpl() {
+        // NOP
+    }
+
+    @Override
+    public void updateSessionId(final String oldSessionId, final String newSessionId) {
+        // not MT-safe
+        final Queue<UrlQueueImpl<Long>> oldQueue = dataHelper.getHostPartitionedQueue(oldSessionId);
+        final Queue<UrlQueueImpl<Long>> newQueue = dataHelper.getHostPartitionedQueue(newSessionId);
+        UrlQueueImpl<Long> urlQueue;
+        while ((urlQueue = oldQueue.poll()) != null) {
+            urlQueue.setSessionId(newSessionId);
+            dataHelper.addQueuedUrl(newSessionId, urlQueue.getUrl());
+            dataHelper.addCheckpointUrlQueue(newSessionId, urlQueue);
+            newQueue.offer(urlQueue);
+        }
+        dataHelper.removeUrlQueueList(oldSessionId);
+    }
+
+    @Override
+    public void add(final String sessionId, final String url) {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setSessionId(sessionId);
+        urlQueue.setMethod(Constants.GET_METHOD);
+        urlQueue.setUrl(url);
+        urlQueue.setDepth(0);
+        urlQueue.setCreateTime(SystemUtil.currentTimeMillis());
+        insert(urlQueue);
+    }
+
+    @Override
+    public void insert(final UrlQueueImpl<Long> urlQueue) {
+        dataHelper.addQueuedUrl(urlQueue.getSessionId(), urlQueue.getUrl());
+        dataHelper.addCheckpointUrlQueue(urlQueue.getSessionId(), urlQueue);
+        dataHelper.getHostPartitionedQueue(urlQueue.getSessionId()).offer(urlQueue);
+        CrawlingParameterUtil.notifyUrlsOffered(urlQueue.getSessionId());
+    }
+
+    @Override
+    public void delete(final String sessionId) {
+        dataHelper.removeUrlQueueList(sessionId);
+    }
+
+    @Override
+    public void deleteAll() {
+        dataHelper.clearUrlQueueList();
+    }
+
+    @Override
+    public void offerAll(final String sessionId, final List<UrlQueueImpl<Long>> newUrlQueueList) {
+        final Queue<UrlQueueImpl<Long>> urlQueueList = dataHelper.getHostPartitionedQueue(sessionId);
+        final Set<String> urlInQueueSet = dataHelper.getUrlInQueueSet(sessionId);
+        final Map<String, AccessResultImpl<Long>> accessResultMap = dataHelper.getAccessResultMap(sessionId);
+        final VisitedUrlSet visitedUrlSet = dataHelper.getVisitedUrlSet(sessionId);
+        boolean offered = false;
+        for (final UrlQueueImpl<Long> urlQueue : newUrlQueueList) {
+            final String url = urlQueue.getUrl();
+            if (StringUtil.isBlank(url)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("URL is a blank: {}", url);
+                }
+                continue;
+            }
+            if (visitedUrlSet != null) {
+                // VisitedUrlSet.add is atomic and covers the queue, the polled URLs and the results
+                if (!visitedUrlSet.add(url) && !isOfferedAgain(urlQueue)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("URL is visited: {}", url);
+                    }
+                    continue;
+                }
+                dataHelper.addCheckpointUrlQueue(sessionId, urlQueue);
+                urlQueueList.offer(urlQueue);
+                offered = true;
+                continue;
+            }
+            if (accessResultMap.containsKey(url)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("URL exists in a result: {}", url);
+                }
+                continue;
+            }
+            if (isCrawledElsewhere(urlQueue)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("URL is being crawled: {}", url);
+                }
+                continue;
+            }
+            // Set.add is atomic, so only one of concurrent offers for the same URL wins
+            if (!urlInQueueSet.add(url)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("URL exists in a queue: {}", url);
+                }
+                continue;
+            }
+            dataHelper.addCheckpointUrlQueue(sessionId, urlQueue);
+            urlQueueList.offer(urlQueue);
+            offered = true;
+        }
+        if (offered) {
+            CrawlingParameterUtil.notifyUrlsOffered(sessionId);
+        }
+    }
+
+    @Override
+    public UrlQueueImpl<Long> poll(final String sessionId) {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> urlQueueList = dataHelper.getHostPartitionedQueue(sessionId);
+        final ToLongFunction<String> intervalFunction = getIntervalFunction(CrawlingParameterUtil.getCrawlerContext());
+        final UrlQueueImpl<Long> urlQueue = urlQueueList.poll(intervalFunction);
+        if (urlQueue != null) {
+            dataHelper.getInFlightUrlQueueMap(sessionId).put(urlQueue.getUrl(), urlQueue);
+            dataHelper.getUrlInQueueSet(sessionId).remove(urlQueue.getUrl());
+        } else if (logger.isDebugEnabled()) {
+            final long waitMillis = urlQueueList.getWaitMillis();
+            if (waitMillis > 0) {
+                logger.debug("All hosts are in their crawl interval. Ready in {}ms.", waitMillis);
+            }
+        }
+        return urlQueue;
+    }
+
+    @Override
+    public long getWaitMillis(final String sessionId) {
+        return dataHelper.getHostPartitionedQueue(sessionId).getWaitMillis();
+    }
+
+    @Override
+    public boolean isHostIntervalKept() {
+        return true;
+    }
+
+    @Override
+    public void finish(final UrlQueueImpl<Long> urlQueue) {
+        dataHelper.getInFlightUrlQueueMap(urlQueue.getSessionId()).remove(urlQueue.getUrl(), urlQueue);
+    }
+
+    /**
+     * Checks if the URL queue is one which has been polled from this service and is offered again
+     * before its access result is stored, for example because the crawling was canceled.
+     *
+     * @param urlQueue the URL queue
+     * @return true if the polled URL queue is offered again, otherwise false
+     */
+    protected boolean isOfferedAgain(final UrlQueueImpl<Long> urlQueue) {
+        final String sessionId = urlQueue.getSessionId();
+        return dataHelper.getInFlightUrlQueueMap(sessionId).get(urlQueue.getUrl()) == urlQueue
+                && !dataHelper.getAccessResultMap(sessionId).containsKey(urlQueue.getUrl());
+    }
+
+    /**
+     * Checks if another URL queue of the same URL has been polled and its crawling has not finished yet,
+     * which includes storing its access result in the store stage of a staged crawl.
+     *
+     * @param urlQueue the URL queue
+     * @return true if the URL is being crawled for another URL queue, otherwise false
+     */
+    protected boolean isCrawledElsewhere(final UrlQueueImpl<Long> urlQueue) {
+        final UrlQueueImpl<Long> inFlightUrlQueue = dataHelper.getInFlightUrlQueueMap(urlQueue.getSessionId()).get(urlQueue.getUrl());
+        return inFlightUrlQueue != null && inFlightUrlQueue != urlQueue;
+    }
+
+    /**
+     * Returns the function which gives the politeness interval of a host.
+     *
+     * @param crawlerContext the crawler context of the current thread, or null
+     * @return the interval function, or null if no interval is kept
+     */
+    protected ToLongFunction<String> getIntervalFunction(final CrawlerContext crawlerContext) {
+        if (crawlerContext != null) {
+            final IntervalController intervalController = crawlerContext.getIntervalController();
+            if (intervalController instanceof final HostIntervalController hostIntervalController) {
+                return hostIntervalController::getIntervalMillis;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void saveSession(final String sessionId) {
+        // the offered URL queues are logged, so the queue is not read
+        dataHelper.checkpoint(sessionId);
+    }
+
+    @Override
+    public boolean restoreSession(final String sessionId) {
+        return dataHelper.restoreCheckpoint(sessionId, dataHelper.getHostPartitionedQueue(sessionId));
+    }
+
+    @Override
+    public boolean supportsOfferSignal() {
+        return true;
+    }
+
+    @Override
+    public boolean visited(final UrlQueueImpl<Long> urlQueue) {
+        final String url = urlQueue.getUrl();
+        if (StringUtil.isBlank(url)) {
+            return true;
+        }
+        final String sessionId = urlQueue.getSessionId();
+        if (dataHelper.getVisitedUrlSet(sessionId) != null) {
+            // the visited URL set also contains the queued and polled URLs, so check the results
+            return dataHelper.getAccessResultMap(sessionId).containsKey(url) || isCrawledElsewhere(urlQueue);
+        }
+        return dataHelper.getUrlInQueueSet(sessionId).contains(url) || dataHelper.getAccessResultMap(sessionId).containsKey(url)
+                || isCrawledElsewhere(urlQueue);
+    }
+
+    @Override
+    public void generateUrlQueues(final String previousSessionId, final String sessionId) {
+        final Map<String, AccessResultImpl<Long>> arMap = dataHelper.getAccessResultMap(previousSessionId);
+        for (final AccessResultImpl<Long> value : arMap.values()) {
+            final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+            urlQueue.setSessionId(sessionId);
+            urlQueue.setMethod(value.getMethod());
+            urlQueue.setUrl(value.getUrl());
+            urlQueue.setParentUrl(value.getParentUrl());
+            urlQueue.setDepth(0);
+            urlQueue.setLastModified(value.getLastModified());
+            urlQueue.setEtag(value.getEtag());
+            urlQueue.setCreateTime(SystemUtil.currentTimeMillis());
+            insert(urlQueue);
+        }
+    }
+}
@@ -31,6 +31,8 @@ import org.codelibs.fess.crawler.entity.AccessResultImpl;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
 import org.codelibs.fess.crawler.helper.MemoryDataHelper;
 import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.codelibs.fess.crawler.util.VisitedUrlSet;
 
 import jakarta.annotation.Resource;
 
@@ -39,6 +41,8 @@ import jakarta.annotation.Resource;
  * This class provides methods for managing a queue of URLs to be crawled,
  * including adding, deleting, and retrieving URLs from the queue.
  * It uses a {@link MemoryDataHelper} to store the URL queue data in memory.
+ * The URLs are polled in FIFO order, or by weight if the helper is configured with
+ * {@link MemoryDataHelper#setUrlQueuePriorityEnabled(boolean)}.
  *
  * <p>
  * The class is responsible for:
@@ -51,7 +55,7 @@ import jakarta.annotation.Resource;
  *   <li>Deleting all URL queues.</li>
  *   <li>Offering a list of URLs to the queue, ensuring duplicates are not added.</li>
  *   <li>Polling (retrieving and removing) a URL from the queue.</li>
- *   <li>Saving the session (currently a no-op).</li>
+ *   <li>Saving the session to a checkpoint log, if the helper has a checkpoint directory, and restoring it.</li>
  *   <li>Checking if a URL has already been visited.</li>
  *   <li>Generating URL queues from a previous session's access results.</li>
  * </ul>
@@ -117,8 +121,10 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
             urlQueue.setDepth(0);
             urlQueue.setCreateTime(SystemUtil.currentTimeMillis());
             urlQueueList.add(urlQueue);
-            urlInQueueSet.add(url);
+            addQueuedUrl(sessionId, url, urlInQueueSet);
+            dataHelper.addCheckpointUrlQueue(sessionId, urlQueue);
         }
+        CrawlingParameterUtil.notifyUrlsOffered(sessionId);
     }
 
     /*
@@ -134,8 +140,10 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
         final Set<String> urlInQueueSet = dataHelper.getUrlInQueueSet(urlQueue.getSessionId());
         synchronized (urlQueueList) {
             urlQueueList.add(urlQueue);
-            urlInQueueSet.add(urlQueue.getUrl());
+            addQueuedUrl(urlQueue.getSessionId(), urlQueue.getUrl(), urlInQueueSet);
+            dataHelper.addCheckpointUrlQueue(urlQueue.getSessionId(), urlQueue);
         }
+        CrawlingParameterUtil.notifyUrlsOffered(urlQueue.getSessionId());
     }
 
     /*
@@ -173,12 +181,33 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
             for (final UrlQueueImpl<Long> urlQueue : newUrlQueueList) {
                 if (isNewUrl(urlQueue, urlInQueueSet)) {
                     targetList.add(urlQueue);
-                    urlInQueueSet.add(urlQueue.getUrl());
+                    addQueuedUrl(sessionId, urlQueue.getUrl(), urlInQueueSet);
+                    dataHelper.addCheckpointUrlQueue(sessionId, urlQueue);
                 }
             }
+            if (targetList.isEmpty()) {
+                return;
+            }
             urlQueueList.addAll(targetList);
         }
+        CrawlingParameterUtil.notifyUrlsOffered(sessionId);
+    }
 
+    /**
+     * Records a queued URL in the visited URL set of the session if there is one, so that the queued
+     * URL set does not keep the URLs of a spilling URL queue on the heap, or in the queued URL set otherwise.
+     *
+     * @param sessionId The session ID.
+     * @param url The queued URL.
+     * @param urlInQueueSet The set of URLs currently in queue.
+     */
+    protected void addQueuedUrl(final String sessionId, final String url, final Set<String> urlInQueueSet) {
+        final VisitedUrlSet visitedUrlSet = dataHelper.getVisitedUrlSet(sessionId);
+        if (visitedUrlSet != null) {
+            visitedUrlSet.add(url);
+        } else {
+            urlInQueueSet.add(url);
+        }
     }
 
     /**
@@ -198,6 +227,18 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
             return false;
         }
 
+        // check it in the compact visited URL set, which covers the queue, the polled URLs and the results
+        final VisitedUrlSet visitedUrlSet = dataHelper.getVisitedUrlSet(urlQueue.getSessionId());
+        if (visitedUrlSet != null) {
+            if (visitedUrlSet.contains(url) && !isOfferedAgain(urlQueue)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("URL is visited: {}", url);
+                }
+                return false;
+            }
+            return true;
+        }
+
         // check it in queue using O(1) Set lookup
         if (urlInQueueSet.contains(url)) {
             if (logger.isDebugEnabled()) {
@@ -206,6 +247,14 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
             return false;
         }
 
+        // check it in the polled URLs whose results are not stored yet
+        if (isCrawledElsewhere(urlQueue)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("URL is being crawled: {}", url);
+            }
+            return false;
+        }
+
         // check it in result
         final AccessResult<Long> accessResult = dataHelper.getAccessResultMap(urlQueue.getSessionId()).get(url);
         if (accessResult != null) {
@@ -219,6 +268,31 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
 
     }
 
+    /**
+     * Checks if the URL queue is one which has been polled from this service and is offered again
+     * before its access result is stored, for example because the crawling was canceled.
+     *
+     * @param urlQueue The URL queue.
+     * @return true if the polled URL queue is offered again, otherwise false.
+     */
+    protected boolean isOfferedAgain(final UrlQueueImpl<Long> urlQueue) {
+        final String sessionId = urlQueue.getSessionId();
+        return dataHelper.getInFlightUrlQueueMap(sessionId).get(urlQueue.getUrl()) == urlQueue
+                && !dataHelper.getAccessResultMap(sessionId).containsKey(urlQueue.getUrl());
+    }
+
+    /**
+     * Checks if another URL queue of the same URL has been polled and its crawling has not finished yet,
+     * which includes storing its access result in the store stage of a staged crawl.
+     *
+     * @param urlQueue The URL queue.
+     * @return true if the URL is being crawled for another URL queue, otherwise false.
+     */
+    protected boolean isCrawledElsewhere(final UrlQueueImpl<Long> urlQueue) {
+        final UrlQueueImpl<Long> inFlightUrlQueue = dataHelper.getInFlightUrlQueueMap(urlQueue.getSessionId()).get(urlQueue.getUrl());
+        return inFlightUrlQueue != null && inFlightUrlQueue != urlQueue;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -231,12 +305,23 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
         synchronized (urlQueueList) {
             final UrlQueueImpl<Long> urlQueue = urlQueueList.poll();
             if (urlQueue != null) {
+                dataHelper.getInFlightUrlQueueMap(sessionId).put(urlQueue.getUrl(), urlQueue);
                 urlInQueueSet.remove(urlQueue.getUrl());
             }
             return urlQueue;
         }
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.codelibs.fess.crawler.service.UrlQueueService#finish(UrlQueue)
+     */
+    @Override
+    public void finish(final UrlQueueImpl<Long> urlQueue) {
+        dataHelper.getInFlightUrlQueueMap(urlQueue.getSessionId()).remove(urlQueue.getUrl(), urlQueue);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -245,7 +330,32 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
      */
     @Override
     public void saveSession(final String sessionId) {
-        // NOP
+        // the offered URL queues are logged, so the queue is neither locked nor read
+        dataHelper.checkpoint(sessionId);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.codelibs.fess.crawler.service.UrlQueueService#restoreSession(java.lang.String)
+     */
+    @Override
+    public boolean restoreSession(final String sessionId) {
+        final Queue<UrlQueueImpl<Long>> urlQueueList = dataHelper.getUrlQueueList(sessionId);
+        synchronized (urlQueueList) {
+            return dataHelper.restoreCheckpoint(sessionId, urlQueueList);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.codelibs.fess.crawler.service.UrlQueueService#supportsOfferSignal()
+     */
+    @Override
+    public boolean supportsOfferSignal() {
+        return true;
     }
 
     /*
@@ -255,8 +365,14 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
      */
     @Override
     public boolean visited(final UrlQueueImpl<Long> urlQueue) {
-        final Queue<UrlQueueImpl<Long>> urlQueueList = dataHelper.getUrlQueueList(urlQueue.getSessionId());
-        final Set<String> urlInQueueSet = dataHelper.getUrlInQueueSet(urlQueue.getSessionId());
+        final String sessionId = urlQueue.getSessionId();
+        if (dataHelper.getVisitedUrlSet(sessionId) != null) {
+            // the visited URL set also contains the queued and polled URLs, so check the results
+            return StringUtil.isBlank(urlQueue.getUrl()) || dataHelper.getAccessResultMap(sessionId).containsKey(urlQueue.getUrl())
+                    || isCrawledElsewhere(urlQueue);
+        }
+        final Queue<UrlQueueImpl<Long>> urlQueueList = dataHelper.getUrlQueueList(sessionId);
+        final Set<String> urlInQueueSet = dataHelper.getUrlInQueueSet(sessionId);
         synchronized (urlQueueList) {
             return !isNewUrl(urlQueue, urlInQueueSet);
         }
@@ -282,9 +398,11 @@ public class UrlQueueServiceImpl implements UrlQueueService<UrlQueueImpl<Long>>
                 urlQueue.setParentUrl(value.getParentUrl());
                 urlQueue.setDepth(0);
                 urlQueue.setLastModified(value.getLastModified());
+                urlQueue.setEtag(value.getEtag());
                 urlQueue.setCreateTime(SystemUtil.currentTimeMillis());
                 urlQueueList.add(urlQueue);
-                urlInQueueSet.add(urlQueue.getUrl());
+                addQueuedUrl(sessionId, urlQueue.getUrl(), urlInQueueSet);
+                dataHelper.addCheckpointUrlQueue(sessionId, urlQueue);
             }
         }
     }
@@ -191,6 +191,20 @@ public class FileTransformer extends HtmlTransformer {
         throw new CrawlerSystemException("Could not create a unique file for " + new File(dir, baseName).getAbsolutePath());
     }
 
+    /**
+     * Stores the response body loaded in the streaming mode as a file, like {@link #storeData(ResponseData, ResultData)}.
+     *
+     * @param responseData the response data to store
+     * @param resultData the result data to populate with file information
+     * @param data the loaded response body
+     */
+    @Override
+    protected void storeData(final ResponseData responseData, final ResultData resultData, final byte[] data) {
+        // write the loaded bytes instead of reading the source again
+        responseData.setResponseBody(data);
+        storeData(responseData, resultData);
+    }
+
     /**
      * Stores response data as a file on the file system.
      * <p>
@@ -16,6 +16,7 @@
 package org.codelibs.fess.crawler.transformer.impl;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -54,9 +55,12 @@ import org.codelibs.fess.crawler.helper.UrlConvertHelper;
 import org.codelibs.fess.crawler.util.CharUtil;
 import org.codelibs.fess.crawler.util.XPathAPI;
 import org.codelibs.nekohtml.parsers.DOMParser;
+import org.codelibs.nekohtml.parsers.SAXParser;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
 
 import jakarta.annotation.Resource;
 
@@ -98,6 +102,8 @@ import jakarta.annotation.Resource;
  *       stream to determine the character set encoding.</li>
  *   <li><b>invalidUrlPattern:</b> A regular expression pattern used to identify
  *       invalid URLs.</li>
+ *   <li><b>streaming:</b> If true, the response body is read only once, and child URLs
+ *       are extracted with a SAX handler instead of a DOM and XPath queries.</li>
  * </ul>
  *
  * <p>
@@ -151,6 +157,9 @@ public class HtmlTransformer extends AbstractTransformer {
     private static final Pattern CHARSET_PATTERN =
             Pattern.compile("<meta\\s[^<>]*; *charset *= *([a-zA-Z0-9\\-_]+)", Pattern.CASE_INSENSITIVE);
 
+    /** Pattern for a child URL rule which selects elements by tag name only, such as {@code //A}. */
+    private static final Pattern TAG_NAME_XPATH_PATTERN = Pattern.compile("^//([a-zA-Z][a-zA-Z0-9_\\-]*)$");
+
     /** The crawler container for dependency injection. */
     @Resource
     protected CrawlerContainer crawlerContainer;
@@ -189,6 +198,16 @@ public class HtmlTransformer extends AbstractTransformer {
             + "^\\s*ios-app:|" //
             + "^\\s*callto:", Pattern.CASE_INSENSITIVE);
 
+    /**
+     * Whether the response body is processed in a single pass.
+     * The body is read once, the charset is detected from its first {@link #preloadSizeForCharset} bytes,
+     * and child URLs are extracted by a SAX handler without building a DOM. Child URL rules other than
+     * {@code //TAG} still need XPath, so such rules fall back to a DOM parsed from the loaded bytes.
+     * The loaded bytes are stored by {@link #storeData(ResponseData, ResultData, byte[])}, so a subclass which
+     * overrides {@link #storeData(ResponseData, ResultData)} overrides it too to support this mode.
+     */
+    protected boolean streaming = false;
+
     /** Thread-local XPathAPI instance for thread-safe XPath operations. */
     private final ThreadLocal<XPathAPI> xpathAPI = new ThreadLocal<>();
 
@@ -198,22 +217,27 @@ public class HtmlTransformer extends AbstractTransformer {
             throw new CrawlingAccessException("No response body.");
         }
 
-        // encoding
-        updateCharset(responseData);
+        final ResultData resultData;
+        if (streaming) {
+            resultData = transformInSinglePass(responseData);
+        } else {
+            // encoding
+            updateCharset(responseData);
 
-        final ResultData resultData = new ResultData();
-        resultData.setTransformerName(getName());
+            resultData = new ResultData();
+            resultData.setTransformerName(getName());
 
-        try {
-            // data
-            storeData(responseData, resultData);
+            try {
+                // data
+                storeData(responseData, resultData);
 
-            if (isHtml(responseData) && !responseData.isNoFollow()) {
-                // urls
-                storeChildUrls(responseData, resultData);
+                if (isHtml(responseData) && !responseData.isNoFollow()) {
+                    // urls
+                    storeChildUrls(responseData, resultData);
+                }
+            } finally {
+                xpathAPI.remove();
             }
-        } finally {
-            xpathAPI.remove();
         }
 
         final Object redirectUrlObj = responseData.getMetaDataMap().get(LOCATION_HEADER);
@@ -232,6 +256,43 @@ public class HtmlTransformer extends AbstractTransformer {
         return resultData;
     }
 
+    /**
+     * Transforms the response data reading the response body only once.
+     *
+     * @param responseData the response data to transform
+     * @return the result data containing the content and the child URLs
+     * @throws CrawlerSystemException if the response body cannot be processed
+     */
+    protected ResultData transformInSinglePass(final ResponseData responseData) {
+        final byte[] data;
+        try (final InputStream is = responseData.getResponseBody()) {
+            data = InputStreamUtil.getBytes(is);
+        } catch (final CrawlerSystemException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new CrawlerSystemException("Could not load response data: " + responseData.getUrl(), e);
+        }
+
+        // encoding
+        updateCharset(responseData, loadCharset(data));
+
+        final ResultData resultData = new ResultData();
+        resultData.setTransformerName(getName());
+
+        try {
+            // data
+            storeData(responseData, resultData, data);
+
+            if (isHtml(responseData) && !responseData.isNoFollow()) {
+                // urls
+                storeChildUrls(responseData, resultData, data);
+            }
+        } finally {
+            xpathAPI.remove();
+        }
+        return resultData;
+    }
+
     /**
      * Checks if the response data represents HTML content.
      *
@@ -313,28 +374,107 @@ public class HtmlTransformer extends AbstractTransformer {
     protected void storeChildUrls(final ResponseData responseData, final ResultData resultData, final Document document)
             throws MalformedURLException {
         // base href
-        final String baseHref = getBaseHref(document);
-        URL url;
+        final URL baseUrl = getBaseUrl(responseData, getBaseHref(document));
+        getChildUrlRules(responseData, resultData).forEach(entry -> addChildUrls(resultData,
+                getUrlFromTagAttribute(baseUrl, document, entry.getFirst(), entry.getSecond(), responseData.getCharSet())));
+
+        addResponseChildUrls(responseData, resultData);
+    }
+
+    /**
+     * Stores child URLs found in the given response body without building a DOM.
+     * <p>
+     * If every child URL rule selects elements by tag name only ({@code //TAG}), the body is
+     * scanned once by a SAX handler that collects the {@code <base>} element and the rule attributes.
+     * Otherwise, the body is parsed into a DOM and {@link #storeChildUrls(ResponseData, ResultData, Document)}
+     * is used, so that arbitrary XPath rules keep working.
+     * </p>
+     *
+     * @param responseData the response data containing the HTML content
+     * @param resultData the result data to store child URLs in
+     * @param data the response body
+     * @throws CrawlerSystemException if URL extraction fails
+     */
+    protected void storeChildUrls(final ResponseData responseData, final ResultData resultData, final byte[] data) {
         try {
-            if (baseHref == null) {
-                url = new URL(responseData.getUrl());
-            } else {
-                url = new URL(new URL(responseData.getUrl()), baseHref);
+            final List<Pair<String, String>> ruleList = getChildUrlRules(responseData, resultData).toList();
+            final List<String> tagNameList = new ArrayList<>(ruleList.size());
+            for (final Pair<String, String> rule : ruleList) {
+                final Matcher matcher = TAG_NAME_XPATH_PATTERN.matcher(rule.getFirst());
+                if (!matcher.matches()) {
+                    final DOMParser parser = getDomParser();
+                    parser.parse(new InputSource(new ByteArrayInputStream(data)));
+                    storeChildUrls(responseData, resultData, parser.getDocument());
+                    return;
+                }
+                tagNameList.add(matcher.group(1));
             }
+
+            final ChildUrlHandler handler = new ChildUrlHandler(tagNameList, ruleList.stream().map(Pair::getSecond).toList());
+            final SAXParser parser = getSaxParser();
+            parser.setContentHandler(handler);
+            parser.parse(new InputSource(new ByteArrayInputStream(data)));
+
+            final URL baseUrl = getBaseUrl(responseData, normalizeBaseHref(handler.getBaseHref()));
+            for (int i = 0; i < ruleList.size(); i++) {
+                final List<String> urlList = new ArrayList<>();
+                for (final String attrValue : handler.getValues(i)) {
+                    if (isValidPath(attrValue)) {
+                        addChildUrlFromTagAttribute(urlList, baseUrl, attrValue, responseData.getCharSet());
+                    }
+                }
+                addChildUrls(resultData, urlList);
+            }
+
+            addResponseChildUrls(responseData, resultData);
+        } catch (final CrawlerSystemException e) {
+            throw e;
         } catch (final Exception e) {
-            url = new URL(responseData.getUrl());
-        }
-        final URL baseUrl = url;
-        getChildUrlRules(responseData, resultData).forEach(entry -> {
-            List<RequestData> requestDataList = new ArrayList<>();
-            for (final String childUrl : getUrlFromTagAttribute(baseUrl, document, entry.getFirst(), entry.getSecond(),
-                    responseData.getCharSet())) {
-                requestDataList.add(RequestDataBuilder.newRequestData().get().url(childUrl).build());
+            throw new CrawlerSystemException("Could not store data.", e);
+        }
+    }
+
+    /**
+     * Resolves the base URL for child URLs.
+     *
+     * @param responseData the response data
+     * @param baseHref the href of the base tag, or null
+     * @return the base URL
+     * @throws MalformedURLException if the response URL is malformed
+     */
+    protected URL getBaseUrl(final ResponseData responseData, final String baseHref) throws MalformedURLException {
+        try {
+            if (baseHref == null) {
+                return new URL(responseData.getUrl());
             }
-            requestDataList = convertChildUrlList(requestDataList);
-            resultData.addAllUrl(requestDataList);
-        });
+            return new URL(new URL(responseData.getUrl()), baseHref);
+        } catch (final Exception e) {
+            return new URL(responseData.getUrl());
+        }
+    }
+
+    /**
+     * Converts the child URLs and adds them to the result data.
+     *
+     * @param resultData the result data to store child URLs in
+     * @param urlList the child URLs
+     */
+    protected void addChildUrls(final ResultData resultData, final List<String> urlList) {
+        List<RequestData> requestDataList = new ArrayList<>();
+        for (final String childUrl : urlList) {
+            requestDataList.add(RequestDataBuilder.newRequestData().get().url(childUrl).build());
+        }
+        requestDataList = convertChildUrlList(requestDataList);
+        resultData.addAllUrl(requestDataList);
+    }
 
+    /**
+     * Adds the child URLs kept in the response data and removes the URL of the response itself.
+     *
+     * @param responseData the response data
+     * @param resultData the result data to store child URLs in
+     */
+    protected void addResponseChildUrls(final ResponseData responseData, final ResultData resultData) {
         resultData.addAllUrl(responseData.getChildUrlSet());
 
         final RequestData requestData = responseData.getRequestData();
@@ -393,6 +533,19 @@ public class HtmlTransformer extends AbstractTransformer {
         }
     }
 
+    /**
+     * Stores the response body loaded in the {@link #streaming} mode in the result data.
+     * A subclass which stores other data than the response body overrides this method.
+     *
+     * @param responseData the response data
+     * @param resultData the result data to store the content in
+     * @param data the loaded response body
+     */
+    protected void storeData(final ResponseData responseData, final ResultData resultData, final byte[] data) {
+        resultData.setData(data);
+        resultData.setEncoding(responseData.getCharSet());
+    }
+
     /**
      * Updates the character set of the response data by detecting it from the content.
      *
@@ -400,20 +553,7 @@ public class HtmlTransformer extends AbstractTransformer {
      */
     protected void updateCharset(final ResponseData responseData) {
         try (final InputStream is = responseData.getResponseBody()) {
-            final String encoding = loadCharset(is);
-            if (encoding == null) {
-                if (defaultEncoding == null) {
-                    responseData.setCharSet(Constants.UTF_8);
-                } else if (responseData.getCharSet() == null) {
-                    responseData.setCharSet(defaultEncoding);
-                }
-            } else {
-                responseData.setCharSet(encoding.trim());
-            }
-
-            if (!isSupportedCharset(responseData.getCharSet())) {
-                responseData.setCharSet(Constants.UTF_8);
-            }
+            updateCharset(responseData, loadCharset(is));
         } catch (final CrawlerSystemException e) {
             throw e;
         } catch (final Exception e) {
@@ -421,6 +561,28 @@ public class HtmlTransformer extends AbstractTransformer {
         }
     }
 
+    /**
+     * Updates the character set of the response data with the detected encoding.
+     *
+     * @param responseData the response data to update
+     * @param encoding the encoding detected from the content, or null
+     */
+    protected void updateCharset(final ResponseData responseData, final String encoding) {
+        if (encoding == null) {
+            if (defaultEncoding == null) {
+                responseData.setCharSet(Constants.UTF_8);
+            } else if (responseData.getCharSet() == null) {
+                responseData.setCharSet(defaultEncoding);
+            }
+        } else {
+            responseData.setCharSet(encoding.trim());
+        }
+
+        if (!isSupportedCharset(responseData.getCharSet())) {
+            responseData.setCharSet(Constants.UTF_8);
+        }
+    }
+
     /**
      * Checks if the specified charset is supported.
      *
@@ -464,6 +626,21 @@ public class HtmlTransformer extends AbstractTransformer {
         return normalizeEncoding(encoding);
     }
 
+    /**
+     * Detects the character set from the first {@link #preloadSizeForCharset} bytes of the content.
+     *
+     * @param data the content
+     * @return the detected character set name, or null if not found
+     */
+    protected String loadCharset(final byte[] data) {
+        String encoding = null;
+        final int size = Math.min(data.length, preloadSizeForCharset);
+        if (size > 0) {
+            encoding = parseCharset(new String(data, 0, size));
+        }
+        return normalizeEncoding(encoding);
+    }
+
     /**
      * Normalizes the encoding name using the encoding helper.
      *
@@ -540,6 +717,31 @@ public class HtmlTransformer extends AbstractTransformer {
         }
     }
 
+    /**
+     * Creates and configures a SAX parser with the specified features and properties.
+     *
+     * @return a configured SAX parser
+     * @throws CrawlerSystemException if the parser configuration is invalid
+     */
+    protected SAXParser getSaxParser() {
+        try {
+            final SAXParser parser = new SAXParser();
+            // feature
+            for (final Map.Entry<String, String> entry : featureMap.entrySet()) {
+                parser.setFeature(entry.getKey(), "true".equalsIgnoreCase(entry.getValue()));
+            }
+
+            // property
+            for (final Map.Entry<String, String> entry : propertyMap.entrySet()) {
+                parser.setProperty(entry.getKey(), entry.getValue());
+            }
+
+            return parser;
+        } catch (final Exception e) {
+            throw new CrawlerSystemException("Invalid parser configuration.", e);
+        }
+    }
+
     /**
      * Gets the base href from the document's BASE tag.
      *
@@ -553,14 +755,7 @@ public class HtmlTransformer extends AbstractTransformer {
                 final Node node = list.get(0);
                 final Node attrNode = node.getAttributes().getNamedItem("href");
                 if (attrNode != null) {
-                    String attrValue = attrNode.getNodeValue();
-                    if (StringUtil.isNotBlank(attrValue)) {
-                        // if starting with www, append a protocol
-                        if (attrValue.startsWith("www.")) {
-                            attrValue = "http://" + attrValue;
-                        }
-                        return attrValue;
-                    }
+                    return normalizeBaseHref(attrNode.getNodeValue());
                 }
             }
         } catch (final Exception e) {
@@ -569,6 +764,23 @@ public class HtmlTransformer extends AbstractTransformer {
         return null;
     }
 
+    /**
+     * Normalizes the href attribute value of a BASE tag.
+     *
+     * @param attrValue the href attribute value
+     * @return the base href URL, or null if the value is blank
+     */
+    protected String normalizeBaseHref(final String attrValue) {
+        if (StringUtil.isBlank(attrValue)) {
+            return null;
+        }
+        // if starting with www, append a protocol
+        if (attrValue.startsWith("www.")) {
+            return "http://" + attrValue;
+        }
+        return attrValue;
+    }
+
     /**
      * Extracts URLs from HTML tag attributes using XPath.
      *
@@ -883,6 +1095,24 @@ public class HtmlTransformer extends AbstractTransformer {
         this.preloadSizeForCharset = preloadSizeForCharset;
     }
 
+    /**
+     * Returns whether the response body is processed in a single pass.
+     *
+     * @return true if the streaming mode is enabled
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets whether the response body is processed in a single pass.
+     *
+     * @param streaming true to enable the streaming mode
+     */
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Gets the pattern for matching invalid URLs.
      *
@@ -900,4 +1130,76 @@ public class HtmlTransformer extends AbstractTransformer {
     public void setInvalidUrlPattern(final Pattern invalidUrlPattern) {
         this.invalidUrlPattern = invalidUrlPattern;
     }
+
+    /**
+     * A SAX handler which collects the href of the first BASE tag and the attribute values of the child URL rules.
+     */
+    protected static class ChildUrlHandler extends DefaultHandler {
+
+        /** The tag names of the rules. */
+        protected final List<String> tagNameList;
+
+        /** The attribute names of the rules. */
+        protected final List<String> attrNameList;
+
+        /** The collected attribute values per rule. */
+        protected final List<List<String>> valuesList;
+
+        /** Whether a BASE tag has been found. */
+        protected boolean baseFound = false;
+
+        /** The href attribute of the first BASE tag. */
+        protected String baseHref;
+
+        /**
+         * Creates a new ChildUrlHandler instance.
+         *
+         * @param tagNameList the tag names of the rules
+         * @param attrNameList the attribute names of the rules
+         */
+        protected ChildUrlHandler(final List<String> tagNameList, final List<String> attrNameList) {
+            this.tagNameList = tagNameList;
+            this.attrNameList = attrNameList;
+            valuesList = new ArrayList<>(tagNameList.size());
+            for (int i = 0; i < tagNameList.size(); i++) {
+                valuesList.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+            final String name = StringUtil.isNotEmpty(qName) ? qName : localName;
+            if (!baseFound && "BASE".equals(name)) {
+                baseFound = true;
+                baseHref = attributes.getValue("href");
+            }
+            for (int i = 0; i < tagNameList.size(); i++) {
+                if (tagNameList.get(i).equals(name)) {
+                    final String value = attributes.getValue(attrNameList.get(i));
+                    if (value != null) {
+                        valuesList.get(i).add(value);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the href attribute of the first BASE tag.
+         *
+         * @return the href value, or null if not found
+         */
+        public String getBaseHref() {
+            return baseHref;
+        }
+
+        /**
+         * Returns the attribute values collected for the rule.
+         *
+         * @param index the index of the rule
+         * @return the attribute values in document order
+         */
+        public List<String> getValues(final int index) {
+            return valuesList.get(index);
+        }
+    }
 }
@@ -49,7 +49,8 @@ import org.xml.sax.InputSource;
  * The extracted data is then formatted into an XML structure and stored in the {@link ResultData}.
  * <p>
  * This class extends {@link HtmlTransformer} and overrides the {@link #storeData(ResponseData, ResultData)} method
- * to parse the HTML content, evaluate XPath expressions, and generate the XML output.
+ * to parse the HTML content, evaluate XPath expressions, and generate the XML output. In the streaming mode,
+ * {@link #storeData(ResponseData, ResultData, byte[])} does the same with the loaded response body.
  * </p>
  * <p>
  * The class supports various XPath result types, including BOOLEAN, NUMBER, STRING, NODESET, and NODE.
@@ -124,6 +125,13 @@ public class XpathTransformer extends HtmlTransformer {
      */
     protected Class<?> dataClass = null;
 
+    @Override
+    protected void storeData(final ResponseData responseData, final ResultData resultData, final byte[] data) {
+        // parse the loaded bytes instead of reading the source again
+        responseData.setResponseBody(data);
+        storeData(responseData, resultData);
+    }
+
     @Override
     protected void storeData(final ResponseData responseData, final ResultData resultData) {
         final DOMParser parser = getDomParser();
@@ -0,0 +1,618 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.crawler.entity.AccessResultData;
+import org.codelibs.fess.crawler.entity.AccessResultDataImpl;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.StoredAccessResultData;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+
+/**
+ * An append-only log of checkpoints of an in-memory crawl session.
+ *
+ * <p>
+ * Each checkpoint appends the access results stored or updated since the previous
+ * checkpoint and the URL queue entries offered since then, framed by a begin and an end
+ * record. The end record is written and forced to the disk last, so a checkpoint that was
+ * cut off by a crash is ignored on recovery, and the session is restored from the complete
+ * checkpoints. The URL queue of the session is the offered entries which have no access result.
+ * </p>
+ *
+ * <p>
+ * If the log is given a {@link ContentSegmentStore}, the data of an access result which is
+ * kept in that store is logged as its address, so the bodies are not written twice. The store
+ * must then be forced to the disk before a checkpoint is appended.
+ * </p>
+ *
+ * <p>
+ * {@link #replay(Consumer, Consumer)} streams the records of the complete checkpoints
+ * instead of collecting them, and {@link #rewrite(Iterable, Predicate, Iterable)} compacts
+ * the log into a single checkpoint, replacing the file atomically.
+ * </p>
+ *
+ * <p>This class is not thread-safe; callers serialize the checkpoints of a session.</p>
+ */
+public class CheckpointLog {
+
+    private static final Logger logger = LogManager.getLogger(CheckpointLog.class);
+
+    /** The record type which starts a checkpoint. */
+    protected static final int BEGIN = 1;
+
+    /** The record type of an access result. */
+    protected static final int ACCESS_RESULT = 2;
+
+    /** The record type of an offered URL queue entry. */
+    protected static final int URL_QUEUE = 3;
+
+    /** The record type which completes a checkpoint. */
+    protected static final int END = 4;
+
+    /** The data kind of an access result without data. */
+    protected static final int NO_DATA = 0;
+
+    /** The data kind of an access result whose data is in the log. */
+    protected static final int INLINE_DATA = 1;
+
+    /** The data kind of an access result whose data is in the content store. */
+    protected static final int STORED_DATA = 2;
+
+    /** The log file. */
+    protected final File file;
+
+    /** The store of the access result data, or null. */
+    protected final ContentSegmentStore contentStore;
+
+    /** The number of checkpoints in the log file, or -1 if not known yet. */
+    protected int checkpointCount = -1;
+
+    /**
+     * Creates a new CheckpointLog which keeps the data of the access results in the log.
+     *
+     * @param file the log file
+     */
+    public CheckpointLog(final File file) {
+        this(file, null);
+    }
+
+    /**
+     * Creates a new CheckpointLog.
+     *
+     * @param file the log file
+     * @param contentStore the store of the access result data, which outlives the log, or null
+     */
+    public CheckpointLog(final File file, final ContentSegmentStore contentStore) {
+        this.file = file;
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * Appends a checkpoint.
+     *
+     * @param accessResults the access results stored or updated since the previous checkpoint
+     * @param urlQueues the URL queue entries offered since the previous checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void append(final Iterable<AccessResultImpl<Long>> accessResults, final Iterable<UrlQueueImpl<Long>> urlQueues)
+            throws IOException {
+        if (checkpointCount < 0) {
+            final Scan scan = scan();
+            if (file.exists() && file.length() > scan.validLength) {
+                // drop the checkpoint cut off by a crash, or the records behind it would be unreachable
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(scan.validLength);
+                }
+            }
+            checkpointCount = scan.checkpointCount;
+        }
+        try {
+            write(file.toPath(), StandardOpenOption.APPEND, accessResults, null, urlQueues);
+        } catch (final IOException e) {
+            checkpointCount = -1;
+            throw e;
+        }
+        checkpointCount++;
+    }
+
+    /**
+     * Replaces the log with a single checkpoint of the whole session. The URL queue entries of
+     * the log are copied from the old file one by one, so the queue is never held in memory.
+     *
+     * @param accessResults all access results of the session
+     * @param urlQueueFilter the filter of the URL queue entries in the log, which accepts the entries to keep
+     * @param urlQueues the URL queue entries offered since the previous checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void rewrite(final Iterable<AccessResultImpl<Long>> accessResults, final Predicate<UrlQueueImpl<Long>> urlQueueFilter,
+            final Iterable<UrlQueueImpl<Long>> urlQueues) throws IOException {
+        final Path tempPath = new File(file.getParentFile(), file.getName() + ".tmp").toPath();
+        write(tempPath, StandardOpenOption.TRUNCATE_EXISTING, accessResults, urlQueueFilter, urlQueues);
+        Files.move(tempPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointCount = 1;
+    }
+
+    /**
+     * Writes a checkpoint and forces it to the disk.
+     *
+     * @param path the file to write
+     * @param option {@link StandardOpenOption#APPEND} or {@link StandardOpenOption#TRUNCATE_EXISTING}
+     * @param accessResults the access results
+     * @param urlQueueFilter the filter of the URL queue entries to copy from the log, or null to copy none
+     * @param urlQueues the URL queue entries offered since the previous checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    protected void write(final Path path, final StandardOpenOption option, final Iterable<AccessResultImpl<Long>> accessResults,
+            final Predicate<UrlQueueImpl<Long>> urlQueueFilter, final Iterable<UrlQueueImpl<Long>> urlQueues) throws IOException {
+        final File parent = path.toFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            Files.createDirectories(parent.toPath());
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, option)) {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            out.writeByte(BEGIN);
+            int resultCount = 0;
+            for (final AccessResultImpl<Long> accessResult : accessResults) {
+                out.writeByte(ACCESS_RESULT);
+                writeAccessResult(out, accessResult);
+                resultCount++;
+            }
+            final int[] queueCount = { 0 };
+            if (urlQueueFilter != null) {
+                try {
+                    replay(null, urlQueue -> {
+                        if (urlQueueFilter.test(urlQueue)) {
+                            try {
+                                out.writeByte(URL_QUEUE);
+                                SpillingUrlQueue.writeUrlQueue(out, urlQueue);
+                            } catch (final IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            queueCount[0]++;
+                        }
+                    });
+                } catch (final UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            for (final UrlQueueImpl<Long> urlQueue : urlQueues) {
+                out.writeByte(URL_QUEUE);
+                SpillingUrlQueue.writeUrlQueue(out, urlQueue);
+                queueCount[0]++;
+            }
+            out.flush();
+            // the records must be on the disk before the end record makes them valid
+            channel.force(false);
+            out.writeByte(END);
+            out.writeInt(resultCount);
+            out.writeInt(queueCount[0]);
+            out.flush();
+            channel.force(false);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Wrote a checkpoint to {}: accessResults={}, urlQueues={}", path, resultCount, queueCount[0]);
+            }
+        }
+    }
+
+    /**
+     * Streams the records of the complete checkpoints of the log, from the oldest to the newest.
+     * An access result of a later checkpoint replaces the one of the same URL in an earlier checkpoint.
+     *
+     * @param accessResultConsumer the consumer of the access results, or null to skip them
+     * @param urlQueueConsumer the consumer of the offered URL queue entries, or null to skip them
+     * @return the number of complete checkpoints, which is 0 if the log does not exist
+     * @throws IOException if the log cannot be read
+     */
+    public int replay(final Consumer<AccessResultImpl<Long>> accessResultConsumer, final Consumer<UrlQueueImpl<Long>> urlQueueConsumer)
+            throws IOException {
+        final Scan scan = scan();
+        if (scan.checkpointCount == 0) {
+            return 0;
+        }
+        try (CountingInputStream counter =
+                new CountingInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            final DataInputStream in = new DataInputStream(counter);
+            while (counter.count < scan.validLength) {
+                final int type = in.read();
+                switch (type) {
+                case BEGIN:
+                    break;
+                case ACCESS_RESULT:
+                    if (accessResultConsumer != null) {
+                        accessResultConsumer.accept(readAccessResult(in));
+                    } else {
+                        skipAccessResult(in);
+                    }
+                    break;
+                case URL_QUEUE:
+                    final UrlQueueImpl<Long> urlQueue = SpillingUrlQueue.readUrlQueue(in);
+                    if (urlQueueConsumer != null) {
+                        urlQueueConsumer.accept(urlQueue);
+                    }
+                    break;
+                case END:
+                    in.readInt();
+                    in.readInt();
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type + " in " + file.getAbsolutePath());
+                }
+            }
+        }
+        return scan.checkpointCount;
+    }
+
+    /**
+     * Finds the complete checkpoints of the log without keeping their records.
+     *
+     * @return the number and the length of the complete checkpoints
+     * @throws IOException if the log cannot be opened
+     */
+    protected Scan scan() throws IOException {
+        final Scan scan = new Scan();
+        if (!file.exists()) {
+            return scan;
+        }
+        try (CountingInputStream counter =
+                new CountingInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            final DataInputStream in = new DataInputStream(counter);
+            int resultCount = -1;
+            int queueCount = -1;
+            for (int type = in.read(); type >= 0; type = in.read()) {
+                if (type != BEGIN && resultCount < 0) {
+                    throw new IOException("Unexpected record type " + type + " in " + file.getAbsolutePath());
+                }
+                switch (type) {
+                case BEGIN:
+                    resultCount = 0;
+                    queueCount = 0;
+                    break;
+                case ACCESS_RESULT:
+                    skipAccessResult(in);
+                    resultCount++;
+                    break;
+                case URL_QUEUE:
+                    SpillingUrlQueue.readUrlQueue(in);
+                    queueCount++;
+                    break;
+                case END:
+                    if (in.readInt() != resultCount || in.readInt() != queueCount) {
+                        throw new IOException("Broken checkpoint in " + file.getAbsolutePath());
+                    }
+                    scan.checkpointCount++;
+                    scan.validLength = counter.count;
+                    resultCount = -1;
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type + " in " + file.getAbsolutePath());
+                }
+            }
+            if (resultCount >= 0) {
+                throw new EOFException();
+            }
+        } catch (final IOException e) {
+            // a checkpoint cut off by a crash
+            logger.warn("Ignored an incomplete checkpoint at {} in {}", scan.validLength, file.getAbsolutePath(), e);
+        }
+        return scan;
+    }
+
+    /**
+     * Returns true if the log file exists.
+     *
+     * @return true if the log exists
+     */
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Deletes the log file.
+     *
+     * @return true if the log file was deleted
+     */
+    public boolean delete() {
+        checkpointCount = -1;
+        try {
+            return Files.deleteIfExists(file.toPath());
+        } catch (final IOException e) {
+            logger.warn("Could not delete {}", file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of checkpoints appended since the log was written or rewritten.
+     *
+     * @return the number of checkpoints, or -1 if not known yet
+     */
+    public int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    /**
+     * Returns the log file.
+     *
+     * @return the log file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes an access result. Its data is written as an address if it is kept in the content store of this log.
+     *
+     * @param out the output stream
+     * @param accessResult the access result
+     * @throws IOException if the access result cannot be written
+     */
+    protected void writeAccessResult(final DataOutputStream out, final AccessResultImpl<Long> accessResult) throws IOException {
+        writeLong(out, accessResult.getId());
+        writeString(out, accessResult.getSessionId());
+        writeString(out, accessResult.getRuleId());
+        writeString(out, accessResult.getUrl());
+        writeString(out, accessResult.getParentUrl());
+        writeInteger(out, accessResult.getStatus());
+        writeInteger(out, accessResult.getHttpStatusCode());
+        writeString(out, accessResult.getMethod());
+        writeString(out, accessResult.getMimeType());
+        writeLong(out, accessResult.getCreateTime());
+        writeInteger(out, accessResult.getExecutionTime());
+        writeLong(out, accessResult.getContentLength());
+        writeLong(out, accessResult.getLastModified());
+        writeString(out, accessResult.getEtag());
+        final AccessResultData<Long> accessResultData = accessResult.getAccessResultData();
+        out.writeBoolean(accessResultData != null);
+        if (accessResultData != null) {
+            writeLong(out, accessResultData.getId());
+            writeString(out, accessResultData.getTransformerName());
+            writeString(out, accessResultData.getEncoding());
+            if (contentStore != null && accessResultData instanceof final StoredAccessResultData storedData
+                    && storedData.getContentStore() == contentStore) {
+                if (storedData.getAddress() < 0) {
+                    out.writeByte(NO_DATA);
+                } else {
+                    out.writeByte(STORED_DATA);
+                    out.writeLong(storedData.getAddress());
+                    out.writeInt(storedData.getLength());
+                }
+                return;
+            }
+            final byte[] data = accessResultData.getData();
+            if (data == null) {
+                out.writeByte(NO_DATA);
+            } else {
+                out.writeByte(INLINE_DATA);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+    }
+
+    /**
+     * Reads an access result. Data kept in the content store is not read, but referred to by its address.
+     *
+     * @param in the input stream
+     * @return the access result
+     * @throws IOException if the access result cannot be read
+     */
+    protected AccessResultImpl<Long> readAccessResult(final DataInputStream in) throws IOException {
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setId(readLong(in));
+        accessResult.setSessionId(readString(in));
+        accessResult.setRuleId(readString(in));
+        accessResult.setUrl(readString(in));
+        accessResult.setParentUrl(readString(in));
+        accessResult.setStatus(readInteger(in));
+        accessResult.setHttpStatusCode(readInteger(in));
+        accessResult.setMethod(readString(in));
+        accessResult.setMimeType(readString(in));
+        accessResult.setCreateTime(readLong(in));
+        accessResult.setExecutionTime(readInteger(in));
+        accessResult.setContentLength(readLong(in));
+        accessResult.setLastModified(readLong(in));
+        accessResult.setEtag(readString(in));
+        if (in.readBoolean()) {
+            final Long id = readLong(in);
+            final String transformerName = readString(in);
+            final String encoding = readString(in);
+            final int kind = in.readByte();
+            final AccessResultDataImpl<Long> accessResultData;
+            if (kind == STORED_DATA) {
+                if (contentStore == null) {
+                    throw new IOException("The data of " + accessResult.getUrl() + " is in a content store, but " + file.getAbsolutePath()
+                            + " has none.");
+                }
+                final StoredAccessResultData storedData = new StoredAccessResultData(contentStore);
+                storedData.setLocation(in.readLong(), in.readInt());
+                accessResultData = storedData;
+            } else {
+                accessResultData = new AccessResultDataImpl<>();
+                if (kind == INLINE_DATA) {
+                    final byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    accessResultData.setData(data);
+                }
+            }
+            accessResultData.setId(id);
+            accessResultData.setTransformerName(transformerName);
+            accessResultData.setEncoding(encoding);
+            accessResult.setAccessResultData(accessResultData);
+        }
+        return accessResult;
+    }
+
+    /**
+     * Skips an access result without reading its data.
+     *
+     * @param in the input stream
+     * @throws IOException if the access result cannot be read
+     */
+    protected static void skipAccessResult(final DataInputStream in) throws IOException {
+        readLong(in);
+        for (int i = 0; i < 4; i++) {
+            readString(in);
+        }
+        readInteger(in);
+        readInteger(in);
+        readString(in);
+        readString(in);
+        readLong(in);
+        readInteger(in);
+        readLong(in);
+        readLong(in);
+        readString(in);
+        if (in.readBoolean()) {
+            readLong(in);
+            readString(in);
+            readString(in);
+            final int kind = in.readByte();
+            if (kind == STORED_DATA) {
+                in.readLong();
+                in.readInt();
+            } else if (kind == INLINE_DATA) {
+                final int length = in.readInt();
+                if (in.skipBytes(length) != length) {
+                    throw new EOFException();
+                }
+            }
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(final DataOutputStream out, final Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInteger(final DataOutputStream out, final Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    /**
+     * The complete checkpoints found by {@link #scan()}.
+     */
+    protected static class Scan {
+
+        /** The number of complete checkpoints. */
+        protected int checkpointCount;
+
+        /** The length of the log up to the end of the last complete checkpoint. */
+        protected long validLength;
+
+        /**
+         * Creates a new Scan.
+         */
+        protected Scan() {
+            // NOP
+        }
+    }
+
+    /**
+     * An input stream which counts the bytes read through it.
+     */
+    protected static class CountingInputStream extends FilterInputStream {
+
+        /** The number of bytes read. */
+        protected long count;
+
+        /**
+         * Creates a new CountingInputStream.
+         *
+         * @param in the underlying input stream
+         */
+        protected CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+
+/**
+ * An append-only store of byte arrays in segment files, used to keep the bodies of
+ * access results out of the Java heap.
+ *
+ * <p>
+ * {@link #write(byte[])} appends the data to the current segment file and returns its
+ * address, which combines the segment index and the offset in the segment. A new segment
+ * is started when the current one would exceed {@code segmentSize}. {@link #read(long, int)}
+ * reads the data back with a positional read, so the bodies live in the OS page cache
+ * rather than in the old generation, and concurrent readers do not block each other.
+ * </p>
+ *
+ * <p>
+ * A store created on a directory which already has segment files, for example those of a
+ * checkpointed session after a restart, reads them and appends to the last one.
+ * </p>
+ *
+ * <p>This class is thread-safe. Call {@link #close()} to delete the segment files.</p>
+ */
+public class ContentSegmentStore implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ContentSegmentStore.class);
+
+    /** The number of address bits used for the offset in a segment. */
+    protected static final int OFFSET_BITS = 40;
+
+    /** The mask of the offset in an address. */
+    protected static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    /** The directory of the segment files. */
+    protected final File directory;
+
+    /** The size at which a new segment is started. */
+    protected final long segmentSize;
+
+    /** The channels of the segment files, indexed by segment. */
+    protected final CopyOnWriteArrayList<FileChannel> channelList = new CopyOnWriteArrayList<>();
+
+    /** The number of bytes written to the current segment. */
+    protected long position;
+
+    /** The total number of bytes written. */
+    protected long totalSize;
+
+    /** Whether this store has been closed. */
+    protected volatile boolean closed;
+
+    /**
+     * Creates a new ContentSegmentStore.
+     *
+     * @param directory the directory of the segment files, which is created if it does not exist
+     * @param segmentSize the size at which a new segment is started
+     */
+    public ContentSegmentStore(final File directory, final long segmentSize) {
+        if (segmentSize <= 0 || segmentSize > OFFSET_MASK) {
+            throw new IllegalArgumentException("segmentSize is out of range: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            for (File file = getSegmentFile(0); file.exists(); file = getSegmentFile(channelList.size())) {
+                channelList.add(FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+                position = file.length();
+                totalSize += position;
+            }
+        } catch (final IOException e) {
+            closeChannels();
+            throw new CrawlerSystemException("Could not open the content segments in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Appends the data.
+     *
+     * @param data the data
+     * @return the address of the data
+     */
+    public synchronized long write(final byte[] data) {
+        if (closed) {
+            throw new CrawlerSystemException("ContentSegmentStore is closed: " + directory.getAbsolutePath());
+        }
+        try {
+            if (channelList.isEmpty() || position > 0 && position + data.length > segmentSize) {
+                openSegment();
+            }
+            final FileChannel channel = channelList.get(channelList.size() - 1);
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+            final long address = ((long) (channelList.size() - 1) << OFFSET_BITS) | position;
+            position += data.length;
+            totalSize += data.length;
+            return address;
+        } catch (final IOException e) {
+            throw new CrawlerSystemException("Could not write " + data.length + " bytes to " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads the data at the address.
+     *
+     * @param address the address returned by {@link #write(byte[])}
+     * @param length the length of the data
+     * @return the data
+     */
+    public byte[] read(final long address, final int length) {
+        if (closed) {
+            throw new CrawlerSystemException("ContentSegmentStore is closed: " + directory.getAbsolutePath());
+        }
+        final FileChannel channel = channelList.get((int) (address >>> OFFSET_BITS));
+        final byte[] data = new byte[length];
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        long offset = address & OFFSET_MASK;
+        try {
+            while (buffer.hasRemaining()) {
+                final int n = channel.read(buffer, offset);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of segment at " + offset);
+                }
+                offset += n;
+            }
+        } catch (final IOException e) {
+            throw new CrawlerSystemException("Could not read " + length + " bytes at " + address + " in " + directory.getAbsolutePath(), e);
+        }
+        return data;
+    }
+
+    /**
+     * Opens a new segment file.
+     *
+     * @throws IOException if the file cannot be created
+     */
+    protected void openSegment() throws IOException {
+        if (!directory.exists()) {
+            Files.createDirectories(directory.toPath());
+        }
+        final File file = getSegmentFile(channelList.size());
+        channelList.add(FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        position = 0;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Opened a content segment: {}", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Forces the written data to the disk.
+     */
+    public synchronized void force() {
+        for (final FileChannel channel : channelList) {
+            try {
+                channel.force(false);
+            } catch (final IOException e) {
+                throw new CrawlerSystemException("Could not force the content segments in " + directory.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the segment file of the index.
+     *
+     * @param index the segment index
+     * @return the segment file
+     */
+    protected File getSegmentFile(final int index) {
+        return new File(directory, String.format("content-%06d.bin", index));
+    }
+
+    /**
+     * Returns the total number of bytes written.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Returns the number of segment files.
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return channelList.size();
+    }
+
+    /**
+     * Closes the segment files and deletes them with the directory.
+     */
+    @Override
+    public synchronized void close() {
+        final int segmentCount = channelList.size();
+        closeChannels();
+        for (int i = 0; i < segmentCount; i++) {
+            final File file = getSegmentFile(i);
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (final IOException e) {
+                logger.warn("Could not delete {}", file.getAbsolutePath(), e);
+            }
+        }
+        if (directory.exists() && !directory.delete() && logger.isDebugEnabled()) {
+            logger.debug("Could not delete {}", directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Closes the segment files and keeps them, so that a new store on the same directory can read them.
+     */
+    public synchronized void closeChannels() {
+        closed = true;
+        for (final FileChannel channel : channelList) {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                logger.warn("Could not close a content segment in {}", directory.getAbsolutePath(), e);
+            }
+        }
+        channelList.clear();
+    }
+}
@@ -161,4 +161,18 @@ public final class CrawlingParameterUtil {
             DATA_SERVICE_THREAD_LOCAL.set(dataService);
         }
     }
+
+    /**
+     * Notifies the crawler threads waiting for URLs that URLs have been offered to the queue of the session.
+     * Does nothing unless the current thread has a {@link CrawlerContext} of the session with event-driven waiting enabled.
+     *
+     * @param sessionId the session ID of the queue
+     */
+    public static void notifyUrlsOffered(final String sessionId) {
+        final CrawlerContext crawlerContext = CRAWLER_CONTEXT_THREAD_LOCAL.get();
+        if (crawlerContext != null && crawlerContext.isEventDrivenWaiting() && sessionId != null
+                && sessionId.equals(crawlerContext.getSessionId())) {
+            crawlerContext.notifyUrlsOffered();
+        }
+    }
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import org.codelibs.core.lang.SystemUtil;
+import org.codelibs.fess.crawler.entity.UrlQueue;
+
+/**
+ * A lock-free queue of {@link UrlQueue} entries partitioned by host.
+ *
+ * <p>
+ * Each host owns a {@link ConcurrentLinkedQueue}. Hosts that have pending entries are
+ * registered exactly once in a shared ready-host queue, and {@link #poll()} takes a host
+ * from the head of that queue, removes one entry from it, and puts the host back at the
+ * tail. As a result, the entries of different hosts are interleaved in a round-robin
+ * manner and concurrent callers never contend on a single monitor. A host whose entries
+ * have all been polled is removed again, so the hosts do not accumulate during a long crawl.
+ * </p>
+ *
+ * <p>
+ * The ordering within a host is FIFO. {@link #size()} and {@link #iterator()} are weakly
+ * consistent, like the other {@code java.util.concurrent} collections.
+ * </p>
+ *
+ * <p>
+ * {@link #poll(ToLongFunction)} additionally keeps a politeness interval per host: a host
+ * is skipped until its interval since the previous poll has elapsed, and the entry of the
+ * next ready host is returned instead.
+ * </p>
+ *
+ * @param <E> the type of the URL queue entries
+ */
+public class HostPartitionedQueue<E extends UrlQueue<?>> extends AbstractQueue<E> {
+
+    /** The per-host sub-queues keyed by host. */
+    protected final Map<String, HostQueue<E>> hostQueueMap = new ConcurrentHashMap<>();
+
+    /** The hosts which have (or recently had) pending entries. */
+    protected final Queue<HostQueue<E>> readyHostQueue = new ConcurrentLinkedQueue<>();
+
+    /** The number of entries in this queue. */
+    protected final LongAdder counter = new LongAdder();
+
+    /**
+     * Creates a new HostPartitionedQueue instance.
+     */
+    public HostPartitionedQueue() {
+        // NOP
+    }
+
+    @Override
+    public boolean offer(final E urlQueue) {
+        if (urlQueue == null) {
+            throw new NullPointerException("urlQueue is null.");
+        }
+        // the entry is added while the mapping is locked, so that a drained host queue is not pruned under it
+        final HostQueue<E> hostQueue = hostQueueMap.compute(UrlUtil.getHost(urlQueue.getUrl()), (host, value) -> {
+            final HostQueue<E> hq = value != null ? value : new HostQueue<>(host);
+            hq.queue.offer(urlQueue);
+            return hq;
+        });
+        counter.increment();
+        schedule(hostQueue);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        return poll(null);
+    }
+
+    /**
+     * Retrieves and removes an entry of the next host whose politeness interval has elapsed.
+     *
+     * @param intervalFunction the function which returns the interval in milliseconds to keep
+     *            after polling an entry of the given host, or null not to keep any interval
+     * @return the entry, or null if this queue is empty or no host is ready
+     */
+    public E poll(final ToLongFunction<String> intervalFunction) {
+        final long now = intervalFunction == null ? 0L : SystemUtil.currentTimeMillis();
+        final int maxDeferredCount = hostQueueMap.size();
+        int deferredCount = 0;
+        HostQueue<E> hostQueue;
+        while ((hostQueue = readyHostQueue.poll()) != null) {
+            if (intervalFunction != null && hostQueue.nextPollTime > now) {
+                // the host is in its interval, so move it to the tail and try the next one
+                readyHostQueue.offer(hostQueue);
+                if (++deferredCount >= maxDeferredCount) {
+                    return null;
+                }
+                continue;
+            }
+            final E urlQueue = hostQueue.queue.poll();
+            if (urlQueue != null) {
+                counter.decrement();
+                if (intervalFunction != null) {
+                    final long interval = intervalFunction.applyAsLong(hostQueue.host);
+                    if (interval > 0) {
+                        hostQueue.nextPollTime = now + interval;
+                    }
+                }
+                // keep the host scheduled and move it to the tail
+                readyHostQueue.offer(hostQueue);
+                return urlQueue;
+            }
+            hostQueue.scheduled.set(false);
+            // an entry may have been added after poll() and before the flag was cleared
+            if (!hostQueue.queue.isEmpty()) {
+                schedule(hostQueue);
+            } else {
+                prune(hostQueue);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a drained host queue which is no longer registered as ready, so that the hosts
+     * seen during a long crawl do not accumulate. A host queue in its politeness interval is kept,
+     * because a new host queue would not know the interval.
+     *
+     * @param hostQueue the host queue
+     */
+    protected void prune(final HostQueue<E> hostQueue) {
+        if (hostQueue.nextPollTime > 0L && hostQueue.nextPollTime > SystemUtil.currentTimeMillis()) {
+            return;
+        }
+        hostQueueMap.computeIfPresent(hostQueue.host,
+                (host, value) -> value == hostQueue && value.queue.isEmpty() && !value.scheduled.get() ? null : value);
+    }
+
+    @Override
+    public E peek() {
+        for (final HostQueue<E> hostQueue : readyHostQueue) {
+            final E urlQueue = hostQueue.queue.peek();
+            if (urlQueue != null) {
+                return urlQueue;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final Iterator<HostQueue<E>> hostIterator = hostQueueMap.values().iterator();
+        return new Iterator<>() {
+            private Iterator<E> current = Collections.emptyIterator();
+
+            private HostQueue<E> currentHostQueue;
+
+            private HostQueue<E> lastHostQueue;
+
+            private E lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!hostIterator.hasNext()) {
+                        return false;
+                    }
+                    currentHostQueue = hostIterator.next();
+                    current = currentHostQueue.queue.iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastHostQueue = currentHostQueue;
+                lastReturned = current.next();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                // the entry may have been polled in the meantime, so the count is updated only if it was removed here
+                if (lastHostQueue.queue.remove(lastReturned)) {
+                    counter.decrement();
+                }
+                lastReturned = null;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        final long size = counter.sum();
+        if (size < 0) {
+            return 0;
+        }
+        return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return counter.sum() <= 0;
+    }
+
+    @Override
+    public void clear() {
+        hostQueueMap.clear();
+        readyHostQueue.clear();
+        counter.reset();
+    }
+
+    /**
+     * Returns the time until the first pending host leaves its politeness interval.
+     *
+     * @return 0 if an entry can be polled now, a positive time in milliseconds if all the
+     *         pending hosts are in their interval, or -1 if this queue is empty
+     */
+    public long getWaitMillis() {
+        final long now = SystemUtil.currentTimeMillis();
+        long waitMillis = -1L;
+        for (final HostQueue<E> hostQueue : hostQueueMap.values()) {
+            if (!hostQueue.queue.isEmpty()) {
+                final long value = Math.max(0L, hostQueue.nextPollTime - now);
+                if (value == 0L) {
+                    return 0L;
+                }
+                if (waitMillis < 0 || value < waitMillis) {
+                    waitMillis = value;
+                }
+            }
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Returns the number of hosts known to this queue.
+     *
+     * @return the number of hosts
+     */
+    public int getHostCount() {
+        return hostQueueMap.size();
+    }
+
+    /**
+     * Registers the host queue as ready unless it is already registered.
+     *
+     * @param hostQueue the host queue
+     */
+    protected void schedule(final HostQueue<E> hostQueue) {
+        if (hostQueue.scheduled.compareAndSet(false, true)) {
+            readyHostQueue.offer(hostQueue);
+        }
+    }
+
+    /**
+     * The sub-queue for a single host.
+     *
+     * @param <E> the type of the URL queue entries
+     */
+    protected static class HostQueue<E> {
+
+        /** The host of this queue. */
+        protected final String host;
+
+        /** The pending entries of this host. */
+        protected final Queue<E> queue = new ConcurrentLinkedQueue<>();
+
+        /** {@code true} while this host is registered in the ready-host queue. */
+        protected final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        /** The time in milliseconds before which no entry of this host is polled. */
+        protected volatile long nextPollTime = 0L;
+
+        /**
+         * Creates a new HostQueue instance.
+         *
+         * @param host the host
+         */
+        protected HostQueue(final String host) {
+            this.host = host;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+
+/**
+ * A queue of {@link UrlQueueImpl} entries which polls the entries with the highest weight first.
+ *
+ * <p>
+ * Entries are put into buckets by their weight, rounded to {@code 1 / scale}, and each bucket is a FIFO queue,
+ * so entries of about the same weight are polled in the order they were offered, and offering and polling
+ * take time proportional to the number of distinct weights rather than to the number of entries.
+ * With a limited number of accesses, the URLs given a higher weight, for example by the
+ * {@link org.codelibs.fess.crawler.entity.RequestData} of their parent, are crawled first.
+ * </p>
+ *
+ * <p>
+ * The buckets are concurrent queues in a concurrent skip list, so this queue can be used without external
+ * synchronization, as well as with the {@code synchronized (urlQueueList)} blocks of the in-memory URL queue
+ * service. {@link #size()} and {@link #iterator()} are weakly consistent. A bucket is removed when it becomes empty,
+ * and an entry offered to it concurrently is moved to the new bucket of its weight.
+ * </p>
+ */
+public class PriorityUrlQueue extends AbstractQueue<UrlQueueImpl<Long>> {
+
+    /** The buckets keyed by the rounded weight, from the highest to the lowest. */
+    protected final ConcurrentSkipListMap<Integer, Queue<UrlQueueImpl<Long>>> buckets =
+            new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+
+    /** The number of entries. */
+    protected final AtomicInteger count = new AtomicInteger();
+
+    /** The number of buckets per unit of weight. */
+    protected final int scale;
+
+    /**
+     * Creates a new PriorityUrlQueue.
+     *
+     * @param scale the number of buckets per unit of weight; weights closer than {@code 1 / scale} share a bucket
+     */
+    public PriorityUrlQueue(final int scale) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("scale must be positive: " + scale);
+        }
+        this.scale = scale;
+    }
+
+    @Override
+    public boolean offer(final UrlQueueImpl<Long> urlQueue) {
+        if (urlQueue == null) {
+            throw new NullPointerException("urlQueue is null.");
+        }
+        addToBucket(getBucketKey(urlQueue.getWeight()), urlQueue);
+        count.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public UrlQueueImpl<Long> poll() {
+        for (final Map.Entry<Integer, Queue<UrlQueueImpl<Long>>> entry : buckets.entrySet()) {
+            final Queue<UrlQueueImpl<Long>> bucket = entry.getValue();
+            final UrlQueueImpl<Long> urlQueue = bucket.poll();
+            if (bucket.isEmpty()) {
+                removeBucket(entry.getKey(), bucket);
+            }
+            if (urlQueue != null) {
+                count.decrementAndGet();
+                return urlQueue;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        if (o == null) {
+            return false;
+        }
+        for (final Map.Entry<Integer, Queue<UrlQueueImpl<Long>>> entry : buckets.entrySet()) {
+            final Queue<UrlQueueImpl<Long>> bucket = entry.getValue();
+            if (bucket.remove(o)) {
+                count.decrementAndGet();
+                if (bucket.isEmpty()) {
+                    removeBucket(entry.getKey(), bucket);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public UrlQueueImpl<Long> peek() {
+        for (final Queue<UrlQueueImpl<Long>> bucket : buckets.values()) {
+            final UrlQueueImpl<Long> urlQueue = bucket.peek();
+            if (urlQueue != null) {
+                return urlQueue;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, count.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Removes all entries and buckets. Entries offered concurrently may be kept.
+     */
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // drain
+        }
+    }
+
+    @Override
+    public Iterator<UrlQueueImpl<Long>> iterator() {
+        final Iterator<Queue<UrlQueueImpl<Long>>> bucketIterator = buckets.values().iterator();
+        return new Iterator<>() {
+            private Iterator<UrlQueueImpl<Long>> current = Collections.emptyIterator();
+
+            private UrlQueueImpl<Long> lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!bucketIterator.hasNext()) {
+                        return false;
+                    }
+                    current = bucketIterator.next().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public UrlQueueImpl<Long> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = current.next();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                // the entry may have been polled or moved to another bucket since
+                PriorityUrlQueue.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    /**
+     * Adds an entry to the bucket of the key. If the bucket is removed concurrently and the entry
+     * is still in it, the entry is added to the new bucket of the key instead.
+     *
+     * @param key the bucket key
+     * @param urlQueue the entry
+     */
+    protected void addToBucket(final Integer key, final UrlQueueImpl<Long> urlQueue) {
+        while (true) {
+            final Queue<UrlQueueImpl<Long>> bucket = buckets.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+            bucket.offer(urlQueue);
+            if (buckets.get(key) == bucket || !bucket.remove(urlQueue)) {
+                // the bucket is alive, or the entry has been polled or moved by removeBucket
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a bucket which has become empty. Entries offered to it concurrently are moved to the new bucket of the key.
+     *
+     * @param key the bucket key
+     * @param bucket the empty bucket
+     */
+    protected void removeBucket(final Integer key, final Queue<UrlQueueImpl<Long>> bucket) {
+        if (buckets.remove(key, bucket)) {
+            UrlQueueImpl<Long> urlQueue;
+            while ((urlQueue = bucket.poll()) != null) {
+                addToBucket(key, urlQueue);
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the bucket of a weight. An invalid weight falls into the bucket of the default weight 1.
+     *
+     * @param weight the weight
+     * @return the bucket key
+     */
+    protected int getBucketKey(final float weight) {
+        if (Float.isNaN(weight)) {
+            return scale;
+        }
+        return Math.round(weight * scale);
+    }
+}
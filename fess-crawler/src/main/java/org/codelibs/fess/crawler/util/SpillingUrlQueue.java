@@ -0,0 +1,573 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+
+/**
+ * A FIFO queue of {@link UrlQueueImpl} entries which keeps a bounded head in memory
+ * and spills the rest to segment files.
+ *
+ * <p>
+ * While the head has room and nothing is spilled, entries are kept in memory. Otherwise
+ * they are appended to the current segment file in a compact binary encoding, and a
+ * segment is sealed once it holds {@code segmentSize} entries. When the head drains to
+ * {@code refillThreshold}, the oldest sealed segment is read back by a background thread
+ * and appended to the head, so the polling threads rarely wait for the disk. The segment
+ * being written is sealed early only when the head has run empty.
+ * </p>
+ *
+ * <p>
+ * All methods are synchronized on this queue, so it can be used with the external
+ * {@code synchronized (urlQueueList)} blocks of the in-memory URL queue service.
+ * {@link #iterator()} is weakly consistent and does not support removal. Call
+ * {@link #close()} to delete the segment files when the queue is discarded.
+ * </p>
+ */
+public class SpillingUrlQueue extends AbstractQueue<UrlQueueImpl<Long>> implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(SpillingUrlQueue.class);
+
+    private static final AtomicLong WORKER_COUNTER = new AtomicLong();
+
+    /** Daemon thread factory for the refill threads, which must not block JVM shutdown. */
+    private static final ThreadFactory DAEMON_THREAD_FACTORY = r -> {
+        final Thread t = new Thread(r, "SpillingUrlQueue-refill-" + WORKER_COUNTER.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    };
+
+    /** The executor shared by all queues to read segments back in the background. */
+    private static final ExecutorService REFILL_EXECUTOR = Executors.newCachedThreadPool(DAEMON_THREAD_FACTORY);
+
+    /** The maximum number of entries kept in memory before spilling. */
+    protected final int headCapacity;
+
+    /** The number of entries in a segment file. */
+    protected final int segmentSize;
+
+    /** The head size at or below which the next segment is read back. */
+    protected final int refillThreshold;
+
+    /** The parent directory of the segment directory, or null for the system temporary directory. */
+    protected final File spillDirectory;
+
+    /** The in-memory head of the queue. */
+    protected final ArrayDeque<UrlQueueImpl<Long>> head = new ArrayDeque<>();
+
+    /** The sealed segments, from the oldest to the newest. */
+    protected final ArrayDeque<Segment> segments = new ArrayDeque<>();
+
+    /** The segment being written, or null. */
+    protected Segment writeSegment;
+
+    /** The segment being read back, or null. */
+    protected Segment refillSegment;
+
+    /** The result of reading {@link #refillSegment}, or null. */
+    protected Future<List<UrlQueueImpl<Long>>> refillFuture;
+
+    /** The number of entries in the segment files. */
+    protected long spilledCount;
+
+    /** The directory of the segment files, created lazily. */
+    protected File segmentDirectory;
+
+    /** The sequence number of the next segment file. */
+    protected long segmentSequence;
+
+    /** Whether this queue has been closed. */
+    protected boolean closed;
+
+    /**
+     * Creates a new SpillingUrlQueue.
+     *
+     * @param headCapacity the maximum number of entries kept in memory before spilling
+     * @param segmentSize the number of entries in a segment file
+     * @param spillDirectory the parent directory of the segment files, or null for the system temporary directory
+     */
+    public SpillingUrlQueue(final int headCapacity, final int segmentSize, final File spillDirectory) {
+        if (headCapacity <= 0) {
+            throw new IllegalArgumentException("headCapacity must be positive: " + headCapacity);
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive: " + segmentSize);
+        }
+        this.headCapacity = headCapacity;
+        this.segmentSize = segmentSize;
+        refillThreshold = headCapacity / 2;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public synchronized boolean offer(final UrlQueueImpl<Long> urlQueue) {
+        if (urlQueue == null) {
+            throw new NullPointerException("urlQueue is null.");
+        }
+        if (closed) {
+            throw new IllegalStateException("SpillingUrlQueue is closed.");
+        }
+        if (spilledCount == 0 && head.size() < headCapacity) {
+            head.add(urlQueue);
+            return true;
+        }
+        try {
+            if (writeSegment == null) {
+                writeSegment = createSegment();
+            }
+            writeSegment.write(urlQueue);
+            spilledCount++;
+            if (writeSegment.count >= segmentSize) {
+                writeSegment.seal();
+                segments.add(writeSegment);
+                writeSegment = null;
+            }
+        } catch (final IOException e) {
+            throw new CrawlerSystemException("Could not spill " + urlQueue.getUrl(), e);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized UrlQueueImpl<Long> poll() {
+        fillHead();
+        final UrlQueueImpl<Long> urlQueue = head.poll();
+        if (head.size() <= refillThreshold) {
+            startRefill();
+        }
+        return urlQueue;
+    }
+
+    @Override
+    public synchronized UrlQueueImpl<Long> peek() {
+        fillHead();
+        return head.peek();
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, head.size() + spilledCount);
+    }
+
+    /**
+     * Returns the number of entries in the segment files.
+     *
+     * @return the number of spilled entries
+     */
+    public synchronized long getSpilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * Returns the number of entries in the in-memory head.
+     *
+     * @return the number of entries in memory
+     */
+    public synchronized int getHeadSize() {
+        return head.size();
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the entries, from the head to the tail.
+     * The spilled entries are read from the segment files one segment at a time.
+     *
+     * @return the iterator
+     */
+    @Override
+    public synchronized Iterator<UrlQueueImpl<Long>> iterator() {
+        fetchRefill(true);
+        final List<UrlQueueImpl<Long>> headList = new ArrayList<>(head);
+        final List<File> fileList = new ArrayList<>();
+        for (final Segment segment : segments) {
+            fileList.add(segment.file);
+        }
+        if (writeSegment != null) {
+            try {
+                writeSegment.flush();
+            } catch (final IOException e) {
+                throw new CrawlerSystemException("Could not flush " + writeSegment.file.getAbsolutePath(), e);
+            }
+            fileList.add(writeSegment.file);
+        }
+        return new Iterator<>() {
+            private Iterator<UrlQueueImpl<Long>> current = headList.iterator();
+
+            private final Iterator<File> fileIterator = fileList.iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (!fileIterator.hasNext()) {
+                        return false;
+                    }
+                    final File file = fileIterator.next();
+                    try {
+                        current = file.exists() ? readSegment(file).iterator() : Collections.emptyIterator();
+                    } catch (final IOException e) {
+                        throw new CrawlerSystemException("Could not read " + file.getAbsolutePath(), e);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public UrlQueueImpl<Long> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    @Override
+    public synchronized void clear() {
+        head.clear();
+        discardSegments();
+    }
+
+    /**
+     * Removes all entries and deletes the segment files. The queue cannot be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        closed = true;
+        if (segmentDirectory != null) {
+            if (!segmentDirectory.delete() && logger.isDebugEnabled()) {
+                logger.debug("Could not delete {}", segmentDirectory.getAbsolutePath());
+            }
+            segmentDirectory = null;
+        }
+    }
+
+    /**
+     * Takes the finished refill, and waits for the next segment if the head is empty.
+     */
+    protected void fillHead() {
+        if (head.isEmpty()) {
+            startRefill();
+        }
+        fetchRefill(head.isEmpty());
+    }
+
+    /**
+     * Starts reading the oldest sealed segment in the background, unless a refill is running.
+     * The segment being written is sealed before it is full only when the head is empty, so
+     * that a queue which is offered and polled at about the same rate keeps appending to it
+     * instead of leaving many small segment files.
+     */
+    protected void startRefill() {
+        if (refillFuture != null || spilledCount == 0) {
+            return;
+        }
+        Segment segment = segments.poll();
+        if (segment == null) {
+            if (!head.isEmpty()) {
+                return;
+            }
+            segment = writeSegment;
+            writeSegment = null;
+            try {
+                segment.seal();
+            } catch (final IOException e) {
+                throw new CrawlerSystemException("Could not close " + segment.file.getAbsolutePath(), e);
+            }
+        }
+        final File file = segment.file;
+        refillSegment = segment;
+        refillFuture = REFILL_EXECUTOR.submit(() -> readSegment(file));
+    }
+
+    /**
+     * Appends the entries of the refilled segment to the head.
+     *
+     * @param wait true to wait for a running refill, false to take it only if it is done
+     */
+    protected void fetchRefill(final boolean wait) {
+        if (refillFuture == null || !wait && !refillFuture.isDone()) {
+            return;
+        }
+        final Segment segment = refillSegment;
+        final List<UrlQueueImpl<Long>> list;
+        try {
+            list = refillFuture.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CrawlerSystemException("Interrupted while reading " + segment.file.getAbsolutePath(), e);
+        } catch (final ExecutionException e) {
+            throw new CrawlerSystemException("Could not read " + segment.file.getAbsolutePath(), e.getCause());
+        } finally {
+            refillFuture = null;
+            refillSegment = null;
+        }
+        head.addAll(list);
+        spilledCount -= segment.count;
+        segment.delete();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Refilled {} entries from {}, {} entries spilled", list.size(), segment.file.getAbsolutePath(), spilledCount);
+        }
+    }
+
+    /**
+     * Cancels the running refill and deletes all segment files.
+     */
+    protected void discardSegments() {
+        if (refillFuture != null) {
+            refillFuture.cancel(false);
+            try {
+                refillFuture.get();
+            } catch (final Exception e) {
+                // the entries are discarded anyway
+            }
+            refillSegment.delete();
+            refillFuture = null;
+            refillSegment = null;
+        }
+        for (final Segment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        if (writeSegment != null) {
+            try {
+                writeSegment.seal();
+            } catch (final IOException e) {
+                logger.warn("Could not close {}", writeSegment.file.getAbsolutePath(), e);
+            }
+            writeSegment.delete();
+            writeSegment = null;
+        }
+        spilledCount = 0;
+    }
+
+    /**
+     * Creates a new segment file.
+     *
+     * @return the segment
+     * @throws IOException if the file cannot be created
+     */
+    protected Segment createSegment() throws IOException {
+        if (segmentDirectory == null) {
+            segmentDirectory = spillDirectory != null ? Files.createTempDirectory(spillDirectory.toPath(), "frontier").toFile()
+                    : Files.createTempDirectory("frontier").toFile();
+        }
+        final File file = new File(segmentDirectory, String.format("segment-%012d.bin", segmentSequence++));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Spilling URL queue entries to {}", file.getAbsolutePath());
+        }
+        return new Segment(file);
+    }
+
+    /**
+     * Reads all entries of the segment file.
+     *
+     * @param file the segment file
+     * @return the entries
+     * @throws IOException if the file cannot be read
+     */
+    protected static List<UrlQueueImpl<Long>> readSegment(final File file) throws IOException {
+        final List<UrlQueueImpl<Long>> list = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            // an unsealed segment ends without the end marker
+            for (int marker = in.read(); marker > 0; marker = in.read()) {
+                list.add(readUrlQueue(in));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Writes the entry in the binary encoding of the segment files.
+     *
+     * @param out the output stream
+     * @param urlQueue the entry
+     * @throws IOException if the entry cannot be written
+     */
+    protected static void writeUrlQueue(final DataOutputStream out, final UrlQueueImpl<Long> urlQueue) throws IOException {
+        writeLong(out, urlQueue.getId());
+        writeString(out, urlQueue.getSessionId());
+        writeString(out, urlQueue.getMethod());
+        writeString(out, urlQueue.getUrl());
+        writeString(out, urlQueue.getMetaData());
+        writeString(out, urlQueue.getEncoding());
+        writeString(out, urlQueue.getParentUrl());
+        final Integer depth = urlQueue.getDepth();
+        out.writeInt(depth != null ? depth : Integer.MIN_VALUE);
+        writeLong(out, urlQueue.getLastModified());
+        writeString(out, urlQueue.getEtag());
+        writeLong(out, urlQueue.getCreateTime());
+        out.writeFloat(urlQueue.getWeight());
+    }
+
+    /**
+     * Reads an entry in the binary encoding of the segment files.
+     *
+     * @param in the input stream
+     * @return the entry
+     * @throws IOException if the entry cannot be read
+     */
+    protected static UrlQueueImpl<Long> readUrlQueue(final DataInputStream in) throws IOException {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setId(readLong(in));
+        urlQueue.setSessionId(readString(in));
+        urlQueue.setMethod(readString(in));
+        urlQueue.setUrl(readString(in));
+        urlQueue.setMetaData(readString(in));
+        urlQueue.setEncoding(readString(in));
+        urlQueue.setParentUrl(readString(in));
+        final int depth = in.readInt();
+        urlQueue.setDepth(depth != Integer.MIN_VALUE ? depth : null);
+        urlQueue.setLastModified(readLong(in));
+        urlQueue.setEtag(readString(in));
+        urlQueue.setCreateTime(readLong(in));
+        urlQueue.setWeight(in.readFloat());
+        return urlQueue;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(final DataOutputStream out, final Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /**
+     * A segment file of spilled entries. Each entry is preceded by {@code true}, and a
+     * sealed segment ends with {@code false}.
+     */
+    protected static class Segment {
+
+        /** The segment file. */
+        protected final File file;
+
+        /** The output stream, or null once sealed. */
+        protected DataOutputStream out;
+
+        /** The number of entries in the segment. */
+        protected int count;
+
+        /**
+         * Creates a new segment.
+         *
+         * @param file the segment file
+         * @throws IOException if the file cannot be opened
+         */
+        protected Segment(final File file) throws IOException {
+            this.file = file;
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath()), 64 * 1024));
+        }
+
+        /**
+         * Appends the entry.
+         *
+         * @param urlQueue the entry
+         * @throws IOException if the entry cannot be written
+         */
+        protected void write(final UrlQueueImpl<Long> urlQueue) throws IOException {
+            out.writeBoolean(true);
+            writeUrlQueue(out, urlQueue);
+            count++;
+        }
+
+        /**
+         * Flushes the written entries so that they can be read.
+         * The segment is still readable up to the last flushed entry.
+         *
+         * @throws IOException if the entries cannot be flushed
+         */
+        protected void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        /**
+         * Writes the end marker and closes the file.
+         *
+         * @throws IOException if the file cannot be closed
+         */
+        protected void seal() throws IOException {
+            if (out != null) {
+                try {
+                    out.writeBoolean(false);
+                } finally {
+                    out.close();
+                    out = null;
+                }
+            }
+        }
+
+        /**
+         * Deletes the segment file.
+         */
+        protected void delete() {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (final IOException e) {
+                logger.warn("Could not delete {}", file.getAbsolutePath(), e);
+            }
+        }
+    }
+}
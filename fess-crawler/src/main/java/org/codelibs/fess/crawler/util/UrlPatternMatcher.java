@@ -0,0 +1,356 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A set of URL patterns compiled into a literal-prefix trie.
+ *
+ * <p>
+ * {@link #matches(String)} returns true if any of the added patterns matches the whole URL,
+ * like {@code pattern.matcher(url).matches()}. Each pattern is split into its literal prefix
+ * and the rest, where an unescaped {@code .} in the prefix becomes a wildcard edge of the trie,
+ * and a single optional character such as the {@code s?} of {@code https?://} is expanded into
+ * two prefixes, one without and one with the character:
+ * </p>
+ * <ul>
+ *   <li>{@code literal.*} is stored as a prefix match on the trie node of the literal.</li>
+ *   <li>{@code literal} or {@code literal$} is stored as an exact match on the trie node.</li>
+ *   <li>Any other pattern is stored on the trie node of its literal prefix and evaluated as a
+ *       regular expression only for URLs that start with that prefix.</li>
+ * </ul>
+ * <p>
+ * Matching therefore walks the trie once along the URL (following both the character edge and the
+ * wildcard edge of each visited node), and only the few regular expressions
+ * whose literal prefix matches the URL are evaluated. Patterns without a usable prefix
+ * (e.g. {@code .*\.pdf}, alternations or patterns with flags) are stored on the root node.
+ * </p>
+ *
+ * <p>
+ * Patterns can be added at any time. {@link #add(Pattern)} is synchronized and
+ * {@link #matches(String)} does not take any lock.
+ * </p>
+ */
+public class UrlPatternMatcher {
+
+    private static final Pattern[] EMPTY_PATTERNS = new Pattern[0];
+
+    /** The character which represents an unescaped {@code .} in a parsed prefix. */
+    protected static final char ANY = '\uffff';
+
+    /** The root node of the trie. */
+    protected final Node root = new Node();
+
+    /** All the added patterns, used for URLs containing line terminators. */
+    protected final List<Pattern> patternList = new ArrayList<>();
+
+    /** The number of the added patterns. */
+    protected volatile int size = 0;
+
+    /**
+     * Creates a new UrlPatternMatcher instance.
+     */
+    public UrlPatternMatcher() {
+        // NOP
+    }
+
+    /**
+     * Adds the patterns.
+     *
+     * @param patterns the patterns to add
+     */
+    public synchronized void addAll(final Collection<Pattern> patterns) {
+        for (final Pattern pattern : patterns) {
+            add(pattern);
+        }
+    }
+
+    /**
+     * Adds the pattern.
+     *
+     * @param pattern the pattern to add
+     */
+    public synchronized void add(final Pattern pattern) {
+        final String regex = pattern.pattern();
+        final List<String> prefixes = new ArrayList<>(2);
+        final int restIndex = pattern.flags() == 0 && regex.indexOf('|') < 0 ? parseLiteralPrefixes(regex, prefixes) : -1;
+        if (restIndex < 0) {
+            prefixes.clear();
+            prefixes.add("");
+        }
+
+        final String rest = restIndex >= 0 ? regex.substring(restIndex) : null;
+        for (final String prefix : prefixes) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                final char c = prefix.charAt(i);
+                if (c == ANY) {
+                    if (node.anyChild == null) {
+                        node.anyChild = new Node();
+                    }
+                    node = node.anyChild;
+                } else {
+                    node = node.children.computeIfAbsent(c, k -> new Node());
+                }
+            }
+
+            if (rest != null && (rest.isEmpty() || "$".equals(rest))) {
+                node.exactMatch = true;
+            } else if (".*".equals(rest) || ".*$".equals(rest)) {
+                node.prefixMatch = true;
+            } else {
+                final Pattern[] patterns = new Pattern[node.patterns.length + 1];
+                System.arraycopy(node.patterns, 0, patterns, 0, node.patterns.length);
+                patterns[node.patterns.length] = pattern;
+                node.patterns = patterns;
+            }
+        }
+
+        synchronized (patternList) {
+            patternList.add(pattern);
+        }
+        size++;
+    }
+
+    /**
+     * Checks if any of the patterns matches the whole URL.
+     *
+     * @param url the URL
+     * @return true if a pattern matches
+     */
+    public boolean matches(final String url) {
+        if (hasLineTerminator(url)) {
+            // "." does not match line terminators, so the trie shortcuts do not apply
+            synchronized (patternList) {
+                for (final Pattern pattern : patternList) {
+                    if (pattern.matcher(url).matches()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        final int length = url.length();
+        List<Node> nodes = new ArrayList<>(4);
+        List<Node> nextNodes = new ArrayList<>(4);
+        nodes.add(root);
+        for (int index = 0;; index++) {
+            for (final Node node : nodes) {
+                if (node.prefixMatch) {
+                    return true;
+                }
+                for (final Pattern pattern : node.patterns) {
+                    if (pattern.matcher(url).matches()) {
+                        return true;
+                    }
+                }
+            }
+            if (index == length) {
+                for (final Node node : nodes) {
+                    if (node.exactMatch) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            final char c = url.charAt(index);
+            nextNodes.clear();
+            for (final Node node : nodes) {
+                final Node child = node.children.get(c);
+                if (child != null) {
+                    nextNodes.add(child);
+                }
+                final Node anyChild = node.anyChild;
+                if (anyChild != null) {
+                    nextNodes.add(anyChild);
+                }
+            }
+            if (nextNodes.isEmpty()) {
+                return false;
+            }
+            final List<Node> tmp = nodes;
+            nodes = nextNodes;
+            nextNodes = tmp;
+        }
+    }
+
+    /**
+     * Returns the number of the added patterns.
+     *
+     * @return the number of the patterns
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the matcher has no pattern.
+     *
+     * @return true if no pattern is added
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Parses the literal prefixes of the regular expression. If the literal prefix is followed by a
+     * single optional character, such as the {@code s?} of {@code https?://}, the literal prefix of the
+     * regular expression after it is parsed too, and two prefixes are returned: one without and one
+     * with the optional character.
+     *
+     * @param regex the regular expression
+     * @param prefixes the list to which the literal prefixes are added
+     * @return the index of the rest of the regular expression, or -1 if the prefixes cannot be used
+     */
+    protected static int parseLiteralPrefixes(final String regex, final List<String> prefixes) {
+        final StringBuilder prefix = new StringBuilder();
+        final int restIndex = parseLiteralPrefix(regex, prefix);
+        if (restIndex < 0) {
+            return -1;
+        }
+        final int length = regex.length();
+        final int optionalLength = restIndex < length && regex.charAt(restIndex) == '\\' ? 2 : 1;
+        final int quantifierIndex = restIndex + optionalLength;
+        if (quantifierIndex < length && regex.charAt(quantifierIndex) == '?'
+                && (quantifierIndex + 1 >= length || "?+".indexOf(regex.charAt(quantifierIndex + 1)) < 0)) {
+            // only a greedy "?"; lazy and possessive ones are left to the regular expression
+            final char optional = regex.charAt(quantifierIndex - 1);
+            final boolean literal = optionalLength == 2 ? !Character.isLetterOrDigit(optional) : "^$|?*+()[]{}.".indexOf(optional) < 0;
+            if (literal) {
+                final StringBuilder tail = new StringBuilder();
+                final int tailIndex = parseLiteralPrefix(regex, quantifierIndex + 1, tail);
+                if (tailIndex >= 0) {
+                    prefixes.add(prefix.toString() + tail);
+                    prefixes.add(prefix.toString() + optional + tail);
+                    return tailIndex;
+                }
+            }
+        }
+        prefixes.add(prefix.toString());
+        return restIndex;
+    }
+
+    /**
+     * Parses the literal prefix of the regular expression.
+     * An unescaped {@code .} is appended as {@link #ANY}.
+     *
+     * @param regex the regular expression
+     * @param prefix the buffer to which the literal prefix is appended
+     * @return the index of the rest of the regular expression, or -1 if the prefix cannot be used
+     */
+    protected static int parseLiteralPrefix(final String regex, final StringBuilder prefix) {
+        if (!regex.isEmpty() && regex.charAt(0) == '^') {
+            return parseLiteralPrefix(regex, 1, prefix);
+        }
+        return parseLiteralPrefix(regex, 0, prefix);
+    }
+
+    /**
+     * Parses the literal prefix of the regular expression from the specified index.
+     * An unescaped {@code .} is appended as {@link #ANY}.
+     *
+     * @param regex the regular expression
+     * @param startIndex the index to start parsing at
+     * @param prefix the buffer to which the literal prefix is appended
+     * @return the index of the rest of the regular expression, or -1 if the prefix cannot be used
+     */
+    protected static int parseLiteralPrefix(final String regex, final int startIndex, final StringBuilder prefix) {
+        final int length = regex.length();
+        int index = startIndex;
+        while (index < length) {
+            final int start = index;
+            final char c = regex.charAt(index);
+            final char literal;
+            if (c == '\\') {
+                if (index + 1 >= length) {
+                    return -1;
+                }
+                final char escaped = regex.charAt(index + 1);
+                if (Character.isLetterOrDigit(escaped)) {
+                    // \d, \Q, \b, ...
+                    return start;
+                }
+                literal = escaped;
+                index += 2;
+            } else if (c == '.') {
+                literal = ANY;
+                index++;
+            } else if ("^$|?*+()[]{}".indexOf(c) >= 0) {
+                return start;
+            } else {
+                literal = c;
+                index++;
+            }
+            if (literal == ANY && c != '.' || index < length && "?*+{".indexOf(regex.charAt(index)) >= 0) {
+                // the literal is quantified (or is the reserved character), so it is not a part of the prefix
+                return start;
+            }
+            prefix.append(literal);
+        }
+        return index;
+    }
+
+    /**
+     * Checks if the string contains a character which "." does not match.
+     *
+     * @param value the string
+     * @return true if a line terminator is found
+     */
+    protected static boolean hasLineTerminator(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A node of the literal-prefix trie.
+     */
+    protected static class Node {
+
+        /** The child nodes keyed by the next character. */
+        protected final Map<Character, Node> children = new ConcurrentHashMap<>();
+
+        /** The child node for an unescaped {@code .}, or null. */
+        protected volatile Node anyChild;
+
+        /** {@code true} if a pattern matches any URL starting with the prefix of this node. */
+        protected volatile boolean prefixMatch = false;
+
+        /** {@code true} if a pattern matches the prefix of this node exactly. */
+        protected volatile boolean exactMatch = false;
+
+        /** The patterns which start with the prefix of this node and must be evaluated. */
+        protected volatile Pattern[] patterns = EMPTY_PATTERNS;
+
+        /**
+         * Creates a new Node instance.
+         */
+        protected Node() {
+            // NOP
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+/**
+ * Utility class for handling URL strings.
+ */
+public final class UrlUtil {
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private UrlUtil() {
+    }
+
+    /**
+     * Returns the scheme, host and port part of the URL, which ends at the first '/', '?' or '#'
+     * after the scheme. The URL is not fully parsed, so that the host can be computed without
+     * allocating a {@code URI}.
+     *
+     * @param url the URL
+     * @return the scheme://host[:port] part, or an empty string if the URL is null
+     */
+    public static String getHost(final String url) {
+        if (url == null) {
+            return "";
+        }
+        final int schemeEnd = url.indexOf("://");
+        final int start = schemeEnd < 0 ? 0 : schemeEnd + 3;
+        int end = url.length();
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return url.substring(0, end);
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+
+/**
+ * A compact set of visited URLs which keeps 64-bit fingerprints of the URLs
+ * instead of the URL strings.
+ *
+ * <p>The fingerprints are added to a scalable Bloom filter: when a filter reaches
+ * its expected insertions, a larger filter with a tighter false positive
+ * probability is added, so the overall false positive probability stays below
+ * twice {@code fpp}. A URL that the filters do not contain has not been visited.</p>
+ *
+ * <p>With the exact store enabled, the fingerprints are also kept in an open
+ * addressing hash set of primitive longs, which answers the lookups that the
+ * filters report as possibly visited. Without it, the set costs a few bytes per
+ * URL, and a false positive makes an unvisited URL look visited.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class VisitedUrlSet {
+
+    /** The growth factor of the capacity of each new filter. */
+    protected static final int GROWTH_FACTOR = 2;
+
+    /** The ratio by which the false positive probability of each new filter is tightened. */
+    protected static final double TIGHTENING_RATIO = 0.5;
+
+    /** The expected insertions of the first filter. */
+    protected final long expectedInsertions;
+
+    /** The false positive probability of the first filter. */
+    protected final double fpp;
+
+    /** The filters, from the oldest to the newest. */
+    protected final List<BloomFilter<Long>> filterList = new ArrayList<>();
+
+    /** The capacity of the newest filter. */
+    protected long filterCapacity;
+
+    /** The false positive probability of the newest filter. */
+    protected double filterFpp;
+
+    /** The number of fingerprints added to the newest filter. */
+    protected long filterCount;
+
+    /** The exact store of the fingerprints, or null if only the filters are used. */
+    protected final LongHashSet exactStore;
+
+    /** The number of added URLs. */
+    protected long size;
+
+    /**
+     * Creates a new VisitedUrlSet.
+     *
+     * @param expectedInsertions the expected insertions of the first filter
+     * @param fpp the false positive probability of the first filter
+     * @param exact true to keep the fingerprints in an exact store
+     */
+    public VisitedUrlSet(final long expectedInsertions, final double fpp, final boolean exact) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (fpp <= 0.0 || fpp >= 1.0) {
+            throw new IllegalArgumentException("fpp must be between 0 and 1: " + fpp);
+        }
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        exactStore = exact ? new LongHashSet() : null;
+        reset();
+    }
+
+    /**
+     * Returns the 64-bit fingerprint of the URL.
+     *
+     * @param url the URL
+     * @return the fingerprint
+     */
+    public static long fingerprint(final String url) {
+        return Hashing.murmur3_128().hashString(url, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Adds the URL.
+     *
+     * @param url the URL
+     * @return true if the URL was not visited, false if it was visited or, without
+     *         the exact store, the filters report it as possibly visited
+     */
+    public synchronized boolean add(final String url) {
+        final long fp = fingerprint(url);
+        if (exactStore != null) {
+            if (!exactStore.add(fp)) {
+                return false;
+            }
+        } else if (mightContain(fp)) {
+            return false;
+        }
+        if (filterCount >= filterCapacity) {
+            filterCapacity *= GROWTH_FACTOR;
+            filterFpp *= TIGHTENING_RATIO;
+            addFilter();
+        }
+        filterList.get(filterList.size() - 1).put(fp);
+        filterCount++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns true if the URL has been added.
+     *
+     * @param url the URL
+     * @return true if the URL was visited or, without the exact store, the filters
+     *         report it as possibly visited
+     */
+    public synchronized boolean contains(final String url) {
+        final long fp = fingerprint(url);
+        if (!mightContain(fp)) {
+            return false;
+        }
+        return exactStore == null || exactStore.contains(fp);
+    }
+
+    /**
+     * Returns true if any filter might contain the fingerprint.
+     *
+     * @param fp the fingerprint
+     * @return true if the fingerprint might have been added
+     */
+    protected boolean mightContain(final long fp) {
+        for (int i = filterList.size() - 1; i >= 0; i--) {
+            if (filterList.get(i).mightContain(fp)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a new filter with the current capacity and false positive probability.
+     */
+    protected void addFilter() {
+        filterList.add(BloomFilter.create(Funnels.longFunnel(), filterCapacity, filterFpp));
+        filterCount = 0;
+    }
+
+    /**
+     * Removes all URLs.
+     */
+    public synchronized void clear() {
+        reset();
+    }
+
+    /**
+     * Resets the filters and the exact store to their initial state.
+     * This method is private because it is also called by the constructor.
+     */
+    private void reset() {
+        filterList.clear();
+        filterCapacity = expectedInsertions;
+        filterFpp = fpp;
+        filterList.add(BloomFilter.create(Funnels.longFunnel(), filterCapacity, filterFpp));
+        filterCount = 0;
+        if (exactStore != null) {
+            exactStore.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the number of added URLs.
+     *
+     * @return the number of URLs
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of filters.
+     *
+     * @return the number of filters
+     */
+    public synchronized int getFilterCount() {
+        return filterList.size();
+    }
+
+    /**
+     * Returns true if the fingerprints are kept in an exact store.
+     *
+     * @return true if the exact store is enabled
+     */
+    public boolean isExact() {
+        return exactStore != null;
+    }
+
+    /**
+     * An open addressing hash set of primitive longs with linear probing.
+     */
+    protected static class LongHashSet {
+
+        /** The initial capacity of the table. */
+        protected static final int INITIAL_CAPACITY = 1024;
+
+        /** The maximum load factor of the table. */
+        protected static final double LOAD_FACTOR = 0.75;
+
+        /** The table; 0 marks an empty slot. */
+        protected long[] table = new long[INITIAL_CAPACITY];
+
+        /** Whether the value 0 has been added. */
+        protected boolean containsZero;
+
+        /** The number of values in the table. */
+        protected int count;
+
+        /**
+         * Creates a new LongHashSet.
+         */
+        protected LongHashSet() {
+            // NOP
+        }
+
+        /**
+         * Adds the value.
+         *
+         * @param value the value
+         * @return true if the value was not in the set
+         */
+        protected boolean add(final long value) {
+            if (value == 0L) {
+                if (containsZero) {
+                    return false;
+                }
+                containsZero = true;
+                return true;
+            }
+            if (count + 1 > table.length * LOAD_FACTOR) {
+                resize();
+            }
+            if (!insert(table, value)) {
+                return false;
+            }
+            count++;
+            return true;
+        }
+
+        /**
+         * Returns true if the value is in the set.
+         *
+         * @param value the value
+         * @return true if the value was added
+         */
+        protected boolean contains(final long value) {
+            if (value == 0L) {
+                return containsZero;
+            }
+            final int mask = table.length - 1;
+            for (int i = index(value, mask);; i = (i + 1) & mask) {
+                final long v = table[i];
+                if (v == value) {
+                    return true;
+                }
+                if (v == 0L) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Removes all values.
+         */
+        protected void clear() {
+            table = new long[INITIAL_CAPACITY];
+            containsZero = false;
+            count = 0;
+        }
+
+        /**
+         * Inserts a non-zero value into the table.
+         *
+         * @param values the table
+         * @param value the value
+         * @return true if the value was inserted, false if it was already there
+         */
+        private static boolean insert(final long[] values, final long value) {
+            final int mask = values.length - 1;
+            for (int i = index(value, mask);; i = (i + 1) & mask) {
+                final long v = values[i];
+                if (v == value) {
+                    return false;
+                }
+                if (v == 0L) {
+                    values[i] = value;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Doubles the table.
+         */
+        private void resize() {
+            final long[] newTable = new long[table.length * 2];
+            for (final long v : table) {
+                if (v != 0L) {
+                    insert(newTable, v);
+                }
+            }
+            table = newTable;
+        }
+
+        /**
+         * Returns the home slot of the value.
+         *
+         * @param value the value
+         * @param mask the table size minus one
+         * @return the slot index
+         */
+        private static int index(final long value, final int mask) {
+            // the fingerprints are already well mixed; fold the high bits in anyway
+            return (int) (value ^ (value >>> 32)) & mask;
+        }
+    }
+}
@@ -26,7 +26,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codelibs.core.collection.LruHashSet;
+import org.codelibs.core.lang.ThreadUtil;
 import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.entity.RobotsTxt;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
 import org.codelibs.fess.crawler.filter.UrlFilter;
 import org.codelibs.fess.crawler.interval.IntervalController;
 import org.codelibs.fess.crawler.rule.Rule;
@@ -851,4 +854,128 @@ public class CrawlerContextTest extends PlainTestCase {
         assertEquals(1, successCount.get());
         assertEquals(CrawlerStatus.DONE, crawlerContext.getStatus());
     }
+
+    @Test
+    public void test_crawlDelay() {
+        assertEquals(-1L, crawlerContext.getCrawlDelay("http://example.com"));
+        crawlerContext.setCrawlDelay("http://example.com", 3000L);
+        assertEquals(3000L, crawlerContext.getCrawlDelay("http://example.com"));
+        assertEquals(-1L, crawlerContext.getCrawlDelay("https://example.com"));
+    }
+
+    @Test
+    public void test_robotsTxtDirective() {
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("http://example.com/admin/"));
+
+        final RobotsTxt.Directive directive = new RobotsTxt.Directive("*");
+        directive.addDisallow("/admin/");
+        directive.addAllow("/admin/public/");
+        crawlerContext.setRobotsTxtDirective("http://example.com", directive);
+        assertTrue(directive == crawlerContext.getRobotsTxtDirective("http://example.com"));
+        assertNull(crawlerContext.getRobotsTxtDirective("http://example.org"));
+
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.com/admin/"));
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.com/admin/index.html?q=1"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("http://example.com/admin/public/a.html"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("http://example.com/"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("http://example.com"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("https://example.com/admin/"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("http://example.org/admin/"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("file:/admin/"));
+
+        // the host ends at a query or a fragment as well
+        final RobotsTxt.Directive disallowAll = new RobotsTxt.Directive("*");
+        disallowAll.addDisallow("/");
+        crawlerContext.setRobotsTxtDirective("http://example.net", disallowAll);
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.net?x=1"));
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.net#top"));
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.net"));
+
+        // without the Allow rules, as set by a client which does not use them
+        final RobotsTxt.Directive disallowsOnly = directive.copyWithoutAllows();
+        assertEquals(0, disallowsOnly.getAllows().length);
+        assertEquals(1, disallowsOnly.getDisallows().length);
+        assertEquals(1, directive.getAllows().length);
+        crawlerContext.setRobotsTxtDirective("http://example.com", disallowsOnly);
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.com/admin/"));
+        assertFalse(crawlerContext.isAllowedByRobotsTxt("http://example.com/admin/public/a.html"));
+        assertTrue(crawlerContext.isAllowedByRobotsTxt("http://example.com/"));
+    }
+
+    @Test
+    public void test_awaitUrlsOffered() throws Exception {
+        crawlerContext.setEventDrivenWaiting(true);
+        long urlOfferCount = crawlerContext.getUrlOfferCount();
+        assertTrue(crawlerContext.isQuiescent(urlOfferCount));
+        // no active thread can offer URLs, so it does not wait
+        assertFalse(crawlerContext.awaitUrlsOffered(urlOfferCount, 60000L));
+
+        crawlerContext.incrementAndGetActiveThreadCount();
+        assertFalse(crawlerContext.isQuiescent(urlOfferCount));
+        assertFalse(crawlerContext.awaitUrlsOffered(urlOfferCount, 10L));
+
+        final Thread offerThread = new Thread(() -> {
+            ThreadUtil.sleep(100L);
+            crawlerContext.notifyUrlsOffered();
+        });
+        offerThread.start();
+        assertTrue(crawlerContext.awaitUrlsOffered(urlOfferCount, 60000L));
+        offerThread.join();
+        assertFalse(crawlerContext.isQuiescent(urlOfferCount));
+
+        urlOfferCount = crawlerContext.getUrlOfferCount();
+        final Thread finishThread = new Thread(() -> {
+            ThreadUtil.sleep(100L);
+            crawlerContext.decrementAndGetActiveThreadCount();
+        });
+        finishThread.start();
+        final long startTime = System.currentTimeMillis();
+        assertFalse(crawlerContext.awaitUrlsOffered(urlOfferCount, 60000L));
+        assertTrue(System.currentTimeMillis() - startTime < 30000L);
+        finishThread.join();
+        assertTrue(crawlerContext.isQuiescent(urlOfferCount));
+    }
+
+    @Test
+    public void test_awaitUrlsOffered_urlsPending() throws Exception {
+        final long urlOfferCount = crawlerContext.getUrlOfferCount();
+        // pending URLs are waited for even if no thread is active
+        final long startTime = System.currentTimeMillis();
+        assertFalse(crawlerContext.awaitUrlsOffered(urlOfferCount, 100L, true));
+        assertTrue(System.currentTimeMillis() - startTime >= 90L);
+
+        final Thread offerThread = new Thread(() -> {
+            ThreadUtil.sleep(100L);
+            crawlerContext.notifyUrlsOffered();
+        });
+        offerThread.start();
+        assertTrue(crawlerContext.awaitUrlsOffered(urlOfferCount, 60000L, true));
+        offerThread.join();
+    }
+
+    @Test
+    public void test_scheduleRetry() throws Exception {
+        final UrlQueueImpl<Long> urlQueue1 = new UrlQueueImpl<>();
+        urlQueue1.setUrl("http://example.com/1");
+        final UrlQueueImpl<Long> urlQueue2 = new UrlQueueImpl<>();
+        urlQueue2.setUrl("http://example.com/2");
+        final long urlOfferCount = crawlerContext.getUrlOfferCount();
+
+        crawlerContext.scheduleRetry(urlQueue1, System.currentTimeMillis() + 200L);
+        crawlerContext.scheduleRetry(urlQueue2, System.currentTimeMillis() + 100L);
+        assertEquals(2, crawlerContext.getRetryUrlQueueCount());
+        assertNull(crawlerContext.pollRetryUrlQueue());
+        // a pending retry keeps the crawl running
+        assertFalse(crawlerContext.isQuiescent(urlOfferCount));
+
+        // waits until the next retry is due
+        final long startTime = System.currentTimeMillis();
+        assertFalse(crawlerContext.awaitUrlsOffered(urlOfferCount, 60000L));
+        assertTrue(System.currentTimeMillis() - startTime < 30000L);
+        ThreadUtil.sleep(250L);
+        assertTrue(urlQueue2 == crawlerContext.pollRetryUrlQueue());
+        assertTrue(urlQueue1 == crawlerContext.pollRetryUrlQueue());
+        assertNull(crawlerContext.pollRetryUrlQueue());
+        assertTrue(crawlerContext.isQuiescent(urlOfferCount));
+    }
 }
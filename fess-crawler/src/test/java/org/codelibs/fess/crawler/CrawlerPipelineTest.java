@@ -0,0 +1,214 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.codelibs.fess.crawler.entity.AccessResult;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.service.DataService;
+import org.codelibs.fess.crawler.util.AccessResultCallback;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+public class CrawlerPipelineTest extends PlainTestCase {
+
+    private static AccessResult<?> createAccessResult(final String url) {
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setSessionId("s1");
+        accessResult.setUrl(url);
+        return accessResult;
+    }
+
+    private static CrawlerContext createCrawlerContext() {
+        final CrawlerContext crawlerContext = new CrawlerContext();
+        crawlerContext.setSessionId("s1");
+        crawlerContext.setNumOfProcessingThread(2);
+        crawlerContext.setProcessingQueueSize(4);
+        crawlerContext.setNumOfStoreThread(1);
+        crawlerContext.setStoreQueueSize(4);
+        crawlerContext.setStoreBatchSize(3);
+        return crawlerContext;
+    }
+
+    @Test
+    public void test_processAndStore() {
+        final RecordingDataService dataService = new RecordingDataService();
+        final CrawlerPipeline pipeline = new CrawlerPipeline(createCrawlerContext(), dataService);
+        pipeline.start(null);
+        for (int i = 0; i < 25; i++) {
+            final String url = "http://example.com/" + i;
+            pipeline.process(() -> pipeline.getDataService().store(createAccessResult(url)));
+        }
+        pipeline.close();
+
+        assertEquals(25, dataService.urlList.size());
+        for (final Integer batchSize : dataService.batchSizeList) {
+            assertTrue(batchSize.intValue() <= 3);
+        }
+        assertEquals(0, pipeline.getProcessingQueueSize());
+        assertEquals(0, pipeline.getStoreQueueSize());
+        try {
+            pipeline.process(() -> {});
+            fail();
+        } catch (final CrawlerSystemException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void test_noStoreStage() {
+        final RecordingDataService dataService = new RecordingDataService();
+        final CrawlerContext crawlerContext = createCrawlerContext();
+        crawlerContext.setNumOfStoreThread(0);
+        final CrawlerPipeline pipeline = new CrawlerPipeline(crawlerContext, dataService);
+        assertTrue(dataService == pipeline.getDataService());
+        pipeline.start(null);
+        pipeline.process(() -> pipeline.getDataService().store(createAccessResult("http://example.com/")));
+        pipeline.close();
+        assertEquals(1, dataService.urlList.size());
+    }
+
+    @Test
+    public void test_backPressure() throws Exception {
+        final CrawlerContext crawlerContext = createCrawlerContext();
+        crawlerContext.setNumOfProcessingThread(1);
+        crawlerContext.setProcessingQueueSize(1);
+        final CrawlerPipeline pipeline = new CrawlerPipeline(crawlerContext, new RecordingDataService());
+        pipeline.start(null);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pipeline.process(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // fills the hand-off queue
+        pipeline.process(() -> {});
+
+        final AtomicBoolean handedOff = new AtomicBoolean(false);
+        final Thread fetchThread = new Thread(() -> {
+            pipeline.process(() -> {});
+            handedOff.set(true);
+        });
+        fetchThread.start();
+        fetchThread.join(200L);
+        assertFalse(handedOff.get());
+
+        release.countDown();
+        fetchThread.join(10000L);
+        assertTrue(handedOff.get());
+        pipeline.close();
+    }
+
+    @Test
+    public void test_storeFailure() {
+        final RecordingDataService dataService = new RecordingDataService();
+        dataService.failingUrl = "http://example.com/bad";
+        final CrawlerContext crawlerContext = createCrawlerContext();
+        crawlerContext.setNumOfProcessingThread(1);
+        crawlerContext.setStoreBatchSize(10);
+        final CrawlerPipeline pipeline = new CrawlerPipeline(crawlerContext, dataService);
+
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/bad");
+        final List<CrawlerPipeline.StoreTask> batch = new ArrayList<>();
+        batch.add(pipeline.new StoreTask(createAccessResult("http://example.com/1"), null, null));
+        batch.add(pipeline.new StoreTask(createAccessResult("http://example.com/bad"), urlQueue, null));
+        batch.add(pipeline.new StoreTask(createAccessResult("http://example.com/2"), null, null));
+        assertTrue(pipeline.isPending(urlQueue));
+        pipeline.store(batch);
+        assertEquals(List.of("http://example.com/1", "http://example.com/2"), dataService.urlList);
+        // the URL queue is finished even if its access result could not be stored
+        assertFalse(pipeline.isPending(urlQueue));
+    }
+
+    private static class RecordingDataService implements DataService<AccessResult<?>> {
+        final List<String> urlList = Collections.synchronizedList(new ArrayList<>());
+
+        final List<Integer> batchSizeList = Collections.synchronizedList(new ArrayList<>());
+
+        String failingUrl;
+
+        @Override
+        public void store(final AccessResult<?> accessResult) {
+            if (accessResult.getUrl().equals(failingUrl)) {
+                throw new CrawlerSystemException("Failed: " + failingUrl);
+            }
+            urlList.add(accessResult.getUrl());
+        }
+
+        @Override
+        public void storeAll(final List<AccessResult<?>> accessResultList) {
+            for (final AccessResult<?> accessResult : accessResultList) {
+                if (accessResult.getUrl().equals(failingUrl)) {
+                    throw new CrawlerSystemException("Failed: " + failingUrl);
+                }
+            }
+            batchSizeList.add(accessResultList.size());
+            for (final AccessResult<?> accessResult : accessResultList) {
+                store(accessResult);
+            }
+        }
+
+        @Override
+        public void update(final AccessResult<?> accessResult) {
+        }
+
+        @Override
+        public void update(final List<AccessResult<?>> accessResult) {
+        }
+
+        @Override
+        public int getCount(final String sessionId) {
+            return urlList.size();
+        }
+
+        @Override
+        public void delete(final String sessionId) {
+        }
+
+        @Override
+        public void deleteAll() {
+        }
+
+        @Override
+        public AccessResult<?> getAccessResult(final String sessionId, final String url) {
+            return null;
+        }
+
+        @Override
+        public List<AccessResult<?>> getAccessResultList(final String url, final boolean hasData) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void iterate(final String sessionId, final AccessResultCallback<AccessResult<?>> accessResultCallback) {
+        }
+    }
+}
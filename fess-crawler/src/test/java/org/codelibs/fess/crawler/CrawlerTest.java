@@ -16,8 +16,12 @@
 package org.codelibs.fess.crawler;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hc.client5.http.cookie.StandardCookieSpec;
 import org.codelibs.core.io.ResourceUtil;
 import org.codelibs.fess.crawler.client.CrawlerClientFactory;
@@ -25,6 +29,7 @@ import org.codelibs.fess.crawler.client.FaultTolerantClient;
 import org.codelibs.fess.crawler.client.fs.FileSystemClient;
 import org.codelibs.fess.crawler.client.http.Hc5HttpClient;
 import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.entity.AccessResult;
 import org.codelibs.fess.crawler.entity.AccessResultImpl;
 import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
@@ -40,6 +45,7 @@ import org.codelibs.fess.crawler.helper.UrlConvertHelper;
 import org.codelibs.fess.crawler.helper.impl.LogHelperImpl;
 import org.codelibs.fess.crawler.helper.impl.MimeTypeHelperImpl;
 import org.codelibs.fess.crawler.interval.impl.DefaultIntervalController;
+import org.codelibs.fess.crawler.log.LogType;
 import org.codelibs.fess.crawler.processor.impl.DefaultResponseProcessor;
 import org.codelibs.fess.crawler.processor.impl.SitemapsResponseProcessor;
 import org.codelibs.fess.crawler.rule.impl.RegexRule;
@@ -181,6 +187,157 @@ public class CrawlerTest extends PlainTestCase {
         }
     }
 
+    @Test
+    public void test_execute_web_virtualThread() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final int maxCount = 50;
+            final int numOfThread = 100;
+
+            final File file = File.createTempFile("crawler-", "");
+            file.delete();
+            file.mkdirs();
+            file.deleteOnExit();
+            fileTransformer.setPath(file.getAbsolutePath());
+            crawler.addUrl(url);
+            crawler.setVirtualThread(true);
+            crawler.crawlerContext.setMaxAccessCount(maxCount);
+            crawler.crawlerContext.setNumOfThread(numOfThread);
+            crawler.urlFilter.addInclude(url + ".*");
+            final String sessionId = crawler.execute();
+            assertEquals(maxCount, dataService.getCount(sessionId));
+            assertEquals(0, crawler.crawlerContext.getActiveThreadCount());
+            assertTrue(crawler.taskExecutor.isShutdown());
+            dataService.delete(sessionId);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_execute_web_stagedPipeline() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final int maxCount = 50;
+            final int numOfThread = 10;
+
+            final File file = File.createTempFile("crawler-", "");
+            file.delete();
+            file.mkdirs();
+            file.deleteOnExit();
+            fileTransformer.setPath(file.getAbsolutePath());
+            crawler.addUrl(url);
+            crawler.setStagedPipeline(true);
+            crawler.crawlerContext.setNumOfProcessingThread(2);
+            crawler.crawlerContext.setProcessingQueueSize(4);
+            crawler.crawlerContext.setStoreBatchSize(5);
+            crawler.crawlerContext.setMaxAccessCount(maxCount);
+            crawler.crawlerContext.setNumOfThread(numOfThread);
+            crawler.urlFilter.addInclude(url + ".*");
+            final String sessionId = crawler.execute();
+            assertEquals(maxCount, dataService.getCount(sessionId));
+            assertEquals(0, crawler.crawlerContext.getActiveThreadCount());
+            dataService.delete(sessionId);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_execute_web_stagedPipeline_selfLinks() throws Exception {
+        final File docRoot = File.createTempFile("crawlerDocRoot", "");
+        docRoot.delete();
+        docRoot.mkdirs();
+        final int numOfPage = 5;
+        // every page links to itself and to the other pages
+        final StringBuilder buf = new StringBuilder("<html><head><title>Page</title></head><body>");
+        buf.append("<a href=\"index.html\">Index</a><br>");
+        for (int i = 1; i <= numOfPage; i++) {
+            buf.append("<a href=\"page").append(i).append(".html\">Page ").append(i).append("</a><br>");
+        }
+        buf.append("</body></html>");
+        Files.writeString(new File(docRoot, "index.html").toPath(), buf.toString());
+        for (int i = 1; i <= numOfPage; i++) {
+            Files.writeString(new File(docRoot, "page" + i + ".html").toPath(), buf.toString());
+        }
+        final CrawlerWebServer server = new CrawlerWebServer(0, docRoot);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final Map<String, Integer> fetchCountMap = new ConcurrentHashMap<>();
+            container.singleton("logHelper", new LogHelperImpl() {
+                @Override
+                public void log(final LogType key, final Object... objs) {
+                    if (key == LogType.GET_CONTENT) {
+                        fetchCountMap.merge(((UrlQueue<?>) objs[1]).getUrl(), 1, Integer::sum);
+                    }
+                    super.log(key, objs);
+                }
+            }).prototype("dataService", SlowDataServiceImpl.class);
+            crawler = container.getComponent("crawler");
+
+            final File file = File.createTempFile("crawler-", "");
+            file.delete();
+            file.mkdirs();
+            file.deleteOnExit();
+            fileTransformer.setPath(file.getAbsolutePath());
+            crawler.addUrl(url + "index.html");
+            crawler.setStagedPipeline(true);
+            crawler.crawlerContext.setNumOfThread(3);
+            crawler.urlFilter.addInclude(url + ".*");
+            final String sessionId = crawler.execute();
+            // a page is not fetched again for a link found while its result waits in the store stage
+            assertEquals(numOfPage + 1, dataService.getCount(sessionId));
+            assertEquals(numOfPage + 1, fetchCountMap.size());
+            for (final Map.Entry<String, Integer> entry : fetchCountMap.entrySet()) {
+                assertEquals(entry.getKey() + "=1", entry.getKey() + "=" + entry.getValue());
+            }
+            dataService.delete(sessionId);
+        } finally {
+            server.stop();
+            FileUtils.deleteDirectory(docRoot);
+        }
+    }
+
+    @Test
+    public void test_execute_web_visitedUrlSet() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final int maxCount = 50;
+            final int numOfThread = 10;
+
+            final File file = File.createTempFile("crawler-", "");
+            file.delete();
+            file.mkdirs();
+            file.deleteOnExit();
+            fileTransformer.setPath(file.getAbsolutePath());
+            final MemoryDataHelper dataHelper = container.getComponent("dataHelper");
+            dataHelper.setVisitedUrlSetEnabled(true);
+            crawler.addUrl(url);
+            crawler.crawlerContext.setMaxAccessCount(maxCount);
+            crawler.crawlerContext.setNumOfThread(numOfThread);
+            crawler.urlFilter.addInclude(url + ".*");
+            final String sessionId = crawler.execute();
+            // the results and the child URLs are stored
+            assertEquals(maxCount, dataService.getCount(sessionId));
+            assertTrue(dataHelper.getVisitedUrlSet(sessionId).size() > maxCount);
+            assertTrue(dataHelper.getInFlightUrlQueueMap(sessionId).isEmpty());
+            dataService.delete(sessionId);
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     public void test_execute_xmlSitemaps() throws Exception {
         final CrawlerWebServer server = new CrawlerWebServer(0);
@@ -292,6 +449,104 @@ public class CrawlerTest extends PlainTestCase {
         dataService.delete(sessionId);
     }
 
+    @Test
+    public void test_execute_file_eventDrivenWaiting() throws Exception {
+        final File targetFile = ResourceUtil.getResourceAsFile("test");
+        String path = targetFile.getAbsolutePath();
+        if (!path.startsWith("/")) {
+            path = "/" + path.replace('\\', '/');
+        }
+        final String url = "file:" + path;
+
+        final File file = File.createTempFile("crawler-", "");
+        file.delete();
+        file.mkdirs();
+        file.deleteOnExit();
+        fileTransformer.setPath(file.getAbsolutePath());
+        crawler.addUrl(url);
+        crawler.setEventDrivenWaiting(true);
+        crawler.setIdleWaitMillis(60000L);
+        crawler.crawlerContext.setNumOfThread(4);
+        crawler.crawlerContext.setMaxDepth(1);
+        crawler.urlFilter.addInclude(url + ".*");
+        final long startTime = System.currentTimeMillis();
+        final String sessionId = crawler.execute();
+        // the crawl ends when the queue is drained, without waiting for the idle timeout
+        assertTrue(System.currentTimeMillis() - startTime < 30000L);
+        assertTrue(crawler.crawlerContext.isEventDrivenWaiting());
+        assertEquals(3, dataService.getCount(sessionId));
+        assertEquals(0, crawler.crawlerContext.getActiveThreadCount());
+        dataService.delete(sessionId);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void test_execute_file_eventDrivenWaiting_noOfferSignal() throws Exception {
+        final File targetFile = ResourceUtil.getResourceAsFile("test");
+        String path = targetFile.getAbsolutePath();
+        if (!path.startsWith("/")) {
+            path = "/" + path.replace('\\', '/');
+        }
+        final String url = "file:" + path;
+
+        final File file = File.createTempFile("crawler-", "");
+        file.delete();
+        file.mkdirs();
+        file.deleteOnExit();
+        fileTransformer.setPath(file.getAbsolutePath());
+        final MemoryDataHelper memoryDataHelper = container.getComponent("dataHelper");
+        crawler.urlQueueService = (UrlQueueService) new UrlQueueServiceImpl() {
+            {
+                dataHelper = memoryDataHelper;
+            }
+
+            @Override
+            public boolean supportsOfferSignal() {
+                return false;
+            }
+        };
+        crawler.addUrl(url);
+        crawler.setEventDrivenWaiting(true);
+        crawler.crawlerContext.setMaxThreadCheckCount(3);
+        crawler.crawlerContext.setNumOfThread(4);
+        crawler.crawlerContext.setMaxDepth(1);
+        crawler.urlFilter.addInclude(url + ".*");
+        final String sessionId = crawler.execute();
+        // the crawl ends by the thread check count instead
+        assertFalse(crawler.crawlerContext.isEventDrivenWaiting());
+        assertEquals(3, dataService.getCount(sessionId));
+        dataService.delete(sessionId);
+    }
+
+    @Test
+    public void test_execute_web_virtualThread_eventDrivenWaiting() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final int maxCount = 50;
+
+            final File file = File.createTempFile("crawler-", "");
+            file.delete();
+            file.mkdirs();
+            file.deleteOnExit();
+            fileTransformer.setPath(file.getAbsolutePath());
+            crawler.addUrl(url);
+            crawler.setVirtualThread(true);
+            crawler.setEventDrivenWaiting(true);
+            crawler.crawlerContext.setMaxAccessCount(maxCount);
+            crawler.crawlerContext.setNumOfThread(20);
+            crawler.urlFilter.addInclude(url + ".*");
+            final String sessionId = crawler.execute();
+            assertEquals(maxCount, dataService.getCount(sessionId));
+            assertEquals(0, crawler.crawlerContext.getActiveThreadCount());
+            dataService.delete(sessionId);
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     public void test_execute_file_filtered() throws Exception {
         final File targetFile = ResourceUtil.getResourceAsFile("test");
@@ -511,6 +766,47 @@ public class CrawlerTest extends PlainTestCase {
         }
     }
 
+    @Test
+    public void test_stop_virtualThread() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        try {
+            final String url = "http://localhost:" + server.getPort() + "/";
+
+            final File file = File.createTempFile("crawler-", "");
+            file.delete();
+            file.mkdirs();
+            file.deleteOnExit();
+            fileTransformer.setPath(file.getAbsolutePath());
+
+            crawler.setBackground(true);
+            crawler.setVirtualThread(true);
+            ((UrlFilterImpl) crawler.urlFilter).setIncludeFilteringPattern("$1$2$3.*");
+            crawler.addUrl(url);
+            crawler.getCrawlerContext().setNumOfThread(50);
+            crawler.getCrawlerContext().setMaxAccessCount(100);
+
+            final String sessionId = crawler.execute();
+
+            // Wait for crawler to start
+            final long startTime = System.currentTimeMillis();
+            while (crawler.crawlerContext.getStatus() != CrawlerStatus.RUNNING && System.currentTimeMillis() - startTime < 5000) {
+                Thread.sleep(50);
+            }
+            assertEquals(CrawlerStatus.RUNNING, crawler.crawlerContext.getStatus());
+
+            crawler.stop();
+            crawler.awaitTermination(5000);
+
+            assertEquals(CrawlerStatus.DONE, crawler.crawlerContext.getStatus());
+            assertTrue(crawler.taskExecutor.isShutdown());
+            dataService.delete(sessionId);
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     public void test_close() throws Exception {
         final Crawler testCrawler = container.getComponent("crawler");
@@ -666,4 +962,20 @@ public class CrawlerTest extends PlainTestCase {
         }
     }
 
+
+    /**
+     * A data service which stores the access results slowly, so that the store stage falls behind.
+     */
+    public static class SlowDataServiceImpl extends DataServiceImpl {
+
+        @Override
+        public void storeAll(final List<AccessResultImpl<Long>> accessResultList) {
+            try {
+                Thread.sleep(200L);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.storeAll(accessResultList);
+        }
+    }
 }
@@ -17,30 +17,46 @@ package org.codelibs.fess.crawler;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.codelibs.core.lang.ThreadUtil;
 import org.codelibs.fess.crawler.builder.RequestDataBuilder;
 import org.codelibs.fess.crawler.client.CrawlerClient;
 import org.codelibs.fess.crawler.client.CrawlerClientFactory;
 import org.codelibs.fess.crawler.container.CrawlerContainer;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
 import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
 import org.codelibs.fess.crawler.filter.UrlFilter;
 import org.codelibs.fess.crawler.helper.LogHelper;
 import org.codelibs.fess.crawler.interval.IntervalController;
+import org.codelibs.fess.crawler.log.LogType;
 import org.codelibs.fess.crawler.processor.ResponseProcessor;
 import org.codelibs.fess.crawler.rule.Rule;
 import org.codelibs.fess.crawler.rule.RuleManager;
+import org.codelibs.fess.crawler.rule.impl.RegexRule;
+import org.codelibs.fess.crawler.rule.impl.RuleManagerImpl;
 import org.codelibs.fess.crawler.service.DataService;
 import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
 import org.dbflute.utflute.core.PlainTestCase;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -382,6 +398,52 @@ public class CrawlerThreadTest extends PlainTestCase {
         assertEquals(client, result);
     }
 
+    /**
+     * Test isContentUpdated sends a HEAD request for a URL crawled before.
+     */
+    @Test
+    public void test_isContentUpdated_head() throws Exception {
+        final UrlQueue<?> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/");
+        urlQueue.setLastModified(1000L);
+
+        final CrawlerClient client = mock(CrawlerClient.class);
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://example.com/");
+        responseData.setHttpStatusCode(200);
+        responseData.setLastModified(new java.util.Date(1000L));
+        when(client.execute(any(RequestData.class))).thenReturn(responseData);
+
+        final java.lang.reflect.Method method =
+                CrawlerThread.class.getDeclaredMethod("isContentUpdated", CrawlerClient.class, UrlQueue.class);
+        method.setAccessible(true);
+        assertFalse((Boolean) method.invoke(crawlerThread, client, urlQueue));
+
+        verify(client, times(1)).execute(any(RequestData.class));
+        assertEquals(Constants.NOT_MODIFIED_STATUS_CODE, responseData.getHttpStatusCode());
+    }
+
+    /**
+     * Test isContentUpdated does not send a HEAD request when the client sends conditional requests.
+     */
+    @Test
+    public void test_isContentUpdated_conditionalRequestEnabled() throws Exception {
+        final UrlQueue<?> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/");
+        urlQueue.setLastModified(1000L);
+        urlQueue.setEtag("\"v1\"");
+
+        final CrawlerClient client = mock(CrawlerClient.class);
+        when(client.isConditionalRequestEnabled()).thenReturn(true);
+
+        final java.lang.reflect.Method method =
+                CrawlerThread.class.getDeclaredMethod("isContentUpdated", CrawlerClient.class, UrlQueue.class);
+        method.setAccessible(true);
+        assertTrue((Boolean) method.invoke(crawlerThread, client, urlQueue));
+
+        verify(client, times(0)).execute(any(RequestData.class));
+    }
+
     /**
      * Test processResponse method.
      */
@@ -504,4 +566,159 @@ public class CrawlerThreadTest extends PlainTestCase {
 
         assertTrue(result); // Should continue because active threads > 0
     }
+
+    /**
+     * Test isContinue while a failed URL waits to be retried.
+     */
+    @Test
+    public void test_isContinue_withPendingRetry() throws Exception {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/");
+        crawlerContext.scheduleRetry(urlQueue, System.currentTimeMillis() + 60000L);
+
+        assertTrue(crawlerThread.isContinue(15)); // Exceeds maxThreadCheckCount
+        assertNull(crawlerThread.pollUrlQueue());
+    }
+
+    /**
+     * Test crawl puts a URL back to be retried when the client asks to retry later,
+     * and the URL is polled before the queue when its retry time has come.
+     */
+    @Test
+    public void test_crawl_retryLater() throws Exception {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/");
+        urlQueue.setMethod(Constants.GET_METHOD);
+        urlQueue.setDepth(0);
+        final CrawlerClient client = mock(CrawlerClient.class);
+        when(clientFactory.getClient("http://example.com/")).thenReturn(client);
+        final long retryTime = System.currentTimeMillis() + 100L;
+        when(client.execute(any(RequestData.class)))
+                .thenThrow(new RetryLaterException("Retry later", new CrawlerSystemException("Connection refused"), retryTime, 1));
+
+        assertTrue(crawlerThread.crawl(urlQueue));
+        assertEquals(1, crawlerContext.getRetryUrlQueueCount());
+        assertEquals(0, crawlerContext.getActiveThreadCount());
+        verify(logHelper).log(eq(LogType.RETRY_LATER), eq(crawlerContext), eq(urlQueue), any(RetryLaterException.class));
+
+        ThreadUtil.sleep(150L);
+        assertTrue(urlQueue == crawlerThread.pollUrlQueue());
+        verify(urlQueueService, never()).poll(anyString());
+    }
+
+    /**
+     * Test a rule matching on the MIME type still matches a 304 response, using the MIME type of the 304 response
+     * or, if it has none, the MIME type of the previous access result.
+     */
+    @Test
+    public void test_crawl_notModified_mimeTypeRule() throws Exception {
+        final RuleManagerImpl ruleManagerImpl = new RuleManagerImpl();
+        final ResponseProcessor htmlProcessor = mock(ResponseProcessor.class);
+        final RegexRule htmlRule = new RegexRule();
+        htmlRule.setRuleId("html");
+        htmlRule.addRule("mimeType", "text/html");
+        htmlRule.setResponseProcessor(htmlProcessor);
+        ruleManagerImpl.addRule(htmlRule);
+        final RegexRule defaultRule = new RegexRule();
+        defaultRule.setRuleId("default");
+        defaultRule.setDefaultRule(true);
+        defaultRule.setResponseProcessor(mock(ResponseProcessor.class));
+        ruleManagerImpl.addRule(defaultRule);
+        crawlerContext.ruleManager = ruleManagerImpl;
+
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/");
+        urlQueue.setMethod(Constants.GET_METHOD);
+        urlQueue.setDepth(0);
+        urlQueue.setEtag("\"v1\"");
+        final CrawlerClient client = mock(CrawlerClient.class);
+        when(client.isConditionalRequestEnabled()).thenReturn(true);
+        when(clientFactory.getClient("http://example.com/")).thenReturn(client);
+        final AccessResultImpl<Long> previous = new AccessResultImpl<>();
+        previous.setUrl("http://example.com/");
+        previous.setMimeType("text/html");
+        previous.setCreateTime(1000L);
+        final AccessResultImpl<Long> older = new AccessResultImpl<>();
+        older.setUrl("http://example.com/");
+        older.setMimeType("text/plain");
+        older.setCreateTime(500L);
+        when(dataService.getAccessResultList("http://example.com/", false)).thenReturn(List.of(older, previous));
+
+        // a 304 response without a Content-Type header
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://example.com/");
+        responseData.setHttpStatusCode(Constants.NOT_MODIFIED_STATUS_CODE);
+        when(client.execute(any(RequestData.class))).thenReturn(responseData);
+        assertTrue(crawlerThread.crawl(urlQueue));
+        assertEquals("text/html", responseData.getMimeType());
+        assertEquals("html", responseData.getRuleId());
+        verify(htmlProcessor).process(responseData);
+
+        // a 304 response with a Content-Type header
+        final ResponseData typedResponseData = new ResponseData();
+        typedResponseData.setUrl("http://example.com/");
+        typedResponseData.setHttpStatusCode(Constants.NOT_MODIFIED_STATUS_CODE);
+        typedResponseData.setMimeType("text/html");
+        when(client.execute(any(RequestData.class))).thenReturn(typedResponseData);
+        when(dataService.getAccessResultList("http://example.com/", false)).thenReturn(List.of(older));
+        assertTrue(crawlerThread.crawl(urlQueue));
+        assertEquals("html", typedResponseData.getRuleId());
+        verify(htmlProcessor).process(typedResponseData);
+    }
+
+    /**
+     * Test run with a task executor dispatches each URL as a separate task.
+     */
+    @Test
+    public void test_run_withTaskExecutor() throws Exception {
+        final UrlQueue<?> urlQueue1 = mock(UrlQueue.class);
+        when(urlQueue1.getUrl()).thenReturn("http://example.com/1");
+        when(urlQueue1.getDepth()).thenReturn(0);
+        final UrlQueue<?> urlQueue2 = mock(UrlQueue.class);
+        when(urlQueue2.getUrl()).thenReturn("http://example.com/2");
+        when(urlQueue2.getDepth()).thenReturn(0);
+        when(urlFilter.match(anyString())).thenReturn(true);
+        doReturn(urlQueue1).doReturn(urlQueue2).doReturn(null).when(urlQueueService).poll(anyString());
+        crawlerContext.setStatus(CrawlerStatus.RUNNING);
+        crawlerContext.numOfThread = 2;
+        crawlerContext.maxThreadCheckCount = 1;
+
+        final Set<String> crawledUrls = ConcurrentHashMap.newKeySet();
+        final Set<Thread> taskThreads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger initializedCount = new AtomicInteger();
+        final CrawlerThread dispatcher = new CrawlerThread() {
+            @Override
+            protected boolean crawl(final UrlQueue<?> urlQueue) {
+                if (CrawlingParameterUtil.getCrawlerContext() == crawlerContext
+                        && CrawlingParameterUtil.getUrlQueueService() == urlQueueService) {
+                    initializedCount.incrementAndGet();
+                }
+                crawledUrls.add(urlQueue.getUrl());
+                taskThreads.add(Thread.currentThread());
+                return true;
+            }
+        };
+        dispatcher.urlQueueService = urlQueueService;
+        dispatcher.dataService = dataService;
+        dispatcher.crawlerContainer = crawlerContainer;
+        dispatcher.logHelper = logHelper;
+        dispatcher.setClientFactory(clientFactory);
+        dispatcher.setCrawlerContext(crawlerContext);
+        final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            dispatcher.setTaskExecutor(executor);
+            dispatcher.run();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2, crawledUrls.size());
+        assertTrue(crawledUrls.contains("http://example.com/1"));
+        assertTrue(crawledUrls.contains("http://example.com/2"));
+        assertEquals(2, initializedCount.get());
+        for (final Thread thread : taskThreads) {
+            assertTrue(thread.isVirtual());
+        }
+        assertNull(CrawlingParameterUtil.getCrawlerContext());
+    }
 }
@@ -310,4 +310,17 @@ public class RequestDataBuilderTest extends PlainTestCase {
         assertEquals(Method.HEAD, data.getMethod());
         assertEquals("https://example.com/large-file.zip", data.getUrl());
     }
+
+    @Test
+    public void test_conditionalRequest() {
+        // Test ifModifiedSince and ifNoneMatch
+        RequestData data = RequestDataBuilder.newRequestData().get().url("https://example.com/").ifModifiedSince(1000L).ifNoneMatch("\"v1\"").build();
+
+        assertEquals(Long.valueOf(1000L), data.getIfModifiedSince());
+        assertEquals("\"v1\"", data.getIfNoneMatch());
+
+        data = RequestDataBuilder.newRequestData().get().url("https://example.com/").build();
+        assertNull(data.getIfModifiedSince());
+        assertNull(data.getIfNoneMatch());
+    }
 }
@@ -24,8 +24,10 @@ import org.codelibs.fess.crawler.builder.RequestDataBuilder;
 import org.codelibs.fess.crawler.client.FaultTolerantClient.RequestListener;
 import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.exception.CircuitBreakerOpenException;
 import org.codelibs.fess.crawler.exception.CrawlerSystemException;
 import org.codelibs.fess.crawler.exception.MultipleCrawlingAccessException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
 import org.junit.jupiter.api.Test;
 import org.dbflute.utflute.core.PlainTestCase;
 
@@ -279,6 +281,205 @@ public class FaultTolerantClientTest extends PlainTestCase {
         assertEquals(Constants.HEAD_METHOD, response.getMethod());
     }
 
+    @Test
+    public void test_getBackoffInterval() {
+        final FaultTolerantClient client = new FaultTolerantClient();
+        client.setRetryInterval(100);
+        assertEquals(100L, client.getBackoffInterval(1));
+        assertEquals(100L, client.getBackoffInterval(3));
+
+        client.setBackoffMultiplier(2.0);
+        client.setMaxRetryInterval(500L);
+        assertEquals(100L, client.getBackoffInterval(1));
+        assertEquals(200L, client.getBackoffInterval(2));
+        assertEquals(400L, client.getBackoffInterval(3));
+        assertEquals(500L, client.getBackoffInterval(4));
+
+        client.setRetryJitter(0.5);
+        for (int i = 0; i < 100; i++) {
+            final long interval = client.getBackoffInterval(1);
+            assertTrue(interval >= 50L && interval <= 100L);
+        }
+    }
+
+    @Test
+    public void test_nonBlockingRetry() {
+        final FaultTolerantClient client = new FaultTolerantClient();
+        client.setNonBlockingRetry(true);
+        client.setRetryInterval(1000);
+        final TestClient testClient = new TestClient();
+        testClient.exceptionCount = 2;
+        testClient.interval = 0;
+        final TestListener testListener = new TestListener();
+        client.setCrawlerClient(testClient);
+        client.setRequestListener(testListener);
+        final String url = "http://test.com/";
+        final RequestData request = RequestDataBuilder.newRequestData().get().url(url).build();
+        for (int i = 1; i <= 2; i++) {
+            final long time = SystemUtil.currentTimeMillis();
+            try {
+                client.execute(request);
+                fail();
+            } catch (final RetryLaterException e) {
+                assertEquals(i, e.getRetryCount());
+                assertTrue(e.getRetryTime() >= time + 1000L);
+                assertTrue(SystemUtil.currentTimeMillis() - time < 1000L);
+            }
+        }
+        final ResponseData response = client.execute(request);
+        assertEquals(url, response.getUrl());
+        assertEquals(3, testClient.count);
+        assertEquals(3, testListener.requestCount);
+        assertEquals(0, client.getAttemptCount(url));
+
+        client.setMaxRetryCount(2);
+        testClient.exceptionCount = 10;
+        try {
+            client.execute(request);
+            fail();
+        } catch (final RetryLaterException e) {
+            assertEquals(1, e.getRetryCount());
+        }
+        try {
+            client.execute(request);
+            fail();
+        } catch (final MultipleCrawlingAccessException e) {
+            assertEquals(1, e.getCauses().length);
+        }
+        assertEquals(0, client.getAttemptCount(url));
+    }
+
+    @Test
+    public void test_circuitBreaker() {
+        final FaultTolerantClient client = new FaultTolerantClient();
+        client.setRetryInterval(0);
+        client.setCircuitBreakerFailureThreshold(2);
+        client.setCircuitBreakerOpenMillis(200L);
+        final TestClient testClient = new TestClient();
+        testClient.exceptionCount = 3;
+        testClient.interval = 0;
+        client.setCrawlerClient(testClient);
+        final String url = "http://test.com/";
+        assertEquals(FaultTolerantClient.CircuitState.CLOSED, client.getCircuitState(url));
+
+        try {
+            client.execute(RequestDataBuilder.newRequestData().get().url(url).build());
+            fail();
+        } catch (final MultipleCrawlingAccessException e) {
+            final Throwable[] causes = e.getCauses();
+            assertEquals(3, causes.length);
+            assertTrue(causes[2] instanceof CircuitBreakerOpenException);
+        }
+        assertEquals(2, testClient.count);
+        assertEquals(FaultTolerantClient.CircuitState.OPEN, client.getCircuitState("http://test.com"));
+        assertEquals(FaultTolerantClient.CircuitState.CLOSED, client.getCircuitState("http://test.org/"));
+
+        // short-circuited without a request
+        try {
+            client.execute(RequestDataBuilder.newRequestData().get().url(url + "a.html").build());
+            fail();
+        } catch (final MultipleCrawlingAccessException e) {
+            assertEquals(1, e.getCauses().length);
+        }
+        assertEquals(2, testClient.count);
+
+        // the trial request fails
+        sleep(250);
+        try {
+            client.execute(RequestDataBuilder.newRequestData().get().url(url).build());
+            fail();
+        } catch (final MultipleCrawlingAccessException e) {
+            assertEquals(2, e.getCauses().length);
+        }
+        assertEquals(3, testClient.count);
+        assertEquals(FaultTolerantClient.CircuitState.OPEN, client.getCircuitState(url));
+
+        // the trial request succeeds
+        sleep(250);
+        final ResponseData response = client.execute(RequestDataBuilder.newRequestData().get().url(url).build());
+        assertEquals(url, response.getUrl());
+        assertEquals(4, testClient.count);
+        assertEquals(FaultTolerantClient.CircuitState.CLOSED, client.getCircuitState(url));
+    }
+
+    @Test
+    public void test_circuitBreaker_trialError() {
+        final FaultTolerantClient client = new FaultTolerantClient();
+        client.setRetryInterval(0);
+        client.setMaxRetryCount(1);
+        client.setCircuitBreakerFailureThreshold(1);
+        client.setCircuitBreakerOpenMillis(100L);
+        final TestClient testClient = new TestClient() {
+            @Override
+            public ResponseData execute(final RequestData request) {
+                if (count == 1) {
+                    count++;
+                    throw new AssertionError("trial");
+                }
+                return super.execute(request);
+            }
+        };
+        testClient.exceptionCount = 1;
+        testClient.interval = 0;
+        client.setCrawlerClient(testClient);
+        final String url = "http://test.com/";
+        try {
+            client.execute(RequestDataBuilder.newRequestData().get().url(url).build());
+            fail();
+        } catch (final MultipleCrawlingAccessException e) {
+            assertEquals(1, e.getCauses().length);
+        }
+        assertEquals(FaultTolerantClient.CircuitState.OPEN, client.getCircuitState(url));
+
+        // the trial request throws an error
+        sleep(150);
+        try {
+            client.execute(RequestDataBuilder.newRequestData().get().url(url).build());
+            fail();
+        } catch (final AssertionError e) {
+            assertEquals("trial", e.getMessage());
+        }
+        assertEquals(FaultTolerantClient.CircuitState.OPEN, client.getCircuitState(url));
+
+        // the next trial request is sent
+        sleep(150);
+        final ResponseData response = client.execute(RequestDataBuilder.newRequestData().get().url(url).build());
+        assertEquals(url, response.getUrl());
+        assertEquals(3, testClient.count);
+        assertEquals(FaultTolerantClient.CircuitState.CLOSED, client.getCircuitState(url));
+    }
+
+    @Test
+    public void test_circuitBreaker_nonBlockingRetry() {
+        final FaultTolerantClient client = new FaultTolerantClient();
+        client.setNonBlockingRetry(true);
+        client.setRetryInterval(0);
+        client.setCircuitBreakerFailureThreshold(1);
+        client.setCircuitBreakerOpenMillis(10000L);
+        final TestClient testClient = new TestClient();
+        testClient.exceptionCount = 10;
+        testClient.interval = 0;
+        client.setCrawlerClient(testClient);
+        final RequestData request = RequestDataBuilder.newRequestData().get().url("http://test.com/").build();
+        try {
+            client.execute(request);
+            fail();
+        } catch (final RetryLaterException e) {
+            assertEquals(1, e.getRetryCount());
+        }
+        final long time = SystemUtil.currentTimeMillis();
+        try {
+            client.execute(request);
+            fail();
+        } catch (final RetryLaterException e) {
+            // retried after the circuit breaker half-opens
+            assertEquals(2, e.getRetryCount());
+            assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+            assertTrue(e.getRetryTime() > time + 9000L);
+        }
+        assertEquals(1, testClient.count);
+    }
+
     static class TestClient implements CrawlerClient {
         int count;
 
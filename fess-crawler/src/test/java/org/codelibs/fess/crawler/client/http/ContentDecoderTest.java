@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.brotli.BrotliUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+public class ContentDecoderTest extends PlainTestCase {
+
+    private static final String BODY = "The quick brown fox jumps over the lazy dog. ".repeat(100);
+
+    private static byte[] gzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(baos)) {
+            out.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] deflate(final byte[] data, final boolean nowrap) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(baos, deflater)) {
+            out.write(data);
+        } finally {
+            deflater.end();
+        }
+        return baos.toByteArray();
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void test_acceptEncoding() {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        final String acceptEncoding = contentDecoder.getAcceptEncoding();
+        assertTrue(acceptEncoding.startsWith("gzip, deflate"));
+        assertEquals(BrotliUtils.isBrotliCompressionAvailable(), acceptEncoding.contains("br"));
+        assertEquals(ZstdUtils.isZstdCompressionAvailable(), acceptEncoding.contains("zstd"));
+
+        contentDecoder.setAcceptEncoding("gzip");
+        assertEquals("gzip", contentDecoder.getAcceptEncoding());
+    }
+
+    @Test
+    public void test_isSupported() {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        assertTrue(contentDecoder.isSupported("gzip"));
+        assertTrue(contentDecoder.isSupported("X-GZIP"));
+        assertTrue(contentDecoder.isSupported("deflate, gzip"));
+        assertTrue(contentDecoder.isSupported("identity, gzip"));
+        assertEquals(BrotliUtils.isBrotliCompressionAvailable(), contentDecoder.isSupported("br"));
+        assertEquals(ZstdUtils.isZstdCompressionAvailable(), contentDecoder.isSupported("zstd"));
+        assertFalse(contentDecoder.isSupported(null));
+        assertFalse(contentDecoder.isSupported(""));
+        assertFalse(contentDecoder.isSupported("identity"));
+        assertFalse(contentDecoder.isSupported("compress"));
+        assertFalse(contentDecoder.isSupported("gzip, compress"));
+    }
+
+    @Test
+    public void test_isEncoded() {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        assertTrue(contentDecoder.isEncoded("gzip"));
+        assertTrue(contentDecoder.isEncoded("compress"));
+        assertTrue(contentDecoder.isEncoded("identity, br"));
+        assertFalse(contentDecoder.isEncoded(null));
+        assertFalse(contentDecoder.isEncoded(" "));
+        assertFalse(contentDecoder.isEncoded("identity"));
+    }
+
+    @Test
+    public void test_decode_gzip() throws Exception {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        final byte[] data = gzip(BODY.getBytes(StandardCharsets.UTF_8));
+        assertEquals(BODY, read(contentDecoder.decode("gzip", new ByteArrayInputStream(data), "http://example.com/")));
+
+        assertEquals(1L, contentDecoder.getResponseCount("gzip"));
+        assertEquals((long) data.length, contentDecoder.getEncodedBytes("gzip"));
+        assertEquals((long) BODY.length(), contentDecoder.getDecodedBytes("gzip"));
+        assertEquals((long) (BODY.length() - data.length), contentDecoder.getSavedBytes("gzip"));
+        assertEquals(0L, contentDecoder.getResponseCount("deflate"));
+        assertEquals(1, contentDecoder.getContentEncodings().size());
+    }
+
+    @Test
+    public void test_decode_deflate() throws Exception {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        final byte[] zlib = deflate(BODY.getBytes(StandardCharsets.UTF_8), false);
+        assertEquals(BODY, read(contentDecoder.decode("deflate", new ByteArrayInputStream(zlib), "http://example.com/")));
+        final byte[] raw = deflate(BODY.getBytes(StandardCharsets.UTF_8), true);
+        assertEquals(BODY, read(contentDecoder.decode("Deflate", new ByteArrayInputStream(raw), "http://example.com/")));
+        assertEquals(2L, contentDecoder.getResponseCount("deflate"));
+    }
+
+    @Test
+    public void test_decode_multipleCodings() throws Exception {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        final byte[] data = gzip(deflate(BODY.getBytes(StandardCharsets.UTF_8), false));
+        assertEquals(BODY, read(contentDecoder.decode("deflate, gzip", new ByteArrayInputStream(data), "http://example.com/")));
+        assertEquals(1L, contentDecoder.getResponseCount("deflate,gzip"));
+    }
+
+    @Test
+    public void test_decode_compressionRatio() throws Exception {
+        final ContentDecoder contentDecoder = new ContentDecoder();
+        contentDecoder.setRatioCheckThreshold(1024L);
+        contentDecoder.setMaxCompressionRatio(50.0);
+        final byte[] data = gzip(new byte[1024 * 1024]);
+        try (InputStream in = contentDecoder.decode("gzip", new ByteArrayInputStream(data), "http://example.com/bomb")) {
+            in.readAllBytes();
+            fail();
+        } catch (final CrawlingAccessException e) {
+            assertTrue(e.getMessage().contains("is over the compression ratio 50.0"));
+            assertTrue(e.getMessage().endsWith("http://example.com/bomb"));
+        }
+
+        // a highly compressed body below the threshold is accepted
+        contentDecoder.setRatioCheckThreshold(2 * 1024L * 1024L);
+        try (InputStream in = contentDecoder.decode("gzip", new ByteArrayInputStream(data), "http://example.com/bomb")) {
+            assertEquals(1024 * 1024, in.readAllBytes().length);
+        }
+    }
+}
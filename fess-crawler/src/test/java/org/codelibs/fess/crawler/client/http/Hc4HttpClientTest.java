@@ -112,6 +112,28 @@ public class Hc4HttpClientTest extends PlainTestCase {
         }
     }
 
+    @Test
+    public void test_processRobotsTxt_queryAfterHost() {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "?q=/admin/";
+        try {
+            final CrawlerContext crawlerContext = new CrawlerContext();
+            urlFilter.init("id1");
+            crawlerContext.setUrlFilter(urlFilter);
+            CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+            httpClient.init();
+            httpClient.processRobotsTxt(url);
+            assertEquals(1, crawlerContext.getRobotsTxtUrlSet().size());
+            assertTrue(crawlerContext.getRobotsTxtUrlSet().contains("http://localhost:" + server.getPort() + "/robots.txt"));
+            assertFalse(urlFilter.match("http://localhost:" + server.getPort() + "/admin/"));
+        } finally {
+            CrawlingParameterUtil.setCrawlerContext(null);
+            server.stop();
+        }
+    }
+
     @Test
     public void test_processRobotsTxt_disabled() {
         final String url = "http://localhost:7070/hoge.html";
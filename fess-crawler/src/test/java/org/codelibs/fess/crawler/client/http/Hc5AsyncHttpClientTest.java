@@ -0,0 +1,459 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.builder.RequestDataBuilder;
+import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
+import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.codelibs.fess.crawler.exception.MaxLengthExceededException;
+import org.codelibs.fess.crawler.filter.impl.UrlFilterImpl;
+import org.codelibs.fess.crawler.helper.ContentLengthHelper;
+import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.helper.RobotsTxtHelper;
+import org.codelibs.fess.crawler.helper.impl.MimeTypeHelperImpl;
+import org.codelibs.fess.crawler.service.impl.UrlFilterServiceImpl;
+import org.codelibs.fess.crawler.util.CrawlerWebServer;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class Hc5AsyncHttpClientTest extends PlainTestCase {
+    public Hc5AsyncHttpClient httpClient;
+
+    @Override
+    protected void setUp(final TestInfo testInfo) throws Exception {
+        super.setUp(testInfo);
+        StandardCrawlerContainer container = new StandardCrawlerContainer().singleton("mimeTypeHelper", MimeTypeHelperImpl.class)//
+                .singleton("dataHelper", MemoryDataHelper.class)//
+                .singleton("urlFilterService", UrlFilterServiceImpl.class)//
+                .singleton("urlFilter", UrlFilterImpl.class)//
+                .singleton("robotsTxtHelper", RobotsTxtHelper.class)//
+                .singleton("httpClient", Hc5AsyncHttpClient.class);
+        httpClient = container.getComponent("httpClient");
+    }
+
+    @Override
+    protected void tearDown(final TestInfo testInfo) throws Exception {
+        httpClient.close();
+        super.tearDown(testInfo);
+    }
+
+    @Test
+    public void test_doGet() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final ResponseData responseData = httpClient.doGet(url);
+            assertEquals(200, responseData.getHttpStatusCode());
+            assertEquals(Constants.GET_METHOD, responseData.getMethod());
+            assertEquals("text/html", responseData.getMimeType());
+            try (InputStream in = responseData.getResponseBody()) {
+                assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("<html"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doHead() throws Exception {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/";
+        try {
+            final ResponseData responseData = httpClient.doHead(url);
+            assertEquals(Constants.HEAD_METHOD, responseData.getMethod());
+            assertNotNull(responseData.getLastModified());
+            assertTrue(responseData.getLastModified().getTime() < new Date().getTime());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_executeAsync() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            final byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final List<CompletableFuture<ResponseData>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final String url = "http://127.0.0.1:" + server.port() + "/page" + i;
+                futures.add(httpClient.executeAsync(RequestDataBuilder.newRequestData().get().url(url).build()));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                final ResponseData responseData = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals(200, responseData.getHttpStatusCode());
+                assertEquals("text/plain", responseData.getMimeType());
+                try (InputStream in = responseData.getResponseBody()) {
+                    assertEquals("/page" + i, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_spilledToFile() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final byte[] body = new byte[100000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + (i % 26));
+        }
+        server.setHandler(exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            httpClient.setMaxCachedContentSize(1024L);
+            try (ResponseData responseData = httpClient.doGet("http://127.0.0.1:" + server.port() + "/")) {
+                assertEquals((long) body.length, responseData.getContentLength());
+                try (InputStream in = responseData.getResponseBody()) {
+                    assertTrue(in instanceof FileInputStream);
+                    assertEquals(new String(body, StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_smallResponseBuffer() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final byte[] body = new byte[100000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + (i % 26));
+        }
+        server.setHandler(exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            httpClient.setResponseBufferSize(1024);
+            httpClient.setMaxCachedContentSize(1024L);
+            try (ResponseData responseData = httpClient.doGet("http://127.0.0.1:" + server.port() + "/")) {
+                assertEquals((long) body.length, responseData.getContentLength());
+                try (InputStream in = responseData.getResponseBody()) {
+                    assertEquals(new String(body, StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_responseDataBuiltOffReactor() throws Exception {
+        final String[] threadName = new String[1];
+        final Hc5AsyncHttpClient client = new Hc5AsyncHttpClient() {
+            @Override
+            protected ResponseDataConsumer createResponseDataConsumer(final String url, final ClassicHttpRequest httpRequest) {
+                return new ResponseDataConsumer(url, Constants.GET_METHOD) {
+                    @Override
+                    protected ResponseData createResponseData() {
+                        threadName[0] = Thread.currentThread().getName();
+                        return super.createResponseData();
+                    }
+                };
+            }
+        };
+        new StandardCrawlerContainer().singleton("mimeTypeHelper", MimeTypeHelperImpl.class)//
+                .singleton("dataHelper", MemoryDataHelper.class)//
+                .singleton("urlFilterService", UrlFilterServiceImpl.class)//
+                .singleton("urlFilter", UrlFilterImpl.class)//
+                .singleton("robotsTxtHelper", RobotsTxtHelper.class)//
+                .singleton("httpClient", client);
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            final byte[] body = "<html><body>test</body></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try (ResponseData responseData = client.doGet("http://127.0.0.1:" + server.port() + "/")) {
+            assertEquals(200, responseData.getHttpStatusCode());
+            assertTrue(threadName[0].startsWith("Hc5AsyncHttpClient-response-"));
+        } finally {
+            server.stop();
+            client.close();
+        }
+    }
+
+    @Test
+    public void test_doGet_acceptEncoding() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final String body = "compressed body ".repeat(1000);
+        final String[] acceptEncoding = new String[1];
+        server.setHandler(exchange -> {
+            acceptEncoding[0] = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+                gzip.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, baos.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                baos.writeTo(out);
+            }
+        });
+        server.start();
+        try {
+            final Map<String, Object> params = new HashMap<>();
+            params.put(HcHttpClient.ACCEPT_ENCODING_PROPERTY, "gzip, deflate");
+            httpClient.setInitParameterMap(params);
+            // the decompressed body is spilled to a file
+            httpClient.setMaxCachedContentSize(1024L);
+
+            try (ResponseData responseData = httpClient.doGet("http://127.0.0.1:" + server.port() + "/")) {
+                assertEquals("gzip, deflate", acceptEncoding[0]);
+                assertEquals(Constants.UTF_8, responseData.getCharSet());
+                assertEquals((long) body.length(), responseData.getContentLength());
+                try (InputStream in = responseData.getResponseBody()) {
+                    assertTrue(in instanceof FileInputStream);
+                    assertEquals(body, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            assertEquals(1L, httpClient.getContentDecoder().getResponseCount("gzip"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_unsupportedContentEncoding() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            final byte[] body = "compressed".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("Content-Encoding", "compress");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            httpClient.setContentDecoder(new ContentDecoder());
+            try {
+                httpClient.doGet("http://127.0.0.1:" + server.port() + "/");
+                fail();
+            } catch (final CrawlingAccessException e) {
+                assertTrue(e.getMessage().contains("Unsupported content encoding(compress)"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_contentLengthHeaderExceedsMax() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final byte[] body = new byte[1024];
+        server.setHandler(exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final ContentLengthHelper helper = new ContentLengthHelper();
+            helper.setDefaultMaxLength(64L);
+            httpClient.contentLengthHelper = helper;
+
+            try {
+                httpClient.doGet("http://127.0.0.1:" + server.port() + "/");
+                fail();
+            } catch (final MaxLengthExceededException e) {
+                assertTrue(e.getMessage().contains("(1024 byte) is over 64 byte"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_chunkedOversizeBody() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final byte[] body = new byte[8192];
+        server.setHandler(exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final ContentLengthHelper helper = new ContentLengthHelper();
+            helper.setDefaultMaxLength(64L);
+            httpClient.contentLengthHelper = helper;
+
+            try {
+                httpClient.executeAsync(RequestDataBuilder.newRequestData().get().url("http://127.0.0.1:" + server.port() + "/").build())
+                        .join();
+                fail();
+            } catch (final CompletionException e) {
+                assertTrue(e.getCause() instanceof MaxLengthExceededException);
+                assertTrue(e.getCause().getMessage().contains("(65 byte) is over 64 byte"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_redirect() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            exchange.getResponseHeaders().add("Location", "/next.html");
+            exchange.sendResponseHeaders(302, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("moved".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        try {
+            final ResponseData responseData = httpClient.doGet("http://127.0.0.1:" + server.port() + "/dir/index.html");
+            assertEquals("http://127.0.0.1:" + server.port() + "/next.html", responseData.getRedirectLocation());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_executeAsync_notModified() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, 2);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write("ok".getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            httpClient.setConditionalRequestEnabled(true);
+            final String url = "http://127.0.0.1:" + server.port() + "/";
+            ResponseData responseData = httpClient.executeAsync(RequestDataBuilder.newRequestData().get().url(url).build()).join();
+            assertEquals(200, responseData.getHttpStatusCode());
+            assertEquals("\"v1\"", responseData.getEtag());
+
+            responseData = httpClient.executeAsync(RequestDataBuilder.newRequestData().get().url(url).ifNoneMatch("\"v1\"").build()).join();
+            assertEquals(Constants.NOT_MODIFIED_STATUS_CODE, responseData.getHttpStatusCode());
+            assertEquals("\"v1\"", responseData.getEtag());
+            // no Content-Type is sent, so the crawler thread takes the MIME type of the previous access
+            assertNull(responseData.getMimeType());
+
+            responseData = httpClient.execute(RequestDataBuilder.newRequestData().get().url(url).ifNoneMatch("\"v1\"").build());
+            assertEquals(Constants.NOT_MODIFIED_STATUS_CODE, responseData.getHttpStatusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_connectionRefused() throws Exception {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            httpClient.doGet("http://127.0.0.1:" + port + "/");
+            fail();
+        } catch (final CrawlingAccessException e) {
+            assertTrue(e.getMessage().endsWith("http://127.0.0.1:" + port + "/"));
+        }
+    }
+
+    private static class SimpleHttpServer {
+        private HttpServer http;
+        private int boundPort;
+
+        void setHandler(final com.sun.net.httpserver.HttpHandler handler) throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            http.setExecutor(Executors.newFixedThreadPool(4));
+            http.createContext("/", handler);
+        }
+
+        void start() {
+            http.start();
+            boundPort = http.getAddress().getPort();
+        }
+
+        void stop() {
+            http.stop(0);
+        }
+
+        int port() {
+            return boundPort;
+        }
+    }
+}
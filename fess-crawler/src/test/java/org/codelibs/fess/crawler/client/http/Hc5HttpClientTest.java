@@ -15,12 +15,17 @@
  */
 package org.codelibs.fess.crawler.client.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.hc.client5.http.auth.AuthSchemeFactory;
 import org.apache.hc.client5.http.auth.StandardAuthScheme;
@@ -33,7 +38,9 @@ import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
 import org.codelibs.fess.crawler.client.http.config.CredentialsConfig;
 import org.codelibs.fess.crawler.client.http.config.WebAuthenticationConfig;
 import org.codelibs.fess.crawler.client.http.config.WebAuthenticationConfig.AuthSchemeType;
+import org.codelibs.fess.crawler.Constants;
 import org.codelibs.fess.crawler.CrawlerContext;
+import org.codelibs.fess.crawler.builder.RequestDataBuilder;
 import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
 import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.exception.CrawlingAccessException;
@@ -42,6 +49,7 @@ import org.codelibs.fess.crawler.filter.UrlFilter;
 import org.codelibs.fess.crawler.filter.impl.UrlFilterImpl;
 import org.codelibs.fess.crawler.helper.ContentLengthHelper;
 import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.helper.RobotsTxtCache;
 import org.codelibs.fess.crawler.helper.RobotsTxtHelper;
 import org.codelibs.fess.crawler.helper.impl.MimeTypeHelperImpl;
 import org.codelibs.fess.crawler.service.impl.UrlFilterServiceImpl;
@@ -120,6 +128,96 @@ public class Hc5HttpClientTest extends PlainTestCase {
         }
     }
 
+    @Test
+    public void test_processRobotsTxt_cache() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final AtomicInteger count = new AtomicInteger();
+        server.setHandler(exchange -> {
+            count.incrementAndGet();
+            final byte[] body = "User-agent: *\nDisallow: /admin/\n".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=3600");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final RobotsTxtCache robotsTxtCache = new RobotsTxtCache();
+            robotsTxtCache.setRobotsTxtHelper(httpClient.robotsTxtHelper);
+            final Map<String, Object> params = new HashMap<>();
+            params.put(HcHttpClient.ROBOTS_TXT_CACHE_PROPERTY, robotsTxtCache);
+            httpClient.setInitParameterMap(params);
+            httpClient.init();
+
+            final String url = "http://127.0.0.1:" + server.port() + "/hoge.html";
+            for (final String sessionId : new String[] { "id1", "id2" }) {
+                final CrawlerContext crawlerContext = new CrawlerContext();
+                urlFilter.init(sessionId);
+                crawlerContext.setUrlFilter(urlFilter);
+                CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+                httpClient.processRobotsTxt(url);
+                assertFalse(urlFilter.match("http://127.0.0.1:" + server.port() + "/admin/"));
+            }
+            assertEquals(1, count.get());
+            assertEquals(1L, robotsTxtCache.getMissCount());
+            assertEquals(1L, robotsTxtCache.getHitCount());
+        } finally {
+            CrawlingParameterUtil.setCrawlerContext(null);
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_processRobotsTxt_urlFilterDisabled() {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "/hoge.html";
+        try {
+            final CrawlerContext crawlerContext = new CrawlerContext();
+            urlFilter.init("id1");
+            crawlerContext.setUrlFilter(urlFilter);
+            CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+            final Map<String, Object> params = new HashMap<>();
+            params.put(HcHttpClient.ROBOTS_TXT_URL_FILTER_ENABLED_PROPERTY, Boolean.FALSE);
+            httpClient.setInitParameterMap(params);
+            httpClient.init();
+            httpClient.processRobotsTxt(url);
+            assertNotNull(crawlerContext.getRobotsTxtDirective("http://localhost:" + server.getPort()));
+            assertTrue(urlFilter.match("http://localhost:" + server.getPort() + "/admin/"));
+            assertFalse(crawlerContext.isAllowedByRobotsTxt("http://localhost:" + server.getPort() + "/admin/"));
+            assertFalse(crawlerContext.isAllowedByRobotsTxt("http://localhost:" + server.getPort() + "/websvn/"));
+            assertTrue(crawlerContext.isAllowedByRobotsTxt("http://localhost:" + server.getPort() + "/index.html"));
+        } finally {
+            CrawlingParameterUtil.setCrawlerContext(null);
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_processRobotsTxt_queryAfterHost() {
+        final CrawlerWebServer server = new CrawlerWebServer(0);
+        server.start();
+
+        final String url = "http://localhost:" + server.getPort() + "?q=/admin/";
+        try {
+            final CrawlerContext crawlerContext = new CrawlerContext();
+            urlFilter.init("id1");
+            crawlerContext.setUrlFilter(urlFilter);
+            CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+            httpClient.init();
+            httpClient.processRobotsTxt(url);
+            assertEquals(1, crawlerContext.getRobotsTxtUrlSet().size());
+            assertTrue(crawlerContext.getRobotsTxtUrlSet().contains("http://localhost:" + server.getPort() + "/robots.txt"));
+            assertNotNull(crawlerContext.getRobotsTxtDirective("http://localhost:" + server.getPort()));
+            assertFalse(urlFilter.match("http://localhost:" + server.getPort() + "/admin/"));
+        } finally {
+            CrawlingParameterUtil.setCrawlerContext(null);
+            server.stop();
+        }
+    }
+
     @Test
     public void test_processRobotsTxt_disabled() {
         final String url = "http://localhost:7070/hoge.html";
@@ -911,6 +1009,201 @@ public class Hc5HttpClientTest extends PlainTestCase {
         assertEquals((long) body.length, responseData.getContentLength());
     }
 
+    @Test
+    public void test_execute_conditionalRequest() throws Exception {
+        final String etag = "\"v1\"";
+        final String lastModified = "Tue, 15 Nov 1994 12:45:26 GMT";
+        final byte[] body = "Hello, crawler!".getBytes("UTF-8");
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            if (!"/".equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))
+                    || lastModified.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Last-Modified", lastModified);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            final Map<String, Object> params = new HashMap<>();
+            params.put(HcHttpClient.CONDITIONAL_REQUEST_ENABLED_PROPERTY, Boolean.TRUE);
+            httpClient.setInitParameterMap(params);
+            httpClient.init();
+            assertTrue(httpClient.isConditionalRequestEnabled());
+
+            final String url = "http://127.0.0.1:" + server.port() + "/";
+            try (final ResponseData responseData = httpClient.execute(RequestDataBuilder.newRequestData().get().url(url).build())) {
+                assertEquals(200, responseData.getHttpStatusCode());
+                assertEquals(etag, responseData.getEtag());
+                assertEquals(784903526000L, responseData.getLastModified().getTime());
+            }
+
+            try (final ResponseData responseData =
+                    httpClient.execute(RequestDataBuilder.newRequestData().get().url(url).ifNoneMatch(etag).build())) {
+                assertEquals(Constants.NOT_MODIFIED_STATUS_CODE, responseData.getHttpStatusCode());
+                assertEquals(Constants.NOT_MODIFIED_STATUS, responseData.getStatus());
+                assertEquals(etag, responseData.getEtag());
+                assertEquals("text/plain", responseData.getMimeType());
+                assertEquals(0L, responseData.getContentLength());
+            }
+
+            try (final ResponseData responseData =
+                    httpClient.execute(RequestDataBuilder.newRequestData().get().url(url).ifModifiedSince(784903526000L).build())) {
+                assertEquals(Constants.NOT_MODIFIED_STATUS_CODE, responseData.getHttpStatusCode());
+                assertEquals(784903526000L, responseData.getLastModified().getTime());
+            }
+
+            try (final ResponseData responseData =
+                    httpClient.execute(RequestDataBuilder.newRequestData().get().url(url).ifNoneMatch("\"v0\"").build())) {
+                assertEquals(200, responseData.getHttpStatusCode());
+                assertEquals((long) body.length, responseData.getContentLength());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_execute_conditionalRequest_disabled() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            final int status = exchange.getRequestHeaders().containsKey("If-None-Match") ? 304 : 200;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            httpClient.init();
+            assertFalse(httpClient.isConditionalRequestEnabled());
+
+            final String url = "http://127.0.0.1:" + server.port() + "/";
+            try (final ResponseData responseData =
+                    httpClient.execute(RequestDataBuilder.newRequestData().get().url(url).ifNoneMatch("\"v1\"").build())) {
+                assertEquals(200, responseData.getHttpStatusCode());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_acceptEncoding() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        final String body = "compressed body ".repeat(1000);
+        final String[] acceptEncoding = new String[1];
+        server.setHandler(exchange -> {
+            acceptEncoding[0] = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+                gzip.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, baos.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                baos.writeTo(out);
+            }
+        });
+        server.start();
+        try {
+            final Map<String, Object> params = new HashMap<>();
+            params.put(HcHttpClient.ACCEPT_ENCODING_PROPERTY, "gzip, deflate");
+            httpClient.setInitParameterMap(params);
+            httpClient.init();
+
+            try (final ResponseData responseData = httpClient.doGet("http://127.0.0.1:" + server.port() + "/")) {
+                assertEquals("gzip, deflate", acceptEncoding[0]);
+                assertEquals(Constants.UTF_8, responseData.getCharSet());
+                assertEquals((long) body.length(), responseData.getContentLength());
+                try (InputStream in = responseData.getResponseBody()) {
+                    assertEquals(body, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+            final ContentDecoder contentDecoder = httpClient.getContentDecoder();
+            assertEquals(1L, contentDecoder.getResponseCount("gzip"));
+            assertEquals((long) body.length(), contentDecoder.getDecodedBytes("gzip"));
+            assertTrue(contentDecoder.getSavedBytes("gzip") > 0);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_unsupportedContentEncoding() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            final byte[] body = "compressed".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("Content-Encoding", "compress");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            httpClient.setContentDecoder(new ContentDecoder());
+            httpClient.init();
+
+            // the compressed body is not stored as the content
+            try {
+                httpClient.doGet("http://127.0.0.1:" + server.port() + "/");
+                fail();
+            } catch (final CrawlingAccessException e) {
+                assertTrue(e.getMessage().contains("Unsupported content encoding(compress)"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test_doGet_compressionRatioExceeded() throws Exception {
+        final SimpleHttpServer server = new SimpleHttpServer();
+        server.setHandler(exchange -> {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+                gzip.write(new byte[1024 * 1024]);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, baos.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                baos.writeTo(out);
+            }
+        });
+        server.start();
+        try {
+            final ContentDecoder contentDecoder = new ContentDecoder();
+            contentDecoder.setRatioCheckThreshold(64 * 1024L);
+            httpClient.setContentDecoder(contentDecoder);
+            httpClient.init();
+
+            try {
+                httpClient.doGet("http://127.0.0.1:" + server.port() + "/");
+                fail();
+            } catch (final CrawlingAccessException e) {
+                assertTrue(e.getMessage().contains("is over the compression ratio"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
     /** Lightweight HTTP server used for max-content-length tests, mirroring ApiExtractorTest's helper. */
     private static class SimpleHttpServer {
         private HttpServer http;
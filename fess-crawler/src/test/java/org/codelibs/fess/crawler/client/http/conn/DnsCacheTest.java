@@ -0,0 +1,237 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.client.http.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+public class DnsCacheTest extends PlainTestCase {
+
+    private final AtomicLong time = new AtomicLong(1000L);
+
+    private DnsCache createDnsCache() {
+        return new DnsCache() {
+            @Override
+            protected long currentTimeMillis() {
+                return time.get();
+            }
+        };
+    }
+
+    private static InetAddress[] address(final String host, final int last) throws UnknownHostException {
+        return new InetAddress[] { InetAddress.getByAddress(host, new byte[] { 10, 0, 0, (byte) last }) };
+    }
+
+    @Test
+    public void test_resolve_ttl() throws Exception {
+        final DnsCache dnsCache = createDnsCache();
+        dnsCache.setTtl(1000L);
+        dnsCache.setRefreshRatio(1.0f);
+        final AtomicInteger count = new AtomicInteger();
+        final DnsCache.Lookup lookup = host -> address(host, count.incrementAndGet());
+
+        assertEquals("10.0.0.1", dnsCache.resolve("a.example.com", lookup)[0].getHostAddress());
+        assertEquals("10.0.0.1", dnsCache.resolve("a.example.com", lookup)[0].getHostAddress());
+        assertEquals(1, count.get());
+        assertEquals(1L, dnsCache.getHitCount());
+        assertEquals(1L, dnsCache.getMissCount());
+        assertEquals(0.5, dnsCache.getHitRate());
+
+        time.addAndGet(1000L);
+        assertEquals("10.0.0.2", dnsCache.resolve("a.example.com", lookup)[0].getHostAddress());
+        assertEquals(2, count.get());
+        assertEquals(2L, dnsCache.getMissCount());
+
+        assertEquals("10.0.0.3", dnsCache.resolve("b.example.com", lookup)[0].getHostAddress());
+        assertEquals(2, dnsCache.getSize());
+
+        dnsCache.invalidate("b.example.com");
+        assertEquals(1, dnsCache.getSize());
+        dnsCache.clear();
+        assertEquals(0, dnsCache.getSize());
+    }
+
+    @Test
+    public void test_resolve_negative() throws Exception {
+        final DnsCache dnsCache = createDnsCache();
+        dnsCache.setNegativeTtl(500L);
+        final AtomicInteger count = new AtomicInteger();
+        final DnsCache.Lookup lookup = host -> {
+            count.incrementAndGet();
+            throw new UnknownHostException(host);
+        };
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                dnsCache.resolve("unknown.example.com", lookup);
+                fail();
+            } catch (final UnknownHostException e) {
+                assertEquals("unknown.example.com", e.getMessage());
+            }
+        }
+        assertEquals(1, count.get());
+        assertEquals(2L, dnsCache.getNegativeHitCount());
+
+        time.addAndGet(500L);
+        try {
+            dnsCache.resolve("unknown.example.com", lookup);
+            fail();
+        } catch (final UnknownHostException e) {
+            // expected
+        }
+        assertEquals(2, count.get());
+
+        dnsCache.setNegativeTtl(0L);
+        time.addAndGet(500L);
+        for (int i = 0; i < 2; i++) {
+            try {
+                dnsCache.resolve("unknown.example.com", lookup);
+                fail();
+            } catch (final UnknownHostException e) {
+                // expected
+            }
+        }
+        assertEquals(4, count.get());
+        assertEquals(0, dnsCache.getSize());
+    }
+
+    @Test
+    public void test_resolve_refresh() throws Exception {
+        final DnsCache dnsCache = createDnsCache();
+        dnsCache.setTtl(1000L);
+        dnsCache.setRefreshRatio(0.5f);
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        final DnsCache.Lookup lookup = host -> {
+            final InetAddress[] addresses = address(host, count.incrementAndGet());
+            if (count.get() == 2) {
+                refreshed.countDown();
+            }
+            return addresses;
+        };
+        try {
+            assertEquals("10.0.0.1", dnsCache.resolve("a.example.com", lookup)[0].getHostAddress());
+
+            time.addAndGet(600L);
+            // the cached addresses are returned while the entry is refreshed
+            assertEquals("10.0.0.1", dnsCache.resolve("a.example.com", lookup)[0].getHostAddress());
+            assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && dnsCache.getRefreshCount() == 0; i++) {
+                Thread.sleep(50L);
+            }
+            assertEquals(1L, dnsCache.getRefreshCount());
+
+            time.addAndGet(600L);
+            assertEquals("10.0.0.2", dnsCache.resolve("a.example.com", lookup)[0].getHostAddress());
+            assertEquals(1L, dnsCache.getMissCount());
+        } finally {
+            dnsCache.destroy();
+        }
+    }
+
+    @Test
+    public void test_resolve_concurrent() throws Exception {
+        final DnsCache dnsCache = createDnsCache();
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DnsCache.Lookup lookup = host -> {
+            count.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return address(host, 1);
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<InetAddress[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(executor.submit(() -> dnsCache.resolve("a.example.com", lookup)));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200L);
+            release.countDown();
+            for (final Future<InetAddress[]> future : futures) {
+                assertEquals("10.0.0.1", future.get(10, TimeUnit.SECONDS)[0].getHostAddress());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void test_evict() throws Exception {
+        final DnsCache dnsCache = createDnsCache();
+        dnsCache.setMaxSize(10);
+        final DnsCache.Lookup lookup = host -> address(host, 1);
+
+        for (int i = 0; i < 11; i++) {
+            time.incrementAndGet();
+            dnsCache.resolve("host" + i + ".example.com", lookup);
+        }
+        assertEquals(9, dnsCache.getSize());
+        assertEquals(2L, dnsCache.getEvictionCount());
+        // the entries which expire first are removed
+        dnsCache.resolve("host10.example.com", lookup);
+        assertEquals(1L, dnsCache.getHitCount());
+        dnsCache.resolve("host0.example.com", lookup);
+        assertEquals(1L, dnsCache.getHitCount());
+    }
+
+    @Test
+    public void test_idnDnsResolver() throws Exception {
+        final DnsCache dnsCache = createDnsCache();
+        final AtomicInteger count = new AtomicInteger();
+        final Hc5IdnDnsResolver hc5Resolver = new Hc5IdnDnsResolver() {
+            @Override
+            protected InetAddress[] lookup(final String host) throws UnknownHostException {
+                count.incrementAndGet();
+                return address(host, 1);
+            }
+        };
+        hc5Resolver.setDnsCache(dnsCache);
+        final IdnDnsResolver hc4Resolver = new IdnDnsResolver() {
+            @Override
+            protected InetAddress[] lookup(final String host) throws UnknownHostException {
+                count.incrementAndGet();
+                return address(host, 1);
+            }
+        };
+        hc4Resolver.setDnsCache(dnsCache);
+
+        assertEquals("xn--zckzah.org", hc5Resolver.resolve("テスト.org")[0].getHostName());
+        assertEquals("xn--zckzah.org", hc4Resolver.resolve("xn--zckzah.org")[0].getHostName());
+        assertEquals(1, count.get());
+        assertEquals(1L, dnsCache.getHitCount());
+    }
+}
@@ -342,6 +342,39 @@ public class StandardCrawlerContainerTest extends PlainTestCase {
         assertEquals("prototype", p2.getValue());
     }
 
+    /**
+     * Test prototype injection reuses the injection plan of the definition
+     */
+    @Test
+    public void test_prototype_injectionPlan() {
+        StandardCrawlerContainer container = new StandardCrawlerContainer();
+        container.<SimpleService> singleton("dependency", SimpleService.class, s -> s.setValue("injected"));
+        container.prototype("consumer", PrototypeWithDependency.class);
+
+        SimpleService dependency = container.getComponent("dependency");
+        for (int i = 0; i < 100; i++) {
+            PrototypeWithDependency consumer = container.getComponent("consumer");
+            assertTrue(dependency == consumer.getDependency());
+            assertTrue(consumer.isInitialized());
+        }
+    }
+
+    /**
+     * Test an exception thrown by @PostConstruct is propagated
+     */
+    @Test
+    public void test_postConstruct_exception() {
+        StandardCrawlerContainer container = new StandardCrawlerContainer();
+        container.prototype("service", ServiceWithFailingInit.class);
+
+        try {
+            container.getComponent("service");
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("init failed", e.getMessage());
+        }
+    }
+
     // ---- Test helper classes ----
 
     /**
@@ -396,4 +429,37 @@ public class StandardCrawlerContainerTest extends PlainTestCase {
             return destroyed;
         }
     }
+
+    /**
+     * Prototype with @Resource dependency and @PostConstruct
+     */
+    public static class PrototypeWithDependency {
+        @Resource
+        protected SimpleService dependency;
+
+        private boolean initialized = false;
+
+        @PostConstruct
+        public void init() {
+            initialized = dependency != null;
+        }
+
+        public SimpleService getDependency() {
+            return dependency;
+        }
+
+        public boolean isInitialized() {
+            return initialized;
+        }
+    }
+
+    /**
+     * Service whose @PostConstruct fails
+     */
+    public static class ServiceWithFailingInit {
+        @PostConstruct
+        public void init() {
+            throw new IllegalStateException("init failed");
+        }
+    }
 }
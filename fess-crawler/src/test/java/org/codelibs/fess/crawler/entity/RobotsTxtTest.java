@@ -547,4 +547,40 @@ public class RobotsTxtTest extends PlainTestCase {
         assertFalse(robotsTxt.allows("/search?q=a+b", "AnyBot"));
         assertTrue(robotsTxt.allows("/search?q=a b", "AnyBot"));
     }
+
+    @Test
+    public void test_pathTrie() {
+        Directive directive = new Directive("*");
+        directive.addDisallow("/");
+        directive.addAllow("/public/");
+        directive.addDisallow("/public/private/");
+        directive.addDisallow("/*.pdf$");
+        directive.addDisallow("/shop*/cart");
+        directive.addDisallow("/%7Euser/");
+
+        assertFalse(directive.allows("/index.html"));
+        assertTrue(directive.allows("/public/index.html"));
+        assertFalse(directive.allows("/public/private/a.html"));
+        // the longer Allow pattern wins over "/*.pdf$"
+        assertTrue(directive.allows("/public/doc.pdf"));
+        assertFalse(directive.allows("/public/private/doc.pdf"));
+        assertFalse(directive.allows("/shop-1/cart"));
+        assertFalse(directive.allows("/shop/cart/items"));
+        assertTrue(directive.allows("/public/shop/cart"));
+        directive.addDisallow("/public/shop/cart");
+        assertFalse(directive.allows("/public/shop/cart"));
+
+        // patterns added after a lookup are indexed too
+        directive.addAllow("/public/shop/cart/");
+        assertTrue(directive.allows("/public/shop/cart/items"));
+
+        // percent-encoded patterns and paths are matched through both forms
+        Directive encoded = new Directive("*");
+        encoded.addDisallow("/%7Euser/");
+        encoded.addDisallow("/~admin/");
+        assertFalse(encoded.allows("/~user/index.html"));
+        assertFalse(encoded.allows("/%7euser/index.html"));
+        assertFalse(encoded.allows("/%7Eadmin/index.html"));
+        assertTrue(encoded.allows("/~guest/index.html"));
+    }
 }
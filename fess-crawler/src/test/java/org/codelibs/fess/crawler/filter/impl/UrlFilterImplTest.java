@@ -19,6 +19,7 @@ import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
 import org.codelibs.fess.crawler.helper.MemoryDataHelper;
 import org.codelibs.fess.crawler.service.impl.DataServiceImpl;
 import org.codelibs.fess.crawler.service.impl.UrlFilterServiceImpl;
+import org.codelibs.fess.crawler.util.UrlPatternMatcher;
 import org.dbflute.utflute.core.PlainTestCase;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -228,4 +229,30 @@ public class UrlFilterImplTest extends PlainTestCase {
         assertEquals(0, urlFilter.cachedIncludeSet.size());
         assertEquals(0, urlFilter.cachedExcludeSet.size());
     }
+
+    @Test
+    public void test_match_incrementalUpdate() {
+        urlFilter.addInclude("http://example.com/.*");
+        final String sessionId = "id1";
+        urlFilter.init(sessionId);
+
+        assertTrue(urlFilter.match("http://example.com/admin/"));
+        final UrlPatternMatcher matcher = urlFilter.excludeMatcher.state.matcher;
+
+        // patterns added after init are reflected, reusing the compiled matcher
+        urlFilter.addExclude("http://example.com/admin/.*");
+        assertFalse(urlFilter.match("http://example.com/admin/"));
+        assertTrue(urlFilter.match("http://example.com/"));
+        assertTrue(matcher == urlFilter.excludeMatcher.state.matcher);
+        assertEquals(1, matcher.size());
+
+        // a new session rebuilds the matchers
+        urlFilter.init("id2");
+        assertTrue(urlFilter.match("http://example.com/admin/"));
+        assertTrue(urlFilter.match("http://test.com/"));
+        assertFalse(matcher == urlFilter.excludeMatcher.state.matcher);
+
+        urlFilter.clear();
+        assertTrue(urlFilter.match("http://test.com/"));
+    }
 }
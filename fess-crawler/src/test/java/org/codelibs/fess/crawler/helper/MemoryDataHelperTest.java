@@ -15,6 +15,9 @@
  */
 package org.codelibs.fess.crawler.helper;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -27,8 +30,13 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.FileUtils;
+import org.codelibs.fess.crawler.entity.AccessResultDataImpl;
 import org.codelibs.fess.crawler.entity.AccessResultImpl;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.util.PriorityUrlQueue;
+import org.codelibs.fess.crawler.util.SpillingUrlQueue;
+import org.codelibs.fess.crawler.util.VisitedUrlSet;
 import org.dbflute.utflute.core.PlainTestCase;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
@@ -440,4 +448,218 @@ public class MemoryDataHelperTest extends PlainTestCase {
         assertTrue(helper.getExcludeUrlPatternList("session1").isEmpty());
         assertTrue(helper.getIncludeUrlPatternList("session2").isEmpty());
     }
+
+    /**
+     * Test visited URL sets are created only when enabled
+     */
+    @Test
+    public void test_getVisitedUrlSet() {
+        assertNull(helper.getVisitedUrlSet("session1"));
+        helper.addVisitedUrl("session1", "http://example.com/");
+
+        helper.setVisitedUrlSetEnabled(true);
+        helper.setVisitedUrlExpectedInsertions(100L);
+        helper.setVisitedUrlFpp(0.01);
+        helper.setVisitedUrlExactStoreEnabled(false);
+        final VisitedUrlSet visitedUrlSet = helper.getVisitedUrlSet("session1");
+        assertNotNull(visitedUrlSet);
+        assertFalse(visitedUrlSet.isExact());
+        assertFalse(visitedUrlSet.contains("http://example.com/"));
+        assertTrue(visitedUrlSet == helper.getVisitedUrlSet("session1"));
+
+        helper.addVisitedUrl("session1", "http://example.com/");
+        assertTrue(helper.getVisitedUrlSet("session1").contains("http://example.com/"));
+        assertFalse(helper.getVisitedUrlSet("session2").contains("http://example.com/"));
+
+        final Queue<UrlQueueImpl<Long>> urlQueueList = new LinkedList<>();
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/queued");
+        urlQueueList.add(urlQueue);
+        helper.addUrlQueueList("session1", urlQueueList);
+        assertTrue(helper.getVisitedUrlSet("session1").contains("http://example.com/queued"));
+
+        helper.deleteAccessResultMap("session1");
+        assertFalse(helper.getVisitedUrlSet("session1").contains("http://example.com/"));
+    }
+
+    /**
+     * Test URL queues spill to disk when enabled
+     */
+    @Test
+    public void test_getUrlQueueList_spill() throws Exception {
+        final File spillDirectory = Files.createTempDirectory("spill").toFile();
+        try {
+            helper.setUrlQueueSpillEnabled(true);
+            helper.setUrlQueueHeadCapacity(2);
+            helper.setUrlQueueSegmentSize(1);
+            helper.setUrlQueueSpillDirectory(spillDirectory);
+            final Queue<UrlQueueImpl<Long>> urlQueueList = helper.getUrlQueueList("session1");
+            assertTrue(urlQueueList instanceof SpillingUrlQueue);
+            for (int i = 0; i < 5; i++) {
+                final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+                urlQueue.setUrl("http://example.com/" + i);
+                urlQueueList.add(urlQueue);
+            }
+            assertEquals(3L, ((SpillingUrlQueue) urlQueueList).getSpilledCount());
+
+            helper.addUrlQueueList("session2", urlQueueList);
+            // the queued URLs are kept in the visited URL set instead of the queued URL set
+            assertTrue(helper.getVisitedUrlSet("session2").contains("http://example.com/4"));
+            assertTrue(helper.getUrlInQueueSet("session2").isEmpty());
+            assertFalse(helper.addQueuedUrl("session2", "http://example.com/4"));
+            assertTrue(helper.addQueuedUrl("session2", "http://example.com/5"));
+            helper.removeUrlQueueList("session1");
+            // only the segment directory of session2 is left
+            assertEquals(1, spillDirectory.list().length);
+            final Queue<UrlQueueImpl<Long>> newUrlQueueList = helper.getUrlQueueList("session2");
+            assertEquals(5, newUrlQueueList.size());
+            assertEquals("http://example.com/0", newUrlQueueList.poll().getUrl());
+
+            helper.clearUrlQueueList();
+            assertEquals(0, spillDirectory.list().length);
+        } finally {
+            FileUtils.deleteDirectory(spillDirectory);
+        }
+    }
+
+    /**
+     * Test URL queues are polled by weight when priority is enabled
+     */
+    @Test
+    public void test_getUrlQueueList_priority() {
+        helper.setUrlQueuePriorityEnabled(true);
+        helper.setUrlQueueSpillEnabled(true);
+        final Queue<UrlQueueImpl<Long>> urlQueueList = helper.getUrlQueueList("session1");
+        assertTrue(urlQueueList instanceof PriorityUrlQueue);
+        final float[] weights = { 1.0f, 2.0f, 0.5f, 2.0f };
+        for (int i = 0; i < weights.length; i++) {
+            final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+            urlQueue.setUrl("http://example.com/" + i);
+            urlQueue.setWeight(weights[i]);
+            urlQueueList.add(urlQueue);
+        }
+
+        helper.addUrlQueueList("session2", urlQueueList);
+        final Queue<UrlQueueImpl<Long>> newUrlQueueList = helper.getUrlQueueList("session2");
+        assertEquals("http://example.com/1", newUrlQueueList.poll().getUrl());
+        assertEquals("http://example.com/3", newUrlQueueList.poll().getUrl());
+        assertEquals("http://example.com/0", newUrlQueueList.poll().getUrl());
+        assertEquals("http://example.com/2", newUrlQueueList.poll().getUrl());
+        assertNull(newUrlQueueList.poll());
+    }
+
+    /**
+     * Test a session is restored from its checkpoint
+     */
+    @Test
+    public void test_checkpoint() throws Exception {
+        final File checkpointDirectory = Files.createTempDirectory("checkpoint").toFile();
+        try {
+            assertFalse(helper.isCheckpointEnabled());
+            helper.setCheckpointDirectory(checkpointDirectory);
+            assertTrue(helper.isCheckpointEnabled());
+
+            final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+            accessResult.setSessionId("session1");
+            accessResult.setUrl("http://example.com/done");
+            helper.getAccessResultMap("session1").put(accessResult.getUrl(), accessResult);
+            helper.addCheckpointResult(accessResult);
+            for (final String url : new String[] { "http://example.com/done", "http://example.com/1", "http://example.com/2" }) {
+                final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+                urlQueue.setSessionId("session1");
+                urlQueue.setUrl(url);
+                helper.addCheckpointUrlQueue("session1", urlQueue);
+            }
+            helper.checkpoint("session1");
+
+            // a new JVM
+            final MemoryDataHelper newHelper = new MemoryDataHelper();
+            newHelper.setCheckpointDirectory(checkpointDirectory);
+            final Queue<UrlQueueImpl<Long>> newUrlQueueList = newHelper.getUrlQueueList("session1");
+            assertTrue(newHelper.restoreCheckpoint("session1", newUrlQueueList));
+            assertFalse(newHelper.restoreCheckpoint("session2", newHelper.getUrlQueueList("session2")));
+            assertEquals(1, newHelper.getAccessResultMap("session1").size());
+            assertEquals(2, newUrlQueueList.size());
+            assertEquals("http://example.com/1", newUrlQueueList.poll().getUrl());
+            assertTrue(newHelper.getUrlInQueueSet("session1").contains("http://example.com/2"));
+
+            newHelper.deleteAccessResultMap("session1");
+            assertEquals(0, checkpointDirectory.list().length);
+        } finally {
+            FileUtils.deleteDirectory(checkpointDirectory);
+        }
+    }
+
+    /**
+     * Test clear() discards the checkpoints recorded in memory but keeps the checkpoint logs
+     */
+    @Test
+    public void test_clear_checkpoint() throws Exception {
+        final File checkpointDirectory = Files.createTempDirectory("checkpoint").toFile();
+        try {
+            helper.setCheckpointDirectory(checkpointDirectory);
+            final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+            urlQueue.setSessionId("session1");
+            urlQueue.setUrl("http://example.com/1");
+            helper.addCheckpointUrlQueue("session1", urlQueue);
+            helper.checkpoint("session1");
+            final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+            accessResult.setSessionId("session1");
+            accessResult.setUrl("http://example.com/done");
+            helper.addCheckpointResult(accessResult);
+
+            helper.clear();
+            assertTrue(helper.checkpointResultMap.isEmpty());
+            assertTrue(helper.checkpointUrlQueueMap.isEmpty());
+            assertTrue(helper.checkpointLogMap.isEmpty());
+
+            final Queue<UrlQueueImpl<Long>> urlQueueList = helper.getUrlQueueList("session1");
+            assertTrue(helper.restoreCheckpoint("session1", urlQueueList));
+            assertEquals(1, urlQueueList.size());
+            assertEquals(0, helper.getAccessResultMap("session1").size());
+
+            helper.deleteAccessResultMap("session1");
+            assertEquals(0, checkpointDirectory.list().length);
+        } finally {
+            FileUtils.deleteDirectory(checkpointDirectory);
+        }
+    }
+
+    /**
+     * Test the data in the content store is restored from its segment files, not from the checkpoint log
+     */
+    @Test
+    public void test_checkpoint_contentStore() throws Exception {
+        final File checkpointDirectory = Files.createTempDirectory("checkpoint").toFile();
+        try {
+            helper.setCheckpointDirectory(checkpointDirectory);
+            helper.setContentStoreEnabled(true);
+            final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+            accessResult.setSessionId("session1");
+            accessResult.setUrl("http://example.com/");
+            final AccessResultDataImpl<Long> accessResultData = new AccessResultDataImpl<>();
+            accessResultData.setData("body".getBytes(StandardCharsets.UTF_8));
+            accessResult.setAccessResultData(accessResultData);
+            helper.storeContent(accessResult);
+            helper.getAccessResultMap("session1").put(accessResult.getUrl(), accessResult);
+            helper.addCheckpointResult(accessResult);
+            helper.checkpoint("session1");
+            // the segment files are kept for the checkpoint log
+            helper.clear();
+
+            // a new JVM
+            final MemoryDataHelper newHelper = new MemoryDataHelper();
+            newHelper.setCheckpointDirectory(checkpointDirectory);
+            newHelper.setContentStoreEnabled(true);
+            assertTrue(newHelper.restoreCheckpoint("session1", newHelper.getUrlQueueList("session1")));
+            final AccessResultImpl<Long> restored = newHelper.getAccessResultMap("session1").get("http://example.com/");
+            assertEquals("body", restored.getAccessResultData().getDataAsString());
+            assertEquals(4L, newHelper.getContentStore("session1").getTotalSize());
+
+            newHelper.deleteAccessResultMap("session1");
+            assertEquals(0, checkpointDirectory.list().length);
+        } finally {
+            FileUtils.deleteDirectory(checkpointDirectory);
+        }
+    }
 }
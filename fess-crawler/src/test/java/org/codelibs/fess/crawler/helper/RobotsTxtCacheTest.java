@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.helper;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.codelibs.fess.crawler.entity.RobotsTxt;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+public class RobotsTxtCacheTest extends PlainTestCase {
+
+    private static final String ROBOTS_TXT_URL = "http://example.com/robots.txt";
+
+    private static final String CONTENT = "User-agent: *\nDisallow: /admin/\nSitemap: http://example.com/sitemap.xml\n";
+
+    private final AtomicLong time = new AtomicLong(1000000L);
+
+    private RobotsTxtCache createRobotsTxtCache() {
+        final RobotsTxtCache robotsTxtCache = new RobotsTxtCache() {
+            @Override
+            protected long currentTimeMillis() {
+                return time.get();
+            }
+        };
+        robotsTxtCache.setRobotsTxtHelper(new RobotsTxtHelper());
+        return robotsTxtCache;
+    }
+
+    @Test
+    public void test_get() {
+        final RobotsTxtCache robotsTxtCache = createRobotsTxtCache();
+        final AtomicInteger count = new AtomicInteger();
+        final RobotsTxtCache.Fetcher fetcher = url -> {
+            count.incrementAndGet();
+            return robotsTxtCache.createEntry(CONTENT, "max-age=3600", null);
+        };
+
+        final RobotsTxt robotsTxt = robotsTxtCache.get(ROBOTS_TXT_URL, fetcher);
+        assertFalse(robotsTxt.allows("/admin/", "Crawler"));
+        assertEquals("http://example.com/sitemap.xml", robotsTxt.getSitemaps()[0]);
+        assertTrue(robotsTxt == robotsTxtCache.get(ROBOTS_TXT_URL, fetcher));
+        assertEquals(1, count.get());
+        assertEquals(1L, robotsTxtCache.getHitCount());
+        assertEquals(1L, robotsTxtCache.getMissCount());
+
+        time.addAndGet(3600L * 1000L);
+        assertNotNull(robotsTxtCache.get(ROBOTS_TXT_URL, fetcher));
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void test_get_notFound() {
+        final RobotsTxtCache robotsTxtCache = createRobotsTxtCache();
+        final AtomicInteger count = new AtomicInteger();
+        final RobotsTxtCache.Fetcher fetcher = url -> {
+            count.incrementAndGet();
+            return robotsTxtCache.createEntry(null, null, null);
+        };
+
+        assertNull(robotsTxtCache.get(ROBOTS_TXT_URL, fetcher));
+        assertNull(robotsTxtCache.get(ROBOTS_TXT_URL, fetcher));
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void test_get_notCached() {
+        final RobotsTxtCache robotsTxtCache = createRobotsTxtCache();
+        final AtomicInteger count = new AtomicInteger();
+
+        assertNull(robotsTxtCache.get(ROBOTS_TXT_URL, url -> {
+            count.incrementAndGet();
+            return null;
+        }));
+        try {
+            robotsTxtCache.get(ROBOTS_TXT_URL, url -> {
+                count.incrementAndGet();
+                throw new CrawlingAccessException("Could not process " + url);
+            });
+            fail();
+        } catch (final CrawlingAccessException e) {
+            assertEquals("Could not process " + ROBOTS_TXT_URL, e.getMessage());
+        }
+        assertEquals(2, count.get());
+        assertEquals(0, robotsTxtCache.getSize());
+    }
+
+    @Test
+    public void test_getTtl() {
+        final RobotsTxtCache robotsTxtCache = createRobotsTxtCache();
+        final long now = time.get();
+        assertEquals(24L * 60L * 60L * 1000L, robotsTxtCache.getTtl(null, null, now));
+        assertEquals(3600L * 1000L, robotsTxtCache.getTtl("public, max-age=3600", null, now));
+        assertEquals(7200L * 1000L, robotsTxtCache.getTtl("s-maxage=7200", "invalid", now));
+        // bounded by minTtl and maxTtl
+        assertEquals(10L * 60L * 1000L, robotsTxtCache.getTtl("no-cache", null, now));
+        assertEquals(10L * 60L * 1000L, robotsTxtCache.getTtl("max-age=1", null, now));
+        assertEquals(24L * 60L * 60L * 1000L, robotsTxtCache.getTtl("max-age=999999999", null, now));
+
+        final String expires =
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(now + 2L * 3600L * 1000L).atOffset(ZoneOffset.UTC));
+        assertEquals(2L * 3600L * 1000L, robotsTxtCache.getTtl(null, expires, now));
+        assertEquals(10L * 60L * 1000L, robotsTxtCache.getTtl(null, "0", now));
+    }
+
+    @Test
+    public void test_cacheDirectory() throws Exception {
+        final File cacheDirectory = Files.createTempDirectory("robotstxt").toFile();
+        try {
+            final RobotsTxtCache robotsTxtCache1 = createRobotsTxtCache();
+            robotsTxtCache1.setCacheDirectory(cacheDirectory);
+            robotsTxtCache1.get(ROBOTS_TXT_URL, url -> robotsTxtCache1.createEntry(CONTENT, null, null));
+            robotsTxtCache1.get("http://example.org/robots.txt", url -> robotsTxtCache1.createEntry(null, null, null));
+
+            // a new session reuses the stored entries
+            final RobotsTxtCache robotsTxtCache2 = createRobotsTxtCache();
+            robotsTxtCache2.setCacheDirectory(cacheDirectory);
+            final RobotsTxtCache.Fetcher fetcher = url -> {
+                throw new CrawlingAccessException("Unexpected fetch: " + url);
+            };
+            final RobotsTxt robotsTxt = robotsTxtCache2.get(ROBOTS_TXT_URL, fetcher);
+            assertFalse(robotsTxt.allows("/admin/", "Crawler"));
+            assertTrue(robotsTxt.allows("/index.html", "Crawler"));
+            assertNull(robotsTxtCache2.get("http://example.org/robots.txt", fetcher));
+            assertEquals(0L, robotsTxtCache2.getMissCount());
+
+            robotsTxtCache2.invalidate(ROBOTS_TXT_URL);
+            robotsTxtCache2.clear();
+            final AtomicInteger count = new AtomicInteger();
+            robotsTxtCache2.get(ROBOTS_TXT_URL, url -> {
+                count.incrementAndGet();
+                return robotsTxtCache2.createEntry(CONTENT, null, null);
+            });
+            assertEquals(1, count.get());
+
+            // expired entries are fetched again
+            time.addAndGet(24L * 60L * 60L * 1000L);
+            final RobotsTxtCache robotsTxtCache3 = createRobotsTxtCache();
+            robotsTxtCache3.setCacheDirectory(cacheDirectory);
+            assertNull(robotsTxtCache3.get("http://example.org/robots.txt", url -> null));
+            assertEquals(1L, robotsTxtCache3.getMissCount());
+        } finally {
+            FileUtils.deleteDirectory(cacheDirectory);
+        }
+    }
+
+    @Test
+    public void test_get_concurrent() throws Exception {
+        final RobotsTxtCache robotsTxtCache = createRobotsTxtCache();
+        final AtomicInteger count = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RobotsTxtCache.Fetcher fetcher = url -> {
+            count.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return robotsTxtCache.createEntry(CONTENT, null, null);
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            final List<Future<RobotsTxt>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(executor.submit(() -> robotsTxtCache.get(ROBOTS_TXT_URL, fetcher)));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200L);
+            release.countDown();
+            for (final Future<RobotsTxt> future : futures) {
+                assertFalse(future.get(10, TimeUnit.SECONDS).allows("/admin/", "Crawler"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, count.get());
+    }
+}
@@ -23,6 +23,7 @@ import org.codelibs.fess.crawler.entity.RequestData;
 import org.codelibs.fess.crawler.entity.ResponseData;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
 import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
 import org.codelibs.fess.crawler.log.LogType;
 import org.dbflute.utflute.core.PlainTestCase;
 import org.junit.jupiter.api.Test;
@@ -223,6 +224,17 @@ public class LogHelperImplTest extends PlainTestCase {
         logHelper.log(LogType.CRAWLING_EXCEPTION, null, urlQueue, e);
     }
 
+    @Test
+    public void test_log_retryLater() {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl("http://example.com/retry");
+        final RetryLaterException e =
+                new RetryLaterException("Test retry", new RuntimeException("Connection refused"), System.currentTimeMillis() + 1000L, 1);
+
+        // Should not throw exception
+        logHelper.log(LogType.RETRY_LATER, null, urlQueue, e);
+    }
+
     @Test
     public void test_log_noUrlInQueue_withUrl() {
         final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.interval.impl;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.codelibs.fess.crawler.entity.ResponseData;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.exception.CrawlingAccessException;
+import org.codelibs.fess.crawler.exception.RetryLaterException;
+import org.codelibs.fess.crawler.interval.IntervalController;
+import org.codelibs.fess.crawler.interval.impl.AdaptiveHostIntervalController.HostLimit;
+import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.service.impl.HostPartitionedUrlQueueServiceImpl;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+public class AdaptiveHostIntervalControllerTest extends PlainTestCase {
+
+    private static final String URL = "http://example.com/index.html";
+
+    private static AdaptiveHostIntervalController createController() {
+        final AdaptiveHostIntervalController controller = new AdaptiveHostIntervalController();
+        controller.delayMillisBeforeProcessing = 0L;
+        controller.delayMillisAfterProcessing = 0L;
+        controller.delayMillisForWaitingNewUrl = 0L;
+        controller.delayMillisAtNoUrlInQueue = 0L;
+        return controller;
+    }
+
+    private static ResponseData createResponseData(final int httpStatusCode, final long executionTime) {
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl(URL);
+        responseData.setHttpStatusCode(httpStatusCode);
+        responseData.setExecutionTime(executionTime);
+        return responseData;
+    }
+
+    private static void setUrl(final String url) {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl(url);
+        CrawlingParameterUtil.setUrlQueue(urlQueue);
+    }
+
+    @Override
+    protected void tearDown(final TestInfo testInfo) throws Exception {
+        CrawlingParameterUtil.setUrlQueue(null);
+        super.tearDown(testInfo);
+    }
+
+    @Test
+    public void test_increase() {
+        final AdaptiveHostIntervalController controller = createController();
+        controller.setInitialConcurrency(1);
+        controller.setMaxConcurrency(3);
+        for (int i = 0; i < 10; i++) {
+            controller.recordAccess(URL, createResponseData(200, 10L), null);
+        }
+        final HostLimit hostLimit = controller.getHostLimit(URL);
+        assertEquals("http://example.com", hostLimit.getHost());
+        assertEquals(3, hostLimit.getConcurrency());
+        assertEquals(0, hostLimit.getInFlight());
+        assertEquals(10L, hostLimit.getAccessCount());
+        assertEquals(10.0, hostLimit.getAverageResponseTime());
+        assertEquals(0.0, hostLimit.getErrorRate());
+    }
+
+    @Test
+    public void test_decrease() {
+        final AdaptiveHostIntervalController controller = createController();
+        controller.setInitialConcurrency(8);
+        controller.setBackoffIntervalMillis(500L);
+
+        controller.recordAccess(URL, createResponseData(503, 10L), null);
+        HostLimit hostLimit = controller.getHostLimit(URL);
+        assertEquals(4, hostLimit.getConcurrency());
+        assertEquals(500L, hostLimit.getIntervalMillis());
+        assertEquals(1L, hostLimit.getServiceUnavailableCount());
+        assertTrue(hostLimit.getErrorRate() > 0.0);
+        assertEquals(500L, controller.getIntervalMillis(URL));
+
+        // responses of the same burst are one congestion signal
+        controller.recordAccess(URL, createResponseData(429, 10L), null);
+        hostLimit = controller.getHostLimit(URL);
+        assertEquals(4, hostLimit.getConcurrency());
+        assertEquals(1L, hostLimit.getTooManyRequestsCount());
+
+        controller.recordAccess(URL, createResponseData(200, 10L), null);
+        assertEquals(400L, controller.getHostLimit(URL).getIntervalMillis());
+
+        // a slow response
+        controller.setSlowResponseMillis(100L);
+        sleep(300);
+        controller.recordAccess(URL, createResponseData(200, 1000L), null);
+        hostLimit = controller.getHostLimit(URL);
+        assertEquals(2, hostLimit.getConcurrency());
+        assertEquals(800L, hostLimit.getIntervalMillis());
+
+        // a failed access
+        sleep(350);
+        controller.recordAccess(URL, null, new CrawlingAccessException("Connection refused"));
+        hostLimit = controller.getHostLimit(URL);
+        assertEquals(1, hostLimit.getConcurrency());
+        assertEquals(1600L, hostLimit.getIntervalMillis());
+        assertEquals(5L, hostLimit.getAccessCount());
+
+        // other hosts are not affected
+        assertNull(controller.getHostLimit("http://example.org/"));
+        assertEquals(0L, controller.getIntervalMillis("http://example.org/"));
+    }
+
+    @Test
+    public void test_retryAfter() {
+        final AdaptiveHostIntervalController controller = createController();
+        final ResponseData responseData = createResponseData(429, 10L);
+        responseData.addMetaData("retry-after", "2");
+        controller.recordAccess(URL, responseData, null);
+        final long retryAfterTime = controller.getHostLimit(URL).getRetryAfterTime();
+        assertTrue(retryAfterTime > System.currentTimeMillis() + 1000L);
+
+        setUrl(URL);
+        final long time = System.currentTimeMillis();
+        controller.delay(IntervalController.PRE_PROCESSING);
+        assertTrue(System.currentTimeMillis() >= retryAfterTime);
+        assertTrue(System.currentTimeMillis() - time >= 1000L);
+        controller.delay(IntervalController.POST_PROCESSING);
+    }
+
+    @Test
+    public void test_parseRetryAfter() {
+        final AdaptiveHostIntervalController controller = createController();
+        assertEquals(120000L, controller.parseRetryAfter("120"));
+        assertEquals(0L, controller.parseRetryAfter("-1"));
+        assertEquals(0L, controller.parseRetryAfter("soon"));
+        assertEquals(0L, controller.parseRetryAfter(""));
+        final String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60));
+        final long millis = controller.parseRetryAfter(date);
+        assertTrue(millis > 50000L && millis <= 60000L);
+
+        controller.setMaxRetryAfterMillis(1000L);
+        final ResponseData responseData = createResponseData(503, 10L);
+        responseData.addMetaData("Retry-After", "120");
+        assertEquals(1000L, controller.getRetryAfterMillis(responseData));
+    }
+
+    @Test
+    public void test_concurrencySlot() throws Exception {
+        final AdaptiveHostIntervalController controller = createController();
+        controller.setInitialConcurrency(1);
+        setUrl(URL);
+        controller.delay(IntervalController.PRE_PROCESSING);
+        assertEquals(1, controller.getHostLimit(URL).getInFlight());
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean acquired = new AtomicBoolean(false);
+        final Thread thread = new Thread(() -> {
+            setUrl(URL);
+            started.countDown();
+            controller.delay(IntervalController.PRE_PROCESSING);
+            acquired.set(true);
+            controller.delay(IntervalController.POST_PROCESSING);
+        });
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        thread.join(200L);
+        assertFalse(acquired.get());
+
+        // recording the access returns the slot
+        controller.recordAccess(URL, createResponseData(200, 10L), null);
+        thread.join(10000L);
+        assertTrue(acquired.get());
+        controller.delay(IntervalController.POST_PROCESSING);
+        assertEquals(0, controller.getHostLimit(URL).getInFlight());
+    }
+
+    @Test
+    public void test_concurrencySlot_timeout() {
+        final AdaptiveHostIntervalController controller = createController();
+        controller.setInitialConcurrency(1);
+        controller.setMaxSlotWaitMillis(100L);
+        setUrl(URL);
+        controller.delay(IntervalController.PRE_PROCESSING);
+
+        final AtomicBoolean deferred = new AtomicBoolean(false);
+        final Thread thread = new Thread(() -> {
+            setUrl(URL);
+            try {
+                controller.delay(IntervalController.PRE_PROCESSING);
+            } catch (final RetryLaterException e) {
+                deferred.set(true);
+            }
+        });
+        thread.start();
+        try {
+            thread.join(10000L);
+        } catch (final InterruptedException e) {
+            fail();
+        }
+        // the URL is deferred instead of exceeding the concurrency
+        assertTrue(deferred.get());
+        assertEquals(1, controller.getHostLimit(URL).getInFlight());
+        controller.delay(IntervalController.POST_PROCESSING);
+        assertEquals(0, controller.getHostLimit(URL).getInFlight());
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void test_intervalKeptByUrlQueueService() {
+        final AdaptiveHostIntervalController controller = createController();
+        controller.setInitialConcurrency(2);
+        controller.setMinIntervalMillis(500L);
+        final HostPartitionedUrlQueueServiceImpl urlQueueService = new HostPartitionedUrlQueueServiceImpl();
+        CrawlingParameterUtil.setUrlQueueService((UrlQueueService) urlQueueService);
+        try {
+            setUrl(URL);
+            controller.delay(IntervalController.PRE_PROCESSING);
+            controller.delay(IntervalController.POST_PROCESSING);
+            assertEquals(500L, controller.getIntervalMillis(URL));
+
+            // the queue has waited for the interval when polling, so it is not waited for again
+            final long time = System.currentTimeMillis();
+            controller.delay(IntervalController.PRE_PROCESSING);
+            assertTrue(System.currentTimeMillis() - time < 300L);
+            assertEquals(1, controller.getHostLimit(URL).getInFlight());
+            controller.delay(IntervalController.POST_PROCESSING);
+        } finally {
+            CrawlingParameterUtil.setUrlQueueService(null);
+        }
+    }
+
+    @Test
+    public void test_getHostLimits() {
+        final AdaptiveHostIntervalController controller =
+                new AdaptiveHostIntervalController(Map.of("initialConcurrency", 4L, "maxConcurrency", 2L));
+        controller.recordAccess("https://b.example.com/", createResponseData(200, 10L), null);
+        controller.recordAccess("https://a.example.com:8443/", createResponseData(200, 10L), null);
+        controller.recordAccess("file:/tmp/a.txt", null, null);
+
+        final Map<String, HostLimit> hostLimits = controller.getHostLimits();
+        assertEquals(2, hostLimits.size());
+        assertEquals("https://a.example.com:8443", hostLimits.keySet().iterator().next());
+        assertEquals(2, hostLimits.get("https://b.example.com").getConcurrency());
+    }
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import org.codelibs.fess.crawler.CrawlerContext;
 import org.codelibs.fess.crawler.entity.UrlQueue;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
 import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
@@ -386,4 +387,51 @@ public class HostIntervalControllerTest extends PlainTestCase {
             // topic/2732: spaces and brackets cause URISyntaxException wrapped in CrawlerSystemException
         }
     }
+
+    /**
+     * Test that the Crawl-delay of robots.txt overrides the default interval of its host.
+     */
+    @Test
+    public void test_crawlDelay() {
+        final HostIntervalController controller = new HostIntervalController();
+        controller.delayMillisBeforeProcessing = 10L;
+        controller.setMaxCrawlDelayMillis(500L);
+
+        final CrawlerContext crawlerContext = new CrawlerContext();
+        crawlerContext.setCrawlDelay("http://example.com", 200L);
+        crawlerContext.setCrawlDelay("http://huge.example.com", 3600000L);
+        CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+        try {
+            assertEquals(200L, controller.getIntervalMillis("http://example.com/page1"));
+            assertEquals(10L, controller.getIntervalMillis("http://other.example.com/page1"));
+            assertEquals(500L, controller.getIntervalMillis("http://huge.example.com/"));
+            assertEquals(0L, controller.getIntervalMillis("file:/tmp/test.txt"));
+
+            final UrlQueue q = new UrlQueueImpl();
+            q.setUrl("http://example.com/page1");
+            CrawlingParameterUtil.setUrlQueue(q);
+            controller.delayBeforeProcessing();
+
+            q.setUrl("http://example.com/page2");
+            final long start = System.nanoTime();
+            controller.delayBeforeProcessing();
+            final long elapsed = (System.nanoTime() - start) / 1000000;
+            assertTrue(elapsed >= 190);
+        } finally {
+            CrawlingParameterUtil.setCrawlerContext(null);
+            CrawlingParameterUtil.setUrlQueue(null);
+        }
+    }
+
+    /**
+     * Test the parameters of the constructor.
+     */
+    @Test
+    public void test_constructorWithMaxCrawlDelay() {
+        final Map<String, Long> params = new HashMap<>();
+        params.put("maxCrawlDelayMillis", 1000L);
+        final HostIntervalController controller = new HostIntervalController(params);
+        assertEquals(1000L, controller.getMaxCrawlDelayMillis());
+        assertEquals(60000L, new HostIntervalController().getMaxCrawlDelayMillis());
+    }
 }
@@ -15,6 +15,9 @@
  */
 package org.codelibs.fess.crawler.service.impl;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -26,9 +29,12 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
 import org.codelibs.fess.crawler.container.StandardCrawlerContainer;
 import org.codelibs.fess.crawler.entity.AccessResult;
+import org.codelibs.fess.crawler.entity.AccessResultDataImpl;
 import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.StoredAccessResultData;
 import org.codelibs.fess.crawler.exception.CrawlerSystemException;
 import org.codelibs.fess.crawler.helper.MemoryDataHelper;
 import org.codelibs.fess.crawler.service.DataService;
@@ -53,6 +59,58 @@ public class DataServiceImplTest extends PlainTestCase {
         dataService = container.getComponent("dataService");
     }
 
+    @Test
+    public void test_store_contentStore() throws Exception {
+        final StandardCrawlerContainer container = new StandardCrawlerContainer().singleton("dataHelper", MemoryDataHelper.class)//
+                .singleton("dataService", DataServiceImpl.class);
+        final MemoryDataHelper dataHelper = container.getComponent("dataHelper");
+        final DataService<AccessResultImpl<Long>> service = container.getComponent("dataService");
+        final File directory = Files.createTempDirectory("content").toFile();
+        try {
+            dataHelper.setContentStoreEnabled(true);
+            dataHelper.setContentStoreDirectory(directory);
+
+            final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+            accessResult.setSessionId("id1");
+            accessResult.setUrl("http://www.id1.com/");
+            final AccessResultDataImpl<Long> accessResultData = new AccessResultDataImpl<>();
+            accessResultData.setTransformerName("fileTransformer");
+            accessResultData.setEncoding("UTF-8");
+            accessResultData.setData("body テスト".getBytes(StandardCharsets.UTF_8));
+            accessResult.setAccessResultData(accessResultData);
+            service.store(accessResult);
+
+            final AccessResultImpl<Long> stored = service.getAccessResult("id1", "http://www.id1.com/");
+            assertTrue(stored.getAccessResultData() instanceof StoredAccessResultData);
+            assertEquals("fileTransformer", stored.getAccessResultData().getTransformerName());
+            assertEquals(stored.getId(), stored.getAccessResultData().getId());
+            assertEquals("body テスト", stored.getAccessResultData().getDataAsString());
+            assertEquals(1, directory.list().length);
+
+            // a duplicate is rejected before its data is written
+            final long totalSize = dataHelper.getContentStore("id1").getTotalSize();
+            final AccessResultImpl<Long> duplicate = new AccessResultImpl<>();
+            duplicate.setSessionId("id1");
+            duplicate.setUrl("http://www.id1.com/");
+            final AccessResultDataImpl<Long> duplicateData = new AccessResultDataImpl<>();
+            duplicateData.setData("duplicate".getBytes(StandardCharsets.UTF_8));
+            duplicate.setAccessResultData(duplicateData);
+            try {
+                service.store(duplicate);
+                fail();
+            } catch (final CrawlerSystemException e) {
+                assertTrue(e.getMessage().contains("already exists"));
+            }
+            assertEquals(totalSize, dataHelper.getContentStore("id1").getTotalSize());
+            assertTrue(duplicate.getAccessResultData() == duplicateData);
+
+            service.delete("id1");
+            assertEquals(0, directory.list().length);
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
     @Test
     public void test_insert_deleteTx() {
         final AccessResult accessResult1 = new AccessResultImpl();
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.core.lang.ThreadUtil;
+import org.codelibs.fess.crawler.Constants;
+import org.codelibs.fess.crawler.CrawlerContext;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.codelibs.fess.crawler.helper.MemoryDataHelper;
+import org.codelibs.fess.crawler.interval.IntervalController;
+import org.codelibs.fess.crawler.interval.impl.HostIntervalController;
+import org.codelibs.fess.crawler.service.UrlQueueService;
+import org.codelibs.fess.crawler.util.CrawlingParameterUtil;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+/**
+ * Test class for {@link HostPartitionedUrlQueueServiceImpl}.
+ */
+public class HostPartitionedUrlQueueServiceImplTest extends PlainTestCase {
+
+    private HostPartitionedUrlQueueServiceImpl service;
+
+    private MemoryDataHelper dataHelper;
+
+    @Override
+    protected void setUp(final TestInfo testInfo) throws Exception {
+        super.setUp(testInfo);
+        dataHelper = new MemoryDataHelper();
+        service = new HostPartitionedUrlQueueServiceImpl();
+        service.dataHelper = dataHelper;
+    }
+
+    private static UrlQueueImpl<Long> create(final String sessionId, final String url) {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setSessionId(sessionId);
+        urlQueue.setUrl(url);
+        urlQueue.setMethod(Constants.GET_METHOD);
+        return urlQueue;
+    }
+
+    @Test
+    public void test_addAndPoll() {
+        service.add("s1", "http://example.com/");
+
+        assertTrue(dataHelper.getUrlInQueueSet("s1").contains("http://example.com/"));
+        final UrlQueueImpl<Long> urlQueue = service.poll("s1");
+        assertEquals("http://example.com/", urlQueue.getUrl());
+        assertEquals("s1", urlQueue.getSessionId());
+        assertEquals(Constants.GET_METHOD, urlQueue.getMethod());
+        assertEquals(Integer.valueOf(0), urlQueue.getDepth());
+        assertNotNull(urlQueue.getCreateTime());
+        assertFalse(dataHelper.getUrlInQueueSet("s1").contains("http://example.com/"));
+        assertNull(service.poll("s1"));
+    }
+
+    @Test
+    public void test_offerAll_dedup() {
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setUrl("http://example.com/done");
+        dataHelper.getAccessResultMap("s1").put(accessResult.getUrl(), accessResult);
+        service.add("s1", "http://example.com/queued");
+
+        final List<UrlQueueImpl<Long>> list = new ArrayList<>();
+        list.add(create("s1", "http://example.com/queued"));
+        list.add(create("s1", "http://example.com/done"));
+        list.add(create("s1", "http://example.com/new"));
+        list.add(create("s1", "http://example.com/new"));
+        list.add(create("s1", " "));
+        service.offerAll("s1", list);
+
+        assertEquals("http://example.com/queued", service.poll("s1").getUrl());
+        assertEquals("http://example.com/new", service.poll("s1").getUrl());
+        assertNull(service.poll("s1"));
+    }
+
+    @Test
+    public void test_offerAll_visitedUrlSet() {
+        dataHelper.setVisitedUrlSetEnabled(true);
+        dataHelper.setVisitedUrlExpectedInsertions(100L);
+        dataHelper.addVisitedUrl("s1", "http://example.com/done");
+        service.add("s1", "http://example.com/queued");
+
+        final List<UrlQueueImpl<Long>> list = new ArrayList<>();
+        list.add(create("s1", "http://example.com/queued"));
+        list.add(create("s1", "http://example.com/done"));
+        list.add(create("s1", "http://example.com/new"));
+        list.add(create("s1", "http://example.com/new"));
+        service.offerAll("s1", list);
+
+        final UrlQueueImpl<Long> polled = service.poll("s1");
+        assertEquals("http://example.com/queued", polled.getUrl());
+        assertEquals("http://example.com/new", service.poll("s1").getUrl());
+        assertNull(service.poll("s1"));
+
+        // a polled URL is not visited until its result is stored
+        assertFalse(service.visited(polled));
+        assertFalse(service.visited(create("s1", "http://example.com/other")));
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setUrl("http://example.com/done");
+        dataHelper.getAccessResultMap("s1").put(accessResult.getUrl(), accessResult);
+        assertTrue(service.visited(create("s1", "http://example.com/done")));
+
+        // a new link to the polled URL is a duplicate, but the polled URL queue can be offered again
+        service.offerAll("s1", List.of(create("s1", "http://example.com/queued")));
+        assertNull(service.poll("s1"));
+        service.offerAll("s1", List.of(polled));
+        assertTrue(polled == service.poll("s1"));
+        assertTrue(dataHelper.getInFlightUrlQueueMap("s1").containsKey("http://example.com/queued"));
+        service.finish(polled);
+        assertFalse(dataHelper.getInFlightUrlQueueMap("s1").containsKey("http://example.com/queued"));
+    }
+
+    @Test
+    public void test_visited() {
+        service.add("s1", "http://example.com/queued");
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setUrl("http://example.com/done");
+        dataHelper.getAccessResultMap("s1").put(accessResult.getUrl(), accessResult);
+
+        assertTrue(service.visited(create("s1", "http://example.com/queued")));
+        assertTrue(service.visited(create("s1", "http://example.com/done")));
+        assertTrue(service.visited(create("s1", "")));
+        assertFalse(service.visited(create("s1", "http://example.com/new")));
+    }
+
+    @Test
+    public void test_updateSessionId() {
+        service.add("old", "http://example.com/1");
+        service.add("old", "http://example.org/2");
+
+        service.updateSessionId("old", "new");
+
+        assertNull(service.poll("old"));
+        final UrlQueueImpl<Long> first = service.poll("new");
+        final UrlQueueImpl<Long> second = service.poll("new");
+        assertEquals("new", first.getSessionId());
+        assertEquals("new", second.getSessionId());
+        assertNull(service.poll("new"));
+    }
+
+    @Test
+    public void test_deleteAndDeleteAll() {
+        service.add("s1", "http://example.com/1");
+        service.add("s2", "http://example.com/2");
+
+        service.delete("s1");
+        assertNull(service.poll("s1"));
+        assertFalse(dataHelper.getUrlInQueueSet("s1").contains("http://example.com/1"));
+        assertNotNull(service.poll("s2"));
+
+        service.add("s2", "http://example.com/3");
+        service.deleteAll();
+        assertNull(service.poll("s2"));
+    }
+
+    @Test
+    public void test_generateUrlQueues() {
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setUrl("http://example.com/1");
+        accessResult.setMethod(Constants.GET_METHOD);
+        accessResult.setParentUrl("http://example.com/");
+        accessResult.setLastModified(123L);
+        dataHelper.getAccessResultMap("prev").put(accessResult.getUrl(), accessResult);
+
+        service.generateUrlQueues("prev", "s1");
+
+        final UrlQueueImpl<Long> urlQueue = service.poll("s1");
+        assertEquals("http://example.com/1", urlQueue.getUrl());
+        assertEquals("s1", urlQueue.getSessionId());
+        assertEquals("http://example.com/", urlQueue.getParentUrl());
+        assertEquals(Long.valueOf(123L), urlQueue.getLastModified());
+        assertEquals(Integer.valueOf(0), urlQueue.getDepth());
+    }
+
+    @Test
+    public void test_poll_crawlDelay() {
+        final CrawlerContext crawlerContext = new CrawlerContext();
+        final HostIntervalController intervalController = new HostIntervalController();
+        crawlerContext.setIntervalController(intervalController);
+        crawlerContext.setCrawlDelay("http://slow.example.com", 300L);
+        CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+        try {
+            service.add("s1", "http://slow.example.com/1");
+            service.add("s1", "http://slow.example.com/2");
+            service.add("s1", "http://fast.example.com/1");
+
+            assertEquals("http://slow.example.com/1", service.poll("s1").getUrl());
+            // another host is returned instead of waiting for the slow host
+            final long start = System.currentTimeMillis();
+            assertEquals("http://fast.example.com/1", service.poll("s1").getUrl());
+            assertTrue(System.currentTimeMillis() - start < 200L);
+            // only the slow host is left, so poll returns null without waiting for its crawl delay
+            assertNull(service.poll("s1"));
+            assertTrue(System.currentTimeMillis() - start < 200L);
+            final long waitMillis = service.getWaitMillis("s1");
+            assertTrue(waitMillis > 0L && waitMillis <= 300L);
+            ThreadUtil.sleep(waitMillis);
+            assertEquals(0L, service.getWaitMillis("s1"));
+            assertEquals("http://slow.example.com/2", service.poll("s1").getUrl());
+            assertNull(service.poll("s1"));
+            assertEquals(-1L, service.getWaitMillis("s1"));
+        } finally {
+            CrawlingParameterUtil.setCrawlerContext(null);
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void test_poll_crawlDelay_notDelayedTwice() {
+        final CrawlerContext crawlerContext = new CrawlerContext();
+        final HostIntervalController intervalController = new HostIntervalController();
+        intervalController.setDelayMillisAfterProcessing(0L);
+        crawlerContext.setIntervalController(intervalController);
+        crawlerContext.setCrawlDelay("http://slow.example.com", 300L);
+        CrawlingParameterUtil.setCrawlerContext(crawlerContext);
+        CrawlingParameterUtil.setUrlQueueService((UrlQueueService) service);
+        try {
+            assertTrue(service.isHostIntervalKept());
+            service.add("s1", "http://slow.example.com/1");
+            service.add("s1", "http://slow.example.com/2");
+
+            final long start = System.currentTimeMillis();
+            CrawlingParameterUtil.setUrlQueue(service.poll("s1"));
+            intervalController.delay(IntervalController.PRE_PROCESSING);
+            // the caller waits for the crawl delay
+            assertNull(service.poll("s1"));
+            ThreadUtil.sleep(service.getWaitMillis("s1"));
+            CrawlingParameterUtil.setUrlQueue(service.poll("s1"));
+            final long polled = System.currentTimeMillis();
+            assertTrue(polled - start >= 250L);
+            // and the interval controller does not wait for it again
+            intervalController.delay(IntervalController.PRE_PROCESSING);
+            assertTrue(System.currentTimeMillis() - polled < 200L);
+        } finally {
+            CrawlingParameterUtil.setUrlQueue(null);
+            CrawlingParameterUtil.setUrlQueueService(null);
+            CrawlingParameterUtil.setCrawlerContext(null);
+        }
+    }
+}
@@ -18,6 +18,8 @@ package org.codelibs.fess.crawler.service.impl;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,6 +29,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.codelibs.fess.crawler.Constants;
 import org.codelibs.fess.crawler.entity.AccessResultImpl;
 import org.codelibs.fess.crawler.entity.UrlQueueImpl;
@@ -383,6 +386,39 @@ public class UrlQueueServiceImplTest extends PlainTestCase {
         assertFalse(result);
     }
 
+    @Test
+    public void test_visited_visitedUrlSet() {
+        final MemoryDataHelper memoryDataHelper = new MemoryDataHelper();
+        memoryDataHelper.setVisitedUrlSetEnabled(true);
+        memoryDataHelper.setVisitedUrlExpectedInsertions(100L);
+        final UrlQueueServiceImpl urlQueueService = new UrlQueueServiceImpl();
+        urlQueueService.dataHelper = memoryDataHelper;
+        String sessionId = "session123";
+        urlQueueService.add(sessionId, "https://example.com/");
+
+        // a polled URL is not visited until its result is stored
+        UrlQueueImpl<Long> polled = urlQueueService.poll(sessionId);
+        assertFalse(urlQueueService.visited(polled));
+        AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setUrl("https://example.com/");
+        memoryDataHelper.getAccessResultMap(sessionId).put(accessResult.getUrl(), accessResult);
+        assertTrue(urlQueueService.visited(polled));
+
+        // a canceled URL queue can be offered again, but a new link to a polled URL cannot
+        urlQueueService.add(sessionId, "https://example.com/canceled");
+        UrlQueueImpl<Long> canceled = urlQueueService.poll(sessionId);
+        UrlQueueImpl<Long> link = new UrlQueueImpl<>();
+        link.setSessionId(sessionId);
+        link.setUrl("https://example.com/canceled");
+        urlQueueService.offerAll(sessionId, List.of(link));
+        assertNull(urlQueueService.poll(sessionId));
+        urlQueueService.offerAll(sessionId, List.of(canceled));
+        assertTrue(canceled == urlQueueService.poll(sessionId));
+        urlQueueService.finish(canceled);
+        urlQueueService.finish(polled);
+        assertTrue(memoryDataHelper.getInFlightUrlQueueMap(sessionId).isEmpty());
+    }
+
     @Test
     public void test_saveSession() {
         // Execute - should be a no-op
@@ -391,6 +427,42 @@ public class UrlQueueServiceImplTest extends PlainTestCase {
         // No verification needed as it's a no-op method
     }
 
+    @Test
+    public void test_saveSession_inFlight() throws Exception {
+        final File checkpointDirectory = Files.createTempDirectory("checkpoint").toFile();
+        try {
+            final MemoryDataHelper memoryDataHelper = new MemoryDataHelper();
+            memoryDataHelper.setCheckpointDirectory(checkpointDirectory);
+            final UrlQueueServiceImpl urlQueueService = new UrlQueueServiceImpl();
+            urlQueueService.dataHelper = memoryDataHelper;
+            String sessionId = "session123";
+            urlQueueService.add(sessionId, "https://example.com/done");
+            urlQueueService.add(sessionId, "https://example.com/polled");
+            urlQueueService.add(sessionId, "https://example.com/queued");
+            UrlQueueImpl<Long> done = urlQueueService.poll(sessionId);
+            AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+            accessResult.setSessionId(sessionId);
+            accessResult.setUrl(done.getUrl());
+            memoryDataHelper.getAccessResultMap(sessionId).put(accessResult.getUrl(), accessResult);
+            memoryDataHelper.addCheckpointResult(accessResult);
+            // polled, but not finished yet
+            urlQueueService.poll(sessionId);
+            urlQueueService.saveSession(sessionId);
+
+            // a new JVM
+            final MemoryDataHelper newDataHelper = new MemoryDataHelper();
+            newDataHelper.setCheckpointDirectory(checkpointDirectory);
+            final UrlQueueServiceImpl newUrlQueueService = new UrlQueueServiceImpl();
+            newUrlQueueService.dataHelper = newDataHelper;
+            assertTrue(newUrlQueueService.restoreSession(sessionId));
+            assertEquals("https://example.com/polled", newUrlQueueService.poll(sessionId).getUrl());
+            assertEquals("https://example.com/queued", newUrlQueueService.poll(sessionId).getUrl());
+            assertNull(newUrlQueueService.poll(sessionId));
+        } finally {
+            FileUtils.deleteDirectory(checkpointDirectory);
+        }
+    }
+
     @Test
     public void test_generateUrlQueues() {
         // Setup
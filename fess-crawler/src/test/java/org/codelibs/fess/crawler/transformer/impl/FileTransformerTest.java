@@ -234,6 +234,23 @@ public class FileTransformerTest extends PlainTestCase {
         assertFalse(new File(nominalFile.getParentFile(), nominalFile.getName() + "_0").exists());
     }
 
+    @Test
+    public void test_transform_streaming() throws Exception {
+        setBaseDir();
+        fileTransformer.setStreaming(true);
+
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://example.com/dir/streaming.txt");
+        responseData.setResponseBody("streaming".getBytes("UTF-8"));
+        responseData.setMimeType("text/plain");
+        final ResultData resultData = fileTransformer.transform(responseData);
+
+        // the file path is stored, not the response body
+        final File file = new File(fileTransformer.baseDir, new String(resultData.getData(), resultData.getEncoding()));
+        assertTrue(file.exists());
+        assertEquals("streaming", new String(FileUtil.readBytes(file), "UTF-8"));
+    }
+
     @Test
     public void test_storeData_copyFailure_removesReservedFile() throws Exception {
         setBaseDir();
@@ -15,10 +15,13 @@
  */
 package org.codelibs.fess.crawler.transformer.impl;
 
+import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.codelibs.fess.crawler.Constants;
@@ -682,6 +685,124 @@ public class HtmlTransformerTest extends PlainTestCase {
         assertEquals("http://hoge/child.html", resultData.getChildUrlSet().iterator().next().getUrl());
     }
 
+    // -----------------------------------------------------
+    //                                             streaming
+    //                                             ---------
+    @Test
+    public void test_transform_streaming() throws Exception {
+        // The single-pass mode must find the same child URLs in the same order as the DOM mode.
+        final String content = "<html><head><title>test</title>"//
+                + "<link rel=\"stylesheet\" href=\"/css/main.css\">"//
+                + "<script src=\"js/app.js\"></script>"//
+                + "</head><body>"//
+                + "<a href=\"a.html\">a</a>"//
+                + "<A HREF=\"../b.html?x=1#top\">b</A>"//
+                + "<a href=\"javascript:void(0)\">js</a>"//
+                + "<a name=\"anchor\">no href</a>"//
+                + "<img src=\"img/logo.png\">"//
+                + "<map><area href=\"area.html\"></map>"//
+                + "<iframe src=\"frame.html\"></iframe>"//
+                + "<base href=\"http://hoge/base/\">"//
+                + "<base href=\"http://hoge/ignored/\">"//
+                + "<a href=\"http://fuga/other.html\">other</a>"//
+                + "<a href=\"?q=search\">query</a>"//
+                + "</body></html>";
+
+        final ResultData expected = transform(content, false);
+        final ResultData actual = transform(content, true);
+
+        final List<String> expectedUrls = expected.getChildUrlSet().stream().map(RequestData::getUrl).collect(Collectors.toList());
+        final List<String> actualUrls = actual.getChildUrlSet().stream().map(RequestData::getUrl).collect(Collectors.toList());
+        assertEquals(9, expectedUrls.size());
+        assertTrue(expectedUrls.contains("http://hoge/base/a.html"));
+        assertEquals(expectedUrls, actualUrls);
+        assertEquals(content, new String(actual.getData(), actual.getEncoding()));
+        assertEquals(expected.getEncoding(), actual.getEncoding());
+        assertEquals(expected.getTransformerName(), actual.getTransformerName());
+    }
+
+    @Test
+    public void test_transform_streaming_charsetInMetaTag() throws Exception {
+        final String content = "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=Shift_JIS\">"
+                + "</head><body><p>こんにちは</p><a href=\"child.html\">link</a></body></html>";
+        htmlTransformer.setStreaming(true);
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://hoge/dir/test.html");
+        responseData.setResponseBody(content.getBytes("Shift_JIS"));
+        responseData.setMimeType("text/html");
+        final ResultData resultData = htmlTransformer.transform(responseData);
+        assertEquals("Shift_JIS", responseData.getCharSet());
+        assertEquals("Shift_JIS", resultData.getEncoding());
+        assertEquals(content, new String(resultData.getData(), resultData.getEncoding()));
+        assertEquals(transform(content.getBytes("Shift_JIS"), false).getChildUrlSet(), resultData.getChildUrlSet());
+    }
+
+    @Test
+    public void test_transform_streaming_readOnce() {
+        final AtomicInteger count = new AtomicInteger();
+        final ResponseData responseData = new ResponseData() {
+            @Override
+            public InputStream getResponseBody() {
+                count.incrementAndGet();
+                return super.getResponseBody();
+            }
+        };
+        responseData.setUrl("http://hoge/test.html");
+        responseData.setResponseBody("<a href=\"test2.html\">test</a>".getBytes());
+        responseData.setMimeType("text/html");
+
+        htmlTransformer.setStreaming(true);
+        final ResultData resultData = htmlTransformer.transform(responseData);
+        assertEquals(1, count.get());
+        assertEquals(1, resultData.getChildUrlSet().size());
+        assertEquals("http://hoge/test2.html", resultData.getChildUrlSet().iterator().next().getUrl());
+
+        count.set(0);
+        htmlTransformer.setStreaming(false);
+        htmlTransformer.transform(responseData);
+        assertEquals(3, count.get());
+    }
+
+    @Test
+    public void test_transform_streaming_xpathRule() throws Exception {
+        // A rule which is not a plain tag name falls back to the DOM and XPath.
+        htmlTransformer.getChildUrlRuleMap().put("//DIV[@class='nav']/A", "href");
+        final String content = "<html><body><div class=\"nav\"><a href=\"nav.html\">nav</a></div>"//
+                + "<a href=\"body.html\">body</a></body></html>";
+
+        final ResultData expected = transform(content, false);
+        final ResultData actual = transform(content, true);
+        final List<String> actualUrls = actual.getChildUrlSet().stream().map(RequestData::getUrl).collect(Collectors.toList());
+        assertEquals(2, actualUrls.size());
+        assertEquals(expected.getChildUrlSet().stream().map(RequestData::getUrl).collect(Collectors.toList()), actualUrls);
+    }
+
+    @Test
+    public void test_transform_streaming_noFollow() {
+        htmlTransformer.setStreaming(true);
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://hoge/test.html");
+        responseData.setResponseBody("<a href=\"test2.html\">test</a>".getBytes());
+        responseData.setMimeType("text/html");
+        responseData.setNoFollow(true);
+        final ResultData resultData = htmlTransformer.transform(responseData);
+        assertEquals(0, resultData.getChildUrlSet().size());
+        assertEquals("<a href=\"test2.html\">test</a>", new String(resultData.getData()));
+    }
+
+    private ResultData transform(final String content, final boolean streaming) {
+        return transform(content.getBytes(StandardCharsets.UTF_8), streaming);
+    }
+
+    private ResultData transform(final byte[] data, final boolean streaming) {
+        htmlTransformer.setStreaming(streaming);
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://hoge/dir/test.html");
+        responseData.setResponseBody(data);
+        responseData.setMimeType("text/html");
+        return htmlTransformer.transform(responseData);
+    }
+
     // -----------------------------------------------------
     //                                           getBaseHref
     //                                           -----------
@@ -137,6 +137,22 @@ public class XpathTransformerTest extends PlainTestCase {
         assertEquals(result, new String(resultData.getData(), Constants.UTF_8));
     }
 
+    @Test
+    public void test_transform_streaming() throws Exception {
+        final ResponseData responseData = new ResponseData();
+        responseData.setUrl("http://hoge/test1.html");
+        responseData.setResponseBody(ResourceUtil.getResourceAsFile("html/test1.html"), false);
+        responseData.setCharSet(Constants.UTF_8);
+        final String expected = new String(xpathTransformer.transform(responseData).getData(), Constants.UTF_8);
+        assertTrue(expected.startsWith("<?xml"));
+
+        // the single-pass mode stores the XPath output, not the raw HTML
+        xpathTransformer.setStreaming(true);
+        final ResultData resultData = xpathTransformer.transform(responseData);
+        assertEquals(expected, new String(resultData.getData(), Constants.UTF_8));
+        assertEquals(Constants.UTF_8, resultData.getEncoding());
+    }
+
     @Test
     public void test_getData() throws Exception {
         final String value = "<?xml version=\"1.0\"?>\n"//
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.codelibs.fess.crawler.entity.AccessResultDataImpl;
+import org.codelibs.fess.crawler.entity.AccessResultImpl;
+import org.codelibs.fess.crawler.entity.StoredAccessResultData;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+public class CheckpointLogTest extends PlainTestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp(final TestInfo testInfo) throws Exception {
+        super.setUp(testInfo);
+        directory = Files.createTempDirectory("checkpoint").toFile();
+    }
+
+    @Override
+    protected void tearDown(final TestInfo testInfo) throws Exception {
+        FileUtils.deleteDirectory(directory);
+        super.tearDown(testInfo);
+    }
+
+    private static AccessResultImpl<Long> createAccessResult(final String url, final String content) {
+        final AccessResultImpl<Long> accessResult = new AccessResultImpl<>();
+        accessResult.setId(1L);
+        accessResult.setSessionId("s1");
+        accessResult.setUrl(url);
+        accessResult.setMethod("GET");
+        accessResult.setHttpStatusCode(200);
+        accessResult.setMimeType("text/html");
+        accessResult.setContentLength((long) content.length());
+        final AccessResultDataImpl<Long> accessResultData = new AccessResultDataImpl<>();
+        accessResultData.setId(1L);
+        accessResultData.setTransformerName("fileTransformer");
+        accessResultData.setEncoding("UTF-8");
+        accessResultData.setData(content.getBytes(StandardCharsets.UTF_8));
+        accessResult.setAccessResultData(accessResultData);
+        return accessResult;
+    }
+
+    private static List<UrlQueueImpl<Long>> createUrlQueues(final String... urls) {
+        final List<UrlQueueImpl<Long>> list = new ArrayList<>();
+        for (final String url : urls) {
+            final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+            urlQueue.setSessionId("s1");
+            urlQueue.setUrl(url);
+            urlQueue.setDepth(1);
+            list.add(urlQueue);
+        }
+        return list;
+    }
+
+    private static Map<String, AccessResultImpl<Long>> replayAccessResults(final CheckpointLog checkpointLog) throws Exception {
+        final Map<String, AccessResultImpl<Long>> accessResultMap = new LinkedHashMap<>();
+        checkpointLog.replay(accessResult -> accessResultMap.put(accessResult.getUrl(), accessResult), null);
+        return accessResultMap;
+    }
+
+    private static List<String> replayUrls(final CheckpointLog checkpointLog) throws Exception {
+        final List<String> urlList = new ArrayList<>();
+        checkpointLog.replay(null, urlQueue -> urlList.add(urlQueue.getUrl()));
+        return urlList;
+    }
+
+    @Test
+    public void test_appendAndReplay() throws Exception {
+        final CheckpointLog checkpointLog = new CheckpointLog(new File(directory, "s1/s1.log"));
+        assertFalse(checkpointLog.exists());
+        assertEquals(0, checkpointLog.replay(null, null));
+
+        checkpointLog.append(List.of(createAccessResult("http://example.com/", "a")), createUrlQueues("http://example.com/1"));
+        checkpointLog.append(List.of(createAccessResult("http://example.com/1", "b"), createAccessResult("http://example.com/", "c")),
+                createUrlQueues("http://example.com/2", "http://example.com/3"));
+        assertEquals(2, checkpointLog.getCheckpointCount());
+
+        final CheckpointLog newCheckpointLog = new CheckpointLog(checkpointLog.getFile());
+        assertEquals(2, newCheckpointLog.replay(null, null));
+        final Map<String, AccessResultImpl<Long>> accessResultMap = replayAccessResults(newCheckpointLog);
+        assertEquals(2, accessResultMap.size());
+        final AccessResultImpl<Long> accessResult = accessResultMap.get("http://example.com/");
+        assertEquals("c", new String(accessResult.getAccessResultData().getData(), StandardCharsets.UTF_8));
+        assertEquals("fileTransformer", accessResult.getAccessResultData().getTransformerName());
+        assertEquals(Integer.valueOf(200), accessResult.getHttpStatusCode());
+        assertEquals("text/html", accessResult.getMimeType());
+        assertNull(accessResult.getParentUrl());
+        // the queue changes of all checkpoints
+        assertEquals(List.of("http://example.com/1", "http://example.com/2", "http://example.com/3"), replayUrls(newCheckpointLog));
+
+        assertTrue(checkpointLog.delete());
+        assertFalse(checkpointLog.exists());
+    }
+
+    @Test
+    public void test_incompleteCheckpoint() throws Exception {
+        final File file = new File(directory, "s1.log");
+        final CheckpointLog checkpointLog = new CheckpointLog(file);
+        checkpointLog.append(List.of(createAccessResult("http://example.com/", "a")), createUrlQueues("http://example.com/1"));
+        final long validLength = file.length();
+        checkpointLog.append(List.of(createAccessResult("http://example.com/1", "b")), createUrlQueues("http://example.com/2"));
+
+        // cut off the second checkpoint as if the JVM crashed while writing it
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 5);
+        }
+        assertEquals(1, new CheckpointLog(file).replay(null, null));
+        assertEquals(1, replayAccessResults(new CheckpointLog(file)).size());
+        assertEquals(List.of("http://example.com/1"), replayUrls(new CheckpointLog(file)));
+
+        // the next checkpoint drops the incomplete one
+        final CheckpointLog checkpointLog2 = new CheckpointLog(file);
+        checkpointLog2.append(List.of(createAccessResult("http://example.com/1", "b")), createUrlQueues("http://example.com/3"));
+        assertEquals(2, checkpointLog2.getCheckpointCount());
+        assertTrue(file.length() > validLength);
+        assertEquals(2, new CheckpointLog(file).replay(null, null));
+        assertEquals(2, replayAccessResults(new CheckpointLog(file)).size());
+        assertEquals(List.of("http://example.com/1", "http://example.com/3"), replayUrls(new CheckpointLog(file)));
+    }
+
+    @Test
+    public void test_rewrite() throws Exception {
+        final File file = new File(directory, "s1.log");
+        final CheckpointLog checkpointLog = new CheckpointLog(file);
+        for (int i = 0; i < 5; i++) {
+            checkpointLog.append(List.of(createAccessResult("http://example.com/" + i, "x")), createUrlQueues("http://example.com/q" + i));
+        }
+        final List<AccessResultImpl<Long>> accessResults = new ArrayList<>(replayAccessResults(checkpointLog).values());
+        final long length = file.length();
+        checkpointLog.rewrite(accessResults, urlQueue -> !urlQueue.getUrl().endsWith("q0"), createUrlQueues("http://example.com/q5"));
+        assertEquals(1, checkpointLog.getCheckpointCount());
+        assertTrue(file.length() < length);
+        assertFalse(new File(directory, "s1.log.tmp").exists());
+
+        assertEquals(1, new CheckpointLog(file).replay(null, null));
+        assertEquals(5, replayAccessResults(new CheckpointLog(file)).size());
+        assertEquals(List.of("http://example.com/q1", "http://example.com/q2", "http://example.com/q3", "http://example.com/q4",
+                "http://example.com/q5"), replayUrls(new CheckpointLog(file)));
+    }
+
+    @Test
+    public void test_contentStore() throws Exception {
+        final File contentDirectory = new File(directory, "s1.content");
+        final ContentSegmentStore contentStore = new ContentSegmentStore(contentDirectory, 1024);
+        final AccessResultImpl<Long> accessResult = createAccessResult("http://example.com/", "");
+        final byte[] body = new byte[512];
+        Arrays.fill(body, (byte) 'a');
+        accessResult.setAccessResultData(StoredAccessResultData.copyOf(accessResult.getAccessResultData(), contentStore));
+        accessResult.getAccessResultData().setData(body);
+        final File file = new File(directory, "s1.log");
+        new CheckpointLog(file, contentStore).append(List.of(accessResult), createUrlQueues());
+        contentStore.force();
+        // the body is referred to, not copied
+        assertTrue(file.length() < body.length);
+        contentStore.closeChannels();
+
+        // a new JVM
+        final ContentSegmentStore newContentStore = new ContentSegmentStore(contentDirectory, 1024);
+        try {
+            assertEquals(1, newContentStore.getSegmentCount());
+            final AccessResultImpl<Long> restored = replayAccessResults(new CheckpointLog(file, newContentStore)).get("http://example.com/");
+            assertTrue(restored.getAccessResultData() instanceof StoredAccessResultData);
+            assertEquals("fileTransformer", restored.getAccessResultData().getTransformerName());
+            assertTrue(Arrays.equals(body, restored.getAccessResultData().getData()));
+            try {
+                replayAccessResults(new CheckpointLog(file));
+                fail();
+            } catch (final IOException e) {
+                // the data is in a content store
+            }
+        } finally {
+            newContentStore.close();
+        }
+        assertFalse(contentDirectory.exists());
+    }
+}
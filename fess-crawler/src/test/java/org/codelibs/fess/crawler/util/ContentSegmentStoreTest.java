@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.codelibs.fess.crawler.exception.CrawlerSystemException;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+public class ContentSegmentStoreTest extends PlainTestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp(final TestInfo testInfo) throws Exception {
+        super.setUp(testInfo);
+        directory = new File(Files.createTempDirectory("content").toFile(), "store");
+    }
+
+    @Override
+    protected void tearDown(final TestInfo testInfo) throws Exception {
+        FileUtils.deleteDirectory(directory.getParentFile());
+        super.tearDown(testInfo);
+    }
+
+    @Test
+    public void test_writeAndRead() {
+        final ContentSegmentStore contentStore = new ContentSegmentStore(directory, 100L);
+        final List<Long> addressList = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            addressList.add(contentStore.write(("content " + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        // a body larger than a segment gets a segment of its own
+        final byte[] large = new byte[300];
+        large[299] = 1;
+        final long largeAddress = contentStore.write(large);
+        final long emptyAddress = contentStore.write(new byte[0]);
+
+        for (int i = 0; i < 20; i++) {
+            final String content = "content " + i;
+            assertEquals(content, new String(contentStore.read(addressList.get(i), content.length()), StandardCharsets.UTF_8));
+        }
+        assertEquals((byte) 1, contentStore.read(largeAddress, 300)[299]);
+        assertEquals(0, contentStore.read(emptyAddress, 0).length);
+        assertTrue(contentStore.getSegmentCount() > 2);
+        assertEquals(directory.list().length, contentStore.getSegmentCount());
+
+        contentStore.close();
+        assertFalse(directory.exists());
+        try {
+            contentStore.read(addressList.get(0), 9);
+            fail();
+        } catch (final CrawlerSystemException e) {
+            assertTrue(e.getMessage().startsWith("ContentSegmentStore is closed"));
+        }
+    }
+
+    @Test
+    public void test_concurrent() throws Exception {
+        final ContentSegmentStore contentStore = new ContentSegmentStore(directory, 4096L);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        final byte[] data = ("thread " + thread + " content " + i).getBytes(StandardCharsets.UTF_8);
+                        final long address = contentStore.write(data);
+                        if (!new String(contentStore.read(address, data.length), StandardCharsets.UTF_8)
+                                .equals("thread " + thread + " content " + i)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+            contentStore.close();
+        }
+    }
+}
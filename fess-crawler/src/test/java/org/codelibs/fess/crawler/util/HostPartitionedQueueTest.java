@@ -0,0 +1,227 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link HostPartitionedQueue}.
+ */
+public class HostPartitionedQueueTest extends PlainTestCase {
+
+    private static UrlQueueImpl<Long> create(final String url) {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setUrl(url);
+        return urlQueue;
+    }
+
+    @Test
+    public void test_offerAndPoll_roundRobin() {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+
+        queue.offer(create("http://a.example.com/1"));
+        queue.offer(create("http://a.example.com/2"));
+        queue.offer(create("http://a.example.com/3"));
+        queue.offer(create("http://b.example.com/1"));
+        queue.offer(create("http://b.example.com/2"));
+
+        assertEquals(5, queue.size());
+        assertEquals(2, queue.getHostCount());
+        assertEquals("http://a.example.com/1", queue.peek().getUrl());
+
+        assertEquals("http://a.example.com/1", queue.poll().getUrl());
+        assertEquals("http://b.example.com/1", queue.poll().getUrl());
+        assertEquals("http://a.example.com/2", queue.poll().getUrl());
+        assertEquals("http://b.example.com/2", queue.poll().getUrl());
+        assertEquals("http://a.example.com/3", queue.poll().getUrl());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+
+        // a drained host becomes ready again
+        queue.offer(create("http://b.example.com/3"));
+        assertEquals("http://b.example.com/3", queue.poll().getUrl());
+    }
+
+    @Test
+    public void test_iteratorAndClear() {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        queue.offer(create("http://a.example.com/1"));
+        queue.offer(create("http://b.example.com/1"));
+        queue.offer(create("http://a.example.com/2"));
+
+        final List<String> urls = new ArrayList<>();
+        for (final UrlQueueImpl<Long> urlQueue : queue) {
+            urls.add(urlQueue.getUrl());
+        }
+        assertEquals(3, urls.size());
+        assertTrue(urls.contains("http://a.example.com/1"));
+        assertTrue(urls.contains("http://a.example.com/2"));
+        assertTrue(urls.contains("http://b.example.com/1"));
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void test_remove() {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        final UrlQueueImpl<Long> a1 = create("http://a.example.com/1");
+        queue.offer(a1);
+        queue.offer(create("http://b.example.com/1"));
+        queue.offer(create("http://a.example.com/2"));
+
+        assertTrue(queue.remove(a1));
+        assertFalse(queue.remove(create("http://c.example.com/1")));
+        assertEquals(2, queue.size());
+
+        final Iterator<UrlQueueImpl<Long>> iterator = queue.iterator();
+        try {
+            iterator.remove();
+            fail();
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        while (iterator.hasNext()) {
+            if ("http://b.example.com/1".equals(iterator.next().getUrl())) {
+                iterator.remove();
+            }
+        }
+        assertEquals(1, queue.size());
+        assertEquals("http://a.example.com/2", queue.poll().getUrl());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void test_pruneDrainedHosts() {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        for (int i = 0; i < 100; i++) {
+            queue.offer(create("http://host" + i + ".example.com/"));
+        }
+        assertEquals(100, queue.getHostCount());
+        while (queue.poll() != null) {
+            // drain
+        }
+        assertEquals(0, queue.getHostCount());
+
+        // a host in its interval is kept
+        queue.offer(create("http://slow.example.com/1"));
+        assertEquals("http://slow.example.com/1", queue.poll(host -> 60000L).getUrl());
+        assertNull(queue.poll(host -> 60000L));
+        assertEquals(1, queue.getHostCount());
+        queue.offer(create("http://slow.example.com/2"));
+        assertNull(queue.poll(host -> 60000L));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void test_offerNull() {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        try {
+            queue.offer(null);
+            fail();
+        } catch (final NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_concurrentOfferAndPoll() throws Exception {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        final int threadCount = 8;
+        final int perThread = 2000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount * 2);
+        final CountDownLatch producerLatch = new CountDownLatch(threadCount);
+        final CountDownLatch consumerLatch = new CountDownLatch(threadCount);
+        final Set<String> polled = ConcurrentHashMap.newKeySet();
+
+        for (int t = 0; t < threadCount; t++) {
+            final int id = t;
+            executor.execute(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        queue.offer(create("http://host" + (i % 17) + ".example.com/" + id + "/" + i));
+                    }
+                } finally {
+                    producerLatch.countDown();
+                }
+            });
+        }
+        for (int t = 0; t < threadCount; t++) {
+            executor.execute(() -> {
+                try {
+                    while (producerLatch.getCount() > 0 || !queue.isEmpty()) {
+                        final UrlQueueImpl<Long> urlQueue = queue.poll();
+                        if (urlQueue != null) {
+                            assertTrue(polled.add(urlQueue.getUrl()));
+                        }
+                    }
+                } finally {
+                    consumerLatch.countDown();
+                }
+            });
+        }
+
+        assertTrue(consumerLatch.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(threadCount * perThread, polled.size());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void test_poll_withInterval() {
+        final HostPartitionedQueue<UrlQueueImpl<Long>> queue = new HostPartitionedQueue<>();
+        assertEquals(-1L, queue.getWaitMillis());
+
+        queue.offer(create("http://slow.example.com/1"));
+        queue.offer(create("http://slow.example.com/2"));
+        queue.offer(create("http://fast.example.com/1"));
+        queue.offer(create("http://fast.example.com/2"));
+        assertEquals(0L, queue.getWaitMillis());
+
+        final ToLongFunction<String> intervalFunction = host -> "http://slow.example.com".equals(host) ? 60000L : 0L;
+        assertEquals("http://slow.example.com/1", queue.poll(intervalFunction).getUrl());
+        // the slow host is skipped while it is in its interval
+        assertEquals("http://fast.example.com/1", queue.poll(intervalFunction).getUrl());
+        assertEquals("http://fast.example.com/2", queue.poll(intervalFunction).getUrl());
+        assertNull(queue.poll(intervalFunction));
+        assertEquals(1, queue.size());
+        final long waitMillis = queue.getWaitMillis();
+        assertTrue(waitMillis > 0 && waitMillis <= 60000L);
+
+        // poll() without an interval function ignores the interval
+        assertEquals("http://slow.example.com/2", queue.poll().getUrl());
+        assertEquals(-1L, queue.getWaitMillis());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+public class PriorityUrlQueueTest extends PlainTestCase {
+
+    private static UrlQueueImpl<Long> create(final String path, final float weight) {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setSessionId("s1");
+        urlQueue.setUrl("http://example.com/" + path);
+        urlQueue.setWeight(weight);
+        return urlQueue;
+    }
+
+    @Test
+    public void test_offerAndPoll() {
+        final PriorityUrlQueue queue = new PriorityUrlQueue(10);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+
+        queue.add(create("a", 1.0f));
+        queue.add(create("b", 3.0f));
+        queue.add(create("c", 0.5f));
+        queue.add(create("d", 1.0f));
+        queue.add(create("e", 3.0f));
+        // shares the bucket of 1.0
+        queue.add(create("f", 1.04f));
+        queue.add(create("g", Float.NaN));
+        assertEquals(7, queue.size());
+        assertEquals(3, queue.getBucketCount());
+
+        final List<String> iterated = new ArrayList<>();
+        queue.forEach(urlQueue -> iterated.add(urlQueue.getUrl()));
+        assertEquals(7, iterated.size());
+
+        final List<String> polled = new ArrayList<>();
+        assertEquals("http://example.com/b", queue.peek().getUrl());
+        UrlQueueImpl<Long> urlQueue;
+        while ((urlQueue = queue.poll()) != null) {
+            polled.add(urlQueue.getUrl().substring("http://example.com/".length()));
+        }
+        assertEquals(List.of("b", "e", "a", "d", "f", "g", "c"), polled);
+        assertEquals(iterated.stream().map(url -> url.substring("http://example.com/".length())).toList(), polled);
+        assertEquals(0, queue.size());
+        assertTrue(queue.isEmpty());
+
+        queue.add(create("h", 2.0f));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getBucketCount());
+    }
+
+    @Test
+    public void test_emptyBucketRemoved() {
+        final PriorityUrlQueue queue = new PriorityUrlQueue(10);
+        for (int i = 0; i < 100; i++) {
+            queue.add(create(Integer.toString(i), i));
+        }
+        assertEquals(100, queue.getBucketCount());
+        for (int i = 99; i >= 50; i--) {
+            assertEquals("http://example.com/" + i, queue.poll().getUrl());
+        }
+        assertEquals(50, queue.getBucketCount());
+        while (queue.poll() != null) {
+            // drain
+        }
+        assertEquals(0, queue.getBucketCount());
+    }
+
+    @Test
+    public void test_remove() {
+        final PriorityUrlQueue queue = new PriorityUrlQueue(10);
+        final UrlQueueImpl<Long> a = create("a", 1.0f);
+        final UrlQueueImpl<Long> b = create("b", 2.0f);
+        final UrlQueueImpl<Long> c = create("c", 2.0f);
+        final UrlQueueImpl<Long> d = create("d", 3.0f);
+        queue.add(a);
+        queue.add(b);
+        queue.add(c);
+        queue.add(d);
+
+        assertTrue(queue.remove(d));
+        assertFalse(queue.remove(d));
+        assertFalse(queue.remove(create("a", 1.0f)));
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getBucketCount());
+
+        assertTrue(queue.removeIf(urlQueue -> urlQueue.getUrl().endsWith("/b")));
+        assertEquals(2, queue.size());
+
+        final Iterator<UrlQueueImpl<Long>> iterator = queue.iterator();
+        assertTrue(c == iterator.next());
+        iterator.remove();
+        try {
+            iterator.remove();
+            fail();
+        } catch (final IllegalStateException e) {
+            // ok
+        }
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.getBucketCount());
+        assertTrue(a == queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void test_invalidScale() {
+        try {
+            new PriorityUrlQueue(0);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void test_concurrent() throws Exception {
+        final PriorityUrlQueue queue = new PriorityUrlQueue(10);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        queue.offer(create(thread + "/" + i, i % 5));
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(4000, queue.size());
+
+            final Set<String> urlSet = ConcurrentHashMap.newKeySet();
+            futures.clear();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    UrlQueueImpl<Long> urlQueue;
+                    while ((urlQueue = queue.poll()) != null) {
+                        urlSet.add(urlQueue.getUrl());
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(4000, urlSet.size());
+            assertEquals(0, queue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.codelibs.fess.crawler.entity.UrlQueueImpl;
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+public class SpillingUrlQueueTest extends PlainTestCase {
+
+    private File spillDirectory;
+
+    @Override
+    protected void setUp(final TestInfo testInfo) throws Exception {
+        super.setUp(testInfo);
+        spillDirectory = Files.createTempDirectory("spill").toFile();
+    }
+
+    @Override
+    protected void tearDown(final TestInfo testInfo) throws Exception {
+        FileUtils.deleteDirectory(spillDirectory);
+        super.tearDown(testInfo);
+    }
+
+    private static UrlQueueImpl<Long> create(final int i) {
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setSessionId("s1");
+        urlQueue.setMethod("GET");
+        urlQueue.setUrl("http://example.com/" + i);
+        urlQueue.setDepth(i % 3);
+        urlQueue.setCreateTime((long) i);
+        return urlQueue;
+    }
+
+    private int countSegmentFiles() {
+        return FileUtils.listFiles(spillDirectory, null, true).size();
+    }
+
+    @Test
+    public void test_offerAndPoll() {
+        final SpillingUrlQueue queue = new SpillingUrlQueue(10, 5, spillDirectory);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(create(i)));
+        }
+        assertEquals(100, queue.size());
+        assertEquals(10, queue.getHeadSize());
+        assertEquals(90L, queue.getSpilledCount());
+        assertEquals(18, countSegmentFiles());
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("http://example.com/" + i, queue.poll().getUrl());
+        }
+        // entries offered while spilled keep the FIFO order
+        for (int i = 100; i < 120; i++) {
+            queue.add(create(i));
+        }
+        for (int i = 50; i < 120; i++) {
+            final UrlQueueImpl<Long> urlQueue = queue.poll();
+            assertEquals("http://example.com/" + i, urlQueue.getUrl());
+            assertEquals(Integer.valueOf(i % 3), urlQueue.getDepth());
+            assertEquals(Long.valueOf(i), urlQueue.getCreateTime());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, countSegmentFiles());
+
+        // the head is used again once nothing is spilled
+        queue.add(create(200));
+        assertEquals(0L, queue.getSpilledCount());
+        assertEquals("http://example.com/200", queue.peek().getUrl());
+        queue.close();
+    }
+
+    @Test
+    public void test_steadyOfferAndPoll() {
+        final SpillingUrlQueue queue = new SpillingUrlQueue(10, 1000, spillDirectory);
+        for (int i = 0; i < 100; i++) {
+            queue.add(create(i));
+        }
+        assertEquals(1L, queue.segmentSequence);
+        // the open segment keeps being appended to while the head is refilled
+        for (int i = 100; i < 2000; i++) {
+            queue.add(create(i));
+            assertEquals("http://example.com/" + (i - 100), queue.poll().getUrl());
+        }
+        assertTrue(queue.segmentSequence <= 30L);
+        for (int i = 1900; i < 2000; i++) {
+            assertEquals("http://example.com/" + i, queue.poll().getUrl());
+        }
+        assertNull(queue.poll());
+        queue.close();
+    }
+
+    @Test
+    public void test_encoding() {
+        final SpillingUrlQueue queue = new SpillingUrlQueue(1, 10, spillDirectory);
+        queue.add(create(0));
+        final UrlQueueImpl<Long> urlQueue = new UrlQueueImpl<>();
+        urlQueue.setId(10L);
+        urlQueue.setSessionId("s1");
+        urlQueue.setMethod("HEAD");
+        urlQueue.setUrl("http://example.com/日本語");
+        urlQueue.setMetaData("meta");
+        urlQueue.setEncoding("UTF-8");
+        urlQueue.setParentUrl("http://example.com/");
+        urlQueue.setLastModified(123L);
+        urlQueue.setEtag("\"abc\"");
+        urlQueue.setWeight(2.5f);
+        queue.add(urlQueue);
+        queue.add(new UrlQueueImpl<>());
+        assertEquals(2L, queue.getSpilledCount());
+
+        queue.poll();
+        final UrlQueueImpl<Long> restored = queue.poll();
+        assertEquals(Long.valueOf(10L), restored.getId());
+        assertEquals("s1", restored.getSessionId());
+        assertEquals("HEAD", restored.getMethod());
+        assertEquals("http://example.com/日本語", restored.getUrl());
+        assertEquals("meta", restored.getMetaData());
+        assertEquals("UTF-8", restored.getEncoding());
+        assertEquals("http://example.com/", restored.getParentUrl());
+        assertNull(restored.getDepth());
+        assertEquals(Long.valueOf(123L), restored.getLastModified());
+        assertEquals("\"abc\"", restored.getEtag());
+        assertNull(restored.getCreateTime());
+        assertEquals(2.5f, restored.getWeight());
+
+        final UrlQueueImpl<Long> empty = queue.poll();
+        assertNull(empty.getId());
+        assertNull(empty.getUrl());
+        assertNull(empty.getLastModified());
+        assertNull(queue.poll());
+        queue.close();
+    }
+
+    @Test
+    public void test_iterator() {
+        final SpillingUrlQueue queue = new SpillingUrlQueue(4, 3, spillDirectory);
+        for (int i = 0; i < 20; i++) {
+            queue.add(create(i));
+        }
+        queue.poll();
+        final List<String> urlList = new ArrayList<>();
+        for (final UrlQueueImpl<Long> urlQueue : queue) {
+            urlList.add(urlQueue.getUrl());
+        }
+        assertEquals(19, urlList.size());
+        for (int i = 1; i < 20; i++) {
+            assertEquals("http://example.com/" + i, urlList.get(i - 1));
+        }
+        // iterating does not consume the queue
+        assertEquals(19, queue.size());
+        assertEquals("http://example.com/1", queue.poll().getUrl());
+        queue.close();
+    }
+
+    @Test
+    public void test_clearAndClose() {
+        final SpillingUrlQueue queue = new SpillingUrlQueue(2, 2, spillDirectory);
+        for (int i = 0; i < 10; i++) {
+            queue.add(create(i));
+        }
+        queue.poll();
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+        assertEquals(0, countSegmentFiles());
+
+        queue.add(create(0));
+        queue.close();
+        assertEquals(0, spillDirectory.list().length);
+        try {
+            queue.add(create(1));
+            fail();
+        } catch (final IllegalStateException e) {
+            assertEquals("SpillingUrlQueue is closed.", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link UrlPatternMatcher}.
+ */
+public class UrlPatternMatcherTest extends PlainTestCase {
+
+    @Test
+    public void test_parseLiteralPrefix() {
+        assertPrefix("http://example.com/", ".*", "http://example.com/.*");
+        assertPrefix("http://example.com/index.html", "$", "http://example\\.com/index\\.html$");
+        assertPrefix("http://example.com/", "", "^http://example.com/");
+        assertPrefix("http", "s?://example.com/.*", "https?://example.com/.*");
+        assertPrefix("http://example.com/", "\\d+", "http://example.com/\\d+");
+        assertPrefix("http://example.com/a", "(b|c)", "http://example.com/a(b|c)");
+        assertPrefix("", ".*\\.pdf", ".*\\.pdf");
+        assertPrefix("http://example.com/", "[a-z]+", "http://example.com/[a-z]+");
+        assertPrefix("http://example.com", "\\Q/a.b\\E", "http://example.com\\Q/a.b\\E");
+        assertPrefix("http://example", ".*", "http://example.*");
+
+        final StringBuilder prefix = new StringBuilder();
+        UrlPatternMatcher.parseLiteralPrefix("a.b\\.c", prefix);
+        assertEquals("a" + UrlPatternMatcher.ANY + "b.c", prefix.toString());
+    }
+
+    private void assertPrefix(final String expectedPrefix, final String expectedRest, final String regex) {
+        final StringBuilder prefix = new StringBuilder();
+        final int index = UrlPatternMatcher.parseLiteralPrefix(regex, prefix);
+        assertEquals(expectedPrefix, prefix.toString().replace(UrlPatternMatcher.ANY, '.'));
+        assertEquals(expectedRest, regex.substring(index));
+    }
+
+    @Test
+    public void test_parseLiteralPrefixes() {
+        assertPrefixes(List.of("http://example.com/", "https://example.com/"), ".*", "https?://example.com/.*");
+        assertPrefixes(List.of("http://example.com/a", "http://example.com/a/"), "$", "^http://example\\.com/a/?$");
+        assertPrefixes(List.of("http://example.com/", "http://example.com/?"), "\\d+", "http://example.com/\\??\\d+");
+        // a second optional character ends the prefixes
+        assertPrefixes(List.of("http", "https"), "w?://example.com/", "https?w?://example.com/");
+        // only a greedy "?" is expanded
+        assertPrefixes(List.of("http"), "s??", "https??");
+        assertPrefixes(List.of("http"), "s?+://.*", "https?+://.*");
+        assertPrefixes(List.of("http"), "s*://.*", "https*://.*");
+        assertPrefixes(List.of("http://example.com/"), "\\d?", "http://example.com/\\d?");
+        assertPrefixes(List.of("http://example"), ".?com/.*", "http://example.?com/.*");
+    }
+
+    private void assertPrefixes(final List<String> expectedPrefixes, final String expectedRest, final String regex) {
+        final List<String> prefixes = new ArrayList<>();
+        final int index = UrlPatternMatcher.parseLiteralPrefixes(regex, prefixes);
+        assertEquals(expectedPrefixes, prefixes.stream().map(prefix -> prefix.replace(UrlPatternMatcher.ANY, '.')).toList());
+        assertEquals(expectedRest, regex.substring(index));
+    }
+
+    @Test
+    public void test_matches_optionalCharacter() {
+        final UrlPatternMatcher matcher = new UrlPatternMatcher();
+        matcher.add(Pattern.compile("https?://a.example.com/.*"));
+        matcher.add(Pattern.compile("https?://b.example.com/[0-9]+"));
+        matcher.add(Pattern.compile("https?://c.example.com/index.html"));
+
+        // the patterns are indexed under both prefixes instead of sharing the node of "http"
+        final UrlPatternMatcher.Node http = matcher.root.children.get('h').children.get('t').children.get('t').children.get('p');
+        assertEquals(0, http.patterns.length);
+        assertFalse(http.prefixMatch);
+        assertNotNull(http.children.get(':'));
+        assertNotNull(http.children.get('s').children.get(':'));
+
+        assertTrue(matcher.matches("http://a.example.com/"));
+        assertTrue(matcher.matches("https://a.example.com/x"));
+        assertFalse(matcher.matches("httpss://a.example.com/x"));
+        assertFalse(matcher.matches("ftp://a.example.com/x"));
+        assertTrue(matcher.matches("http://b.example.com/1"));
+        assertTrue(matcher.matches("https://b.example.com/12"));
+        assertFalse(matcher.matches("https://b.example.com/a"));
+        assertTrue(matcher.matches("https://c.example.com/index.html"));
+        assertFalse(matcher.matches("https://c.example.com/index.htm"));
+    }
+
+    @Test
+    public void test_matches() {
+        final UrlPatternMatcher matcher = new UrlPatternMatcher();
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.matches("http://example.com/"));
+
+        matcher.add(Pattern.compile("http://example.com/.*"));
+        matcher.add(Pattern.compile("http://example\\.org/index\\.html$"));
+        matcher.add(Pattern.compile("https?://example.net/[0-9]+"));
+        matcher.add(Pattern.compile(".*\\.pdf"));
+        matcher.add(Pattern.compile("http://a.example.com/x|http://b.example.com/y"));
+        matcher.add(Pattern.compile("HTTP://CASE.EXAMPLE.COM/.*", Pattern.CASE_INSENSITIVE));
+        assertEquals(6, matcher.size());
+        assertFalse(matcher.isEmpty());
+
+        assertTrue(matcher.matches("http://example.com/"));
+        assertTrue(matcher.matches("http://example.com/a/b?c=d"));
+        assertTrue(matcher.matches("http://exampleXcom/"));
+        assertFalse(matcher.matches("http://exampleXorg/index.html"));
+        assertFalse(matcher.matches("http://example.com"));
+        assertTrue(matcher.matches("http://example.org/index.html"));
+        assertFalse(matcher.matches("http://example.org/index.htm"));
+        assertFalse(matcher.matches("http://example.org/index.html?a"));
+        assertTrue(matcher.matches("http://example.net/123"));
+        assertTrue(matcher.matches("https://example.net/123"));
+        assertFalse(matcher.matches("http://example.net/abc"));
+        assertTrue(matcher.matches("ftp://files.example.com/doc.pdf"));
+        assertTrue(matcher.matches("http://a.example.com/x"));
+        assertTrue(matcher.matches("http://b.example.com/y"));
+        assertFalse(matcher.matches("http://a.example.com/y"));
+        assertTrue(matcher.matches("http://case.example.com/"));
+        assertFalse(matcher.matches(""));
+
+        // "." does not match line terminators
+        assertFalse(matcher.matches("http://example.com/a\nb"));
+        assertFalse(matcher.matches("http://example.com/a\nb.pdf"));
+    }
+
+    @Test
+    public void test_matches_sameAsRegex() {
+        final Random random = new Random(1L);
+        final String[] hosts = { "http://example.com", "https://example.com", "http://www.example.org:8080", "http://example.net" };
+        final String[] paths = { "/", "/a", "/a/", "/a/b.html", "/index.html", "/a?b=c", "/private/x", "/help", "/help/faq.html", "/x.pdf" };
+        final String[] regexSuffixes = { "/.*", "/a/.*", "/index\\.html$", "/a\\?.*", "/private/.*", "/help.*", "/help/faq\\.html$", "/.*\\.pdf",
+                "/a", "/[a-z]/.*", "/a?", "/(a|help)/.*", "" };
+
+        final List<Pattern> patterns = new ArrayList<>();
+        final UrlPatternMatcher matcher = new UrlPatternMatcher();
+        for (int i = 0; i < 200; i++) {
+            final String host = hosts[random.nextInt(hosts.length)].replace(".", random.nextBoolean() ? "\\." : ".");
+            final Pattern pattern = Pattern.compile(host + regexSuffixes[random.nextInt(regexSuffixes.length)]);
+            patterns.add(pattern);
+            matcher.add(pattern);
+
+            for (final String h : hosts) {
+                for (final String path : paths) {
+                    final String url = h + path;
+                    boolean expected = false;
+                    for (final Pattern p : patterns) {
+                        if (p.matcher(url).matches()) {
+                            expected = true;
+                            break;
+                        }
+                    }
+                    assertEquals(expected, matcher.matches(url));
+                }
+            }
+        }
+    }
+}
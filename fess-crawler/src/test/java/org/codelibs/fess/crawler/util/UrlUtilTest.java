@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link UrlUtil}.
+ */
+public class UrlUtilTest extends PlainTestCase {
+
+    @Test
+    public void test_getHost() {
+        assertEquals("http://example.com", UrlUtil.getHost("http://example.com/a/b.html"));
+        assertEquals("https://example.com:8443", UrlUtil.getHost("https://example.com:8443?q=1"));
+        assertEquals("http://example.com", UrlUtil.getHost("http://example.com#top"));
+        assertEquals("http://example.com", UrlUtil.getHost("http://example.com"));
+        assertEquals("file:", UrlUtil.getHost("file:/tmp/test.txt"));
+        assertEquals("", UrlUtil.getHost(null));
+    }
+}
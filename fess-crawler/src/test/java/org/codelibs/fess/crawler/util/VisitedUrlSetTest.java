@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2025 CodeLibs Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.codelibs.fess.crawler.util;
+
+import org.dbflute.utflute.core.PlainTestCase;
+import org.junit.jupiter.api.Test;
+
+public class VisitedUrlSetTest extends PlainTestCase {
+
+    @Test
+    public void test_addAndContains() {
+        final VisitedUrlSet visitedUrlSet = new VisitedUrlSet(1000L, 0.001, true);
+        assertTrue(visitedUrlSet.isExact());
+        assertFalse(visitedUrlSet.contains("http://example.com/"));
+        assertTrue(visitedUrlSet.add("http://example.com/"));
+        assertFalse(visitedUrlSet.add("http://example.com/"));
+        assertTrue(visitedUrlSet.contains("http://example.com/"));
+        assertFalse(visitedUrlSet.contains("http://example.com/a"));
+        assertEquals(1L, visitedUrlSet.size());
+
+        visitedUrlSet.clear();
+        assertFalse(visitedUrlSet.contains("http://example.com/"));
+        assertEquals(0L, visitedUrlSet.size());
+        assertEquals(1, visitedUrlSet.getFilterCount());
+    }
+
+    @Test
+    public void test_grow() {
+        final VisitedUrlSet visitedUrlSet = new VisitedUrlSet(100L, 0.01, true);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(visitedUrlSet.add("http://example.com/" + i));
+        }
+        // 100 + 200 + ... + 3200 < 10000 <= 100 + ... + 6400
+        assertEquals(7, visitedUrlSet.getFilterCount());
+        assertEquals(10000L, visitedUrlSet.size());
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(visitedUrlSet.contains("http://example.com/" + i));
+            assertFalse(visitedUrlSet.add("http://example.com/" + i));
+        }
+        for (int i = 10000; i < 20000; i++) {
+            assertFalse(visitedUrlSet.contains("http://example.com/" + i));
+        }
+    }
+
+    @Test
+    public void test_notExact() {
+        final VisitedUrlSet visitedUrlSet = new VisitedUrlSet(1000L, 0.001, false);
+        assertFalse(visitedUrlSet.isExact());
+        int added = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (visitedUrlSet.add("http://example.com/" + i)) {
+                added++;
+            }
+        }
+        // false positives stay below twice the fpp
+        assertTrue(added > 10000 - 20);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(visitedUrlSet.contains("http://example.com/" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (visitedUrlSet.contains("http://example.com/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 20);
+    }
+
+    @Test
+    public void test_invalidArguments() {
+        try {
+            new VisitedUrlSet(0L, 0.01, true);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("expectedInsertions"));
+        }
+        try {
+            new VisitedUrlSet(100L, 1.0, true);
+            fail();
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("fpp"));
+        }
+    }
+
+    @Test
+    public void test_longHashSet() {
+        final VisitedUrlSet.LongHashSet set = new VisitedUrlSet.LongHashSet();
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        for (long i = 1; i <= 5000; i++) {
+            assertTrue(set.add(i * 1024L));
+            assertTrue(set.add(-i));
+        }
+        assertEquals(10000, set.count);
+        assertEquals(16384, set.table.length);
+        for (long i = 1; i <= 5000; i++) {
+            assertTrue(set.contains(i * 1024L));
+            assertTrue(set.contains(-i));
+            assertFalse(set.add(-i));
+            assertFalse(set.contains(i * 1024L + 1L));
+        }
+        set.clear();
+        assertFalse(set.contains(0L));
+        assertFalse(set.contains(1024L));
+    }
+}